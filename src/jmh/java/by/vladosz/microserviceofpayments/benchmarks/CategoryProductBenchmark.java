@@ -0,0 +1,23 @@
+package by.vladosz.microserviceofpayments.benchmarks;
+
+import by.vladosz.microserviceofpayments.models.CategoryProduct;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CategoryProductBenchmark {
+
+    @Param({"ЭЛЕКТРОНИКА", "бытовая техника"})
+    private String value;
+
+    @Benchmark
+    public CategoryProduct fromValue() {
+        return CategoryProduct.fromValue(value);
+    }
+}
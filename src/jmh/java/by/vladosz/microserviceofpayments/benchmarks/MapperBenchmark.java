@@ -0,0 +1,53 @@
+package by.vladosz.microserviceofpayments.benchmarks;
+
+import by.vladosz.microserviceofpayments.dto.ProductDTO;
+import by.vladosz.microserviceofpayments.dto.UserDTO;
+import by.vladosz.microserviceofpayments.mappers.ProductMapper;
+import by.vladosz.microserviceofpayments.mappers.ProductMapperImpl;
+import by.vladosz.microserviceofpayments.mappers.UserMapper;
+import by.vladosz.microserviceofpayments.mappers.UserMapperImpl;
+import by.vladosz.microserviceofpayments.models.CategoryProduct;
+import by.vladosz.microserviceofpayments.models.Money;
+import by.vladosz.microserviceofpayments.models.Product;
+import by.vladosz.microserviceofpayments.models.User;
+import by.vladosz.microserviceofpayments.models.UserRole;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapperBenchmark {
+    private final ProductMapper productMapper = new ProductMapperImpl();
+    private final UserMapper userMapper = new UserMapperImpl();
+
+    private Product product;
+    private User user;
+
+    @Setup
+    public void setUp() {
+        product = new Product(1L, "Наушники Sony", "Беспроводные наушники с шумоподавлением", Money.of(899000, "RUB"),
+                25, CategoryProduct.ЭЛЕКТРОНИКА);
+
+        UserRole userRole = new UserRole();
+        userRole.setId(1);
+        userRole.setName("ROLE_USER");
+        user = new User(1L, "Иван", "Петров", "Сергеевич", 25,
+                "ivan.petrov@example.com", "securePass123", List.of(userRole));
+    }
+
+    @Benchmark
+    public ProductDTO productToDto() {
+        return productMapper.toProductDTO(product);
+    }
+
+    @Benchmark
+    public UserDTO userToDto() {
+        return userMapper.toUserDTO(user);
+    }
+}
@@ -0,0 +1,105 @@
+package by.vladosz.microserviceofpayments.benchmarks;
+
+import by.vladosz.microserviceofpayments.MicroserviceOfPaymentsApplication;
+import by.vladosz.microserviceofpayments.dto.CursorPageDTO;
+import by.vladosz.microserviceofpayments.dto.ProductDTO;
+import by.vladosz.microserviceofpayments.models.CategoryProduct;
+import by.vladosz.microserviceofpayments.models.Money;
+import by.vladosz.microserviceofpayments.models.Product;
+import by.vladosz.microserviceofpayments.models.ProductSortOrder;
+import by.vladosz.microserviceofpayments.models.TotalMode;
+import by.vladosz.microserviceofpayments.services.ProductImportService;
+import by.vladosz.microserviceofpayments.services.ProductService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Slice;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Листинги ProductService на настоящем Postgres (одноразовый контейнер Testcontainers)
+ * с кэшем страниц, отключенным через products.page-cache.maximum-size=0.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductServiceBenchmark {
+    private static final int PRODUCTS = 20_000;
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"0", "500"})
+    private int pageNumber;
+
+    private PostgreSQLContainer<?> postgres;
+    private ConfigurableApplicationContext context;
+    private ProductService productService;
+    private String deepCursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+        postgres.start();
+
+        context = new SpringApplicationBuilder(MicroserviceOfPaymentsApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=" + postgres.getJdbcUrl() + "&reWriteBatchedInserts=true",
+                        "spring.datasource.username=" + postgres.getUsername(),
+                        "spring.datasource.password=" + postgres.getPassword(),
+                        "spring.jpa.show-sql=false",
+                        "security.jwt.keys.k1=dGVzdC1vbmx5LXNpZ25pbmcta2V5LW5vdC1mb3ItcHJvZA==",
+                        "products.page-cache.maximum-size=0")
+                .run();
+        productService = context.getBean(ProductService.class);
+
+        CategoryProduct[] categories = CategoryProduct.values();
+        ProductImportService importService = context.getBean(ProductImportService.class);
+        for (int from = 0; from < PRODUCTS; from += ProductImportService.MAX_ITEMS) {
+            List<Product> batch = new ArrayList<>(IntStream.range(from, from + ProductImportService.MAX_ITEMS)
+                    .mapToObj(i -> new Product(null, "Продукт " + i, "Описание продукта номер " + i,
+                            Money.of(100 + i % 5000 * 100L, "RUB"), 10, categories[i % categories.length]))
+                    .toList());
+            importService.importProducts(batch);
+        }
+
+        CursorPageDTO<ProductDTO> page = productService.scroll(ProductSortOrder.NAME_ASC, null, PAGE_SIZE);
+        for (int i = 0; i < pageNumber && page.isHasNext(); i++) {
+            page = productService.scroll(ProductSortOrder.NAME_ASC, page.getNextCursor(), PAGE_SIZE);
+        }
+        deepCursor = pageNumber == 0 ? null : page.getNextCursor();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        postgres.stop();
+    }
+
+    @Benchmark
+    public Slice<ProductDTO> findAllWithExactTotal() {
+        return productService.findAll(pageNumber, PAGE_SIZE, TotalMode.EXACT);
+    }
+
+    @Benchmark
+    public Slice<ProductDTO> findAllWithoutTotal() {
+        return productService.findAll(pageNumber, PAGE_SIZE, TotalMode.NONE);
+    }
+
+    @Benchmark
+    public CursorPageDTO<ProductDTO> scrollByName() {
+        return productService.scroll(ProductSortOrder.NAME_ASC, deepCursor, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Slice<ProductDTO> categoryByPrice() {
+        return productService.getProductCategory(CategoryProduct.КНИГИ.name(), pageNumber, PAGE_SIZE, TotalMode.NONE);
+    }
+}
@@ -0,0 +1,86 @@
+package by.vladosz.microserviceofpayments.benchmarks;
+
+import by.vladosz.microserviceofpayments.configs.LimitingDataSource;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Обработка запросов на пуле платформенных потоков размером с пул Tomcat (200)
+ * против виртуального потока на запрос. Каждый пятый запрос ходит в Postgres через
+ * LimitingDataSource с пулом на 10 соединений, остальные блокируются на имитации внешнего вызова.
+ * 400 потоков JMH играют роль клиентов; режим SampleTime дает p99 задержки, Throughput — пропускную способность.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(400)
+@Fork(1)
+public class RequestExecutorBenchmark {
+    private static final int TOMCAT_MAX_THREADS = 200;
+    private static final int POOL_SIZE = 10;
+    private static final long BLOCKING_CALL_MILLIS = 5;
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    private String executor;
+
+    private PostgreSQLContainer<?> postgres;
+    private HikariDataSource pool;
+    private LimitingDataSource dataSource;
+    private ExecutorService requestExecutor;
+    private final AtomicLong requests = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+        postgres.start();
+
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(postgres.getJdbcUrl());
+        config.setUsername(postgres.getUsername());
+        config.setPassword(postgres.getPassword());
+        config.setMaximumPoolSize(POOL_SIZE);
+        pool = new HikariDataSource(config);
+        dataSource = new LimitingDataSource(pool, POOL_SIZE, Duration.ofSeconds(30));
+
+        requestExecutor = "VIRTUAL".equals(executor)
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        requestExecutor.shutdownNow();
+        pool.close();
+        postgres.stop();
+    }
+
+    @Benchmark
+    public Object request() throws Exception {
+        boolean databaseCall = requests.incrementAndGet() % 5 == 0;
+        return requestExecutor.submit(() -> databaseCall ? queryDatabase() : callRemoteService()).get();
+    }
+
+    private Object queryDatabase() throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            return statement.execute("select pg_sleep(" + BLOCKING_CALL_MILLIS / 1000.0 + ")");
+        }
+    }
+
+    private Object callRemoteService() throws InterruptedException {
+        Thread.sleep(BLOCKING_CALL_MILLIS);
+        return Boolean.TRUE;
+    }
+}
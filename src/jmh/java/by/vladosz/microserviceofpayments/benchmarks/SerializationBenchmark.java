@@ -0,0 +1,48 @@
+package by.vladosz.microserviceofpayments.benchmarks;
+
+import by.vladosz.microserviceofpayments.dto.ProductDTO;
+import by.vladosz.microserviceofpayments.models.CategoryProduct;
+import by.vladosz.microserviceofpayments.models.Money;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"10", "100"})
+    private int pageSize;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private Page<ProductDTO> page;
+
+    @Setup
+    public void setUp() {
+        CategoryProduct[] categories = CategoryProduct.values();
+        List<ProductDTO> content = IntStream.range(0, pageSize)
+                .mapToObj(i -> new ProductDTO("Продукт " + i, "Описание продукта номер " + i,
+                        Money.of(10000L + i * 100L, "RUB"), categories[i % categories.length]))
+                .toList();
+        page = new PageImpl<>(content, PageRequest.of(0, pageSize, Sort.by(Sort.Direction.ASC, "priceBaseMinor")), 10_000);
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+}
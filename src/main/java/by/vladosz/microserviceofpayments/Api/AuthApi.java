@@ -0,0 +1,36 @@
+package by.vladosz.microserviceofpayments.Api;
+
+import by.vladosz.microserviceofpayments.dto.LoginDTO;
+import by.vladosz.microserviceofpayments.dto.TokenDTO;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestBody;
+
+@Tag(name = "Auth API",
+        description = "Выпуск подписанных токенов доступа.")
+public interface AuthApi {
+
+    @Operation(
+            summary = "Войти и получить токен доступа",
+            description = """
+                    Проверяет пароль пользователя один раз и выдает короткоживущий токен (JWT, HS256)
+                    с именем пользователя и ролями. Дальше токен передается в заголовке
+                    Authorization: Bearer <token> и проверяется локально, без обращения к базе.
+                    """
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Токен успешно выдан",
+                    content = @Content(schema = @Schema(implementation = TokenDTO.class))
+            ),
+            @ApiResponse(responseCode = "401", description = "Неверное имя пользователя или пароль")
+    })
+    ResponseEntity<TokenDTO> login(@RequestBody @Valid LoginDTO loginDTO);
+}
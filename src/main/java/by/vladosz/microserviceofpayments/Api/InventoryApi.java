@@ -0,0 +1,59 @@
+package by.vladosz.microserviceofpayments.Api;
+
+import by.vladosz.microserviceofpayments.dto.ReservationDTO;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.UUID;
+
+@Tag(name = "Inventory API",
+        description = "Резервирование и освобождение остатков продуктов.")
+public interface InventoryApi {
+
+    @Operation(
+            summary = "Зарезервировать количество продукта",
+            description = """
+                    Списывает указанное количество со склада одним условным UPDATE.
+                    
+                    Особенности:
+                    - Строка не блокируется, конкурентные резервы не теряют обновления
+                    - Если остатка не хватает, ничего не списывается
+                    - Количество ограничено inventory.max-quantity
+                    - Резерв записывается, его id нужен для освобождения
+                    """
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "201",
+                    description = "Количество зарезервировано",
+                    content = @Content(schema = @Schema(implementation = ReservationDTO.class))
+            ),
+            @ApiResponse(responseCode = "400", description = "Количество меньше 1 или больше inventory.max-quantity"),
+            @ApiResponse(responseCode = "404", description = "Продукт не найден"),
+            @ApiResponse(responseCode = "409", description = "Недостаточно остатка")
+    })
+    ResponseEntity<ReservationDTO> reserve(@PathVariable Long product_id, @RequestParam int quantity);
+
+    @Operation(
+            summary = "Освободить резерв продукта",
+            description = """
+                    Возвращает на склад количество резерва, выданного при резервировании.
+                    Резерв освобождается один раз, повторный запрос с тем же id вернет 404.
+                    
+                    Пример использования:
+                    - POST /api/products/1/release?reservation_id=0b6f3c9e-8f5d-4a55-9a43-2f1c2f8b7d10
+                    """
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "204", description = "Резерв освобожден"),
+            @ApiResponse(responseCode = "404", description = "Резерв не найден или уже освобожден")
+    })
+    ResponseEntity<Void> release(@PathVariable Long product_id, @RequestParam UUID reservation_id);
+}
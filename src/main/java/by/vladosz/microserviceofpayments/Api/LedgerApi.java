@@ -0,0 +1,38 @@
+package by.vladosz.microserviceofpayments.Api;
+
+import by.vladosz.microserviceofpayments.dto.LedgerBalanceDTO;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.web.bind.annotation.PathVariable;
+
+import java.util.List;
+import java.util.Map;
+
+@Tag(name = "Ledger API",
+        description = "Балансы пользователей по журналу событий платежей.")
+public interface LedgerApi {
+
+    @Operation(
+            summary = "Получить балансы пользователя",
+            description = """
+                    Возвращает суммы по валютам: авторизовано (удерживается), списано и возвращено.
+                    Балансы ведутся в БД в транзакции записи журнала, поэтому одинаковы на всех экземплярах сервиса.
+                    """
+    )
+    List<LedgerBalanceDTO> balances(@PathVariable Long user_id);
+
+    @Operation(
+            summary = "Пересчитать балансы по журналу",
+            description = """
+                    Проигрывает весь журнал платежей заново и заменяет сохраненные балансы.
+                    Нужен, только если балансы разошлись с журналом; доступно только администратору.
+                    """
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Журнал проигран, в ответе число балансов"),
+            @ApiResponse(responseCode = "403", description = "Нет роли ADMIN")
+    })
+    Map<String, Long> replay();
+}
@@ -0,0 +1,99 @@
+package by.vladosz.microserviceofpayments.Api;
+
+import by.vladosz.microserviceofpayments.dto.PaymentDTO;
+import by.vladosz.microserviceofpayments.dto.PaymentRequestDTO;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.BindingResult;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+
+@Tag(name = "Payment API",
+        description = "Прием платежей за продукты с асинхронной авторизацией.")
+public interface PaymentApi {
+
+    @Operation(
+            summary = "Создать платеж",
+            description = """
+                    Сохраняет платеж пользователя за список продуктов и сразу возвращает его в статусе PENDING.
+                    Авторизация выполняется асинхронно, результат доступен через GET /api/payments/{payment_id}.
+                    
+                    Особенности:
+                    - Заголовок Idempotency-Key обязателен
+                    - Повтор с тем же ключом возвращает сохраненный платеж без повторной авторизации
+                    - Тот же ключ с другим телом запроса дает 422
+                    - При переполненной очереди авторизации ответ 503, запрос можно повторить с тем же ключом
+                    """
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "202",
+                    description = "Платеж принят, авторизация еще не завершена",
+                    content = @Content(schema = @Schema(implementation = PaymentDTO.class))
+            ),
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Повтор запроса: платеж уже авторизован или отклонен",
+                    content = @Content(schema = @Schema(implementation = PaymentDTO.class))
+            ),
+            @ApiResponse(responseCode = "400", description = "Ошибка валидации или нет Idempotency-Key"),
+            @ApiResponse(responseCode = "404", description = "Пользователь или продукт не найден"),
+            @ApiResponse(responseCode = "422", description = "Idempotency-Key использован для другого запроса"),
+            @ApiResponse(responseCode = "503", description = "Очередь авторизации переполнена")
+    })
+    ResponseEntity<?> createPayment(@RequestHeader("Idempotency-Key") String idempotencyKey,
+                                    @RequestBody @Valid PaymentRequestDTO request, BindingResult bindingResult);
+
+    @Operation(
+            summary = "Получить платеж по ID",
+            description = "Возвращает текущий статус платежа."
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Платеж найден",
+                    content = @Content(schema = @Schema(implementation = PaymentDTO.class))
+            ),
+            @ApiResponse(responseCode = "404", description = "Платеж не найден")
+    })
+    PaymentDTO findPayment(@PathVariable Long payment_id);
+
+    @Operation(
+            summary = "Списать авторизованный платеж",
+            description = "Переводит платеж из AUTHORIZED в CAPTURED и записывает событие в журнал платежей."
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Платеж списан",
+                    content = @Content(schema = @Schema(implementation = PaymentDTO.class))
+            ),
+            @ApiResponse(responseCode = "404", description = "Платеж не найден"),
+            @ApiResponse(responseCode = "409", description = "Платеж не в статусе AUTHORIZED"),
+            @ApiResponse(responseCode = "503", description = "Журнал платежей недоступен")
+    })
+    PaymentDTO capture(@PathVariable Long payment_id);
+
+    @Operation(
+            summary = "Вернуть списанный платеж",
+            description = "Переводит платеж из CAPTURED в REFUNDED и записывает событие в журнал платежей."
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Платеж возвращен",
+                    content = @Content(schema = @Schema(implementation = PaymentDTO.class))
+            ),
+            @ApiResponse(responseCode = "404", description = "Платеж не найден"),
+            @ApiResponse(responseCode = "409", description = "Платеж не в статусе CAPTURED"),
+            @ApiResponse(responseCode = "503", description = "Журнал платежей недоступен")
+    })
+    PaymentDTO refund(@PathVariable Long payment_id);
+}
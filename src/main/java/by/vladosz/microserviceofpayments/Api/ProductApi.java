@@ -1,7 +1,12 @@
 package by.vladosz.microserviceofpayments.Api;
 
+import by.vladosz.microserviceofpayments.dto.BatchResultDTO;
+import by.vladosz.microserviceofpayments.dto.CursorPageDTO;
 import by.vladosz.microserviceofpayments.dto.ProductDTO;
+import by.vladosz.microserviceofpayments.dto.ProductPatchDTO;
 import by.vladosz.microserviceofpayments.models.Product;
+import by.vladosz.microserviceofpayments.models.ProductSortOrder;
+import by.vladosz.microserviceofpayments.models.TotalMode;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -10,14 +15,20 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.List;
 
 @Tag(name = "Product API",
-        description = "API для управления продуктами. Поддерживает CRUD операции, поиск и сортировку с пагинацией.")
+        description = "API для управления продуктами. Поддерживает CRUD операции, поиск и сортировку с пагинацией. " +
+                "Листинги и сортировки возвращают ETag версии каталога: при совпадении If-None-Match ответ 304.")
 public interface ProductApi {
 
     @Operation(
@@ -52,10 +63,17 @@ public interface ProductApi {
                             В ответе содержится:
                             - Список продуктов в формате DTO
                             - Информация о пагинации (общее количество элементов, страниц и т.д.)
+                    
+                            Параметр total управляет подсчетом общего количества:
+                            - EXACT (по умолчанию) - точный count(*)
+                            - NONE - без count(*), в ответе только признак следующей страницы
+                            - APPROXIMATE - оценка по статистике таблицы Postgres
                     """
     )
-    Page<ProductDTO> findAll(@RequestParam(name = "page", defaultValue = "0") int pageNumber,
-                             @RequestParam(name = "size", defaultValue = "10") int pageSize);
+    Slice<ProductDTO> findAll(@RequestParam(name = "page", defaultValue = "0") int pageNumber,
+                              @RequestParam(name = "size", defaultValue = "10") int pageSize,
+                              @RequestParam(name = "total", defaultValue = "EXACT") TotalMode totalMode,
+                              WebRequest webRequest);
 
     @Operation(
             summary = "Поиск продуктов по названию с пагинацией",
@@ -63,8 +81,11 @@ public interface ProductApi {
                     Возвращает страницу продуктов, отфильтрованных по названию.
                     Поддерживает пагинацию через стандартные параметры page и size.
                     
+                    Параметр total (EXACT, NONE, APPROXIMATE) управляет подсчетом общего количества.
+                    
                     Пример использования:
                     - /api/products/name/Телефон?page=0&size=5
+                    - /api/products/name/Телефон?page=0&size=5&total=NONE
                     """
     )
 
@@ -79,9 +100,10 @@ public interface ProductApi {
                     description = "Ошибка валидации входных данных"
             )
     })
-    Page<ProductDTO> findByNameProduct(@PathVariable String nameProduct,
-                                       @RequestParam(name = "page", defaultValue = "0") int pageNumber,
-                                       @RequestParam(name = "size", defaultValue = "10") int pageSize);
+    Slice<ProductDTO> findByNameProduct(@PathVariable String nameProduct,
+                                        @RequestParam(name = "page", defaultValue = "0") int pageNumber,
+                                        @RequestParam(name = "size", defaultValue = "10") int pageSize,
+                                        @RequestParam(name = "total", defaultValue = "EXACT") TotalMode totalMode);
 
     @Operation(
             summary = "Поиск продуктов по категории с пагинацией",
@@ -89,9 +111,12 @@ public interface ProductApi {
                     Возвращает страницу продуктов, отфильтрованных по категории.
                     Поддерживает стандартные параметры пагинации Spring Data.
                     
+                    Параметр total (EXACT, NONE, APPROXIMATE) управляет подсчетом общего количества.
+                    
                     Примеры использования:
                     - /api/products/category/Электроника?page=0&size=5
                     - /api/products/category/Одежда?size=20
+                    - /api/products/category/Одежда?size=20&total=APPROXIMATE
                     """
     )
 
@@ -106,9 +131,11 @@ public interface ProductApi {
                     description = "Ошибка валидации входных данных"
             )
     })
-    Page<ProductDTO> findByCategoryProduct(@PathVariable String categoryProduct,
-                                           @RequestParam(name = "page", defaultValue = "0") int pageNumber,
-                                           @RequestParam(name = "size", defaultValue = "10") int pageSize);
+    Slice<ProductDTO> findByCategoryProduct(@PathVariable String categoryProduct,
+                                            @RequestParam(name = "page", defaultValue = "0") int pageNumber,
+                                            @RequestParam(name = "size", defaultValue = "10") int pageSize,
+                                            @RequestParam(name = "total", defaultValue = "EXACT") TotalMode totalMode,
+                                            WebRequest webRequest);
 
     @Operation(
             summary = "Обновить существующий продукт",
@@ -119,6 +146,10 @@ public interface ProductApi {
                     Требования:
                     - ID продукта должен существовать в системе
                     - Тело запроса должно содержать все обязательные поля продукта
+                    - Если передан If-Match с ETag продукта, версия продукта должна совпадать с ним
+                    
+                    Пример использования:
+                    - PUT /api/products/1, If-Match: "3"
                     """
     )
 
@@ -136,26 +167,83 @@ public interface ProductApi {
                     responseCode = "404",
                     description = "Продукт не найден"
             ),
+            @ApiResponse(
+                    responseCode = "409",
+                    description = "Продукт изменен параллельным запросом, обновление нужно повторить"
+            ),
+            @ApiResponse(responseCode = "412", description = "Версия продукта не совпадает с If-Match")
+    })
+    ResponseEntity<?> update(@PathVariable Long product_id,
+                             @RequestHeader(name = "If-Match", required = false) String ifMatch,
+                             @RequestBody @Valid Product product, BindingResult bindingResult);
+
+    @Operation(
+            summary = "Получить продукт по id",
+            description = """
+                    Возвращает продукт и его версию в заголовке ETag. Версию можно передать в If-Match
+                    при изменении (PUT, PATCH) или удалении продукта.
+                    
+                    Пример использования:
+                    - /api/products/1
+                    """
+    )
+
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Продукт найден",
+                    content = @Content(schema = @Schema(implementation = ProductDTO.class))
+            ),
+            @ApiResponse(responseCode = "404", description = "Продукт не найден")
+    })
+    ResponseEntity<ProductDTO> findById(@PathVariable Long product_id);
+
+    @Operation(
+            summary = "Частично изменить продукт",
+            description = """
+                    Меняет только переданные поля продукта одним запросом к БД, без предварительного чтения.
+                    Поля, равные null или отсутствующие в теле, не меняются.
+                    
+                    Если передан If-Match с ETag продукта, изменение выполняется, только пока версия продукта
+                    совпадает с ним: так два клиента не затирают изменения друг друга. If-Match: * или отсутствие
+                    заголовка - изменение без проверки версии. Новая версия возвращается в ETag.
+                    
+                    Пример использования:
+                    - PATCH /api/products/1, If-Match: "3", {"count": 15}
+                    """
+    )
 
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Продукт изменен",
+                    content = @Content(schema = @Schema(implementation = ProductDTO.class))
+            ),
+            @ApiResponse(responseCode = "400", description = "Ошибка валидации или пустое тело запроса"),
+            @ApiResponse(responseCode = "404", description = "Продукт не найден"),
+            @ApiResponse(responseCode = "412", description = "Версия продукта не совпадает с If-Match")
     })
-    ResponseEntity<?> update(@PathVariable Long product_id, @RequestBody @Valid
-    Product product, BindingResult bindingResult);
+    ResponseEntity<?> patch(@PathVariable Long product_id,
+                            @RequestHeader(name = "If-Match", required = false) String ifMatch,
+                            @RequestBody @Valid ProductPatchDTO patch, BindingResult bindingResult);
 
     @Operation(
             summary = "Удалить существующий продукт",
             description = """
-                    Удаляем данные продукта по его идентификатору.
+                    Удаляем данные продукта по его идентификатору одним запросом к БД.
                     
                     Требования:
                     - ID продукта должен существовать в системе
+                    - Если передан If-Match, версия продукта должна совпадать с ним
                     """
     )
 
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Продукт удален"),
-            @ApiResponse(responseCode = "404", description = "Продукт не найден")
+            @ApiResponse(responseCode = "404", description = "Продукт не найден"),
+            @ApiResponse(responseCode = "412", description = "Версия продукта не совпадает с If-Match")
     })
-    void delete(@PathVariable Long product_id);
+    void delete(@PathVariable Long product_id, @RequestHeader(name = "If-Match", required = false) String ifMatch);
 
     @Operation(
             summary = "Получить продукты с сортировкой по названию",
@@ -175,7 +263,8 @@ public interface ProductApi {
 
     @ApiResponse(responseCode = "200", description = "Успешный запрос. Возвращает отсортированную страницу продуктов по имени.")
     Page<ProductDTO> sortByName(@RequestParam(name = "page", defaultValue = "0") int pageNumber,
-                                @RequestParam(name = "size", defaultValue = "10") int pageSize);
+                                @RequestParam(name = "size", defaultValue = "10") int pageSize,
+                                WebRequest webRequest);
 
     @Operation(
             summary = "Получить продукты с сортировкой по названию",
@@ -195,7 +284,8 @@ public interface ProductApi {
 
     @ApiResponse(responseCode = "200", description = "Успешный запрос. Возвращает отсортированную страницу продуктов по имени в обратном порядке.")
     Page<ProductDTO> sortByNameDescending(@RequestParam(name = "page", defaultValue = "0") int pageNumber,
-                                          @RequestParam(name = "size", defaultValue = "10") int pageSize);
+                                          @RequestParam(name = "size", defaultValue = "10") int pageSize,
+                                          WebRequest webRequest);
 
     @Operation(
             summary = "Получить продукты с сортировкой по цене",
@@ -213,7 +303,8 @@ public interface ProductApi {
 
     @ApiResponse(responseCode = "200", description = "Успешный запрос. Возвращает отсортированную страницу продуктов по цене.")
     Page<ProductDTO> sortByPrice(@RequestParam(name = "page", defaultValue = "0") int pageNumber,
-                                 @RequestParam(name = "size", defaultValue = "10") int pageSize);
+                                 @RequestParam(name = "size", defaultValue = "10") int pageSize,
+                                 WebRequest webRequest);
 
     @Operation(
             summary = "Получить продукты с сортировкой по цене",
@@ -231,7 +322,54 @@ public interface ProductApi {
 
     @ApiResponse(responseCode = "200", description = "Успешный запрос. Возвращает отсортированную страницу продуктов в обратном порядке по цене.")
     Page<ProductDTO> sortByPriceDescending(@RequestParam(name = "page", defaultValue = "0") int pageNumber,
-                                           @RequestParam(name = "size", defaultValue = "10") int pageSize);
+                                           @RequestParam(name = "size", defaultValue = "10") int pageSize,
+                                           WebRequest webRequest);
 
+    @Operation(
+            summary = "Получить продукты с курсорной (keyset) пагинацией",
+            description = """
+                    Возвращает срез продуктов после позиции, заданной курсором.
+                    Стоимость запроса не зависит от глубины пролистывания: вместо OFFSET
+                    используется условие по последней паре (ключ сортировки, id), общий count не считается.
+                    
+                    Параметры:
+                    - sort: NAME_ASC, NAME_DESC, PRICE_ASC, PRICE_DESC (по умолчанию NAME_ASC)
+                    - cursor: значение nextCursor из предыдущего ответа (для первой страницы не передается)
+                    - size: количество элементов от 1 до 100 (по умолчанию 10)
+                    
+                    Продукты без цены в сортировке по цене не участвуют.
+                    
+                    Пример использования:
+                    - /api/products/scroll?sort=PRICE_ASC&size=20
+                    - /api/products/scroll?sort=PRICE_ASC&size=20&cursor=UFJJQ0VfQVNDfDQyfDk5NTA
+                    """
+    )
 
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Срез продуктов успешно получен"),
+            @ApiResponse(responseCode = "400", description = "Некорректный курсор, курсор другого порядка сортировки или size вне 1..100")
+    })
+    CursorPageDTO<ProductDTO> scroll(@RequestParam(name = "sort", defaultValue = "NAME_ASC") ProductSortOrder sortOrder,
+                                     @RequestParam(name = "cursor", required = false) String cursor,
+                                     @RequestParam(name = "size", defaultValue = "10") int pageSize);
+
+    @Operation(
+            summary = "Получить продукты по списку id",
+            description = """
+                    Возвращает продукты по списку id (до 5000) одним запросом вместо множества обращений по одному.
+                    Продукты сначала ищутся в кэше, остальные загружаются из БД чанками через IN.
+                    
+                    В ответе:
+                    - items: продукты в порядке id запроса, null на месте ненайденного id
+                    - missing: ненайденные id
+                    
+                    Пример использования:
+                    - /api/products?ids=1,2,3
+                    """
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Найденные продукты и список ненайденных id"),
+            @ApiResponse(responseCode = "400", description = "Пустой список, null в списке или больше 5000 id")
+    })
+    BatchResultDTO<ProductDTO> findByIds(@RequestParam(name = "ids") List<Long> ids);
 }
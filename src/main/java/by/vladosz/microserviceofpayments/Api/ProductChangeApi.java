@@ -0,0 +1,65 @@
+package by.vladosz.microserviceofpayments.Api;
+
+import by.vladosz.microserviceofpayments.dto.ProductChangePageDTO;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+@Tag(name = "Product changes API",
+        description = "Лента изменений каталога для сервисов, которые держат его копию и обновляют ее по изменениям.")
+public interface ProductChangeApi {
+
+    @Operation(
+            summary = "Прочитать изменения каталога после позиции",
+            description = """
+                    Возвращает события CREATED, UPDATED и DELETED в порядке фиксации изменений, начиная сразу
+                    после позиции after. В ответе position - позиция, с которой нужно запросить следующую порцию,
+                    hasMore = true, если события есть и после нее.
+                    
+                    Без after возвращается только текущая позиция. Чтобы не пропустить изменения при первой
+                    загрузке, клиент сначала берет позицию, потом загружает каталог и читает изменения с нее.
+                    after=0 - чтение с начала хранимого журнала.
+                    
+                    Журнал хранится changes.retention (по умолчанию 7 дней). Если позиция клиента уже удалена,
+                    возвращается 410 и каталог нужно загрузить заново.
+                    
+                    Пример использования:
+                    - /api/products/changes?after=7431-1502&limit=100
+                    """
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Порция изменений"),
+            @ApiResponse(responseCode = "400", description = "Некорректная позиция или limit вне диапазона 1-1000"),
+            @ApiResponse(responseCode = "410", description = "Журнал после позиции уже удален")
+    })
+    ProductChangePageDTO changes(@RequestParam(name = "after", required = false) String after,
+                                 @RequestParam(name = "limit", defaultValue = "100") int limit);
+
+    @Operation(
+            summary = "Подписаться на изменения каталога (Server-Sent Events)",
+            description = """
+                    Поток text/event-stream: каждое событие - JSON изменения, id события - его позиция.
+                    Поток начинается после позиции из заголовка Last-Event-ID или параметра after,
+                    без них - с текущей позиции. При обрыве EventSource переподключается сам и продолжает
+                    с последнего полученного события, поэтому изменения не теряются и не повторяются.
+                    
+                    Пока изменений нет, раз в changes.heartbeat-interval приходит комментарий-heartbeat.
+                    Соединение закрывается по таймауту changes.stream-timeout, после чего EventSource переподключается.
+                    
+                    Пример использования:
+                    - /api/products/changes/stream?after=7431-1502
+                    """
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Поток изменений"),
+            @ApiResponse(responseCode = "400", description = "Некорректная позиция"),
+            @ApiResponse(responseCode = "410", description = "Журнал после позиции уже удален")
+    })
+    ResponseEntity<StreamingResponseBody> stream(@RequestHeader(name = "Last-Event-ID", required = false) String lastEventId,
+                                                 @RequestParam(name = "after", required = false) String after);
+}
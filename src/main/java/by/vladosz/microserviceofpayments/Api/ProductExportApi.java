@@ -0,0 +1,39 @@
+package by.vladosz.microserviceofpayments.Api;
+
+import by.vladosz.microserviceofpayments.models.CategoryProduct;
+import by.vladosz.microserviceofpayments.models.ExportFormat;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+@Tag(name = "Product export API",
+        description = "Потоковая выгрузка всего каталога продуктов.")
+public interface ProductExportApi {
+
+    @Operation(
+            summary = "Выгрузить каталог продуктов потоком",
+            description = """
+                    Отдает все продукты одним потоком в формате NDJSON (по одному JSON на строку) или CSV.
+                    Данные читаются серверным курсором и пишутся в ответ по мере чтения,
+                    поэтому память сервиса не зависит от размера таблицы.
+                    
+                    Необязательные фильтры: category, currency, minPrice, maxPrice.
+                    Границы цены задаются десятичным числом в валюте currency (по умолчанию RUB)
+                    и сравниваются с ценами продуктов, пересчитанными по текущему курсу,
+                    поэтому в выгрузку попадают продукты во всех валютах.
+                    Выгрузка обрывается, если не уложилась в products.export.timeout.
+                    
+                    Пример использования:
+                    - /api/products/export?format=CSV&category=ЭЛЕКТРОНИКА&minPrice=100
+                    """
+    )
+    @ApiResponse(responseCode = "200", description = "Поток продуктов, отсортированных по id")
+    ResponseEntity<StreamingResponseBody> export(@RequestParam(name = "format", defaultValue = "NDJSON") ExportFormat format,
+                                                 @RequestParam(name = "category", required = false) CategoryProduct category,
+                                                 @RequestParam(name = "currency", required = false) String currency,
+                                                 @RequestParam(name = "minPrice", required = false) String minPrice,
+                                                 @RequestParam(name = "maxPrice", required = false) String maxPrice);
+}
@@ -0,0 +1,36 @@
+package by.vladosz.microserviceofpayments.Api;
+
+import by.vladosz.microserviceofpayments.dto.CategoryFacetDTO;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+import java.util.List;
+
+@Tag(name = "Product facets API",
+        description = "Сводка каталога по категориям для страниц категорий и фильтра цены.")
+public interface ProductFacetApi {
+
+    @Operation(
+            summary = "Получить фасеты по всем категориям",
+            description = """
+                    Возвращает для каждой категории число продуктов, минимальную, максимальную и среднюю цену
+                    и гистограмму цен для слайдера фильтра. Все цены приведены к рублям по текущим курсам.
+                    
+                    Гистограмма состоит из интервалов с шагом 1-2-5 (0-100, 100-200, 200-500, 500-1000 ... рублей)
+                    от первого до последнего непустого; у последнего интервала шкалы нет верхней границы.
+                    Продукты с ценой в валюте без курса учитываются только в числе продуктов.
+                    
+                    Сводка хранится в памяти и обновляется при каждом изменении каталога,
+                    поэтому запрос не зависит от размера каталога.
+                    
+                    Пример использования:
+                    - /api/products/facets
+                    """
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Фасеты по категориям")
+    })
+    List<CategoryFacetDTO> facets();
+}
@@ -0,0 +1,40 @@
+package by.vladosz.microserviceofpayments.Api;
+
+import by.vladosz.microserviceofpayments.dto.BulkImportResultDTO;
+import by.vladosz.microserviceofpayments.models.Product;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.web.bind.annotation.RequestBody;
+
+import java.util.List;
+
+@Tag(name = "Product import API",
+        description = "Пакетная загрузка каталога продуктов.")
+public interface ProductImportApi {
+
+    @Operation(
+            summary = "Пакетно создать или обновить продукты",
+            description = """
+                    Принимает до 10 000 продуктов за один запрос.
+                    Продукты без id создаются, продукты с id обновляются (upsert).
+                    
+                    Особенности:
+                    - Валидация выполняется для всех элементов до записи
+                    - Запись идет пакетными INSERT/UPDATE
+                    - Ошибки возвращаются по индексу элемента, остальные элементы сохраняются
+                    """
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Импорт выполнен, ошибки по элементам в поле errors",
+                    content = @Content(schema = @Schema(implementation = BulkImportResultDTO.class))
+            ),
+            @ApiResponse(responseCode = "400", description = "Пустой список или слишком много элементов")
+    })
+    BulkImportResultDTO importProducts(@RequestBody List<Product> products);
+}
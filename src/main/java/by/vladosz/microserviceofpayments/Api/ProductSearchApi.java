@@ -0,0 +1,65 @@
+package by.vladosz.microserviceofpayments.Api;
+
+import by.vladosz.microserviceofpayments.dto.ProductDTO;
+import by.vladosz.microserviceofpayments.dto.ProductSuggestionDTO;
+import by.vladosz.microserviceofpayments.models.CategoryProduct;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.data.domain.Page;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.List;
+
+@Tag(name = "Product search API",
+        description = "Полнотекстовый поиск продуктов по названию и описанию и подсказки для строки поиска.")
+public interface ProductSearchApi {
+
+    @Operation(
+            summary = "Найти продукты по словам из названия и описания",
+            description = """
+                    Ищет продукты, в названии или описании которых встречается хотя бы одно слово запроса.
+                    Регистр, буква ё и окончания русских слов не учитываются: "наушники" найдет и "наушников".
+                    Результаты отсортированы по релевантности (BM25), совпадения в названии весят больше.
+                    
+                    Параметры:
+                    - q: поисковый запрос
+                    - category: необязательный фильтр по категории
+                    - page, size: номер и размер страницы (по умолчанию 0 и 10, размер от 1 до 100)
+                    
+                    Пример использования:
+                    - /api/products/search?q=беспроводные наушники&category=ЭЛЕКТРОНИКА
+                    """
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Страница найденных продуктов"),
+            @ApiResponse(responseCode = "400", description = "Пустой поисковый запрос или неверные page и size")
+    })
+    Page<ProductDTO> search(@RequestParam(name = "q") String query,
+                            @RequestParam(name = "category", required = false) CategoryProduct category,
+                            @RequestParam(name = "page", defaultValue = "0") int pageNumber,
+                            @RequestParam(name = "size", defaultValue = "10") int pageSize);
+
+    @Operation(
+            summary = "Подсказки по началу названия продукта",
+            description = """
+                    Возвращает самые популярные продукты, у которых название или одно из слов названия
+                    начинается с prefix. Регистр и буква ё не учитываются. Популярность - число оплаченных покупок.
+                    Подсказки отдаются из памяти, поэтому запрос можно отправлять на каждое нажатие клавиши.
+                    
+                    Параметры:
+                    - prefix: начало названия или слова
+                    - limit: сколько подсказок вернуть (по умолчанию 10, не больше 10)
+                    
+                    Пример использования:
+                    - /api/products/suggest?prefix=нау
+                    """
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Список подсказок, самые популярные первыми"),
+            @ApiResponse(responseCode = "400", description = "Пустой префикс")
+    })
+    List<ProductSuggestionDTO> suggest(@RequestParam(name = "prefix") String prefix,
+                                       @RequestParam(name = "limit", defaultValue = "10") int limit);
+}
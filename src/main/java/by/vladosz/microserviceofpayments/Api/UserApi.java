@@ -1,15 +1,25 @@
 package by.vladosz.microserviceofpayments.Api;
 
+import by.vladosz.microserviceofpayments.dto.BatchResultDTO;
 import by.vladosz.microserviceofpayments.dto.UserDTO;
+import by.vladosz.microserviceofpayments.dto.UserPatchDTO;
+import by.vladosz.microserviceofpayments.models.TotalMode;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
-import org.springframework.data.domain.Page;
+import jakarta.validation.Valid;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import java.util.List;
+
 public interface UserApi {
 
     @Operation(
@@ -26,14 +36,23 @@ public interface UserApi {
                             В ответе содержится:
                             - Список продуктов в формате DTO
                             - Информация о пагинации (общее количество пользователей, страниц и т.д.)
+                    
+                            Параметр total управляет подсчетом общего количества:
+                            - EXACT (по умолчанию) - точный count(*)
+                            - NONE - без count(*), в ответе только признак следующей страницы
+                            - APPROXIMATE - оценка по статистике таблицы Postgres
                     """
     )
-    Page<UserDTO> findAllUsers(@RequestParam(name = "page", defaultValue = "0") int pageNumber,
-                          @RequestParam(name = "size", defaultValue = "10") int pageSize);
+    Slice<UserDTO> findAllUsers(@RequestParam(name = "page", defaultValue = "0") int pageNumber,
+                                @RequestParam(name = "size", defaultValue = "10") int pageSize,
+                                @RequestParam(name = "total", defaultValue = "EXACT") TotalMode totalMode);
 
     @Operation(
             summary = "Поиск пользователя по id",
             description = """
+                    Версия пользователя возвращается в заголовке ETag, ее можно передать в If-Match
+                    при изменении (PUT, PATCH) или удалении.
+                    
                     Пример использования:
                     - /api/users/1
                     """
@@ -51,7 +70,33 @@ public interface UserApi {
             )
     })
 
-    UserDTO findUserById(@PathVariable Long user_id);
+    ResponseEntity<UserDTO> findUserById(@PathVariable Long user_id);
+
+    @Operation(
+            summary = "Частично изменить пользователя",
+            description = """
+                    Меняет только переданные поля пользователя одним запросом к БД. Пароль и роли так не меняются.
+                    Если передан If-Match с ETag пользователя, изменение выполняется, только пока версия совпадает
+                    с ним. Новая версия возвращается в ETag.
+                    
+                    Пример использования:
+                    - PATCH /api/users/1, If-Match: "2", {"age": 31}
+                    """
+    )
+
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Пользователь изменен",
+                    content = @Content(schema = @Schema(implementation = UserDTO.class))
+            ),
+            @ApiResponse(responseCode = "400", description = "Ошибка валидации или пустое тело запроса"),
+            @ApiResponse(responseCode = "404", description = "Ошибка пользователь с указаным id не найден"),
+            @ApiResponse(responseCode = "412", description = "Версия пользователя не совпадает с If-Match")
+    })
+    ResponseEntity<?> patchUser(@PathVariable Long user_id,
+                                @RequestHeader(name = "If-Match", required = false) String ifMatch,
+                                @RequestBody @Valid UserPatchDTO patch, BindingResult bindingResult);
 
     @Operation(
             summary = "Удаление пользователя по id",
@@ -71,8 +116,32 @@ public interface UserApi {
             @ApiResponse(
                     responseCode = "404",
                     description = "Ошибка пользователь с указаным id не найден"
+            ),
+            @ApiResponse(
+                    responseCode = "412",
+                    description = "Версия пользователя не совпадает с If-Match"
             )
     })
 
-    void deleteUser(@PathVariable Long user_id);
+    void deleteUser(@PathVariable Long user_id, @RequestHeader(name = "If-Match", required = false) String ifMatch);
+
+    @Operation(
+            summary = "Получить пользователей по списку id",
+            description = """
+                    Принимает в теле JSON-массив id (до 5000) и возвращает пользователей одним запросом
+                    вместо множества обращений /api/users/{id}. Из БД пользователи загружаются чанками через IN.
+                    
+                    В ответе:
+                    - items: пользователи в порядке id запроса, null на месте ненайденного id
+                    - missing: ненайденные id
+                    
+                    Пример использования:
+                    - POST /api/users/batch с телом [1, 2, 3]
+                    """
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Найденные пользователи и список ненайденных id"),
+            @ApiResponse(responseCode = "400", description = "Пустой список, null в списке или больше 5000 id")
+    })
+    BatchResultDTO<UserDTO> findUsersByIds(@RequestBody List<Long> ids);
 }
@@ -0,0 +1,23 @@
+package by.vladosz.microserviceofpayments.caches;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Монотонная версия каталога, увеличивается при каждом изменении продуктов.
+ * Версия своя у каждого экземпляра и служит только ключом кэша страниц; ETag листинга
+ * строится из общих для реплик значений в {@code ProductService.catalogETag()}.
+ */
+@Component
+public class CatalogVersion {
+    private final AtomicLong version = new AtomicLong();
+
+    public long current() {
+        return version.get();
+    }
+
+    public long increment() {
+        return version.incrementAndGet();
+    }
+}
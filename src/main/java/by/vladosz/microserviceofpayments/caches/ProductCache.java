@@ -0,0 +1,67 @@
+package by.vladosz.microserviceofpayments.caches;
+
+import by.vladosz.microserviceofpayments.models.Product;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Read-through кэш продуктов по id. Метрики hit/miss/eviction публикуются как cache.* с тегом cache=products.
+ */
+@Component
+public class ProductCache {
+    private final Cache<Long, Product> cache;
+
+    public ProductCache(@Value("${products.cache.maximum-size:10000}") long maximumSize,
+                        @Value("${products.cache.expire-after-write:10m}") Duration expireAfterWrite,
+                        MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "products");
+    }
+
+    public Optional<Product> get(Long id, Function<Long, Optional<Product>> loader) {
+        // отсутствующие продукты не кэшируем: null из mapping function ничего не сохраняет
+        return Optional.ofNullable(cache.get(id, key -> loader.apply(key).orElse(null)));
+    }
+
+    /**
+     * Продукты по набору id: найденные в кэше берутся из него, остальные догружаются одним вызовом loader.
+     * Id, которых нет в БД, не попадают ни в результат, ни в кэш.
+     */
+    public Map<Long, Product> getAll(Collection<Long> ids, Function<Set<Long>, Map<Long, Product>> loader) {
+        return cache.getAll(ids, missing -> loader.apply(Set.copyOf(missing)));
+    }
+
+    public void put(Product product) {
+        if (product != null && product.getId() != null) {
+            cache.put(product.getId(), product);
+        }
+    }
+
+    public void evict(Long id) {
+        cache.invalidate(id);
+    }
+
+    public void evictAll() {
+        cache.invalidateAll();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+}
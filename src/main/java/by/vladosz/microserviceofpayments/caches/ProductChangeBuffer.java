@@ -0,0 +1,119 @@
+package by.vladosz.microserviceofpayments.caches;
+
+import by.vladosz.microserviceofpayments.models.ChangePosition;
+import by.vladosz.microserviceofpayments.models.ProductChange;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Последние события журнала изменений каталога в памяти. Журнал опрашивает один поток, а подписчики,
+ * читающие с хвоста, получают новые события отсюда без запроса к БД. Буфер хранит все события
+ * после позиции start и до head; позиции старше start дочитываются из БД.
+ */
+@Component
+public class ProductChangeBuffer {
+    private final int capacity;
+    private final ArrayDeque<ProductChange> changes = new ArrayDeque<>();
+    private ChangePosition start;
+    private ChangePosition head;
+
+    public ProductChangeBuffer(@Value("${changes.buffer-size:10000}") int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Buffer capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Начинает буфер с позиции, прочитанной из БД при старте: события до нее в память не попадают.
+     */
+    public synchronized void reset(ChangePosition position) {
+        changes.clear();
+        start = position;
+        head = position;
+        notifyAll();
+    }
+
+    public synchronized boolean isInitialized() {
+        return head != null;
+    }
+
+    public synchronized ChangePosition head() {
+        return head;
+    }
+
+    public synchronized void append(List<ProductChange> batch) {
+        boolean appended = false;
+        for (ProductChange change : batch) {
+            if (change.position().compareTo(head) <= 0) {
+                continue;
+            }
+            changes.addLast(change);
+            head = change.position();
+            appended = true;
+            if (changes.size() > capacity) {
+                start = changes.removeFirst().position();
+            }
+        }
+        if (appended) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Покрывает ли буфер чтение после position: все последующие события есть в памяти или еще не прочитаны из БД.
+     */
+    public synchronized boolean covers(ChangePosition position) {
+        return head != null && position.compareTo(start) >= 0;
+    }
+
+    /**
+     * До limit событий после position в порядке журнала или null, если position старше начала буфера
+     * и читать нужно из БД.
+     */
+    public synchronized List<ProductChange> after(ChangePosition position, int limit) {
+        if (!covers(position)) {
+            return null;
+        }
+        if (position.compareTo(head) >= 0) {
+            return List.of();
+        }
+        // подписчики обычно близко к хвосту, поэтому границу ищем с конца
+        List<ProductChange> newer = new ArrayList<>();
+        Iterator<ProductChange> iterator = changes.descendingIterator();
+        while (iterator.hasNext()) {
+            ProductChange change = iterator.next();
+            if (change.position().compareTo(position) <= 0) {
+                break;
+            }
+            newer.add(change);
+        }
+        Collections.reverse(newer);
+        return newer.size() > limit ? new ArrayList<>(newer.subList(0, limit)) : newer;
+    }
+
+    /**
+     * Ждет, пока в буфер не придут события после position, но не дольше timeout.
+     *
+     * @return true, если события появились
+     */
+    public synchronized boolean awaitAfter(ChangePosition position, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (head == null || head.compareTo(position) <= 0) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,200 @@
+package by.vladosz.microserviceofpayments.caches;
+
+import by.vladosz.microserviceofpayments.dto.CategoryFacetDTO;
+import by.vladosz.microserviceofpayments.dto.PriceBucketDTO;
+import by.vladosz.microserviceofpayments.models.CategoryProduct;
+import by.vladosz.microserviceofpayments.models.FxRates;
+import by.vladosz.microserviceofpayments.models.Money;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Агрегаты каталога по категориям: число продуктов, минимальная, максимальная и средняя цена
+ * и гистограмма цен для слайдера фильтра. Цены берутся в базовой валюте (price_base_minor).
+ * <p>
+ * Агрегаты обновляются по одному продукту при записи каталога, поэтому запрос фасетов стоит
+ * O(число категорий), а не O(число продуктов). Для вычитания старых значений индекс помнит
+ * категорию и цену каждого продукта. Расхождения с БД (изменения в обход сервиса, смена курсов)
+ * устраняет периодическая сверка - полная перестройка по таблице.
+ */
+@Component
+public class ProductFacets {
+    // нижние границы интервалов гистограммы в рублях, шаг 1-2-5
+    static final long[] BUCKET_LOWER_BOUNDS = {
+            0, 100, 200, 500, 1_000, 2_000, 5_000, 10_000, 20_000, 50_000,
+            100_000, 200_000, 500_000, 1_000_000
+    };
+    private static final long[] BUCKET_LOWER_BOUNDS_MINOR = Arrays.stream(BUCKET_LOWER_BOUNDS)
+            .map(bound -> Money.ofMajor(bound, FxRates.BASE_CURRENCY).minorUnits())
+            .toArray();
+
+    private final Object rebuildMonitor = new Object();
+    private Aggregates aggregates = new Aggregates();
+    private List<Consumer<Aggregates>> changesDuringRebuild;
+
+    public void put(Long id, CategoryProduct category, Long basePrice) {
+        if (id == null || category == null) {
+            return;
+        }
+        change(aggregates -> aggregates.put(id, new Entry(category, basePrice)));
+    }
+
+    public void remove(Long id) {
+        change(aggregates -> aggregates.remove(id));
+    }
+
+    /**
+     * Строит агрегаты заново по строкам таблицы (id, категория, цена в базовой валюте) и подменяет текущие.
+     * Изменения, пришедшие во время построения, применяются поверх прочитанных строк.
+     *
+     * @return true, если инкрементальные агрегаты разошлись с таблицей
+     */
+    public boolean rebuild(Iterator<Row> rows) {
+        synchronized (rebuildMonitor) {
+            synchronized (this) {
+                changesDuringRebuild = new ArrayList<>();
+            }
+            Aggregates rebuilt = new Aggregates();
+            try {
+                while (rows.hasNext()) {
+                    Row row = rows.next();
+                    if (row.category() != null) {
+                        rebuilt.put(row.id(), new Entry(row.category(), row.basePrice()));
+                    }
+                }
+            } catch (RuntimeException e) {
+                // если построение оборвалось, остаемся на текущих агрегатах: изменения в них уже учтены
+                synchronized (this) {
+                    changesDuringRebuild = null;
+                }
+                throw e;
+            }
+            synchronized (this) {
+                changesDuringRebuild.forEach(change -> change.accept(rebuilt));
+                boolean drifted = !rebuilt.entries.equals(aggregates.entries);
+                aggregates = rebuilt;
+                changesDuringRebuild = null;
+                return drifted;
+            }
+        }
+    }
+
+    public synchronized List<CategoryFacetDTO> facets() {
+        List<CategoryFacetDTO> facets = new ArrayList<>(aggregates.categories.size());
+        aggregates.categories.forEach((category, aggregate) -> facets.add(aggregate.toDTO(category)));
+        return facets;
+    }
+
+    private synchronized void change(Consumer<Aggregates> change) {
+        change.accept(aggregates);
+        if (changesDuringRebuild != null) {
+            changesDuringRebuild.add(change);
+        }
+    }
+
+    static int bucket(long basePrice) {
+        int index = Arrays.binarySearch(BUCKET_LOWER_BOUNDS_MINOR, basePrice);
+        return Math.max(0, index >= 0 ? index : -index - 2);
+    }
+
+    private static Money baseMoney(long minorUnits) {
+        return new Money(minorUnits, FxRates.BASE_CURRENCY);
+    }
+
+    public record Row(Long id, CategoryProduct category, Long basePrice) {
+    }
+
+    private record Entry(CategoryProduct category, Long basePrice) {
+    }
+
+    private static final class Aggregates {
+        private final Map<Long, Entry> entries = new HashMap<>();
+        private final EnumMap<CategoryProduct, Aggregate> categories = new EnumMap<>(CategoryProduct.class);
+
+        Aggregates() {
+            for (CategoryProduct category : CategoryProduct.values()) {
+                categories.put(category, new Aggregate());
+            }
+        }
+
+        void put(Long id, Entry entry) {
+            Entry previous = entries.put(id, entry);
+            if (Objects.equals(previous, entry)) {
+                return;
+            }
+            if (previous != null) {
+                categories.get(previous.category()).subtract(previous.basePrice());
+            }
+            categories.get(entry.category()).add(entry.basePrice());
+        }
+
+        void remove(Long id) {
+            Entry previous = entries.remove(id);
+            if (previous != null) {
+                categories.get(previous.category()).subtract(previous.basePrice());
+            }
+        }
+    }
+
+    private static final class Aggregate {
+        private long count;
+        private long pricedCount;
+        private long priceSum;
+        // цена -> число продуктов с такой ценой: min и max остаются точными и после удалений
+        private final TreeMap<Long, Integer> prices = new TreeMap<>();
+        private final long[] histogram = new long[BUCKET_LOWER_BOUNDS.length];
+
+        void add(Long basePrice) {
+            count++;
+            if (basePrice == null) {
+                return;
+            }
+            pricedCount++;
+            priceSum = Math.addExact(priceSum, basePrice);
+            prices.merge(basePrice, 1, Integer::sum);
+            histogram[bucket(basePrice)]++;
+        }
+
+        void subtract(Long basePrice) {
+            count--;
+            if (basePrice == null) {
+                return;
+            }
+            pricedCount--;
+            priceSum = Math.subtractExact(priceSum, basePrice);
+            prices.computeIfPresent(basePrice, (price, products) -> products == 1 ? null : products - 1);
+            histogram[bucket(basePrice)]--;
+        }
+
+        CategoryFacetDTO toDTO(CategoryProduct category) {
+            if (pricedCount == 0) {
+                return new CategoryFacetDTO(category, count, null, null, null, List.of());
+            }
+            long average = BigDecimal.valueOf(priceSum)
+                    .divide(BigDecimal.valueOf(pricedCount), 0, RoundingMode.HALF_UP)
+                    .longValueExact();
+            // интервалы от первого до последнего непустого, чтобы слайдер не растягивался пустыми краями
+            int first = bucket(prices.firstKey());
+            int last = bucket(prices.lastKey());
+            List<PriceBucketDTO> buckets = new ArrayList<>(last - first + 1);
+            for (int i = first; i <= last; i++) {
+                Money to = i + 1 < BUCKET_LOWER_BOUNDS_MINOR.length ? baseMoney(BUCKET_LOWER_BOUNDS_MINOR[i + 1]) : null;
+                buckets.add(new PriceBucketDTO(baseMoney(BUCKET_LOWER_BOUNDS_MINOR[i]), to, histogram[i]));
+            }
+            return new CategoryFacetDTO(category, count, baseMoney(prices.firstKey()), baseMoney(prices.lastKey()),
+                    baseMoney(average), buckets);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package by.vladosz.microserviceofpayments.caches;
+
+import by.vladosz.microserviceofpayments.dto.ProductDTO;
+import by.vladosz.microserviceofpayments.models.TotalMode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Кэш готовых страниц листинга. Версия каталога входит в ключ, поэтому после изменения
+ * каталога старые страницы становятся недостижимыми и вытесняются по размеру/TTL.
+ * Промах загружается через {@link RequestCoalescer}: одновременные запросы одной страницы
+ * выполняют один SQL, и загрузка не держит блокировку внутри кэша.
+ */
+@Component
+public class ProductPageCache {
+    private final Cache<PageKey, Slice<ProductDTO>> cache;
+    private final CatalogVersion catalogVersion;
+    private final RequestCoalescer requestCoalescer;
+
+    public ProductPageCache(@Value("${products.page-cache.maximum-size:1000}") long maximumSize,
+                            @Value("${products.page-cache.expire-after-write:1m}") Duration expireAfterWrite,
+                            CatalogVersion catalogVersion,
+                            RequestCoalescer requestCoalescer,
+                            MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        this.catalogVersion = catalogVersion;
+        this.requestCoalescer = requestCoalescer;
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "productPages");
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Slice<ProductDTO>> T get(String endpoint, String argument, int pageNumber, int pageSize,
+                                               TotalMode totalMode, Supplier<T> loader) {
+        PageKey key = new PageKey(catalogVersion.current(), endpoint, argument, pageNumber, pageSize, totalMode);
+        T cached = (T) cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        // страница кладется в кэш до завершения загрузки, поэтому опоздавший запрос найдет ее в кэше
+        return requestCoalescer.load("productPages", key, () -> {
+            T page = loader.get();
+            cache.put(key, page);
+            return page;
+        });
+    }
+
+    public void onCatalogChanged() {
+        catalogVersion.increment();
+    }
+
+    private record PageKey(long version, String endpoint, String argument, int pageNumber, int pageSize,
+                           TotalMode totalMode) {
+    }
+}
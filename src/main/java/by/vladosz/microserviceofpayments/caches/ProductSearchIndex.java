@@ -0,0 +1,268 @@
+package by.vladosz.microserviceofpayments.caches;
+
+import by.vladosz.microserviceofpayments.models.CategoryProduct;
+import by.vladosz.microserviceofpayments.models.Product;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Инвертированный индекс по названию и описанию продуктов с ранжированием BM25.
+ * Для каждого терма хранится список (id продукта, частота терма), поэтому поиск
+ * обходит только продукты, где встречаются слова запроса, а не всю таблицу.
+ * <p>
+ * Слова названия весят больше слов описания. Индекс строится целиком при старте
+ * и обновляется по одному продукту при записи каталога.
+ */
+@Component
+public class ProductSearchIndex {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int NAME_WEIGHT = 3;
+    private static final int MIN_STEM_LENGTH = 3;
+    // окончания проверяются от длинных к коротким, отрезается первое подошедшее
+    private static final String[] RUSSIAN_ENDINGS = {
+            "иями", "ями", "ами", "ого", "его", "ому", "ему", "ыми", "ими",
+            "ых", "их", "ая", "яя", "ое", "ее", "ые", "ие", "ый", "ий", "ой", "ей", "ую", "юю",
+            "ах", "ях", "ов", "ев", "ом", "ем", "ам", "ям", "ия", "ья",
+            "а", "я", "ы", "и", "о", "е", "у", "ю", "ь", "й"
+    };
+    private static final Comparator<Map.Entry<Long, Double>> BY_RELEVANCE =
+            Map.Entry.<Long, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey());
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Segment segment = new Segment();
+    private List<Runnable> changesDuringRebuild;
+
+    public void put(Product product) {
+        if (product == null || product.getId() == null) {
+            return;
+        }
+        Long id = product.getId();
+        Document document = Document.of(product);
+        lock.writeLock().lock();
+        try {
+            segment.remove(id);
+            segment.add(id, document);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(() -> {
+                    segment.remove(id);
+                    segment.add(id, document);
+                });
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            segment.remove(id);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(() -> segment.remove(id));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Строит индекс заново без блокировки читателей и подменяет им текущий.
+     * Изменения, пришедшие во время построения, применяются к новому индексу поверх прочитанных строк.
+     */
+    public synchronized void rebuild(Iterator<Product> products) {
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Segment rebuilt = new Segment();
+        boolean completed = false;
+        try {
+            while (products.hasNext()) {
+                Product product = products.next();
+                rebuilt.remove(product.getId());
+                rebuilt.add(product.getId(), Document.of(product));
+            }
+            completed = true;
+        } finally {
+            lock.writeLock().lock();
+            try {
+                // если построение оборвалось, остаемся на старом индексе: изменения в нем уже учтены
+                if (completed) {
+                    segment = rebuilt;
+                    changesDuringRebuild.forEach(Runnable::run);
+                }
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return segment.documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Продукты, где встречается хотя бы одно слово запроса, по убыванию релевантности.
+     */
+    public SearchHits search(String query, CategoryProduct category, int offset, int limit) {
+        Set<String> terms = new LinkedHashSet<>(tokenize(query));
+        if (terms.isEmpty() || limit <= 0) {
+            return new SearchHits(List.of(), 0);
+        }
+        lock.readLock().lock();
+        try {
+            Map<Long, Double> scores = segment.score(terms, category);
+            PriorityQueue<Map.Entry<Long, Double>> top = new PriorityQueue<>(BY_RELEVANCE.reversed());
+            int keep = offset + limit;
+            for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                top.add(entry);
+                if (top.size() > keep) {
+                    top.poll();
+                }
+            }
+            List<Map.Entry<Long, Double>> ranked = new ArrayList<>(top);
+            ranked.sort(BY_RELEVANCE);
+            List<Long> ids = ranked.stream()
+                    .skip(offset)
+                    .map(Map.Entry::getKey)
+                    .toList();
+            return new SearchHits(ids, scores.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Разбивает текст на слова: регистр и ё не различаются, у русских слов отрезается окончание,
+     * чтобы "наушники" и "наушников" давали один терм.
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                char lower = Character.toLowerCase(c);
+                token.append(lower == 'ё' ? 'е' : lower);
+            } else if (!token.isEmpty()) {
+                if (token.length() > 1 || Character.isDigit(token.charAt(0))) {
+                    tokens.add(stem(token.toString()));
+                }
+                token.setLength(0);
+            }
+        }
+        return tokens;
+    }
+
+    private static String stem(String token) {
+        if (!isCyrillic(token)) {
+            return token;
+        }
+        for (String ending : RUSSIAN_ENDINGS) {
+            if (token.endsWith(ending) && token.length() - ending.length() >= MIN_STEM_LENGTH) {
+                return token.substring(0, token.length() - ending.length());
+            }
+        }
+        return token;
+    }
+
+    private static boolean isCyrillic(String token) {
+        return Character.UnicodeBlock.of(token.charAt(token.length() - 1)) == Character.UnicodeBlock.CYRILLIC;
+    }
+
+    public record SearchHits(List<Long> ids, long total) {
+    }
+
+    private record Document(CategoryProduct category, int length, Map<String, Integer> frequencies) {
+
+        static Document of(Product product) {
+            Map<String, Integer> frequencies = new HashMap<>();
+            int length = 0;
+            for (String term : tokenize(product.getName())) {
+                frequencies.merge(term, NAME_WEIGHT, Integer::sum);
+                length += NAME_WEIGHT;
+            }
+            for (String term : tokenize(product.getDescription())) {
+                frequencies.merge(term, 1, Integer::sum);
+                length++;
+            }
+            return new Document(product.getCategory(), length, frequencies);
+        }
+    }
+
+    private static final class Segment {
+        private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+        private final Map<Long, Document> documents = new HashMap<>();
+        private long totalLength;
+
+        void add(Long id, Document document) {
+            documents.put(id, document);
+            totalLength += document.length();
+            document.frequencies().forEach((term, frequency) ->
+                    postings.computeIfAbsent(term, t -> new HashMap<>()).put(id, frequency));
+        }
+
+        void remove(Long id) {
+            Document document = documents.remove(id);
+            if (document == null) {
+                return;
+            }
+            totalLength -= document.length();
+            for (String term : document.frequencies().keySet()) {
+                Map<Long, Integer> posting = postings.get(term);
+                posting.remove(id);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+
+        Map<Long, Double> score(Set<String> terms, CategoryProduct category) {
+            Map<Long, Double> scores = new HashMap<>();
+            int documentCount = documents.size();
+            if (documentCount == 0) {
+                return scores;
+            }
+            double averageLength = Math.max(1, (double) totalLength / documentCount);
+            for (String term : terms) {
+                Map<Long, Integer> posting = postings.get(term);
+                if (posting == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (documentCount - posting.size() + 0.5) / (posting.size() + 0.5));
+                posting.forEach((id, frequency) -> {
+                    Document document = documents.get(id);
+                    if (category != null && document.category() != category) {
+                        return;
+                    }
+                    double normalization = K1 * (1 - B + B * document.length() / averageLength);
+                    scores.merge(id, idf * frequency * (K1 + 1) / (frequency + normalization), Double::sum);
+                });
+            }
+            return scores;
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package by.vladosz.microserviceofpayments.caches;
+
+import by.vladosz.microserviceofpayments.dto.ProductSuggestionDTO;
+import by.vladosz.microserviceofpayments.models.Product;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Подсказки по началу названия продукта для строки поиска. Названия лежат в сжатом префиксном
+ * дереве (radix trie): цепочки узлов с одним потомком склеены в одно ребро. Каждый узел хранит
+ * готовый топ подсказок своего поддерева по популярности, поэтому запрос только спускается
+ * по символам префикса и копирует топ найденного узла.
+ * <p>
+ * Ключами служат название целиком и его хвосты с начала каждого слова, так что "sony" находит
+ * "Наушники Sony WH-1000XM5". Популярность - число оплаченных (CAPTURED) покупок продукта.
+ */
+@Component
+public class ProductSuggestIndex {
+    public static final int MAX_SUGGESTIONS = 10;
+    private static final ProductSuggestionDTO[] NO_SUGGESTIONS = new ProductSuggestionDTO[0];
+    private static final Comparator<ProductSuggestionDTO> BY_POPULARITY =
+            Comparator.comparingLong(ProductSuggestionDTO::popularity).reversed()
+                    .thenComparingInt(suggestion -> suggestion.name().length())
+                    .thenComparing(ProductSuggestionDTO::id);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Trie trie = new Trie();
+    private List<Runnable> changesDuringRebuild;
+
+    public void put(Product product) {
+        if (product == null || product.getId() == null) {
+            return;
+        }
+        Long id = product.getId();
+        String name = product.getName();
+        change(trie -> {
+            ProductSuggestionDTO previous = trie.entries.get(id);
+            trie.put(new ProductSuggestionDTO(id, name, previous == null ? 0 : previous.popularity()));
+        });
+    }
+
+    public void remove(Long id) {
+        change(trie -> trie.remove(id));
+    }
+
+    /**
+     * Меняет популярность продуктов на delta: +1 при оплате покупки, -1 при возврате.
+     */
+    public void addSales(Collection<Long> productIds, long delta) {
+        change(trie -> {
+            for (Long id : productIds) {
+                ProductSuggestionDTO previous = trie.entries.get(id);
+                if (previous != null) {
+                    trie.put(new ProductSuggestionDTO(id, previous.name(),
+                            Math.max(0, previous.popularity() + delta)));
+                }
+            }
+        });
+    }
+
+    /**
+     * Строит дерево заново без блокировки читателей и подменяет им текущее.
+     * Изменения, пришедшие во время построения, применяются к новому дереву поверх прочитанных строк.
+     */
+    public synchronized void rebuild(Iterator<Product> products, Map<Long, Long> popularity) {
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Trie rebuilt = new Trie();
+        boolean completed = false;
+        try {
+            while (products.hasNext()) {
+                Product product = products.next();
+                rebuilt.put(new ProductSuggestionDTO(product.getId(), product.getName(),
+                        popularity.getOrDefault(product.getId(), 0L)));
+            }
+            completed = true;
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if (completed) {
+                    trie = rebuilt;
+                    changesDuringRebuild.forEach(Runnable::run);
+                }
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return trie.entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Самые популярные продукты, у которых название или одно из его слов начинается с prefix.
+     * Регистр и ё не различаются. Кроме списка-результата запрос ничего не создает.
+     */
+    public List<ProductSuggestionDTO> suggest(String prefix, int limit) {
+        int from = 0;
+        while (from < prefix.length() && Character.isWhitespace(prefix.charAt(from))) {
+            from++;
+        }
+        if (from == prefix.length() || limit <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Node node = trie.find(prefix, from);
+            if (node == null) {
+                return List.of();
+            }
+            int count = Math.min(limit, node.top.length);
+            List<ProductSuggestionDTO> suggestions = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                suggestions.add(node.top[i]);
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void change(Consumer<Trie> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(trie);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(() -> change.accept(trie));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static char normalize(char c) {
+        if (Character.isWhitespace(c)) {
+            return ' ';
+        }
+        char lower = Character.toLowerCase(c);
+        return lower == 'ё' ? 'е' : lower;
+    }
+
+    /**
+     * Название в нижнем регистре, пробельные символы схлопнуты в один пробел.
+     */
+    static String normalize(String name) {
+        StringBuilder normalized = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = normalize(name.charAt(i));
+            if (c != ' ' || (!normalized.isEmpty() && normalized.charAt(normalized.length() - 1) != ' ')) {
+                normalized.append(c);
+            }
+        }
+        int end = normalized.length();
+        while (end > 0 && normalized.charAt(end - 1) == ' ') {
+            end--;
+        }
+        normalized.setLength(end);
+        return normalized.toString();
+    }
+
+    static List<String> keys(String name) {
+        List<String> keys = new ArrayList<>();
+        if (name == null) {
+            return keys;
+        }
+        String normalized = normalize(name);
+        if (normalized.isEmpty()) {
+            return keys;
+        }
+        keys.add(normalized);
+        for (int i = normalized.indexOf(' '); i >= 0; i = normalized.indexOf(' ', i + 1)) {
+            keys.add(normalized.substring(i + 1));
+        }
+        return keys;
+    }
+
+    private static final class Trie {
+        private final Node root = new Node("");
+        private final Map<Long, ProductSuggestionDTO> entries = new HashMap<>();
+
+        void put(ProductSuggestionDTO suggestion) {
+            remove(suggestion.id());
+            entries.put(suggestion.id(), suggestion);
+            for (String key : keys(suggestion.name())) {
+                insert(key, suggestion);
+            }
+        }
+
+        void remove(Long id) {
+            ProductSuggestionDTO suggestion = entries.remove(id);
+            if (suggestion == null) {
+                return;
+            }
+            for (String key : keys(suggestion.name())) {
+                delete(key, suggestion);
+            }
+        }
+
+        Node find(String prefix, int from) {
+            Node node = root;
+            int i = from;
+            while (i < prefix.length()) {
+                Node child = node.child(normalize(prefix.charAt(i)));
+                if (child == null) {
+                    return null;
+                }
+                String label = child.label;
+                for (int j = 0; j < label.length() && i < prefix.length(); j++, i++) {
+                    if (label.charAt(j) != normalize(prefix.charAt(i))) {
+                        return null;
+                    }
+                }
+                node = child;
+            }
+            return node;
+        }
+
+        private void insert(String key, ProductSuggestionDTO suggestion) {
+            List<Node> path = new ArrayList<>();
+            path.add(root);
+            Node node = root;
+            int i = 0;
+            while (i < key.length()) {
+                int index = node.childIndex(key.charAt(i));
+                if (index < 0) {
+                    Node leaf = new Node(key.substring(i));
+                    node.addChild(leaf);
+                    node = leaf;
+                    path.add(node);
+                    break;
+                }
+                Node child = node.children[index];
+                int common = 0;
+                while (common < child.label.length() && i + common < key.length()
+                        && child.label.charAt(common) == key.charAt(i + common)) {
+                    common++;
+                }
+                if (common < child.label.length()) {
+                    // ключ расходится с ребром посередине: режем ребро промежуточным узлом
+                    Node middle = new Node(child.label.substring(0, common));
+                    child.label = child.label.substring(common);
+                    middle.addChild(child);
+                    middle.top = child.top;
+                    node.children[index] = middle;
+                    child = middle;
+                }
+                node = child;
+                path.add(node);
+                i += common;
+            }
+            node.terminals.add(suggestion);
+            for (int p = path.size() - 1; p >= 0; p--) {
+                path.get(p).recomputeTop();
+            }
+        }
+
+        private void delete(String key, ProductSuggestionDTO suggestion) {
+            List<Node> path = new ArrayList<>();
+            path.add(root);
+            Node node = root;
+            int i = 0;
+            while (i < key.length()) {
+                Node child = node.child(key.charAt(i));
+                if (child == null || !key.startsWith(child.label, i)) {
+                    return;
+                }
+                node = child;
+                path.add(node);
+                i += child.label.length();
+            }
+            if (!node.terminals.remove(suggestion)) {
+                return;
+            }
+            for (int p = path.size() - 1; p >= 1; p--) {
+                Node current = path.get(p);
+                Node parent = path.get(p - 1);
+                if (current.terminals.isEmpty() && current.children.length == 0) {
+                    parent.removeChild(current);
+                } else if (current.terminals.isEmpty() && current.children.length == 1) {
+                    // узел без своих ключей с одним потомком склеивается с ним обратно в одно ребро
+                    Node only = current.children[0];
+                    current.label = current.label + only.label;
+                    current.firsts = only.firsts;
+                    current.children = only.children;
+                    current.terminals = only.terminals;
+                    current.top = only.top;
+                } else {
+                    current.recomputeTop();
+                }
+            }
+            root.recomputeTop();
+        }
+    }
+
+    private static final class Node {
+        private String label;
+        private char[] firsts = new char[0];
+        private Node[] children = new Node[0];
+        private List<ProductSuggestionDTO> terminals = new ArrayList<>(1);
+        private ProductSuggestionDTO[] top = NO_SUGGESTIONS;
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        Node child(char first) {
+            int index = childIndex(first);
+            return index < 0 ? null : children[index];
+        }
+
+        int childIndex(char first) {
+            int index = Arrays.binarySearch(firsts, first);
+            return index < 0 ? -1 : index;
+        }
+
+        void addChild(Node child) {
+            int index = -Arrays.binarySearch(firsts, child.label.charAt(0)) - 1;
+            char[] newFirsts = new char[firsts.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(firsts, 0, newFirsts, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            newFirsts[index] = child.label.charAt(0);
+            newChildren[index] = child;
+            System.arraycopy(firsts, index, newFirsts, index + 1, firsts.length - index);
+            System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+            firsts = newFirsts;
+            children = newChildren;
+        }
+
+        void removeChild(Node child) {
+            int index = childIndex(child.label.charAt(0));
+            char[] newFirsts = new char[firsts.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(firsts, 0, newFirsts, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(firsts, index + 1, newFirsts, index, firsts.length - index - 1);
+            System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+            firsts = newFirsts;
+            children = newChildren;
+        }
+
+        /**
+         * Топ узла собирается из его собственных ключей и топов потомков: в поддереве нет
+         * подсказки популярнее, чем лучшие подсказки потомков.
+         */
+        void recomputeTop() {
+            List<ProductSuggestionDTO> candidates = new ArrayList<>(terminals);
+            for (Node child : children) {
+                candidates.addAll(Arrays.asList(child.top));
+            }
+            candidates.sort(BY_POPULARITY);
+            List<ProductSuggestionDTO> best = new ArrayList<>(MAX_SUGGESTIONS);
+            Set<Long> seen = new HashSet<>();
+            for (ProductSuggestionDTO candidate : candidates) {
+                if (best.size() == MAX_SUGGESTIONS) {
+                    break;
+                }
+                if (seen.add(candidate.id())) {
+                    best.add(candidate);
+                }
+            }
+            top = best.toArray(NO_SUGGESTIONS);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package by.vladosz.microserviceofpayments.caches;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Схлопывание одинаковых одновременных чтений (single flight): первый вызов с ключом выполняет загрузку,
+ * остальные, пришедшие до ее окончания, ждут тот же результат не дольше coalescing.wait-timeout.
+ * Результат не кэшируется: следующий запрос после завершения загрузки пойдет в БД заново.
+ * <p>
+ * В отличие от Cache.get(key, loader) загрузка идет вне блокировок map, поэтому медленный запрос
+ * не задерживает чтения других ключей. Счетчики coalescing.loads, coalescing.collapsed и
+ * coalescing.timeouts с тегом name показывают, сколько чтений было выполнено и сколько схлопнуто.
+ * <p>
+ * Вызывать только вне транзакции: ожидающий поток с открытой транзакцией держал бы соединение пула,
+ * пока соединение нужно выполняющему загрузку, и при малом пуле чтения блокировали бы друг друга.
+ * Транзакция, если нужна, открывается внутри loader.
+ */
+@Component
+public class RequestCoalescer {
+    private final Map<FlightKey, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+    private final Duration waitTimeout;
+    private final MeterRegistry meterRegistry;
+
+    public RequestCoalescer(@Value("${coalescing.wait-timeout:5s}") Duration waitTimeout,
+                            MeterRegistry meterRegistry) {
+        this.waitTimeout = waitTimeout;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T load(String name, Object key, Supplier<T> loader) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Coalesced load '" + name + "' must not run inside a transaction");
+        }
+        FlightKey flightKey = new FlightKey(name, key);
+        Counters nameCounters = counters.computeIfAbsent(name, this::register);
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(flightKey, flight);
+        if (existing != null) {
+            nameCounters.collapsed().increment();
+            return (T) await(existing, nameCounters);
+        }
+
+        nameCounters.loads().increment();
+        try {
+            T result = loader.get();
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flightKey, flight);
+        }
+    }
+
+    public double collapsedCount(String name) {
+        Counters nameCounters = counters.get(name);
+        return nameCounters == null ? 0 : nameCounters.collapsed().count();
+    }
+
+    private Object await(CompletableFuture<Object> flight, Counters nameCounters) {
+        try {
+            return flight.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            nameCounters.timeouts().increment();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Timed out waiting for an identical request in flight");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Interrupted while waiting for an identical request in flight");
+        } catch (ExecutionException e) {
+            // ожидающие получают ту же ошибку, что и выполнявший загрузку: 404 остается 404
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private Counters register(String name) {
+        return new Counters(
+                Counter.builder("coalescing.loads").tag("name", name)
+                        .description("Reads executed against the database").register(meterRegistry),
+                Counter.builder("coalescing.collapsed").tag("name", name)
+                        .description("Reads that joined an identical read in flight").register(meterRegistry),
+                Counter.builder("coalescing.timeouts").tag("name", name)
+                        .description("Reads that gave up waiting for an identical read in flight").register(meterRegistry));
+    }
+
+    private record FlightKey(String name, Object key) {
+    }
+
+    private record Counters(Counter loads, Counter collapsed, Counter timeouts) {
+    }
+}
@@ -0,0 +1,60 @@
+package by.vladosz.microserviceofpayments.caches;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Кэш UserDetails для DaoAuthenticationProvider.
+ * Хранит и отдает копии: после аутентификации ProviderManager затирает пароль у principal,
+ * и без копирования это испортило бы закэшированный экземпляр.
+ */
+@Component
+public class UserDetailsCache implements UserCache {
+    private final Cache<String, UserDetails> cache;
+
+    public UserDetailsCache(@Value("${users.details-cache.maximum-size:10000}") long maximumSize,
+                            @Value("${users.details-cache.expire-after-write:5m}") Duration expireAfterWrite,
+                            MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "userDetails");
+    }
+
+    @Override
+    public UserDetails getUserFromCache(String username) {
+        UserDetails cached = cache.getIfPresent(username);
+        return cached == null ? null : copyOf(cached);
+    }
+
+    @Override
+    public void putUserInCache(UserDetails user) {
+        cache.put(user.getUsername(), copyOf(user));
+    }
+
+    @Override
+    public void removeUserFromCache(String username) {
+        if (username != null) {
+            cache.invalidate(username);
+        }
+    }
+
+    public void removeAll() {
+        cache.invalidateAll();
+    }
+
+    private static UserDetails copyOf(UserDetails user) {
+        return User.withUserDetails(user).build();
+    }
+}
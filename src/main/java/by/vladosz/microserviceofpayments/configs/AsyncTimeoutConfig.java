@@ -0,0 +1,46 @@
+package by.vladosz.microserviceofpayments.configs;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+/**
+ * Таймаут async-обработки для отдельного эндпоинта.
+ * StreamingResponseBody всегда запускается с общим таймаутом (spring.mvc.async.request-timeout),
+ * а у WebAsyncTask свой таймаут действует только до возврата тела, не на время записи потока.
+ * Поэтому контроллер кладет таймаут в атрибут запроса, а интерцептор применяет его перед стартом async.
+ */
+@Configuration
+public class AsyncTimeoutConfig implements WebMvcConfigurer {
+    private static final String TIMEOUT_ATTRIBUTE = AsyncTimeoutConfig.class.getName() + ".timeout";
+
+    /**
+     * Задает таймаут async-обработки текущего запроса. Вызывается из контроллера до возврата тела.
+     */
+    public static void setRequestTimeout(Duration timeout) {
+        RequestContextHolder.currentRequestAttributes()
+                .setAttribute(TIMEOUT_ATTRIBUTE, timeout, RequestAttributes.SCOPE_REQUEST);
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+            @Override
+            public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+                // вызывается до startAsync, пока таймаут еще можно поменять
+                if (request instanceof AsyncWebRequest asyncWebRequest
+                        && request.getAttribute(TIMEOUT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof Duration timeout) {
+                    asyncWebRequest.setTimeout(timeout.toMillis());
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,40 @@
+package by.vladosz.microserviceofpayments.configs;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+@Configuration
+public class ConnectionLimiterConfig {
+
+    @Bean
+    public static BeanPostProcessor connectionLimiterPostProcessor(Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource) || bean instanceof LimitingDataSource) {
+                    return bean;
+                }
+                // по умолчанию разрешений ровно столько, сколько соединений в пуле Hikari
+                int maxConnections = environment.getProperty("db.limiter.permits", Integer.class,
+                        environment.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10));
+                Duration acquireTimeout = environment.getProperty("db.limiter.acquire-timeout", Duration.class,
+                        Duration.ofSeconds(2));
+                return new LimitingDataSource(dataSource, maxConnections, acquireTimeout);
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder connectionLimiterMetrics(DataSource dataSource) {
+        return dataSource instanceof LimitingDataSource limitingDataSource
+                ? limitingDataSource
+                : registry -> {
+                };
+    }
+}
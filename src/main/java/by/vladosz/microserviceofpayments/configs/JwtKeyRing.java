@@ -0,0 +1,46 @@
+package by.vladosz.microserviceofpayments.configs;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.OctetSequenceKey;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Набор HMAC-ключей для выпуска и проверки токенов. Ключи читаются только из общей конфигурации
+ * (security.jwt.*), поэтому у всех экземпляров сервиса набор одинаковый.
+ * <p>
+ * Ротация - два выката: сначала новый ключ добавляется в security.jwt.keys на всех экземплярах
+ * (он только проверяет подпись), затем на него переключается active-key-id. Старый ключ удаляется
+ * после истечения TTL выданных им токенов.
+ */
+public class JwtKeyRing implements JWKSource<SecurityContext> {
+    private final JWKSet keys;
+    private final String activeKeyId;
+
+    public JwtKeyRing(JwtProperties properties) {
+        List<JWK> jwks = new ArrayList<>(properties.keys().size());
+        properties.keys().keySet().forEach(keyId -> jwks.add(new OctetSequenceKey.Builder(properties.secret(keyId))
+                .keyID(keyId)
+                .algorithm(JWSAlgorithm.HS256)
+                .keyUse(KeyUse.SIGNATURE)
+                .build()));
+        this.keys = new JWKSet(jwks);
+        this.activeKeyId = properties.activeKeyId();
+    }
+
+    public String activeKeyId() {
+        return activeKeyId;
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) {
+        return jwkSelector.select(keys);
+    }
+}
@@ -0,0 +1,49 @@
+package by.vladosz.microserviceofpayments.configs;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Ключи подписи токенов: keys - base64-секреты HMAC по идентификатору ключа (kid),
+ * activeKeyId - ключ, которым подписываются новые токены. Остальные ключи только проверяют подпись.
+ * Секреты задаются только окружением: без активного ключа длиной от 256 бит сервис не стартует.
+ */
+@ConfigurationProperties(prefix = "security.jwt")
+public record JwtProperties(String issuer, Duration ttl, String activeKeyId, Map<String, String> keys) {
+    static final int MIN_SECRET_BYTES = 32;
+
+    public JwtProperties {
+        if (activeKeyId == null || activeKeyId.isBlank()) {
+            throw new IllegalStateException("security.jwt.active-key-id must be set");
+        }
+        // пустое значение - ключ не задан в окружении (security.jwt.keys.k1=${JWT_KEY_K1:})
+        keys = keys == null ? Map.of() : keys.entrySet().stream()
+                .filter(key -> key.getValue() != null && !key.getValue().isBlank())
+                .collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, Map.Entry::getValue));
+        if (!keys.containsKey(activeKeyId)) {
+            throw new IllegalStateException("Active signing key security.jwt.keys." + activeKeyId + " is not set");
+        }
+        keys.forEach(JwtProperties::checkSecret);
+    }
+
+    public byte[] secret(String keyId) {
+        return Base64.getDecoder().decode(keys.get(keyId));
+    }
+
+    private static void checkSecret(String keyId, String base64Secret) {
+        byte[] secret;
+        try {
+            secret = Base64.getDecoder().decode(base64Secret);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Signing key security.jwt.keys." + keyId + " is not valid base64", e);
+        }
+        if (secret.length < MIN_SECRET_BYTES) {
+            throw new IllegalStateException("Signing key security.jwt.keys." + keyId + " must be at least "
+                    + MIN_SECRET_BYTES * 8 + " bits");
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package by.vladosz.microserviceofpayments.configs;
 
+import by.vladosz.microserviceofpayments.caches.UserDetailsCache;
 import by.vladosz.microserviceofpayments.services.UserService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
@@ -14,6 +15,7 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.HttpStatusEntryPoint;
 
@@ -25,12 +27,15 @@ import org.springframework.security.web.authentication.HttpStatusEntryPoint;
 public class SecurityConfig {
 
     private final UserService userService;
+    private final UserDetailsCache userDetailsCache;
+    private final JwtAuthenticationConverter jwtAuthenticationConverter;
 
     @Bean
     public DaoAuthenticationProvider daoAuthenticationProvider() {
         DaoAuthenticationProvider daoAuthenticationProvider = new DaoAuthenticationProvider();
         daoAuthenticationProvider.setPasswordEncoder(passwordEncoder());
         daoAuthenticationProvider.setUserDetailsService(userService);
+        daoAuthenticationProvider.setUserCache(userDetailsCache);
         return daoAuthenticationProvider;
     }
 
@@ -53,8 +58,11 @@ public class SecurityConfig {
                 .requestMatchers("/secured").authenticated()
                 .requestMatchers("/info").authenticated()
                 .requestMatchers("/admin").hasRole("ADMIN")
+                .requestMatchers("/api/ledger/replay").hasRole("ADMIN")
                 .anyRequest().permitAll()
                 .and()
+                .oauth2ResourceServer(oauth2 -> oauth2
+                        .jwt(jwt -> jwt.jwtAuthenticationConverter(jwtAuthenticationConverter)))
                 .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS)
                 .and()
                 .exceptionHandling()
@@ -0,0 +1,29 @@
+package by.vladosz.microserviceofpayments.controllers;
+
+import by.vladosz.microserviceofpayments.Api.AuthApi;
+import by.vladosz.microserviceofpayments.dto.LoginDTO;
+import by.vladosz.microserviceofpayments.dto.TokenDTO;
+import by.vladosz.microserviceofpayments.services.TokenService;
+import jakarta.validation.Valid;
+import lombok.AllArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/auth")
+@AllArgsConstructor
+public class AuthController implements AuthApi {
+    private final AuthenticationManager authenticationManager;
+    private final TokenService tokenService;
+
+    @Override
+    @PostMapping("/login")
+    public ResponseEntity<TokenDTO> login(@RequestBody @Valid LoginDTO loginDTO) {
+        Authentication authentication = authenticationManager.authenticate(
+                new UsernamePasswordAuthenticationToken(loginDTO.getUserName(), loginDTO.getPassword()));
+        return ResponseEntity.ok(tokenService.issue(authentication));
+    }
+}
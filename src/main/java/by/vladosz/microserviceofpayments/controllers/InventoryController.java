@@ -0,0 +1,31 @@
+package by.vladosz.microserviceofpayments.controllers;
+
+import by.vladosz.microserviceofpayments.Api.InventoryApi;
+import by.vladosz.microserviceofpayments.dto.ReservationDTO;
+import by.vladosz.microserviceofpayments.services.InventoryService;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/products/{product_id}")
+@AllArgsConstructor
+public class InventoryController implements InventoryApi {
+    private final InventoryService inventoryService;
+
+    @Override
+    @PostMapping("/reserve")
+    public ResponseEntity<ReservationDTO> reserve(@PathVariable Long product_id, @RequestParam int quantity) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(inventoryService.reserve(product_id, quantity));
+    }
+
+    @Override
+    @PostMapping("/release")
+    public ResponseEntity<Void> release(@PathVariable Long product_id, @RequestParam UUID reservation_id) {
+        inventoryService.release(product_id, reservation_id);
+        return ResponseEntity.noContent().build();
+    }
+}
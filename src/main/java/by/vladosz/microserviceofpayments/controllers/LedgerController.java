@@ -0,0 +1,29 @@
+package by.vladosz.microserviceofpayments.controllers;
+
+import by.vladosz.microserviceofpayments.Api.LedgerApi;
+import by.vladosz.microserviceofpayments.dto.LedgerBalanceDTO;
+import by.vladosz.microserviceofpayments.services.PaymentLedger;
+import lombok.AllArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/ledger")
+@AllArgsConstructor
+public class LedgerController implements LedgerApi {
+    private final PaymentLedger paymentLedger;
+
+    @Override
+    @GetMapping("/balances/{user_id}")
+    public List<LedgerBalanceDTO> balances(@PathVariable Long user_id) {
+        return paymentLedger.balances(user_id);
+    }
+
+    @Override
+    @PostMapping("/replay")
+    public Map<String, Long> replay() {
+        return Map.of("balances", (long) paymentLedger.replay());
+    }
+}
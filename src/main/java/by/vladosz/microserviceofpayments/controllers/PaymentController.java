@@ -0,0 +1,59 @@
+package by.vladosz.microserviceofpayments.controllers;
+
+import by.vladosz.microserviceofpayments.Api.PaymentApi;
+import by.vladosz.microserviceofpayments.dto.PaymentDTO;
+import by.vladosz.microserviceofpayments.dto.PaymentRequestDTO;
+import by.vladosz.microserviceofpayments.models.PaymentStatus;
+import by.vladosz.microserviceofpayments.services.PaymentService;
+import jakarta.validation.Valid;
+import lombok.AllArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.BindingResult;
+import org.springframework.validation.ObjectError;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/payments")
+@AllArgsConstructor
+public class PaymentController implements PaymentApi {
+    private final PaymentService paymentService;
+
+    @Override
+    @PostMapping
+    public ResponseEntity<?> createPayment(@RequestHeader("Idempotency-Key") String idempotencyKey,
+                                           @RequestBody @Valid PaymentRequestDTO request, BindingResult bindingResult) {
+        if (bindingResult.hasErrors()) {
+            List<String> errors = bindingResult.getAllErrors().stream()
+                    .map(ObjectError::getDefaultMessage)
+                    .toList();
+            return ResponseEntity.badRequest().body(errors);
+        }
+        PaymentDTO payment = paymentService.createPayment(idempotencyKey, request);
+        if (payment.getStatus() == PaymentStatus.PENDING || payment.getStatus() == PaymentStatus.PROCESSING
+                || payment.getStatus() == PaymentStatus.APPROVED) {
+            return ResponseEntity.accepted().location(URI.create("/api/payments/" + payment.getId())).body(payment);
+        }
+        return ResponseEntity.ok(payment);
+    }
+
+    @Override
+    @GetMapping("{payment_id}")
+    public PaymentDTO findPayment(@PathVariable Long payment_id) {
+        return paymentService.findPayment(payment_id);
+    }
+
+    @Override
+    @PostMapping("{payment_id}/capture")
+    public PaymentDTO capture(@PathVariable Long payment_id) {
+        return paymentService.capture(payment_id);
+    }
+
+    @Override
+    @PostMapping("{payment_id}/refund")
+    public PaymentDTO refund(@PathVariable Long payment_id) {
+        return paymentService.refund(payment_id);
+    }
+}
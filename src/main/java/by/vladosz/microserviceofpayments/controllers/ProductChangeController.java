@@ -0,0 +1,54 @@
+package by.vladosz.microserviceofpayments.controllers;
+
+import by.vladosz.microserviceofpayments.Api.ProductChangeApi;
+import by.vladosz.microserviceofpayments.configs.AsyncTimeoutConfig;
+import by.vladosz.microserviceofpayments.dto.ProductChangePageDTO;
+import by.vladosz.microserviceofpayments.models.ChangePosition;
+import by.vladosz.microserviceofpayments.services.ProductChangeFeed;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.Duration;
+
+@RestController
+@RequestMapping("/api/products/changes")
+public class ProductChangeController implements ProductChangeApi {
+
+    private final ProductChangeFeed productChangeFeed;
+    private final Duration streamTimeout;
+
+    public ProductChangeController(ProductChangeFeed productChangeFeed,
+                                   @Value("${changes.stream-timeout:10m}") Duration streamTimeout) {
+        this.productChangeFeed = productChangeFeed;
+        this.streamTimeout = streamTimeout;
+    }
+
+    @Override
+    @GetMapping
+    public ProductChangePageDTO changes(@RequestParam(name = "after", required = false) String after,
+                                        @RequestParam(name = "limit", defaultValue = "100") int limit) {
+        return productChangeFeed.page(after, limit);
+    }
+
+    @Override
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> stream(@RequestHeader(name = "Last-Event-ID", required = false) String lastEventId,
+                                                        @RequestParam(name = "after", required = false) String after) {
+        String from = lastEventId != null ? lastEventId : after;
+        ChangePosition position = from == null ? productChangeFeed.head() : productChangeFeed.resolve(from);
+        StreamingResponseBody body = outputStream -> productChangeFeed.stream(position, outputStream);
+
+        // по таймауту поток закрывается, EventSource переподключается с Last-Event-ID
+        AsyncTimeoutConfig.setRequestTimeout(streamTimeout);
+        return ResponseEntity.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .cacheControl(CacheControl.noCache())
+                // без этого nginx буферизует поток и события приходят пачками
+                .header("X-Accel-Buffering", "no")
+                .body(body);
+    }
+}
@@ -1,15 +1,23 @@
 package by.vladosz.microserviceofpayments.controllers;
 
 import by.vladosz.microserviceofpayments.Api.ProductApi;
+import by.vladosz.microserviceofpayments.dto.BatchResultDTO;
+import by.vladosz.microserviceofpayments.dto.CursorPageDTO;
 import by.vladosz.microserviceofpayments.dto.ProductDTO;
+import by.vladosz.microserviceofpayments.dto.ProductPatchDTO;
+import by.vladosz.microserviceofpayments.dto.Versioned;
 import by.vladosz.microserviceofpayments.models.Product;
+import by.vladosz.microserviceofpayments.models.ProductSortOrder;
+import by.vladosz.microserviceofpayments.models.TotalMode;
 import by.vladosz.microserviceofpayments.services.ProductService;
 import jakarta.validation.Valid;
 import lombok.AllArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.ObjectError;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -21,10 +29,23 @@ public class ProductController implements ProductApi {
 
     private final ProductService productService;
 
+    @Override
     @GetMapping
-    public Page<ProductDTO> findAll(@RequestParam(name = "page", defaultValue = "0") int pageNumber,
-                                    @RequestParam(name = "size", defaultValue = "10") int pageSize) {
-        return productService.findAll(pageNumber, pageSize);
+    public Slice<ProductDTO> findAll(@RequestParam(name = "page", defaultValue = "0") int pageNumber,
+                                     @RequestParam(name = "size", defaultValue = "10") int pageSize,
+                                     @RequestParam(name = "total", defaultValue = "EXACT") TotalMode totalMode,
+                                     WebRequest webRequest) {
+        String eTag = productService.catalogETag();
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+        return productService.findAll(pageNumber, pageSize, totalMode);
+    }
+
+    @Override
+    @GetMapping(params = "ids")
+    public BatchResultDTO<ProductDTO> findByIds(@RequestParam(name = "ids") List<Long> ids) {
+        return productService.findProducts(ids);
     }
 
     @Override
@@ -38,64 +59,124 @@ public class ProductController implements ProductApi {
 
     @Override
     @GetMapping("/name/{nameProduct}")
-    public Page<ProductDTO> findByNameProduct(@PathVariable String nameProduct,
-                                              @RequestParam(name = "page", defaultValue = "0") int pageNumber,
-                                              @RequestParam(name = "size", defaultValue = "10") int pageSize) {
-        return productService.getProductName(nameProduct, pageNumber, pageSize);
+    public Slice<ProductDTO> findByNameProduct(@PathVariable String nameProduct,
+                                               @RequestParam(name = "page", defaultValue = "0") int pageNumber,
+                                               @RequestParam(name = "size", defaultValue = "10") int pageSize,
+                                               @RequestParam(name = "total", defaultValue = "EXACT") TotalMode totalMode) {
+        return productService.getProductName(nameProduct, pageNumber, pageSize, totalMode);
     }
 
     @Override
     @GetMapping("/category/{categoryProduct}")
-    public Page<ProductDTO> findByCategoryProduct(@PathVariable String categoryProduct,
-                                                  @RequestParam(name = "page", defaultValue = "0") int pageNumber,
-                                                  @RequestParam(name = "size", defaultValue = "10") int pageSize) {
-        return productService.getProductCategory(categoryProduct, pageNumber, pageSize);
+    public Slice<ProductDTO> findByCategoryProduct(@PathVariable String categoryProduct,
+                                                   @RequestParam(name = "page", defaultValue = "0") int pageNumber,
+                                                   @RequestParam(name = "size", defaultValue = "10") int pageSize,
+                                                   @RequestParam(name = "total", defaultValue = "EXACT") TotalMode totalMode,
+                                                   WebRequest webRequest) {
+        String eTag = productService.catalogETag();
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+        return productService.getProductCategory(categoryProduct, pageNumber, pageSize, totalMode);
     }
 
     @Override
     @PutMapping("{product_id}")
-    public ResponseEntity<?> update(@PathVariable Long product_id, @RequestBody @Valid
-    Product product, BindingResult bindingResult) {
+    public ResponseEntity<?> update(@PathVariable Long product_id,
+                                    @RequestHeader(name = "If-Match", required = false) String ifMatch,
+                                    @RequestBody @Valid Product product, BindingResult bindingResult) {
         if (bindingResult.hasErrors()) {
             List<String> errors = bindingResult.getAllErrors().stream()
                     .map(ObjectError::getDefaultMessage)
                     .toList();
             return ResponseEntity.badRequest().body(errors);
         }
-        return productService.updateProduct(product_id, product);
+        return productService.updateProduct(product_id, product, Versioned.expectedVersion(ifMatch));
+    }
+
+    @Override
+    @GetMapping("{product_id}")
+    public ResponseEntity<ProductDTO> findById(@PathVariable Long product_id) {
+        Versioned<ProductDTO> product = productService.getProduct(product_id);
+        return ResponseEntity.ok().eTag(product.eTag()).body(product.body());
+    }
+
+    @Override
+    @PatchMapping("{product_id}")
+    public ResponseEntity<?> patch(@PathVariable Long product_id,
+                                   @RequestHeader(name = "If-Match", required = false) String ifMatch,
+                                   @RequestBody @Valid ProductPatchDTO patch, BindingResult bindingResult) {
+        if (bindingResult.hasErrors()) {
+            List<String> errors = bindingResult.getAllErrors().stream()
+                    .map(ObjectError::getDefaultMessage)
+                    .toList();
+            return ResponseEntity.badRequest().body(errors);
+        }
+        Versioned<ProductDTO> product = productService.patchProduct(product_id, patch,
+                Versioned.expectedVersion(ifMatch));
+        return ResponseEntity.ok().eTag(product.eTag()).body(product.body());
     }
 
     @Override
     @DeleteMapping("{product_id}")
-    public void delete(@PathVariable Long product_id) {
-        productService.deleteProduct(product_id);
+    public void delete(@PathVariable Long product_id,
+                       @RequestHeader(name = "If-Match", required = false) String ifMatch) {
+        productService.deleteProduct(product_id, Versioned.expectedVersion(ifMatch));
     }
 
     @Override
     @GetMapping("/sortByName")
     public Page<ProductDTO> sortByName(@RequestParam(name = "page", defaultValue = "0") int pageNumber,
-                                       @RequestParam(name = "size", defaultValue = "10") int pageSize) {
+                                       @RequestParam(name = "size", defaultValue = "10") int pageSize,
+                                       WebRequest webRequest) {
+        String eTag = productService.catalogETag();
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
         return productService.sortByName(pageNumber, pageSize);
     }
 
     @Override
     @GetMapping("/sortByNameDescending")
     public Page<ProductDTO> sortByNameDescending(@RequestParam(name = "page", defaultValue = "0") int pageNumber,
-                                                 @RequestParam(name = "size", defaultValue = "10") int pageSize) {
+                                                 @RequestParam(name = "size", defaultValue = "10") int pageSize,
+                                                 WebRequest webRequest) {
+        String eTag = productService.catalogETag();
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
         return productService.sortByNameDescending(pageNumber, pageSize);
     }
 
     @Override
     @GetMapping("/sortByPrice")
     public Page<ProductDTO> sortByPrice(@RequestParam(name = "page", defaultValue = "0") int pageNumber,
-                                        @RequestParam(name = "size", defaultValue = "10") int pageSize) {
+                                        @RequestParam(name = "size", defaultValue = "10") int pageSize,
+                                        WebRequest webRequest) {
+        String eTag = productService.catalogETag();
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
         return productService.sortByPrice(pageNumber, pageSize);
     }
 
     @Override
     @GetMapping("/sortByPriceDescending")
     public Page<ProductDTO> sortByPriceDescending(@RequestParam(name = "page", defaultValue = "0") int pageNumber,
-                                                  @RequestParam(name = "size", defaultValue = "10") int pageSize) {
+                                                  @RequestParam(name = "size", defaultValue = "10") int pageSize,
+                                                  WebRequest webRequest) {
+        String eTag = productService.catalogETag();
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
         return productService.sortByPriceDescending(pageNumber, pageSize);
     }
+
+    @Override
+    @GetMapping("/scroll")
+    public CursorPageDTO<ProductDTO> scroll(@RequestParam(name = "sort", defaultValue = "NAME_ASC") ProductSortOrder sortOrder,
+                                            @RequestParam(name = "cursor", required = false) String cursor,
+                                            @RequestParam(name = "size", defaultValue = "10") int pageSize) {
+        return productService.scroll(sortOrder, cursor, pageSize);
+    }
 }
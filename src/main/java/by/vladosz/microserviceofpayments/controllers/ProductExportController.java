@@ -0,0 +1,55 @@
+package by.vladosz.microserviceofpayments.controllers;
+
+import by.vladosz.microserviceofpayments.Api.ProductExportApi;
+import by.vladosz.microserviceofpayments.configs.AsyncTimeoutConfig;
+import by.vladosz.microserviceofpayments.models.CategoryProduct;
+import by.vladosz.microserviceofpayments.models.ExportFormat;
+import by.vladosz.microserviceofpayments.services.ProductExportService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.Duration;
+import java.util.Currency;
+
+@RestController
+@RequestMapping("/api/products/export")
+public class ProductExportController implements ProductExportApi {
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final MediaType CSV = MediaType.parseMediaType("text/csv;charset=UTF-8");
+
+    private final ProductExportService productExportService;
+    private final Duration exportTimeout;
+
+    public ProductExportController(ProductExportService productExportService,
+                                   @Value("${products.export.timeout:30m}") Duration exportTimeout) {
+        this.productExportService = productExportService;
+        this.exportTimeout = exportTimeout;
+    }
+
+    @Override
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(name = "format", defaultValue = "NDJSON") ExportFormat format,
+                                                        @RequestParam(name = "category", required = false) CategoryProduct category,
+                                                        @RequestParam(name = "currency", required = false) String currency,
+                                                        @RequestParam(name = "minPrice", required = false) String minPrice,
+                                                        @RequestParam(name = "maxPrice", required = false) String maxPrice) {
+        Currency priceCurrency = ProductExportService.currency(currency);
+        Long minBasePrice = productExportService.toBasePrice(minPrice, priceCurrency);
+        Long maxBasePrice = productExportService.toBasePrice(maxPrice, priceCurrency);
+        StreamingResponseBody body = outputStream ->
+                productExportService.export(format, category, minBasePrice, maxBasePrice, outputStream);
+        String fileName = format == ExportFormat.CSV ? "products.csv" : "products.ndjson";
+
+        // таймаут только этой выгрузки: остальные async-запросы живут по умолчанию контейнера
+        AsyncTimeoutConfig.setRequestTimeout(exportTimeout);
+        return ResponseEntity.ok()
+                .contentType(format == ExportFormat.CSV ? CSV : NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString())
+                .body(body);
+    }
+}
@@ -0,0 +1,23 @@
+package by.vladosz.microserviceofpayments.controllers;
+
+import by.vladosz.microserviceofpayments.Api.ProductFacetApi;
+import by.vladosz.microserviceofpayments.dto.CategoryFacetDTO;
+import by.vladosz.microserviceofpayments.services.ProductFacetService;
+import lombok.AllArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/products/facets")
+@AllArgsConstructor
+public class ProductFacetController implements ProductFacetApi {
+
+    private final ProductFacetService productFacetService;
+
+    @Override
+    @GetMapping
+    public List<CategoryFacetDTO> facets() {
+        return productFacetService.facets();
+    }
+}
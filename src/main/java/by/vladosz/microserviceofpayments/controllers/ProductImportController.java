@@ -0,0 +1,23 @@
+package by.vladosz.microserviceofpayments.controllers;
+
+import by.vladosz.microserviceofpayments.Api.ProductImportApi;
+import by.vladosz.microserviceofpayments.dto.BulkImportResultDTO;
+import by.vladosz.microserviceofpayments.models.Product;
+import by.vladosz.microserviceofpayments.services.ProductImportService;
+import lombok.AllArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/products/bulk")
+@AllArgsConstructor
+public class ProductImportController implements ProductImportApi {
+    private final ProductImportService productImportService;
+
+    @Override
+    @PostMapping
+    public BulkImportResultDTO importProducts(@RequestBody List<Product> products) {
+        return productImportService.importProducts(products);
+    }
+}
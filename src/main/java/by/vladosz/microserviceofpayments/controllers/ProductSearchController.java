@@ -0,0 +1,36 @@
+package by.vladosz.microserviceofpayments.controllers;
+
+import by.vladosz.microserviceofpayments.Api.ProductSearchApi;
+import by.vladosz.microserviceofpayments.dto.ProductDTO;
+import by.vladosz.microserviceofpayments.dto.ProductSuggestionDTO;
+import by.vladosz.microserviceofpayments.models.CategoryProduct;
+import by.vladosz.microserviceofpayments.services.ProductSearchService;
+import lombok.AllArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/products")
+@AllArgsConstructor
+public class ProductSearchController implements ProductSearchApi {
+
+    private final ProductSearchService productSearchService;
+
+    @Override
+    @GetMapping("/search")
+    public Page<ProductDTO> search(@RequestParam(name = "q") String query,
+                                   @RequestParam(name = "category", required = false) CategoryProduct category,
+                                   @RequestParam(name = "page", defaultValue = "0") int pageNumber,
+                                   @RequestParam(name = "size", defaultValue = "10") int pageSize) {
+        return productSearchService.search(query, category, pageNumber, pageSize);
+    }
+
+    @Override
+    @GetMapping("/suggest")
+    public List<ProductSuggestionDTO> suggest(@RequestParam(name = "prefix") String prefix,
+                                              @RequestParam(name = "limit", defaultValue = "10") int limit) {
+        return productSearchService.suggest(prefix, limit);
+    }
+}
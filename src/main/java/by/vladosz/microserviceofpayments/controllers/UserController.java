@@ -1,12 +1,16 @@
 package by.vladosz.microserviceofpayments.controllers;
 
 import by.vladosz.microserviceofpayments.Api.UserApi;
+import by.vladosz.microserviceofpayments.dto.BatchResultDTO;
 import by.vladosz.microserviceofpayments.dto.UserDTO;
+import by.vladosz.microserviceofpayments.dto.UserPatchDTO;
+import by.vladosz.microserviceofpayments.dto.Versioned;
+import by.vladosz.microserviceofpayments.models.TotalMode;
 import by.vladosz.microserviceofpayments.models.User;
 import by.vladosz.microserviceofpayments.services.UserService;
 import jakarta.validation.Valid;
 import lombok.AllArgsConstructor;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.ObjectError;
@@ -22,9 +26,10 @@ public class UserController implements UserApi {
 
     @Override
     @GetMapping
-    public Page<UserDTO> findAllUsers(@RequestParam(name = "page", defaultValue = "0") int pageNumber,
-                                      @RequestParam(name = "size", defaultValue = "10") int pageSize) {
-        return userService.findAll(pageNumber, pageSize);
+    public Slice<UserDTO> findAllUsers(@RequestParam(name = "page", defaultValue = "0") int pageNumber,
+                                       @RequestParam(name = "size", defaultValue = "10") int pageSize,
+                                       @RequestParam(name = "total", defaultValue = "EXACT") TotalMode totalMode) {
+        return userService.findAll(pageNumber, pageSize, totalMode);
     }
 
     @PostMapping
@@ -36,27 +41,51 @@ public class UserController implements UserApi {
     }
 
     @PutMapping("{user_id}")
-    public ResponseEntity<?> updateUser(@PathVariable Long user_id, @RequestBody @Valid
-    User user, BindingResult bindingResult) {
+    public ResponseEntity<?> updateUser(@PathVariable Long user_id,
+                                        @RequestHeader(name = "If-Match", required = false) String ifMatch,
+                                        @RequestBody @Valid User user, BindingResult bindingResult) {
         if (bindingResult.hasErrors()) {
             List<String> errors = bindingResult.getAllErrors().stream()
                     .map(ObjectError::getDefaultMessage)
                     .toList();
             return ResponseEntity.badRequest().body(errors);
         }
-        return userService.updateUser(user_id, user);
+        return userService.updateUser(user_id, user, Versioned.expectedVersion(ifMatch));
+    }
+
+    @Override
+    @PatchMapping("{user_id}")
+    public ResponseEntity<?> patchUser(@PathVariable Long user_id,
+                                       @RequestHeader(name = "If-Match", required = false) String ifMatch,
+                                       @RequestBody @Valid UserPatchDTO patch, BindingResult bindingResult) {
+        if (bindingResult.hasErrors()) {
+            List<String> errors = bindingResult.getAllErrors().stream()
+                    .map(ObjectError::getDefaultMessage)
+                    .toList();
+            return ResponseEntity.badRequest().body(errors);
+        }
+        Versioned<UserDTO> user = userService.patchUser(user_id, patch, Versioned.expectedVersion(ifMatch));
+        return ResponseEntity.ok().eTag(user.eTag()).body(user.body());
+    }
+
+    @Override
+    @PostMapping("/batch")
+    public BatchResultDTO<UserDTO> findUsersByIds(@RequestBody List<Long> ids) {
+        return userService.findUsersByIds(ids);
     }
 
     @Override
     @GetMapping("{user_id}")
-    public UserDTO findUserById(@PathVariable Long user_id) {
-        return userService.findUserById(user_id);
+    public ResponseEntity<UserDTO> findUserById(@PathVariable Long user_id) {
+        Versioned<UserDTO> user = userService.getUser(user_id);
+        return ResponseEntity.ok().eTag(user.eTag()).body(user.body());
     }
 
     @Override
     @DeleteMapping("{user_id}")
-    public void deleteUser(@PathVariable Long user_id) {
-        userService.deleteUser(user_id);
+    public void deleteUser(@PathVariable Long user_id,
+                           @RequestHeader(name = "If-Match", required = false) String ifMatch) {
+        userService.deleteUser(user_id, Versioned.expectedVersion(ifMatch));
     }
 
 //    @GetMapping("/csrf-token")
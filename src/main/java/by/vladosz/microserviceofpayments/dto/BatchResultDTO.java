@@ -0,0 +1,23 @@
+package by.vladosz.microserviceofpayments.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Ответ пакетного запроса по id: items.get(i) соответствует i-му id запроса (null, если его нет),
+ * missing - ненайденные id в порядке запроса без повторов.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchResultDTO<T> {
+
+    private List<T> items;
+
+    private List<Long> missing;
+}
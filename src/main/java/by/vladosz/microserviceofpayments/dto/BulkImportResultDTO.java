@@ -0,0 +1,24 @@
+package by.vladosz.microserviceofpayments.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkImportResultDTO {
+
+    private int received;
+
+    private int created;
+
+    private int updated;
+
+    private List<BulkItemErrorDTO> errors = new ArrayList<>();
+}
@@ -0,0 +1,19 @@
+package by.vladosz.microserviceofpayments.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkItemErrorDTO {
+
+    private int index;
+
+    private List<String> messages;
+}
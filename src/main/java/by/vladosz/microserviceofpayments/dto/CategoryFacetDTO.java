@@ -0,0 +1,29 @@
+package by.vladosz.microserviceofpayments.dto;
+
+import by.vladosz.microserviceofpayments.models.CategoryProduct;
+import by.vladosz.microserviceofpayments.models.Money;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class CategoryFacetDTO {
+
+    private CategoryProduct category;
+
+    private long count;
+
+    private Money minPrice;
+
+    private Money maxPrice;
+
+    private Money averagePrice;
+
+    private List<PriceBucketDTO> histogram;
+}
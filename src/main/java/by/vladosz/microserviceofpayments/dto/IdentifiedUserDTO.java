@@ -0,0 +1,12 @@
+package by.vladosz.microserviceofpayments.dto;
+
+/**
+ * Проекция пользователя вместе с id для пакетного чтения: по id ответ собирается в порядке запроса,
+ * а в UserDTO id нет.
+ */
+public record IdentifiedUserDTO(Long id, String userName, String surName, String patronymic, int age) {
+
+    public UserDTO toUserDTO() {
+        return new UserDTO(userName, surName, patronymic, age);
+    }
+}
@@ -0,0 +1,24 @@
+package by.vladosz.microserviceofpayments.dto;
+
+import by.vladosz.microserviceofpayments.models.Money;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class LedgerBalanceDTO {
+
+    private Long userId;
+
+    private String currency;
+
+    private Money authorized;
+
+    private Money captured;
+
+    private Money refunded;
+}
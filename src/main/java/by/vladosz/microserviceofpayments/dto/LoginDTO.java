@@ -0,0 +1,20 @@
+package by.vladosz.microserviceofpayments.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class LoginDTO {
+
+    @NotEmpty(message = "Имя пользователя не может быть пустым")
+    private String userName;
+
+    @NotEmpty(message = "Пароль пользователя не может быть пустым")
+    private String password;
+}
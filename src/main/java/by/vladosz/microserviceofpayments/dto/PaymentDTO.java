@@ -0,0 +1,29 @@
+package by.vladosz.microserviceofpayments.dto;
+
+import by.vladosz.microserviceofpayments.models.Money;
+import by.vladosz.microserviceofpayments.models.PaymentStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class PaymentDTO {
+
+    private Long id;
+
+    private Long userId;
+
+    private List<Long> productIds;
+
+    private Money amount;
+
+    private PaymentStatus status;
+
+    private String failureReason;
+}
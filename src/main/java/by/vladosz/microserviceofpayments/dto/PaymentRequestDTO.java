@@ -0,0 +1,25 @@
+package by.vladosz.microserviceofpayments.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class PaymentRequestDTO {
+
+    @NotNull(message = "Пользователь платежа не может быть пустым")
+    private Long userId;
+
+    @NotEmpty(message = "Список продуктов не может быть пустым")
+    @Size(max = 100, message = "В одном платеже не больше 100 продуктов")
+    private List<@NotNull(message = "ID продукта не может быть пустым") Long> productIds;
+}
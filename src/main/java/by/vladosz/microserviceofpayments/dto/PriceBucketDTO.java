@@ -0,0 +1,21 @@
+package by.vladosz.microserviceofpayments.dto;
+
+import by.vladosz.microserviceofpayments.models.Money;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class PriceBucketDTO {
+
+    private Money from;
+
+    // null у последнего интервала: цены от from и выше
+    private Money to;
+
+    private long count;
+}
@@ -0,0 +1,35 @@
+package by.vladosz.microserviceofpayments.dto;
+
+import by.vladosz.microserviceofpayments.models.ProductChangeType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * Событие журнала изменений каталога. position передается обратно как after или Last-Event-ID,
+ * чтобы продолжить чтение сразу за этим событием.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductChangeDTO {
+
+    private String position;
+
+    private ProductChangeType type;
+
+    private Long productId;
+
+    private Long version;
+
+    // состояние продукта после изменения, для DELETED - null
+    private ProductDTO product;
+
+    private Integer count;
+
+    private Instant changedAt;
+}
@@ -0,0 +1,25 @@
+package by.vladosz.microserviceofpayments.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Порция журнала изменений. position - позиция последнего события порции
+ * (или переданная позиция, если новых событий нет), с нее продолжается следующий запрос.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductChangePageDTO {
+
+    private List<ProductChangeDTO> changes;
+
+    private String position;
+
+    private boolean hasMore;
+}
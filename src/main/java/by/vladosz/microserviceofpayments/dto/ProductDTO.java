@@ -1,7 +1,8 @@
 package by.vladosz.microserviceofpayments.dto;
 
 import by.vladosz.microserviceofpayments.models.CategoryProduct;
-import jakarta.validation.constraints.DecimalMin;
+import by.vladosz.microserviceofpayments.models.Money;
+import by.vladosz.microserviceofpayments.validation.PositiveMoney;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
@@ -24,8 +25,8 @@ public class ProductDTO {
     @Size(min = 10, max = 200, message = "Описание продукта должно быть от 10 до 200 символов")
     private String description;
 
-    @DecimalMin(value = "0.01", message = "Цена должна быть больше 0")
-    private Double price;
+    @PositiveMoney(message = "Цена должна быть больше 0")
+    private Money price;
 
     @NotNull(message = "Категория продукта не может быть пустой")
     private CategoryProduct category;
@@ -0,0 +1,41 @@
+package by.vladosz.microserviceofpayments.dto;
+
+import by.vladosz.microserviceofpayments.models.CategoryProduct;
+import by.vladosz.microserviceofpayments.models.Money;
+import by.vladosz.microserviceofpayments.validation.PositiveMoney;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Частичное изменение продукта: меняются только поля, переданные не null.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductPatchDTO {
+
+    @Size(min = 2, max = 50, message = "Название продукта должно быть от 2 до 50 символов")
+    private String name;
+
+    @Size(min = 10, max = 200, message = "Описание продукта должно быть от 10 до 200 символов")
+    private String description;
+
+    @PositiveMoney(message = "Цена продукта должна быть больше 0")
+    private Money price;
+
+    @Min(value = 1, message = "Количество продукта должна быть больше 0")
+    private Integer count;
+
+    private CategoryProduct category;
+
+    @JsonIgnore
+    public boolean isEmpty() {
+        return name == null && description == null && price == null && count == null && category == null;
+    }
+}
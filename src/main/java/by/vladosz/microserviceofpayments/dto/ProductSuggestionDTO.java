@@ -0,0 +1,8 @@
+package by.vladosz.microserviceofpayments.dto;
+
+/**
+ * Подсказка для строки поиска. Экземпляры неизменяемы и хранятся прямо в индексе подсказок,
+ * поэтому ответ собирается без копирования.
+ */
+public record ProductSuggestionDTO(Long id, String name, long popularity) {
+}
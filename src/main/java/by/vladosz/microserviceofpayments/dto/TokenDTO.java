@@ -0,0 +1,19 @@
+package by.vladosz.microserviceofpayments.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class TokenDTO {
+
+    private String accessToken;
+
+    private String tokenType;
+
+    private long expiresIn;
+}
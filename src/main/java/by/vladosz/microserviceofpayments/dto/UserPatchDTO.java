@@ -0,0 +1,42 @@
+package by.vladosz.microserviceofpayments.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Частичное изменение пользователя: меняются только поля, переданные не null.
+ * Пароль и роли так не меняются.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserPatchDTO {
+
+    @Size(min = 2, max = 20, message = "Имя пользователя должно быть от 2 до 20 символов")
+    private String userName;
+
+    @Size(min = 2, max = 30, message = "Фамилия пользователя должно быть от 2 до 30 символов")
+    private String surName;
+
+    @Size(min = 3, max = 30, message = "Отчество пользователя должно быть от 3 до 30 символов")
+    private String patronymic;
+
+    @Min(value = 18, message = "Возраст не может быть меньше 18")
+    @Max(value = 120, message = "Возраст не может быть больше 120")
+    private Integer age;
+
+    @Size(min = 5, max = 30, message = "Email пользователя должно быть от 5 до 20 символов")
+    private String email;
+
+    @JsonIgnore
+    public boolean isEmpty() {
+        return userName == null && surName == null && patronymic == null && age == null && email == null;
+    }
+}
@@ -0,0 +1,37 @@
+package by.vladosz.microserviceofpayments.dto;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Ответ вместе с версией строки, из которой он собран. Версия уходит клиенту в заголовке ETag
+ * и возвращается в If-Match при изменении или удалении.
+ */
+public record Versioned<T>(T body, long version) {
+
+    public String eTag() {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Ожидаемая версия из заголовка If-Match: null, если заголовка нет или он равен "*".
+     * Слабый ETag (W/"3") принимается так же, как сильный.
+     */
+    public static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.strip().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.strip();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            tag = tag.substring(1, tag.length() - 1);
+        }
+        try {
+            return Long.parseLong(tag);
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid If-Match header: " + ifMatch);
+        }
+    }
+}
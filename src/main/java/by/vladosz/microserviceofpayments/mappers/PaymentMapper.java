@@ -0,0 +1,10 @@
+package by.vladosz.microserviceofpayments.mappers;
+
+import by.vladosz.microserviceofpayments.dto.PaymentDTO;
+import by.vladosz.microserviceofpayments.models.Payment;
+import org.mapstruct.Mapper;
+
+@Mapper(componentModel = "spring")
+public interface PaymentMapper {
+    PaymentDTO toPaymentDTO(Payment payment);
+}
@@ -11,6 +11,7 @@ public interface ProductMapper {
     ProductDTO toProductDTO(Product product);
 
     @Mapping(target = "id", ignore = true)
+    @Mapping(target = "version", ignore = true)
     void updateFromProductDTO(Product productDTO, @MappingTarget Product product);
 
 }
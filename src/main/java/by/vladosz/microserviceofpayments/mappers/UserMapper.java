@@ -11,5 +11,6 @@ public interface UserMapper {
     UserDTO toUserDTO(User user);
 
     @Mapping(target = "id", ignore = true)
+    @Mapping(target = "version", ignore = true)
     void updateFromUserDTO(User userDTO, @MappingTarget User user);
 }
@@ -0,0 +1,38 @@
+package by.vladosz.microserviceofpayments.models;
+
+/**
+ * Позиция в журнале изменений каталога: идентификатор транзакции и id строки журнала.
+ * Клиенту отдается строкой вида "7431-1502", позиция "0" означает начало журнала.
+ */
+public record ChangePosition(long txId, long id) implements Comparable<ChangePosition> {
+    public static final ChangePosition START = new ChangePosition(0, 0);
+
+    public static ChangePosition parse(String value) {
+        if (value.equals("0")) {
+            return START;
+        }
+        int separator = value.indexOf('-');
+        if (separator > 0) {
+            try {
+                long txId = Long.parseLong(value.substring(0, separator));
+                long id = Long.parseLong(value.substring(separator + 1));
+                if (txId > 0 && id > 0) {
+                    return new ChangePosition(txId, id);
+                }
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        throw new IllegalArgumentException("Invalid change position: " + value);
+    }
+
+    @Override
+    public int compareTo(ChangePosition other) {
+        int byTransaction = Long.compare(txId, other.txId);
+        return byTransaction != 0 ? byTransaction : Long.compare(id, other.id);
+    }
+
+    @Override
+    public String toString() {
+        return equals(START) ? "0" : txId + "-" + id;
+    }
+}
@@ -0,0 +1,6 @@
+package by.vladosz.microserviceofpayments.models;
+
+public enum ExportFormat {
+    NDJSON,
+    CSV
+}
@@ -0,0 +1,75 @@
+package by.vladosz.microserviceofpayments.models;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Comparator;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Неизменяемый снимок курсов валют к базовой валюте каталога. При обновлении курсов
+ * создается новый снимок и подменяется целиком, поэтому читатели никогда не видят
+ * частично обновленную таблицу.
+ * <p>
+ * Для каждой валюты заранее посчитан курс минимальных единиц: сколько копеек стоит
+ * одна минимальная единица валюты. Округление совпадает с round() в Postgres,
+ * которым считается products.price_base_minor.
+ */
+public record FxRates(Map<Currency, BigDecimal> rates, Map<Currency, BigDecimal> minorRates) {
+
+    public static final Currency BASE_CURRENCY = Currency.getInstance("RUB");
+
+    public FxRates {
+        rates = Map.copyOf(rates);
+        minorRates = Map.copyOf(minorRates);
+    }
+
+    public static FxRates of(Map<Currency, BigDecimal> rates) {
+        Map<Currency, BigDecimal> withBase = new HashMap<>(rates);
+        withBase.put(BASE_CURRENCY, BigDecimal.ONE);
+        Map<Currency, BigDecimal> minorRates = new HashMap<>();
+        withBase.forEach((currency, rate) -> {
+            if (rate.signum() <= 0) {
+                throw new IllegalArgumentException("Rate must be positive for " + currency + ": " + rate);
+            }
+            minorRates.put(currency, rate.movePointRight(fractionDigits(BASE_CURRENCY) - fractionDigits(currency)));
+        });
+        return new FxRates(withBase, minorRates);
+    }
+
+    public static FxRates baseOnly() {
+        return of(Map.of());
+    }
+
+    /**
+     * Сумма в минимальных единицах базовой валюты или null, если курса для валюты нет.
+     */
+    public Long toBaseMinorUnits(Money money) {
+        BigDecimal minorRate = minorRates.get(money.currency());
+        if (minorRate == null) {
+            return null;
+        }
+        return BigDecimal.valueOf(money.minorUnits())
+                .multiply(minorRate)
+                .setScale(0, RoundingMode.HALF_UP)
+                .longValueExact();
+    }
+
+    /**
+     * Отпечаток курсов для ETag листинга: одинаковые курсы дают одинаковый отпечаток на любом экземпляре.
+     * Не hashCode() снимка: хэш Currency зависит от экземпляра JVM.
+     */
+    public String fingerprint() {
+        String canonical = rates.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(Comparator.comparing(Currency::getCurrencyCode)))
+                .map(entry -> entry.getKey().getCurrencyCode() + "=" + entry.getValue().stripTrailingZeros().toPlainString())
+                .collect(Collectors.joining(","));
+        return Integer.toHexString(canonical.hashCode());
+    }
+
+    private static int fractionDigits(Currency currency) {
+        return Math.max(currency.getDefaultFractionDigits(), 0);
+    }
+}
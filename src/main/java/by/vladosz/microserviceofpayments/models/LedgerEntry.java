@@ -0,0 +1,18 @@
+package by.vladosz.microserviceofpayments.models;
+
+import java.time.Instant;
+
+/**
+ * Запись журнала платежей. Журнал только дополняется: строки не изменяются и не удаляются.
+ */
+public record LedgerEntry(Long paymentId,
+                          Long userId,
+                          LedgerEventType type,
+                          Money amount,
+                          Instant createdAt) {
+
+    public static LedgerEntry of(Payment payment, LedgerEventType type) {
+        return new LedgerEntry(payment.getId(), payment.getUserId(), type, payment.getAmount(),
+                Instant.now());
+    }
+}
@@ -0,0 +1,218 @@
+package by.vladosz.microserviceofpayments.models;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import jakarta.persistence.Embeddable;
+
+import java.io.IOException;
+import java.util.Currency;
+
+/**
+ * Денежная сумма: целое число минимальных единиц валюты (копеек, центов) и код валюты ISO 4217.
+ * Экземпляры Currency кэшируются JDK, поэтому строка с кодом валюты не дублируется в каждой строке.
+ * <p>
+ * В JSON сумма пишется как {"amount": 8990.00, "currency": "RUB"}, где amount - точное десятичное
+ * число без промежуточного double. Для суммирования в цикле без аллокаций есть {@link Sum}.
+ */
+@Embeddable
+@JsonSerialize(using = Money.Serializer.class)
+@JsonDeserialize(using = Money.Deserializer.class)
+public record Money(long minorUnits, Currency currency) implements Comparable<Money> {
+
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1_000, 10_000};
+
+    public Money {
+        if (currency == null) {
+            throw new IllegalArgumentException("Currency cannot be null");
+        }
+    }
+
+    public static Money of(long minorUnits, String currencyCode) {
+        return new Money(minorUnits, Currency.getInstance(currencyCode));
+    }
+
+    public static Money ofMajor(long majorUnits, Currency currency) {
+        return new Money(Math.multiplyExact(majorUnits, scale(currency)), currency);
+    }
+
+    /**
+     * Разбирает десятичную строку вида "-8990.5" без BigDecimal и без потери точности.
+     */
+    public static Money parse(String amount, Currency currency) {
+        if (amount == null || amount.isEmpty()) {
+            throw new IllegalArgumentException("Amount cannot be empty");
+        }
+        int fractionDigits = fractionDigits(currency);
+        boolean negative = amount.charAt(0) == '-';
+        int start = negative || amount.charAt(0) == '+' ? 1 : 0;
+        int point = amount.indexOf('.');
+        int integerEnd = point < 0 ? amount.length() : point;
+        if (integerEnd == start && (point < 0 || point == amount.length() - 1)) {
+            throw new IllegalArgumentException("Invalid amount: " + amount);
+        }
+
+        long minorUnits = 0;
+        for (int i = start; i < integerEnd; i++) {
+            minorUnits = Math.addExact(Math.multiplyExact(minorUnits, 10), digit(amount, i));
+        }
+        int fractionEnd = amount.length();
+        if (point >= 0) {
+            // незначащие нули в конце дробной части не увеличивают точность
+            while (fractionEnd > point + 1 && amount.charAt(fractionEnd - 1) == '0') {
+                fractionEnd--;
+            }
+            if (fractionEnd - point - 1 > fractionDigits) {
+                throw new IllegalArgumentException("Too many fraction digits for " + currency + ": " + amount);
+            }
+        }
+        for (int i = 0; i < fractionDigits; i++) {
+            int position = point + 1 + i;
+            int digit = point >= 0 && position < fractionEnd ? digit(amount, position) : 0;
+            minorUnits = Math.addExact(Math.multiplyExact(minorUnits, 10), digit);
+        }
+        return new Money(negative ? -minorUnits : minorUnits, currency);
+    }
+
+    public Money plus(Money other) {
+        requireSameCurrency(other);
+        return new Money(Math.addExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public Money minus(Money other) {
+        requireSameCurrency(other);
+        return new Money(Math.subtractExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public Money times(long quantity) {
+        return new Money(Math.multiplyExact(minorUnits, quantity), currency);
+    }
+
+    public boolean isPositive() {
+        return minorUnits > 0;
+    }
+
+    public String toPlainString() {
+        int fractionDigits = fractionDigits(currency);
+        long scale = scale(currency);
+        StringBuilder result = new StringBuilder(24);
+        if (minorUnits < 0) {
+            result.append('-');
+        }
+        // abs через деление, чтобы Long.MIN_VALUE не переполнялся
+        long major = Math.abs(minorUnits / scale);
+        long minor = Math.abs(minorUnits % scale);
+        result.append(major);
+        if (fractionDigits > 0) {
+            result.append('.');
+            String digits = Long.toString(minor);
+            result.repeat('0', fractionDigits - digits.length()).append(digits);
+        }
+        return result.toString();
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        requireSameCurrency(other);
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public String toString() {
+        return toPlainString() + " " + currency.getCurrencyCode();
+    }
+
+    private void requireSameCurrency(Money other) {
+        if (currency != other.currency) {
+            throw new IllegalArgumentException("Currency mismatch: " + currency + " and " + other.currency);
+        }
+    }
+
+    private static int fractionDigits(Currency currency) {
+        return Math.max(currency.getDefaultFractionDigits(), 0);
+    }
+
+    private static long scale(Currency currency) {
+        return POWERS_OF_TEN[fractionDigits(currency)];
+    }
+
+    private static int digit(String amount, int position) {
+        char c = amount.charAt(position);
+        if (c < '0' || c > '9') {
+            throw new IllegalArgumentException("Invalid amount: " + amount);
+        }
+        return c - '0';
+    }
+
+    /**
+     * Изменяемый сумматор для горячих циклов: складывает минимальные единицы в long
+     * и создает Money только один раз в конце.
+     */
+    public static final class Sum {
+        private Currency currency;
+        private long minorUnits;
+
+        public Sum add(Money money) {
+            if (currency == null) {
+                currency = money.currency;
+            } else if (currency != money.currency) {
+                throw new IllegalArgumentException("Currency mismatch: " + currency + " and " + money.currency);
+            }
+            minorUnits = Math.addExact(minorUnits, money.minorUnits);
+            return this;
+        }
+
+        public Money toMoney() {
+            if (currency == null) {
+                throw new IllegalStateException("Nothing was added");
+            }
+            return new Money(minorUnits, currency);
+        }
+    }
+
+    public static class Serializer extends JsonSerializer<Money> {
+        @Override
+        public void serialize(Money money, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject();
+            generator.writeFieldName("amount");
+            generator.writeNumber(money.toPlainString());
+            generator.writeStringField("currency", money.currency.getCurrencyCode());
+            generator.writeEndObject();
+        }
+    }
+
+    public static class Deserializer extends JsonDeserializer<Money> {
+        @Override
+        public Money deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                return (Money) context.handleUnexpectedToken(Money.class, parser);
+            }
+            String amount = null;
+            String currency = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "amount" -> amount = parser.getText();
+                    case "currency" -> currency = parser.getText();
+                    default -> parser.skipChildren();
+                }
+            }
+            if (amount == null || currency == null) {
+                return (Money) context.handleWeirdStringValue(Money.class, String.valueOf(amount),
+                        "Money requires amount and currency");
+            }
+            try {
+                return parse(amount, Currency.getInstance(currency));
+            } catch (IllegalArgumentException | ArithmeticException e) {
+                return (Money) context.handleWeirdStringValue(Money.class, amount, e.getMessage());
+            }
+        }
+    }
+}
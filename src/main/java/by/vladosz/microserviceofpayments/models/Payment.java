@@ -0,0 +1,74 @@
+package by.vladosz.microserviceofpayments.models;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+@Entity
+@Table(name = "payments")
+@NoArgsConstructor
+@Getter
+@Setter
+public class Payment {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payments_seq")
+    @SequenceGenerator(name = "payments_seq", sequenceName = "payments_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private String idempotencyKey;
+
+    @Column(nullable = false)
+    private String requestHash;
+
+    @Column(nullable = false)
+    private Long userId;
+
+    @ElementCollection
+    @CollectionTable(name = "payment_items", joinColumns = @JoinColumn(name = "payment_id"))
+    @OrderColumn(name = "position")
+    @Column(name = "product_id", nullable = false)
+    private List<Long> productIds = new ArrayList<>();
+
+    @Embedded
+    @AttributeOverride(name = "minorUnits", column = @Column(name = "amount_minor"))
+    @AttributeOverride(name = "currency", column = @Column(name = "currency", length = 3))
+    private Money amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private PaymentStatus status;
+
+    private String failureReason;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    private Instant updatedAt;
+
+    /**
+     * Начало аренды платежа воркером: время перехода в PROCESSING. Платеж, зависший в PROCESSING
+     * дольше payments.processing-lease (воркер упал), восстанавливается по статусу у эквайера.
+     */
+    private Instant processingSince;
+
+    public Payment(Long id, String idempotencyKey, String requestHash, Long userId, List<Long> productIds, Money amount,
+                   PaymentStatus status, String failureReason, Instant createdAt, Instant updatedAt) {
+        this.id = id;
+        this.idempotencyKey = idempotencyKey;
+        this.requestHash = requestHash;
+        this.userId = userId;
+        this.productIds = productIds;
+        this.amount = amount;
+        this.status = status;
+        this.failureReason = failureReason;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,12 @@
+package by.vladosz.microserviceofpayments.models;
+
+public enum PaymentStatus {
+    PENDING,
+    PROCESSING,
+    // эквайер одобрил платеж, событие AUTHORIZED еще не записано в журнал: повторяется только запись в журнал
+    APPROVED,
+    AUTHORIZED,
+    DECLINED,
+    CAPTURED,
+    REFUNDED
+}
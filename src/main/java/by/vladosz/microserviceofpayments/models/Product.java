@@ -1,8 +1,10 @@
 package by.vladosz.microserviceofpayments.models;
 
+import by.vladosz.microserviceofpayments.validation.PositiveMoney;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
-import lombok.AllArgsConstructor;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -10,13 +12,13 @@ import lombok.Setter;
 @Entity
 @Table(name = "products")
 @NoArgsConstructor
-@AllArgsConstructor
 @Getter
 @Setter
 public class Product {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "products_seq")
+    @SequenceGenerator(name = "products_seq", sequenceName = "products_seq", allocationSize = 50)
     private Long id;
 
 
@@ -28,11 +30,20 @@ public class Product {
     @Size(min = 10, max = 200, message = "Описание продукта должно быть от 10 до 200 символов")
     private String description;
 
-    @Min(value = 1, message = "Цена продукта должна быть больше 0")
-    private Double price;
+    @PositiveMoney(message = "Цена продукта должна быть больше 0")
+    @Embedded
+    @AttributeOverride(name = "minorUnits", column = @Column(name = "price_minor"))
+    @AttributeOverride(name = "currency", column = @Column(name = "currency", length = 3))
+    private Money price;
 
-    @NotEmpty(message = "Валюта продукта не может быть пустым")
-    private String currency;
+    /**
+     * Цена в копейках по текущему курсу. Считается триггером в БД при записи продукта
+     * и при смене курса, поэтому приложение ее только читает.
+     */
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    @Column(name = "price_base_minor", insertable = false, updatable = false)
+    private Long priceBaseMinor;
 
     @DecimalMin(value = "0.01", message = "Количество продукта должна быть больше 0")
     private int count;
@@ -40,4 +51,20 @@ public class Product {
     @NotNull(message = "Категория продукта не может быть пустым")
     @Enumerated(EnumType.STRING)
     private CategoryProduct category;
+
+    /**
+     * Версия строки: отдается клиенту в ETag и сверяется с If-Match при изменении и удалении.
+     */
+    @JsonIgnore
+    @Version
+    private long version;
+
+    public Product(Long id, String name, String description, Money price, int count, CategoryProduct category) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.price = price;
+        this.count = count;
+        this.category = category;
+    }
 }
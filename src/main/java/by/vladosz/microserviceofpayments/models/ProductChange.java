@@ -0,0 +1,11 @@
+package by.vladosz.microserviceofpayments.models;
+
+import java.time.Instant;
+
+/**
+ * Запись журнала изменений каталога. product - состояние продукта после изменения
+ * (id, версия и остаток заполнены), для удаления - null.
+ */
+public record ProductChange(ChangePosition position, ProductChangeType type, Long productId, Long version,
+                            Product product, Instant changedAt) {
+}
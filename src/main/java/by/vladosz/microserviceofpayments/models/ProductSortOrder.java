@@ -0,0 +1,8 @@
+package by.vladosz.microserviceofpayments.models;
+
+public enum ProductSortOrder {
+    NAME_ASC,
+    NAME_DESC,
+    PRICE_ASC,
+    PRICE_DESC
+}
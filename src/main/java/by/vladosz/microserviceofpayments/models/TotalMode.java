@@ -0,0 +1,7 @@
+package by.vladosz.microserviceofpayments.models;
+
+public enum TotalMode {
+    EXACT,
+    NONE,
+    APPROXIMATE
+}
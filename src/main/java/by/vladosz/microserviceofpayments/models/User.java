@@ -1,8 +1,8 @@
 package by.vladosz.microserviceofpayments.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -11,7 +11,6 @@ import java.util.Collection;
 
 @Entity
 @NoArgsConstructor
-@AllArgsConstructor
 @Table(name = "users")
 @Getter
 @Setter
@@ -54,6 +53,22 @@ public class User{
     )
     private Collection<UserRole> roles;
 
+    @JsonIgnore
+    @Version
+    private long version;
+
+    public User(Long id, String userName, String surName, String patronymic, int age, String email, String password,
+                Collection<UserRole> roles) {
+        this.id = id;
+        this.userName = userName;
+        this.surName = surName;
+        this.patronymic = patronymic;
+        this.age = age;
+        this.email = email;
+        this.password = password;
+        this.roles = roles;
+    }
+
 
 
 
@@ -0,0 +1,58 @@
+package by.vladosz.microserviceofpayments.repositories;
+
+import by.vladosz.microserviceofpayments.models.FxRates;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Таблица курсов fx_rates. Нормализованные цены продуктов пересчитывает триггер
+ * на fx_rates, поэтому любое изменение курса, в том числе вручную из SQL,
+ * сразу отражается в products.price_base_minor.
+ */
+@Repository
+@RequiredArgsConstructor
+public class FxRateRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public Map<Currency, BigDecimal> findAll() {
+        Map<Currency, BigDecimal> rates = new HashMap<>();
+        jdbcTemplate.query("select currency, rate from fx_rates", (RowCallbackHandler) resultSet -> {
+            rates.put(Currency.getInstance(resultSet.getString("currency")), resultSet.getBigDecimal("rate"));
+        });
+        return rates;
+    }
+
+    /**
+     * Валюты продуктов, для которых нет курса: у таких продуктов price_base_minor = null,
+     * и они выпадают из сортировки и фильтров по цене.
+     */
+    public List<String> findProductCurrenciesWithoutRate() {
+        return jdbcTemplate.queryForList("select distinct p.currency from products p " +
+                "where p.currency is not null and not exists (select 1 from fx_rates r where r.currency = p.currency) " +
+                "order by p.currency", String.class);
+    }
+
+    /**
+     * Вставляет новые и обновляет изменившиеся курсы. Строки с тем же курсом не трогаются,
+     * чтобы триггер не пересчитывал продукты без необходимости.
+     */
+    public void upsert(FxRates rates) {
+        jdbcTemplate.batchUpdate("insert into fx_rates (currency, rate, minor_rate, updated_at) values (?, ?, ?, now()) " +
+                        "on conflict (currency) do update set rate = excluded.rate, minor_rate = excluded.minor_rate, " +
+                        "updated_at = excluded.updated_at where fx_rates.minor_rate <> excluded.minor_rate",
+                new ArrayList<>(rates.rates().keySet()), rates.rates().size(), (statement, currency) -> {
+                    statement.setString(1, currency.getCurrencyCode());
+                    statement.setBigDecimal(2, rates.rates().get(currency));
+                    statement.setBigDecimal(3, rates.minorRates().get(currency));
+                });
+    }
+}
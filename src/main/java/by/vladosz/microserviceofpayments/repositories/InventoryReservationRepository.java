@@ -0,0 +1,35 @@
+package by.vladosz.microserviceofpayments.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.UUID;
+
+/**
+ * Записанные резервы остатков (V17__inventory_reservations.sql). Освобождение удаляет строку
+ * и возвращает ее количество одним DELETE ... RETURNING, поэтому повторное освобождение ничего не вернет.
+ */
+@Repository
+@RequiredArgsConstructor
+public class InventoryReservationRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public UUID create(Long productId, int quantity) {
+        return jdbcTemplate.queryForObject(
+                "insert into inventory_reservations (product_id, quantity) values (?, ?) returning id",
+                UUID.class, productId, quantity);
+    }
+
+    /**
+     * @return количество удаленного резерва; empty, если резерва нет или он относится к другому продукту
+     */
+    public OptionalInt delete(UUID id, Long productId) {
+        List<Integer> quantity = jdbcTemplate.queryForList(
+                "delete from inventory_reservations where id = ? and product_id = ? returning quantity",
+                Integer.class, id, productId);
+        return quantity.isEmpty() ? OptionalInt.empty() : OptionalInt.of(quantity.get(0));
+    }
+}
@@ -0,0 +1,69 @@
+package by.vladosz.microserviceofpayments.repositories;
+
+import by.vladosz.microserviceofpayments.dto.LedgerBalanceDTO;
+import by.vladosz.microserviceofpayments.models.LedgerEntry;
+import by.vladosz.microserviceofpayments.models.Money;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Журнал платежей на JDBC: пачка записей уходит одним batch-запросом, который драйвер
+ * с reWriteBatchedInserts=true переписывает в многострочный INSERT. Балансы по журналу
+ * ведет триггер (V11__payment_ledger_balances.sql) в той же транзакции.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PaymentLedgerRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Событие, уже записанное для платежа, пропускается (уникальный индекс payment_id, event_type),
+     * поэтому повтор записи после сбоя безопасен.
+     */
+    public void insertAll(List<LedgerEntry> entries) {
+        jdbcTemplate.batchUpdate("insert into payment_ledger (id, payment_id, user_id, event_type, amount_minor, currency, created_at) " +
+                        "values (nextval('payment_ledger_seq'), ?, ?, ?, ?, ?, ?) on conflict do nothing",
+                entries, entries.size(), (statement, entry) -> {
+                    statement.setLong(1, entry.paymentId());
+                    statement.setLong(2, entry.userId());
+                    statement.setString(3, entry.type().name());
+                    statement.setLong(4, entry.amount().minorUnits());
+                    statement.setString(5, entry.amount().currency().getCurrencyCode());
+                    statement.setTimestamp(6, Timestamp.from(entry.createdAt()));
+                });
+    }
+
+    public List<LedgerBalanceDTO> findBalances(Long userId) {
+        return jdbcTemplate.query("select currency, authorized_minor, captured_minor, refunded_minor " +
+                "from payment_ledger_balances where user_id = ? order by currency", (resultSet, rowNum) -> {
+            String currency = resultSet.getString("currency");
+            return new LedgerBalanceDTO(userId, currency,
+                    Money.of(resultSet.getLong("authorized_minor"), currency),
+                    Money.of(resultSet.getLong("captured_minor"), currency),
+                    Money.of(resultSet.getLong("refunded_minor"), currency));
+        }, userId);
+    }
+
+    /**
+     * Пересчитывает балансы с нуля по всему журналу. Должен вызываться внутри транзакции: блокировка
+     * таблицы балансов задерживает параллельные пачки журнала до фиксации пересчета, поэтому каждое
+     * событие учитывается ровно один раз - либо в пересчете, либо триггером поверх него.
+     *
+     * @return число балансов
+     */
+    public int rebuildBalances() {
+        jdbcTemplate.execute("lock table payment_ledger_balances in exclusive mode");
+        jdbcTemplate.update("delete from payment_ledger_balances");
+        return jdbcTemplate.update("insert into payment_ledger_balances " +
+                "(user_id, currency, authorized_minor, captured_minor, refunded_minor) " +
+                "select user_id, currency, " +
+                "sum(case event_type when 'AUTHORIZED' then amount_minor when 'CAPTURED' then -amount_minor else 0 end), " +
+                "sum(case event_type when 'CAPTURED' then amount_minor when 'REFUNDED' then -amount_minor else 0 end), " +
+                "sum(case event_type when 'REFUNDED' then amount_minor else 0 end) " +
+                "from payment_ledger group by user_id, currency");
+    }
+}
@@ -0,0 +1,75 @@
+package by.vladosz.microserviceofpayments.repositories;
+
+import by.vladosz.microserviceofpayments.models.Payment;
+import by.vladosz.microserviceofpayments.models.PaymentStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface PaymentRepository extends JpaRepository<Payment, Long> {
+
+    @EntityGraph(attributePaths = "productIds")
+    Optional<Payment> findByIdempotencyKey(String idempotencyKey);
+
+    @EntityGraph(attributePaths = "productIds")
+    Optional<Payment> findWithItemsById(Long id);
+
+    @Query("select p.id from Payment p where p.status = :status and p.createdAt < :createdBefore order by p.createdAt")
+    List<Long> findIdsByStatusCreatedBefore(@Param("status") PaymentStatus status,
+                                            @Param("createdBefore") Instant createdBefore,
+                                            Pageable pageable);
+
+    @Query("select p.id from Payment p where p.status = :status and p.processingSince < :leasedBefore " +
+            "order by p.processingSince")
+    List<Long> findIdsByStatusLeasedBefore(@Param("status") PaymentStatus status,
+                                           @Param("leasedBefore") Instant leasedBefore,
+                                           Pageable pageable);
+
+    /**
+     * Число позиций в платежах с данным статусом по каждому продукту: [productId, count].
+     */
+    @Query("select i, count(i) from Payment p join p.productIds i where p.status = :status group by i")
+    List<Object[]> countItemsByProduct(@Param("status") PaymentStatus status);
+
+    @Transactional
+    @Modifying
+    @Query("update Payment p set p.status = :to, p.failureReason = :failureReason, p.updatedAt = :updatedAt " +
+            "where p.id = :id and p.status = :from")
+    int transition(@Param("id") Long id,
+                   @Param("from") PaymentStatus from,
+                   @Param("to") PaymentStatus to,
+                   @Param("failureReason") String failureReason,
+                   @Param("updatedAt") Instant updatedAt);
+
+    /**
+     * Переход в PROCESSING с началом аренды платежа воркером.
+     */
+    @Transactional
+    @Modifying
+    @Query("update Payment p set p.status = :to, p.processingSince = :now, p.updatedAt = :now " +
+            "where p.id = :id and p.status = :from")
+    int startProcessing(@Param("id") Long id,
+                        @Param("from") PaymentStatus from,
+                        @Param("to") PaymentStatus to,
+                        @Param("now") Instant now);
+
+    /**
+     * Перехватывает истекшую аренду: из нескольких воркеров, нашедших зависший платеж, ее получает один.
+     */
+    @Transactional
+    @Modifying
+    @Query("update Payment p set p.processingSince = :now, p.updatedAt = :now " +
+            "where p.id = :id and p.status = :status and p.processingSince < :leasedBefore")
+    int renewLease(@Param("id") Long id,
+                   @Param("status") PaymentStatus status,
+                   @Param("leasedBefore") Instant leasedBefore,
+                   @Param("now") Instant now);
+}
@@ -0,0 +1,104 @@
+package by.vladosz.microserviceofpayments.repositories;
+
+import by.vladosz.microserviceofpayments.models.CategoryProduct;
+import by.vladosz.microserviceofpayments.models.ChangePosition;
+import by.vladosz.microserviceofpayments.models.Money;
+import by.vladosz.microserviceofpayments.models.Product;
+import by.vladosz.microserviceofpayments.models.ProductChange;
+import by.vladosz.microserviceofpayments.models.ProductChangeType;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Чтение журнала product_changes, который заполняет триггер на products. Отдаются только строки
+ * завершенных транзакций старше самой старой незавершенной, поэтому чтение по возрастанию позиции
+ * не пропускает события транзакций, зафиксированных позже уже прочитанных.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ProductChangeRepository {
+    private static final String VISIBLE = "tx_id < pg_snapshot_xmin(pg_current_snapshot())";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public List<ProductChange> findAfter(ChangePosition position, int limit) {
+        return jdbcTemplate.query("select id, tx_id::text::bigint as tx_id, product_id, change_type, version, " +
+                        "payload::text as payload, changed_at from product_changes " +
+                        "where (tx_id, id) > (?::text::xid8, ?) and " + VISIBLE + " order by tx_id, id limit ?",
+                changeRowMapper(), position.txId(), position.id(), limit);
+    }
+
+    /**
+     * Позиция последнего события, видимого читателям, или START для пустого журнала.
+     */
+    public ChangePosition lastPosition() {
+        return jdbcTemplate.query("select tx_id::text::bigint as tx_id, id from product_changes where " + VISIBLE +
+                        " order by tx_id desc, id desc limit 1",
+                        (resultSet, rowNum) -> new ChangePosition(resultSet.getLong("tx_id"), resultSet.getLong("id")))
+                .stream()
+                .findFirst()
+                .orElse(ChangePosition.START);
+    }
+
+    /**
+     * Есть ли в журнале событие с этой позицией. Событие пропадает только при очистке по сроку хранения,
+     * поэтому его отсутствие значит, что часть журнала после позиции клиента могла быть удалена.
+     */
+    public boolean exists(ChangePosition position) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "select exists(select 1 from product_changes where id = ? and tx_id = ?::text::xid8)",
+                Boolean.class, position.id(), position.txId()));
+    }
+
+    public int deleteChangedBefore(Instant threshold) {
+        return jdbcTemplate.update("delete from product_changes where changed_at < ?", Timestamp.from(threshold));
+    }
+
+    private RowMapper<ProductChange> changeRowMapper() {
+        return (resultSet, rowNum) -> {
+            Long productId = resultSet.getLong("product_id");
+            long version = resultSet.getLong("version");
+            Long changeVersion = resultSet.wasNull() ? null : version;
+            String payload = resultSet.getString("payload");
+            return new ProductChange(
+                    new ChangePosition(resultSet.getLong("tx_id"), resultSet.getLong("id")),
+                    ProductChangeType.valueOf(resultSet.getString("change_type")),
+                    productId,
+                    changeVersion,
+                    payload == null ? null : toProduct(productId, changeVersion, payload),
+                    resultSet.getTimestamp("changed_at").toInstant());
+        };
+    }
+
+    private Product toProduct(Long productId, Long version, String payload) {
+        JsonNode snapshot;
+        try {
+            snapshot = objectMapper.readTree(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot parse product change payload: " + payload, e);
+        }
+        JsonNode priceMinor = snapshot.path("priceMinor");
+        JsonNode currency = snapshot.path("currency");
+        JsonNode category = snapshot.path("category");
+        Product product = new Product(productId,
+                snapshot.path("name").textValue(),
+                snapshot.path("description").textValue(),
+                priceMinor.isIntegralNumber() && currency.isTextual() ? Money.of(priceMinor.longValue(), currency.textValue()) : null,
+                snapshot.path("count").intValue(),
+                category.isTextual() ? CategoryProduct.valueOf(category.textValue()) : null);
+        if (version != null) {
+            product.setVersion(version);
+        }
+        return product;
+    }
+}
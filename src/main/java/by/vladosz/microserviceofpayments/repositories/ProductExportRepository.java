@@ -0,0 +1,54 @@
+package by.vladosz.microserviceofpayments.repositories;
+
+import by.vladosz.microserviceofpayments.models.CategoryProduct;
+import by.vladosz.microserviceofpayments.models.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Запрос выгрузки собирается из заданных фильтров: условие вида (:x is null or col = :x)
+ * планировщик не может свести к индексному, поэтому незаданный фильтр в SQL не попадает вовсе
+ * и фильтры по категории и цене идут по индексам products_category_price_id_idx и products_price_id_idx.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ProductExportRepository {
+    private static final int FETCH_SIZE = 1000;
+
+    private final EntityManager entityManager;
+
+    public Stream<Product> stream(CategoryProduct category, Long minBasePrice, Long maxBasePrice) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Product> query = builder.createQuery(Product.class);
+        Root<Product> product = query.from(Product.class);
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (category != null) {
+            predicates.add(builder.equal(product.get("category"), category));
+        }
+        if (minBasePrice != null) {
+            predicates.add(builder.greaterThanOrEqualTo(product.get("priceBaseMinor"), minBasePrice));
+        }
+        if (maxBasePrice != null) {
+            predicates.add(builder.lessThanOrEqualTo(product.get("priceBaseMinor"), maxBasePrice));
+        }
+        query.select(product)
+                .where(predicates.toArray(Predicate[]::new))
+                .orderBy(builder.asc(product.get("id")));
+
+        return entityManager.createQuery(query)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, FETCH_SIZE)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+}
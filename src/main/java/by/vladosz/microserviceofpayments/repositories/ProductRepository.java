@@ -1,29 +1,100 @@
 package by.vladosz.microserviceofpayments.repositories;
 
+import by.vladosz.microserviceofpayments.dto.ProductDTO;
 import by.vladosz.microserviceofpayments.models.CategoryProduct;
 import by.vladosz.microserviceofpayments.models.Product;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 
 public interface ProductRepository extends JpaRepository<Product, Long> {
-    Page<Product> findByName(Pageable pageable, String name);
-
-    Page<Product> findByCategory(Pageable pageable, CategoryProduct category);
+    String SELECT_PRODUCT_DTO = "select new by.vladosz.microserviceofpayments.dto.ProductDTO(" +
+            "p.name, p.description, p.price, p.category) from Product p";
 
     Page<Product> findAll(Pageable pageable);
 
-    Page<Product> findAllByOrderByNameAsc(Pageable pageable);
+    Optional<Product> findById(Long id);
+
+    // страницы грузятся из ProductPageCache вне транзакции сервиса: запрос и count(*) идут в своей
+    @Transactional(readOnly = true)
+    @Query(value = SELECT_PRODUCT_DTO, countQuery = "select count(p) from Product p")
+    Page<ProductDTO> findAllAsDTO(Pageable pageable);
 
-    Page<Product> findAllByOrderByNameDesc(Pageable pageable);
+    @Transactional(readOnly = true)
+    @Query(SELECT_PRODUCT_DTO)
+    Slice<ProductDTO> findSliceAsDTO(Pageable pageable);
 
-    Page<Product> findAllByOrderByPriceAsc(Pageable pageable);
+    @Transactional(readOnly = true)
+    @Query(value = SELECT_PRODUCT_DTO + " where p.name = :name",
+            countQuery = "select count(p) from Product p where p.name = :name")
+    Page<ProductDTO> findByNameAsDTO(Pageable pageable, @Param("name") String name);
 
-    Page<Product> findAllByOrderByPriceDesc(Pageable pageable);
+    @Transactional(readOnly = true)
+    @Query(SELECT_PRODUCT_DTO + " where p.name = :name")
+    Slice<ProductDTO> findSliceByNameAsDTO(Pageable pageable, @Param("name") String name);
 
-    Optional<Product> findById(Long id);
+    @Transactional(readOnly = true)
+    @Query(value = SELECT_PRODUCT_DTO + " where p.category = :category",
+            countQuery = "select count(p) from Product p where p.category = :category")
+    Page<ProductDTO> findByCategoryAsDTO(Pageable pageable, @Param("category") CategoryProduct category);
+
+    @Transactional(readOnly = true)
+    @Query(SELECT_PRODUCT_DTO + " where p.category = :category")
+    Slice<ProductDTO> findSliceByCategoryAsDTO(Pageable pageable, @Param("category") CategoryProduct category);
+
+    List<Product> findAllByOrderByNameAscIdAsc(Pageable pageable);
+
+    List<Product> findAllByOrderByNameDescIdDesc(Pageable pageable);
+
+    List<Product> findAllByPriceBaseMinorNotNullOrderByPriceBaseMinorAscIdAsc(Pageable pageable);
+
+    List<Product> findAllByPriceBaseMinorNotNullOrderByPriceBaseMinorDescIdDesc(Pageable pageable);
+
+    @Query("select p from Product p where p.name > :name or (p.name = :name and p.id > :id) " +
+            "order by p.name asc, p.id asc")
+    List<Product> findNextByNameAsc(@Param("name") String name, @Param("id") Long id, Pageable pageable);
+
+    @Query("select p from Product p where p.name < :name or (p.name = :name and p.id < :id) " +
+            "order by p.name desc, p.id desc")
+    List<Product> findNextByNameDesc(@Param("name") String name, @Param("id") Long id, Pageable pageable);
+
+    @Query("select p from Product p where p.priceBaseMinor > :price " +
+            "or (p.priceBaseMinor = :price and p.id > :id) order by p.priceBaseMinor asc, p.id asc")
+    List<Product> findNextByPriceAsc(@Param("price") Long price, @Param("id") Long id, Pageable pageable);
+
+    @Query("select p from Product p where p.priceBaseMinor < :price " +
+            "or (p.priceBaseMinor = :price and p.id < :id) order by p.priceBaseMinor desc, p.id desc")
+    List<Product> findNextByPriceDesc(@Param("price") Long price, @Param("id") Long id, Pageable pageable);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select p from Product p order by p.id")
+    Stream<Product> streamAll();
+
+    @Transactional
+    @Modifying
+    @Query("update Product p set p.count = p.count - :quantity, p.version = p.version + 1 " +
+            "where p.id = :id and p.count >= :quantity")
+    int decrementCount(@Param("id") Long id, @Param("quantity") int quantity);
+
+    @Transactional
+    @Modifying
+    @Query("update Product p set p.count = p.count + :quantity, p.version = p.version + 1 where p.id = :id")
+    int incrementCount(@Param("id") Long id, @Param("quantity") int quantity);
 }
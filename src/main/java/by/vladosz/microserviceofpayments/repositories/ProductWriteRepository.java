@@ -0,0 +1,91 @@
+package by.vladosz.microserviceofpayments.repositories;
+
+import by.vladosz.microserviceofpayments.dto.ProductPatchDTO;
+import by.vladosz.microserviceofpayments.models.CategoryProduct;
+import by.vladosz.microserviceofpayments.models.Money;
+import by.vladosz.microserviceofpayments.models.Product;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Изменение и удаление продукта одним запросом без предварительного чтения строки.
+ * Условие по версии (If-Match) проверяется в том же WHERE, поэтому между проверкой и записью
+ * нет окна для потерянного обновления и не нужна пессимистичная блокировка.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ProductWriteRepository {
+    private static final RowMapper<Product> PRODUCT_ROW_MAPPER = (resultSet, rowNum) -> {
+        String currency = resultSet.getString("currency");
+        long priceMinor = resultSet.getLong("price_minor");
+        Money price = resultSet.wasNull() || currency == null ? null : Money.of(priceMinor, currency);
+        String category = resultSet.getString("category");
+        Product product = new Product(resultSet.getLong("id"), resultSet.getString("name"),
+                resultSet.getString("description"), price, resultSet.getInt("count"),
+                category == null ? null : CategoryProduct.valueOf(category));
+        product.setVersion(resultSet.getLong("version"));
+        return product;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * UPDATE только переданных колонок с увеличением версии.
+     *
+     * @param expectedVersion версия из If-Match или null, если изменение безусловное
+     * @return продукт после изменения; empty, если строки нет или ее версия не совпала
+     */
+    public Optional<Product> patch(Long id, ProductPatchDTO patch, Long expectedVersion) {
+        List<String> assignments = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        if (patch.getName() != null) {
+            assignments.add("name = ?");
+            args.add(patch.getName());
+        }
+        if (patch.getDescription() != null) {
+            assignments.add("description = ?");
+            args.add(patch.getDescription());
+        }
+        if (patch.getPrice() != null) {
+            // price_base_minor пересчитает триггер products_normalize_price
+            assignments.add("price_minor = ?");
+            args.add(patch.getPrice().minorUnits());
+            assignments.add("currency = ?");
+            args.add(patch.getPrice().currency().getCurrencyCode());
+        }
+        if (patch.getCount() != null) {
+            assignments.add("count = ?");
+            args.add(patch.getCount());
+        }
+        if (patch.getCategory() != null) {
+            assignments.add("category = ?");
+            args.add(patch.getCategory().name());
+        }
+        assignments.add("version = version + 1");
+        args.add(id);
+        if (expectedVersion != null) {
+            args.add(expectedVersion);
+        }
+
+        String sql = "update products set " + String.join(", ", assignments) + " where id = ?" +
+                (expectedVersion != null ? " and version = ?" : "") +
+                " returning id, name, description, price_minor, currency, count, category, version";
+        return jdbcTemplate.query(sql, PRODUCT_ROW_MAPPER, args.toArray()).stream().findFirst();
+    }
+
+    /**
+     * @return число удаленных строк: 0, если строки нет или ее версия не совпала
+     */
+    public int delete(Long id, Long expectedVersion) {
+        if (expectedVersion == null) {
+            return jdbcTemplate.update("delete from products where id = ?", id);
+        }
+        return jdbcTemplate.update("delete from products where id = ? and version = ?", id, expectedVersion);
+    }
+}
@@ -0,0 +1,36 @@
+package by.vladosz.microserviceofpayments.repositories;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Оценки количества строк по статистике Postgres вместо точного count(*).
+ */
+@Repository
+@RequiredArgsConstructor
+public class TableStatisticsRepository {
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public long estimateRowCount(String table) {
+        Long reltuples = jdbcTemplate.queryForObject(
+                "select reltuples::bigint from pg_class where oid = to_regclass(?)", Long.class, table);
+        // reltuples = -1, пока по таблице не было ни одного VACUUM/ANALYZE
+        if (reltuples != null && reltuples >= 0) {
+            return reltuples;
+        }
+        return estimateRowCount("select 1 from " + table);
+    }
+
+    public long estimateRowCount(String query, Object... args) {
+        String plan = jdbcTemplate.queryForObject("explain (format json) " + query, String.class, args);
+        try {
+            return objectMapper.readTree(plan).path(0).path("Plan").path("Plan Rows").asLong();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot parse query plan for: " + query, e);
+        }
+    }
+}
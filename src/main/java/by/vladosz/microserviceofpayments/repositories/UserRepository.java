@@ -1,11 +1,36 @@
 package by.vladosz.microserviceofpayments.repositories;
 
+import by.vladosz.microserviceofpayments.dto.IdentifiedUserDTO;
 import by.vladosz.microserviceofpayments.dto.UserDTO;
 import by.vladosz.microserviceofpayments.models.User;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User,Long> {
     Optional<User> findByUserName(String name);
+
+    @Query("select u from User u left join fetch u.roles where u.userName = :userName")
+    Optional<User> findWithRolesByUserName(@Param("userName") String userName);
+
+    @Query(value = "select new by.vladosz.microserviceofpayments.dto.UserDTO(u.userName, u.surName, u.patronymic, u.age) " +
+            "from User u", countQuery = "select count(u) from User u")
+    Page<UserDTO> findAllAsDTO(Pageable pageable);
+
+    @Query("select new by.vladosz.microserviceofpayments.dto.UserDTO(u.userName, u.surName, u.patronymic, u.age) " +
+            "from User u")
+    Slice<UserDTO> findSliceAsDTO(Pageable pageable);
+
+    @Transactional(readOnly = true)
+    @Query("select new by.vladosz.microserviceofpayments.dto.IdentifiedUserDTO(u.id, u.userName, u.surName, " +
+            "u.patronymic, u.age) from User u where u.id in :ids")
+    List<IdentifiedUserDTO> findAllAsDTOByIdIn(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,83 @@
+package by.vladosz.microserviceofpayments.repositories;
+
+import by.vladosz.microserviceofpayments.dto.UserDTO;
+import by.vladosz.microserviceofpayments.dto.UserPatchDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Изменение и удаление пользователя одним запросом без предварительного чтения строки.
+ * Оба запроса возвращают прежнее имя пользователя, по которому сервис сбрасывает UserDetailsCache.
+ * Связи с ролями при удалении убирает каскад внешнего ключа users_roles.
+ */
+@Repository
+@RequiredArgsConstructor
+public class UserWriteRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * UPDATE только переданных колонок с увеличением версии. Прежнее имя читается подзапросом
+     * с for update в том же операторе: RETURNING отдает только новые значения колонок.
+     *
+     * @param expectedVersion версия из If-Match или null, если изменение безусловное
+     * @return пользователь после изменения; empty, если строки нет или ее версия не совпала
+     */
+    public Optional<PatchedUser> patch(Long id, UserPatchDTO patch, Long expectedVersion) {
+        List<String> assignments = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        if (patch.getUserName() != null) {
+            assignments.add("user_name = ?");
+            args.add(patch.getUserName());
+        }
+        if (patch.getSurName() != null) {
+            assignments.add("sur_name = ?");
+            args.add(patch.getSurName());
+        }
+        if (patch.getPatronymic() != null) {
+            assignments.add("patronymic = ?");
+            args.add(patch.getPatronymic());
+        }
+        if (patch.getAge() != null) {
+            assignments.add("age = ?");
+            args.add(patch.getAge());
+        }
+        if (patch.getEmail() != null) {
+            assignments.add("email = ?");
+            args.add(patch.getEmail());
+        }
+        assignments.add("version = u.version + 1");
+        args.add(id);
+        if (expectedVersion != null) {
+            args.add(expectedVersion);
+        }
+
+        String sql = "update users u set " + String.join(", ", assignments) +
+                " from (select id, user_name from users where id = ? for update) old" +
+                " where u.id = old.id" + (expectedVersion != null ? " and u.version = ?" : "") +
+                " returning old.user_name as previous_user_name, u.user_name, u.sur_name, u.patronymic, u.age, u.version";
+        return jdbcTemplate.query(sql, (resultSet, rowNum) -> new PatchedUser(
+                new UserDTO(resultSet.getString("user_name"), resultSet.getString("sur_name"),
+                        resultSet.getString("patronymic"), resultSet.getInt("age")),
+                resultSet.getLong("version"),
+                resultSet.getString("previous_user_name")), args.toArray()).stream().findFirst();
+    }
+
+    /**
+     * @return имя удаленного пользователя; empty, если строки нет или ее версия не совпала
+     */
+    public Optional<String> delete(Long id, Long expectedVersion) {
+        List<String> deleted = expectedVersion == null
+                ? jdbcTemplate.queryForList("delete from users where id = ? returning user_name", String.class, id)
+                : jdbcTemplate.queryForList("delete from users where id = ? and version = ? returning user_name",
+                        String.class, id, expectedVersion);
+        return deleted.stream().findFirst();
+    }
+
+    public record PatchedUser(UserDTO user, long version, String previousUserName) {
+    }
+}
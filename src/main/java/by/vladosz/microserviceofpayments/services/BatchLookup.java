@@ -0,0 +1,71 @@
+package by.vladosz.microserviceofpayments.services;
+
+import by.vladosz.microserviceofpayments.dto.BatchResultDTO;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Общие шаги пакетного чтения по id: проверка запроса, загрузка чанками через IN
+ * и сборка ответа в порядке запроса.
+ */
+final class BatchLookup {
+    static final int MAX_IDS = 5_000;
+    // чанк ограничивает длину IN-списка; с in_clause_parameter_padding число разных планов остается небольшим
+    static final int CHUNK_SIZE = 500;
+
+    private BatchLookup() {
+    }
+
+    static void validate(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Id list is empty");
+        }
+        if (ids.size() > MAX_IDS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Too many ids in one request, max: " + MAX_IDS);
+        }
+        for (Long id : ids) {
+            // не ids.contains(null): неизменяемые списки бросают на нем NullPointerException
+            if (id == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Id list contains null");
+            }
+        }
+    }
+
+    static <T> Map<Long, T> loadInChunks(Collection<Long> ids, Function<List<Long>, List<T>> query,
+                                         Function<T, Long> idOf) {
+        List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        Map<Long, T> found = new HashMap<>(distinct.size() * 2);
+        for (int from = 0; from < distinct.size(); from += CHUNK_SIZE) {
+            List<Long> chunk = distinct.subList(from, Math.min(from + CHUNK_SIZE, distinct.size()));
+            for (T entity : query.apply(chunk)) {
+                found.put(idOf.apply(entity), entity);
+            }
+        }
+        return found;
+    }
+
+    static <T, R> BatchResultDTO<R> toResult(List<Long> ids, Map<Long, T> found, Function<T, R> mapper) {
+        List<R> items = new ArrayList<>(ids.size());
+        Set<Long> missing = new LinkedHashSet<>();
+        Map<Long, R> mapped = new HashMap<>(found.size() * 2);
+        for (Long id : ids) {
+            T entity = found.get(id);
+            if (entity == null) {
+                items.add(null);
+                missing.add(id);
+            } else {
+                items.add(mapped.computeIfAbsent(id, key -> mapper.apply(entity)));
+            }
+        }
+        return new BatchResultDTO<>(items, new ArrayList<>(missing));
+    }
+}
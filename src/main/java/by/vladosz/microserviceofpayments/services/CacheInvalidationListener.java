@@ -0,0 +1,239 @@
+package by.vladosz.microserviceofpayments.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Держит отдельное соединение с LISTEN cache_invalidation и применяет сообщения триггеров
+ * (V9__cache_invalidation_notify.sql) к локальным кэшам. NOTIFY доставляется только после фиксации
+ * транзакции, поэтому кэш не сбрасывается по изменениям, которые затем откатились.
+ * <p>
+ * Соединение открывается мимо пула: оно занято все время работы сервиса и не должно отнимать
+ * разрешения у {@code LimitingDataSource}. Сообщения, накопившиеся к моменту чтения, объединяются:
+ * пачка изменений одного продукта перечитывается один раз. Пока соединение разорвано, сообщения
+ * теряются, поэтому после переподключения сначала выполняется LISTEN, затем сбрасываются все кэши -
+ * изменения, пришедшие между этими шагами, не пропадут.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "cache.invalidation.enabled", havingValue = "true", matchIfMissing = true)
+public class CacheInvalidationListener {
+    static final String CHANNEL = "cache_invalidation";
+
+    private final CacheInvalidationService cacheInvalidationService;
+    private final JdbcConnectionDetails connectionDetails;
+    private final ObjectMapper objectMapper;
+    private final Duration reconnectDelay;
+    private final Duration validationInterval;
+    private final Counter messages;
+    private final Counter reconnects;
+    private volatile Connection connection;
+    private volatile Thread thread;
+    private volatile boolean running;
+
+    public CacheInvalidationListener(CacheInvalidationService cacheInvalidationService,
+                                     JdbcConnectionDetails connectionDetails,
+                                     ObjectMapper objectMapper,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${cache.invalidation.reconnect-delay:5s}") Duration reconnectDelay,
+                                     @Value("${cache.invalidation.validation-interval:30s}") Duration validationInterval) {
+        this.cacheInvalidationService = cacheInvalidationService;
+        this.connectionDetails = connectionDetails;
+        this.objectMapper = objectMapper;
+        this.reconnectDelay = reconnectDelay;
+        this.validationInterval = validationInterval;
+        this.messages = Counter.builder("cache.invalidation.messages")
+                .description("Cache invalidation notifications received").register(meterRegistry);
+        this.reconnects = Counter.builder("cache.invalidation.reconnects")
+                .description("Reconnects of the cache invalidation listener").register(meterRegistry);
+    }
+
+    // раньше остальных обработчиков ApplicationReadyEvent: индексы строятся уже после LISTEN
+    // и не пропускают изменения, сделанные во время построения
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void start() {
+        running = true;
+        boolean connected;
+        try {
+            connect();
+            connected = true;
+        } catch (SQLException e) {
+            log.warn("Cache invalidation listener could not connect, retrying in {}", reconnectDelay, e);
+            connected = false;
+        }
+        boolean initiallyConnected = connected;
+        thread = Thread.ofPlatform()
+                .name("cache-invalidation-listener")
+                .daemon()
+                .start(() -> run(initiallyConnected));
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        closeConnection();
+        Thread listenerThread = thread;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+    }
+
+    private void run(boolean connected) {
+        while (running) {
+            try {
+                if (!connected) {
+                    connect();
+                    reconnects.increment();
+                    cacheInvalidationService.onListenerReconnected();
+                    connected = true;
+                }
+                listen();
+            } catch (SQLException | RuntimeException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Cache invalidation listener failed, reconnecting in {}", reconnectDelay, e);
+            }
+            connected = false;
+            closeConnection();
+            try {
+                Thread.sleep(reconnectDelay);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void listen() throws SQLException {
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        long validateAt = System.nanoTime() + validationInterval.toNanos();
+        while (running) {
+            // ждет сообщения не дольше интервала проверки; null или пустой массив - сообщений не было
+            PGNotification[] notifications = pgConnection.getNotifications((int) validationInterval.toMillis());
+            if (notifications != null && notifications.length > 0) {
+                List<String> payloads = new ArrayList<>(notifications.length);
+                for (PGNotification notification : notifications) {
+                    payloads.add(notification.getParameter());
+                }
+                apply(payloads);
+                continue;
+            }
+            // полуоткрытое соединение (перезапуск БД, обрыв сети) молчит так же, как пустой канал
+            if (System.nanoTime() - validateAt >= 0) {
+                if (!connection.isValid((int) Math.max(1, validationInterval.toSeconds()))) {
+                    throw new SQLException("Cache invalidation connection is no longer valid");
+                }
+                validateAt = System.nanoTime() + validationInterval.toNanos();
+            }
+        }
+    }
+
+    void apply(List<String> payloads) {
+        Set<Long> productIds = new LinkedHashSet<>();
+        Set<Long> stockProductIds = new LinkedHashSet<>();
+        Set<String> userNames = new LinkedHashSet<>();
+        boolean allProducts = false;
+        boolean allUsers = false;
+        for (String payload : payloads) {
+            messages.increment();
+            JsonNode message;
+            try {
+                message = objectMapper.readTree(payload);
+            } catch (IOException e) {
+                log.warn("Skipping malformed cache invalidation message: {}", payload);
+                continue;
+            }
+            boolean all = message.path("all").asBoolean(false);
+            switch (message.path("type").asText()) {
+                case "products" -> {
+                    allProducts |= all;
+                    message.path("ids").forEach(id -> productIds.add(id.asLong()));
+                }
+                case "product-stock" -> message.path("ids").forEach(id -> stockProductIds.add(id.asLong()));
+                case "users" -> {
+                    allUsers |= all;
+                    message.path("names").forEach(name -> userNames.add(name.asText()));
+                }
+                default -> log.warn("Skipping unknown cache invalidation message: {}", payload);
+            }
+        }
+        if (allProducts) {
+            cacheInvalidationService.onAllProductsChanged();
+        } else {
+            cacheInvalidationService.onProductsChanged(productIds);
+            // перечитанные продукты уже сброшены из кэша
+            stockProductIds.removeAll(productIds);
+            cacheInvalidationService.onProductStockChanged(stockProductIds);
+        }
+        if (allUsers) {
+            cacheInvalidationService.onAllUsersChanged();
+        } else {
+            cacheInvalidationService.onUsersChanged(userNames);
+        }
+    }
+
+    private void connect() throws SQLException {
+        Properties properties = new Properties();
+        if (connectionDetails.getUsername() != null) {
+            properties.setProperty("user", connectionDetails.getUsername());
+        }
+        if (connectionDetails.getPassword() != null) {
+            properties.setProperty("password", connectionDetails.getPassword());
+        }
+        properties.setProperty("ApplicationName", "cache-invalidation-listener");
+        // обрыв, который не заметил TCP, обнаружит isValid, а не зависший навсегда сокет
+        properties.setProperty("tcpKeepAlive", "true");
+        Connection newConnection = DriverManager.getConnection(connectionDetails.getJdbcUrl(), properties);
+        try (Statement statement = newConnection.createStatement()) {
+            statement.execute("LISTEN " + CHANNEL);
+        } catch (SQLException e) {
+            newConnection.close();
+            throw e;
+        }
+        connection = newConnection;
+        // stop() мог закрыть предыдущее соединение, пока открывалось это
+        if (!running) {
+            closeConnection();
+        }
+    }
+
+    private void closeConnection() {
+        Connection current = connection;
+        connection = null;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.close();
+        } catch (SQLException e) {
+            log.debug("Failed to close cache invalidation connection", e);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package by.vladosz.microserviceofpayments.services;
+
+import by.vladosz.microserviceofpayments.caches.ProductCache;
+import by.vladosz.microserviceofpayments.caches.ProductPageCache;
+import by.vladosz.microserviceofpayments.caches.ProductSearchIndex;
+import by.vladosz.microserviceofpayments.caches.ProductSuggestIndex;
+import by.vladosz.microserviceofpayments.caches.UserDetailsCache;
+import by.vladosz.microserviceofpayments.models.Product;
+import by.vladosz.microserviceofpayments.repositories.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Применяет к локальным кэшам изменения, сделанные любым экземпляром сервиса или в обход него.
+ * Сообщения приходят от {@link CacheInvalidationListener}, в том числе о собственных записях
+ * этого экземпляра: повторное применение безопасно, потому что состояние перечитывается из БД,
+ * а не берется из сообщения.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CacheInvalidationService {
+    private final ProductRepository productRepository;
+    private final ProductCache productCache;
+    private final ProductPageCache productPageCache;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductSuggestIndex productSuggestIndex;
+    private final ProductFacetService productFacetService;
+    private final ProductSearchService productSearchService;
+    private final ProductChangeFeed productChangeFeed;
+    private final UserDetailsCache userDetailsCache;
+
+    public void onProductsChanged(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        ids.forEach(productCache::evict);
+        Map<Long, Product> products = BatchLookup.loadInChunks(ids, productRepository::findAllById, Product::getId);
+        for (Long id : ids) {
+            Product product = products.get(id);
+            if (product == null) {
+                productSearchIndex.remove(id);
+                productSuggestIndex.remove(id);
+                productFacetService.onProductDeleted(id);
+            } else {
+                productSearchIndex.put(product);
+                productSuggestIndex.put(product);
+                productFacetService.onProductSaved(product);
+            }
+        }
+        productPageCache.onCatalogChanged();
+        // подписчики ленты получают изменение сразу, а не на следующем опросе
+        productChangeFeed.poll();
+    }
+
+    /**
+     * Изменился только остаток: страницы, поиск и фасеты его не содержат, сбрасывается только кэш продукта
+     * (в нем версия для ETag).
+     */
+    public void onProductStockChanged(Collection<Long> ids) {
+        ids.forEach(productCache::evict);
+    }
+
+    public void onAllProductsChanged() {
+        productCache.evictAll();
+        productPageCache.onCatalogChanged();
+        productSearchService.rebuildIndex();
+        productFacetService.reconcile();
+        productChangeFeed.poll();
+    }
+
+    public void onUsersChanged(Collection<String> userNames) {
+        userNames.forEach(userDetailsCache::removeUserFromCache);
+    }
+
+    public void onAllUsersChanged() {
+        userDetailsCache.removeAll();
+    }
+
+    /**
+     * Пока соединение LISTEN было разорвано, сообщения терялись: неизвестно, что изменилось,
+     * поэтому сбрасывается все.
+     */
+    public void onListenerReconnected() {
+        log.info("Cache invalidation listener reconnected, resynchronizing local caches");
+        onAllUsersChanged();
+        onAllProductsChanged();
+    }
+}
@@ -0,0 +1,112 @@
+package by.vladosz.microserviceofpayments.services;
+
+import by.vladosz.microserviceofpayments.caches.ProductPageCache;
+import by.vladosz.microserviceofpayments.models.FxRates;
+import by.vladosz.microserviceofpayments.models.Money;
+import by.vladosz.microserviceofpayments.repositories.FxRateRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Курсы валют для сравнения цен в разных валютах. Источник курсов - таблица fx_rates;
+ * если задан fx.rates-file (строки вида USD=92.50), при обновлении курсы из файла
+ * сначала записываются в таблицу, а триггер пересчитывает нормализованные цены продуктов.
+ * <p>
+ * Читатели получают неизменяемый снимок без блокировок, обновление подменяет его целиком.
+ * Валюты продуктов без курса запоминаются при каждом обновлении и показываются в health fxRates:
+ * такие продукты не попадают в сортировку и фильтры по цене.
+ */
+@Slf4j
+@Service
+public class FxRateService {
+    private final FxRateRepository fxRateRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ProductPageCache productPageCache;
+    private final String ratesFile;
+    private volatile FxRates rates = FxRates.baseOnly();
+    private volatile List<String> missingCurrencies;
+
+    public FxRateService(FxRateRepository fxRateRepository,
+                         TransactionTemplate transactionTemplate,
+                         ProductPageCache productPageCache,
+                         @Value("${fx.rates-file:}") String ratesFile) {
+        this.fxRateRepository = fxRateRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.productPageCache = productPageCache;
+        this.ratesFile = ratesFile;
+    }
+
+    public FxRates current() {
+        return rates;
+    }
+
+    /**
+     * Валюты продуктов без курса по последнему обновлению или null, если обновления еще не было.
+     */
+    public List<String> missingCurrencies() {
+        return missingCurrencies;
+    }
+
+    public Long toBaseMinorUnits(Money money) {
+        return rates.toBaseMinorUnits(money);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${fx.refresh-interval:5m}", initialDelayString = "${fx.refresh-interval:5m}")
+    public synchronized void refresh() {
+        try {
+            if (!ratesFile.isBlank()) {
+                FxRates fromFile = FxRates.of(readRatesFile(Path.of(ratesFile)));
+                transactionTemplate.executeWithoutResult(status -> fxRateRepository.upsert(fromFile));
+            }
+            FxRates loaded = FxRates.of(fxRateRepository.findAll());
+            if (!loaded.equals(rates)) {
+                // нормализованные цены уже пересчитаны триггером, старые страницы отсортированы по старым курсам.
+                // Кэш сбрасывается до смены снимка: иначе новый ETag листинга мог бы уйти со старой страницей
+                productPageCache.onCatalogChanged();
+                rates = loaded;
+                log.info("FX rates updated: {}", loaded.rates());
+            }
+            List<String> missing = fxRateRepository.findProductCurrenciesWithoutRate();
+            if (!missing.isEmpty()) {
+                log.error("No FX rates for product currencies {}, add them to fx_rates or fx.rates-file", missing);
+            }
+            missingCurrencies = missing;
+        } catch (RuntimeException | IOException e) {
+            log.error("Cannot refresh FX rates, keeping the previous snapshot", e);
+        }
+    }
+
+    static Map<Currency, BigDecimal> readRatesFile(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path)) {
+            properties.load(reader);
+        }
+        Map<Currency, BigDecimal> rates = new HashMap<>();
+        for (String code : properties.stringPropertyNames()) {
+            Currency currency = Currency.getInstance(code.trim().toUpperCase());
+            BigDecimal rate = new BigDecimal(properties.getProperty(code).trim());
+            if (currency.equals(FxRates.BASE_CURRENCY) && rate.compareTo(BigDecimal.ONE) != 0) {
+                throw new IllegalArgumentException("Rate of the base currency must be 1: " + rate);
+            }
+            rates.put(currency, rate);
+        }
+        return rates;
+    }
+}
@@ -0,0 +1,32 @@
+package by.vladosz.microserviceofpayments.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Health "fxRates": валюты продуктов без курса показываются в деталях, но статус остается UP.
+ * Продукт в такой валюте может создать любой клиент API, поэтому снимать из-за него готовность
+ * нельзя: это вывело бы из балансировки сразу все экземпляры. Такие продукты лишь выпадают
+ * из сортировки и фильтров по цене, об этом же пишет ошибку в лог FxRateService.
+ * Состояние берется из последнего обновления курсов, запросов к БД проверка не делает.
+ */
+@Component
+@RequiredArgsConstructor
+public class FxRatesHealthIndicator implements HealthIndicator {
+    private final FxRateService fxRateService;
+
+    @Override
+    public Health health() {
+        Health.Builder health = Health.up()
+                .withDetail("currencies", fxRateService.current().rates().keySet());
+        List<String> missing = fxRateService.missingCurrencies();
+        if (missing == null) {
+            return health.withDetail("missingCurrencies", "not checked yet").build();
+        }
+        return health.withDetail("missingCurrencies", missing).build();
+    }
+}
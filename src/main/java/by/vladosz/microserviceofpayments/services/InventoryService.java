@@ -0,0 +1,161 @@
+package by.vladosz.microserviceofpayments.services;
+
+import by.vladosz.microserviceofpayments.caches.ProductCache;
+import by.vladosz.microserviceofpayments.dto.ReservationDTO;
+import by.vladosz.microserviceofpayments.repositories.InventoryReservationRepository;
+import by.vladosz.microserviceofpayments.repositories.ProductRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Резервирование остатков без чтения и блокировки строки: списание выполняется одним
+ * условным UPDATE, поэтому конкурентные покупатели не теряют обновления и не уводят count в минус.
+ * Каждый резерв записывается в inventory_reservations, и освободить можно только его и только один раз.
+ * <p>
+ * При inventory.ledger.allocation-size > 0 для горячих продуктов включается локальный реестр:
+ * со склада в БД заранее списывается блок единиц, резервы обслуживаются из памяти,
+ * а неизрасходованный остаток и освобождения возвращаются в БД периодическим сбросом.
+ * В БД никогда не уходит больше, чем было на складе, поэтому продать лишнее нельзя.
+ * Блок хранится только в памяти: при аварийном завершении процесса (без @PreDestroy) его
+ * неизрасходованные единицы остаются списанными, и остаток продукта нужно поправить вручную.
+ * Потеря ограничена allocation-size на продукт, поэтому режим по умолчанию выключен.
+ */
+@Service
+public class InventoryService {
+    private final ProductRepository productRepository;
+    private final InventoryReservationRepository reservationRepository;
+    private final ProductCache productCache;
+    private final int allocationSize;
+    private final int maxQuantity;
+    private final Map<Long, AtomicLong> allocations = new ConcurrentHashMap<>();
+
+    public InventoryService(ProductRepository productRepository,
+                            InventoryReservationRepository reservationRepository,
+                            ProductCache productCache,
+                            @Value("${inventory.ledger.allocation-size:0}") int allocationSize,
+                            @Value("${inventory.max-quantity:10000}") int maxQuantity) {
+        this.productRepository = productRepository;
+        this.reservationRepository = reservationRepository;
+        this.productCache = productCache;
+        this.allocationSize = allocationSize;
+        this.maxQuantity = maxQuantity;
+    }
+
+    public ReservationDTO reserve(Long productId, int quantity) {
+        checkQuantity(quantity);
+        take(productId, quantity);
+        try {
+            return new ReservationDTO(reservationRepository.create(productId, quantity), productId, quantity);
+        } catch (RuntimeException e) {
+            // резерв не записан, и освободить его будет нельзя: возвращаем списанное сразу
+            giveBack(productId, quantity);
+            throw e;
+        }
+    }
+
+    /**
+     * Возвращает на склад количество записанного резерва.
+     *
+     * @throws ResponseStatusException 404, если резерва нет, он уже освобожден или относится к другому продукту
+     */
+    public void release(Long productId, UUID reservationId) {
+        int quantity = reservationRepository.delete(reservationId, productId).orElseThrow(() ->
+                new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "Reservation " + reservationId + " not found for product: " + productId));
+        giveBack(productId, quantity);
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${inventory.ledger.flush-interval:1s}")
+    public void flush() {
+        allocations.keySet().forEach(this::returnAllocated);
+    }
+
+    private void take(Long productId, int quantity) {
+        if (allocationSize > 0) {
+            if (takeAllocated(productId, quantity)) {
+                return;
+            }
+            if (decrement(productId, Math.addExact(quantity, allocationSize))) {
+                allocations.computeIfAbsent(productId, id -> new AtomicLong()).addAndGet(allocationSize);
+                return;
+            }
+        }
+        if (decrement(productId, quantity)) {
+            return;
+        }
+        // последние единицы могли остаться в локальном блоке: возвращаем его и пробуем еще раз
+        if (allocationSize > 0 && returnAllocated(productId) > 0 && decrement(productId, quantity)) {
+            return;
+        }
+        if (!productRepository.existsById(productId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found with id: " + productId);
+        }
+        throw new ResponseStatusException(HttpStatus.CONFLICT, "Not enough stock for product: " + productId);
+    }
+
+    private void giveBack(Long productId, int quantity) {
+        AtomicLong allocated = allocations.get(productId);
+        if (allocated != null) {
+            allocated.addAndGet(quantity);
+            return;
+        }
+        if (productRepository.incrementCount(productId, quantity) == 0) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found with id: " + productId);
+        }
+        productCache.evict(productId);
+    }
+
+    private boolean takeAllocated(Long productId, int quantity) {
+        AtomicLong allocated = allocations.get(productId);
+        if (allocated == null) {
+            return false;
+        }
+        long current;
+        do {
+            current = allocated.get();
+            if (current < quantity) {
+                return false;
+            }
+        } while (!allocated.compareAndSet(current, current - quantity));
+        return true;
+    }
+
+    private long returnAllocated(Long productId) {
+        AtomicLong allocated = allocations.get(productId);
+        long amount = allocated == null ? 0 : allocated.getAndSet(0);
+        if (amount > 0) {
+            if (productRepository.incrementCount(productId, Math.toIntExact(amount)) == 0) {
+                allocations.remove(productId);
+            }
+            productCache.evict(productId);
+        }
+        return amount;
+    }
+
+    private boolean decrement(Long productId, int quantity) {
+        if (productRepository.decrementCount(productId, quantity) == 0) {
+            return false;
+        }
+        productCache.evict(productId);
+        return true;
+    }
+
+    private void checkQuantity(int quantity) {
+        if (quantity <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Quantity must be positive");
+        }
+        if (quantity > maxQuantity) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Quantity must not exceed " + maxQuantity);
+        }
+    }
+}
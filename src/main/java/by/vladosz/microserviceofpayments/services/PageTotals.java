@@ -0,0 +1,24 @@
+package by.vladosz.microserviceofpayments.services;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Slice;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Приблизительный total для страниц с totalMode=APPROXIMATE: строки читаются как Slice без count(*),
+ * а total берется из оценки планировщика.
+ */
+final class PageTotals {
+
+    private PageTotals() {
+    }
+
+    static <T> Page<T> withEstimatedTotal(Slice<T> slice, LongSupplier estimatedTotal) {
+        // оценка по статистике может отставать от данных: не даем ей обрезать уже найденные строки
+        long seen = slice.getPageable().getOffset() + slice.getNumberOfElements() + (slice.hasNext() ? 1 : 0);
+        return new PageImpl<>(slice.getContent(), slice.getPageable(),
+                Math.max(seen, estimatedTotal.getAsLong()));
+    }
+}
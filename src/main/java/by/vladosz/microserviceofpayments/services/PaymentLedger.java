@@ -0,0 +1,118 @@
+package by.vladosz.microserviceofpayments.services;
+
+import by.vladosz.microserviceofpayments.dto.LedgerBalanceDTO;
+import by.vladosz.microserviceofpayments.models.LedgerEntry;
+import by.vladosz.microserviceofpayments.repositories.PaymentLedgerRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Журнал событий платежей с групповой фиксацией. Вызывающие потоки только ставят запись в очередь
+ * и получают future; единственный поток-писатель забирает все накопившиеся за время предыдущей
+ * записи события и фиксирует их одной транзакцией с многострочным INSERT, то есть одним fsync WAL.
+ * <p>
+ * Балансы пользователей ведет триггер в той же транзакции, что и запись событий, поэтому future
+ * завершается только по результату фиксации, а балансы одинаковы на всех экземплярах сервиса.
+ */
+@Slf4j
+@Service
+public class PaymentLedger {
+    private final PaymentLedgerRepository paymentLedgerRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxBatchSize;
+    private final BlockingQueue<PendingAppend> queue;
+    private volatile boolean running;
+    private Thread writer;
+
+    public PaymentLedger(PaymentLedgerRepository paymentLedgerRepository,
+                         TransactionTemplate transactionTemplate,
+                         @Value("${ledger.max-batch-size:500}") int maxBatchSize,
+                         @Value("${ledger.queue-capacity:10000}") int queueCapacity) {
+        this.paymentLedgerRepository = paymentLedgerRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.maxBatchSize = maxBatchSize;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+    }
+
+    public CompletableFuture<Void> append(LedgerEntry entry) {
+        PendingAppend pending = new PendingAppend(entry, new CompletableFuture<>());
+        if (!running || !queue.offer(pending)) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Ledger queue is full"));
+        }
+        return pending.future();
+    }
+
+    public List<LedgerBalanceDTO> balances(Long userId) {
+        return paymentLedgerRepository.findBalances(userId);
+    }
+
+    /**
+     * Пересчитывает балансы с нуля по всему журналу, если агрегат разошелся с ним
+     * (например, после ручного вмешательства в БД).
+     *
+     * @return число балансов
+     */
+    public int replay() {
+        Integer rebuilt = transactionTemplate.execute(status -> paymentLedgerRepository.rebuildBalances());
+        return rebuilt == null ? 0 : rebuilt;
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writer = Thread.ofPlatform().name("payment-ledger-writer").daemon().start(this::writeLoop);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    private void writeLoop() {
+        List<PendingAppend> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingAppend first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<PendingAppend> batch) {
+        List<LedgerEntry> entries = batch.stream().map(PendingAppend::entry).toList();
+        try {
+            transactionTemplate.executeWithoutResult(status -> paymentLedgerRepository.insertAll(entries));
+        } catch (RuntimeException e) {
+            log.error("Failed to write {} ledger entries", entries.size(), e);
+            batch.forEach(pending -> pending.future().completeExceptionally(e));
+            return;
+        }
+        batch.forEach(pending -> pending.future().complete(null));
+    }
+
+    private record PendingAppend(LedgerEntry entry, CompletableFuture<Void> future) {
+    }
+}
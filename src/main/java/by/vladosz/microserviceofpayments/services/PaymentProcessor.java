@@ -0,0 +1,31 @@
+package by.vladosz.microserviceofpayments.services;
+
+import by.vladosz.microserviceofpayments.models.Payment;
+
+import java.util.Optional;
+
+/**
+ * Авторизация платежа у эквайера. Вызов блокирующий и может повторяться для того же платежа
+ * после сбоя, поэтому реализация должна передавать эквайеру id платежа как ключ идемпотентности.
+ */
+public interface PaymentProcessor {
+
+    AuthorizationResult authorize(Payment payment);
+
+    /**
+     * Результат авторизации этого платежа у эквайера по ключу идемпотентности; пусто, если эквайер
+     * запрос не получал. Нужен, чтобы восстановить платеж после падения воркера без повторной авторизации.
+     */
+    Optional<AuthorizationResult> findAuthorization(Payment payment);
+
+    record AuthorizationResult(boolean approved, String declineReason) {
+
+        public static AuthorizationResult approve() {
+            return new AuthorizationResult(true, null);
+        }
+
+        public static AuthorizationResult decline(String reason) {
+            return new AuthorizationResult(false, reason);
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package by.vladosz.microserviceofpayments.services;
+
+import by.vladosz.microserviceofpayments.caches.ProductSuggestIndex;
+import by.vladosz.microserviceofpayments.dto.PaymentDTO;
+import by.vladosz.microserviceofpayments.dto.PaymentRequestDTO;
+import by.vladosz.microserviceofpayments.mappers.PaymentMapper;
+import by.vladosz.microserviceofpayments.models.LedgerEntry;
+import by.vladosz.microserviceofpayments.models.LedgerEventType;
+import by.vladosz.microserviceofpayments.models.Money;
+import by.vladosz.microserviceofpayments.models.Payment;
+import by.vladosz.microserviceofpayments.models.PaymentStatus;
+import by.vladosz.microserviceofpayments.models.Product;
+import by.vladosz.microserviceofpayments.repositories.PaymentRepository;
+import by.vladosz.microserviceofpayments.repositories.ProductRepository;
+import by.vladosz.microserviceofpayments.repositories.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Прием платежей: запрос сохраняется в статусе PENDING и сразу возвращается клиенту,
+ * авторизация у эквайера идет на ограниченном пуле воркеров. Повтор с тем же Idempotency-Key
+ * возвращает сохраненный платеж и ничего не выполняет заново. Переполненная очередь отвечает 503,
+ * а оставшиеся в PENDING платежи досылаются фоновой задачей.
+ * <p>
+ * Одобрение эквайера сначала фиксируется статусом APPROVED и только потом пишется в журнал: если журнал
+ * недоступен, фоновая задача повторяет только запись в журнал, но не авторизацию.
+ * <p>
+ * Воркер арендует платеж на payments.processing-lease. Если он упал или эквайер не ответил, платеж
+ * остается в PROCESSING; после истечения аренды исход авторизации запрашивается у эквайера
+ * по ключу идемпотентности, и только если эквайер платеж не получал, авторизация выполняется снова.
+ */
+@Slf4j
+@Service
+public class PaymentService {
+    private final PaymentRepository paymentRepository;
+    private final UserRepository userRepository;
+    private final ProductRepository productRepository;
+    private final PaymentMapper paymentMapper;
+    private final PaymentProcessor paymentProcessor;
+    private final PaymentLedger paymentLedger;
+    private final ProductSuggestIndex productSuggestIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService authorizationExecutor;
+    private final Duration resubmitAfter;
+    private final Duration processingLease;
+
+    @Autowired
+    public PaymentService(PaymentRepository paymentRepository,
+                          UserRepository userRepository,
+                          ProductRepository productRepository,
+                          PaymentMapper paymentMapper,
+                          PaymentProcessor paymentProcessor,
+                          PaymentLedger paymentLedger,
+                          ProductSuggestIndex productSuggestIndex,
+                          TransactionTemplate transactionTemplate,
+                          MeterRegistry meterRegistry,
+                          @Value("${payments.workers:16}") int workers,
+                          @Value("${payments.queue-capacity:1000}") int queueCapacity,
+                          @Value("${payments.resubmit-after:5s}") Duration resubmitAfter,
+                          @Value("${payments.processing-lease:1m}") Duration processingLease) {
+        this(paymentRepository, userRepository, productRepository, paymentMapper, paymentProcessor,
+                paymentLedger, productSuggestIndex, transactionTemplate, ExecutorServiceMetrics.monitor(meterRegistry,
+                        new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                                new ArrayBlockingQueue<>(queueCapacity),
+                                new CustomizableThreadFactory("payment-auth-"),
+                                new ThreadPoolExecutor.AbortPolicy()),
+                        "payments.authorization"),
+                resubmitAfter, processingLease);
+    }
+
+    PaymentService(PaymentRepository paymentRepository,
+                   UserRepository userRepository,
+                   ProductRepository productRepository,
+                   PaymentMapper paymentMapper,
+                   PaymentProcessor paymentProcessor,
+                   PaymentLedger paymentLedger,
+                   ProductSuggestIndex productSuggestIndex,
+                   TransactionTemplate transactionTemplate,
+                   ExecutorService authorizationExecutor,
+                   Duration resubmitAfter,
+                   Duration processingLease) {
+        this.paymentRepository = paymentRepository;
+        this.userRepository = userRepository;
+        this.productRepository = productRepository;
+        this.paymentMapper = paymentMapper;
+        this.paymentProcessor = paymentProcessor;
+        this.paymentLedger = paymentLedger;
+        this.productSuggestIndex = productSuggestIndex;
+        this.transactionTemplate = transactionTemplate;
+        this.authorizationExecutor = authorizationExecutor;
+        this.resubmitAfter = resubmitAfter;
+        this.processingLease = processingLease;
+    }
+
+    public PaymentDTO createPayment(String idempotencyKey, PaymentRequestDTO request) {
+        if (idempotencyKey == null || idempotencyKey.isBlank() || idempotencyKey.length() > 255) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Idempotency-Key header is required and must be at most 255 characters");
+        }
+        String requestHash = hash(request);
+        PaymentDTO stored = paymentRepository.findByIdempotencyKey(idempotencyKey)
+                .map(payment -> replay(payment, requestHash))
+                .orElse(null);
+        if (stored != null) {
+            return stored;
+        }
+
+        Payment payment;
+        try {
+            payment = transactionTemplate.execute(status ->
+                    paymentRepository.save(newPayment(idempotencyKey, requestHash, request)));
+        } catch (DataIntegrityViolationException e) {
+            // параллельный запрос с тем же ключом успел сохранить платеж первым
+            return replay(paymentRepository.findByIdempotencyKey(idempotencyKey).orElseThrow(() -> e), requestHash);
+        }
+        submit(payment.getId());
+        return paymentMapper.toPaymentDTO(payment);
+    }
+
+    public PaymentDTO findPayment(Long id) {
+        return paymentRepository.findWithItemsById(id).map(paymentMapper::toPaymentDTO).orElseThrow(() ->
+                new ResponseStatusException(HttpStatus.NOT_FOUND, "Payment not found with id: " + id));
+    }
+
+    @Scheduled(fixedDelayString = "${payments.resubmit-after:5s}")
+    public void resubmitPending() {
+        Instant createdBefore = Instant.now().minus(resubmitAfter);
+        try {
+            for (Long id : paymentRepository.findIdsByStatusCreatedBefore(PaymentStatus.APPROVED, createdBefore,
+                    PageRequest.of(0, 100))) {
+                authorizationExecutor.execute(() -> recordApproval(id));
+            }
+            for (Long id : paymentRepository.findIdsByStatusCreatedBefore(PaymentStatus.PENDING, createdBefore,
+                    PageRequest.of(0, 100))) {
+                authorizationExecutor.execute(() -> authorize(id));
+            }
+        } catch (RejectedExecutionException e) {
+            // очередь занята новыми платежами, остальное дошлем следующим проходом
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${payments.resubmit-after:5s}")
+    public void recoverStale() {
+        Instant leasedBefore = Instant.now().minus(processingLease);
+        try {
+            for (Long id : paymentRepository.findIdsByStatusLeasedBefore(PaymentStatus.PROCESSING, leasedBefore,
+                    PageRequest.of(0, 100))) {
+                authorizationExecutor.execute(() -> recover(id, leasedBefore));
+            }
+        } catch (RejectedExecutionException e) {
+            // остальные зависшие платежи найдет следующий проход
+        }
+    }
+
+    void authorize(Long id) {
+        // переход PENDING -> PROCESSING выполняет только один воркер, даже если платеж попал в очередь дважды
+        if (paymentRepository.startProcessing(id, PaymentStatus.PENDING, PaymentStatus.PROCESSING, Instant.now()) == 0) {
+            return;
+        }
+        Payment payment = paymentRepository.findWithItemsById(id).orElseThrow();
+        PaymentProcessor.AuthorizationResult result;
+        try {
+            result = paymentProcessor.authorize(payment);
+        } catch (RuntimeException e) {
+            // эквайер мог успеть авторизовать платеж: исход проверит recoverStale после истечения аренды
+            log.warn("Authorization of payment {} failed, its status will be checked after the lease expires", id, e);
+            return;
+        }
+        complete(payment, result);
+    }
+
+    void recover(Long id, Instant leasedBefore) {
+        if (paymentRepository.renewLease(id, PaymentStatus.PROCESSING, leasedBefore, Instant.now()) == 0) {
+            return;
+        }
+        Payment payment = paymentRepository.findWithItemsById(id).orElseThrow();
+        PaymentProcessor.AuthorizationResult result;
+        try {
+            result = paymentProcessor.findAuthorization(payment)
+                    .orElseGet(() -> paymentProcessor.authorize(payment));
+        } catch (RuntimeException e) {
+            log.warn("Recovery of payment {} failed, it will be retried after the lease expires", id, e);
+            return;
+        }
+        log.info("Recovered payment {} stuck in PROCESSING, approved: {}", id, result.approved());
+        complete(payment, result);
+    }
+
+    private void complete(Payment payment, PaymentProcessor.AuthorizationResult result) {
+        Long id = payment.getId();
+        if (!result.approved()) {
+            paymentRepository.transition(id, PaymentStatus.PROCESSING, PaymentStatus.DECLINED,
+                    result.declineReason(), Instant.now());
+            return;
+        }
+        // одобрение фиксируется до записи в журнал: после этого платеж больше не уходит эквайеру.
+        // 0 - аренду перехватило восстановление, и платеж уже завершил другой воркер
+        if (paymentRepository.transition(id, PaymentStatus.PROCESSING, PaymentStatus.APPROVED, null, Instant.now()) == 1) {
+            recordApproval(payment);
+        }
+    }
+
+    void recordApproval(Long id) {
+        paymentRepository.findWithItemsById(id)
+                .filter(payment -> payment.getStatus() == PaymentStatus.APPROVED)
+                .ifPresent(this::recordApproval);
+    }
+
+    private void recordApproval(Payment payment) {
+        // запись в журнал идемпотентна, поэтому повтор из фоновой задачи не дублирует событие
+        if (appendToLedger(payment, LedgerEventType.AUTHORIZED)) {
+            paymentRepository.transition(payment.getId(), PaymentStatus.APPROVED, PaymentStatus.AUTHORIZED, null,
+                    Instant.now());
+        }
+    }
+
+    public PaymentDTO capture(Long id) {
+        return settle(id, PaymentStatus.AUTHORIZED, PaymentStatus.CAPTURED, LedgerEventType.CAPTURED, 1);
+    }
+
+    public PaymentDTO refund(Long id) {
+        return settle(id, PaymentStatus.CAPTURED, PaymentStatus.REFUNDED, LedgerEventType.REFUNDED, -1);
+    }
+
+    private PaymentDTO settle(Long id, PaymentStatus from, PaymentStatus to, LedgerEventType eventType,
+                              long salesDelta) {
+        Payment payment = paymentRepository.findWithItemsById(id).orElseThrow(() ->
+                new ResponseStatusException(HttpStatus.NOT_FOUND, "Payment not found with id: " + id));
+        if (payment.getStatus() != from) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Payment " + id + " is not " + from);
+        }
+        // событие пишется до смены статуса, как и при авторизации: запись идемпотентна, поэтому если
+        // сервис упал между ними, повтор запроса допишет только статус
+        if (!appendToLedger(payment, eventType)) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Payment ledger is unavailable");
+        }
+        if (paymentRepository.transition(id, from, to, null, Instant.now()) == 0) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Payment " + id + " is not " + from);
+        }
+        payment.setStatus(to);
+        // популярность в подсказках - число оплаченных покупок, возврат ее уменьшает
+        productSuggestIndex.addSales(payment.getProductIds(), salesDelta);
+        return paymentMapper.toPaymentDTO(payment);
+    }
+
+    private boolean appendToLedger(Payment payment, LedgerEventType eventType) {
+        // ждем групповую фиксацию: событие должно быть в журнале до смены статуса платежа
+        try {
+            paymentLedger.append(LedgerEntry.of(payment, eventType)).join();
+            return true;
+        } catch (CompletionException e) {
+            log.warn("Ledger append {} for payment {} failed", eventType, payment.getId(), e.getCause());
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        authorizationExecutor.shutdown();
+    }
+
+    private void submit(Long id) {
+        try {
+            authorizationExecutor.execute(() -> authorize(id));
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Payment queue is full, retry with the same Idempotency-Key");
+        }
+    }
+
+    private PaymentDTO replay(Payment payment, String requestHash) {
+        if (!payment.getRequestHash().equals(requestHash)) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                    "Idempotency-Key was already used for a different payment request");
+        }
+        return paymentMapper.toPaymentDTO(payment);
+    }
+
+    private Payment newPayment(String idempotencyKey, String requestHash, PaymentRequestDTO request) {
+        if (!userRepository.existsById(request.getUserId())) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found with id: " + request.getUserId());
+        }
+        Map<Long, Product> products = productRepository.findAllById(request.getProductIds()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        Money.Sum amount = new Money.Sum();
+        for (Long productId : request.getProductIds()) {
+            Product product = products.get(productId);
+            if (product == null) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found with id: " + productId);
+            }
+            if (product.getPrice() == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Product has no price: " + productId);
+            }
+            try {
+                amount.add(product.getPrice());
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Products must share one currency");
+            }
+        }
+
+        Instant now = Instant.now();
+        return new Payment(null, idempotencyKey, requestHash, request.getUserId(),
+                new ArrayList<>(request.getProductIds()), amount.toMoney(), PaymentStatus.PENDING, null, now, now);
+    }
+
+    private static String hash(PaymentRequestDTO request) {
+        String canonical = request.getUserId() + ":" + request.getProductIds().stream()
+                .map(String::valueOf)
+                .collect(Collectors.joining(","));
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package by.vladosz.microserviceofpayments.services;
+
+import by.vladosz.microserviceofpayments.caches.ProductChangeBuffer;
+import by.vladosz.microserviceofpayments.caches.ProductPageCache;
+import by.vladosz.microserviceofpayments.dto.ProductChangeDTO;
+import by.vladosz.microserviceofpayments.dto.ProductChangePageDTO;
+import by.vladosz.microserviceofpayments.mappers.ProductMapper;
+import by.vladosz.microserviceofpayments.models.ChangePosition;
+import by.vladosz.microserviceofpayments.models.Product;
+import by.vladosz.microserviceofpayments.models.ProductChange;
+import by.vladosz.microserviceofpayments.repositories.ProductChangeRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Лента изменений каталога для сервисов, которые держат его копию: вместо повторного обхода
+ * страниц /api/products они читают только изменения после своей позиции - порциями или потоком SSE.
+ * <p>
+ * События пишет триггер на products в транзакции изменения (transactional outbox). Новые события
+ * читает из БД один опрос раз в changes.poll-interval и складывает в {@link ProductChangeBuffer},
+ * подписчики на хвосте получают их из памяти. Журнал старше changes.retention удаляется:
+ * клиент с удаленной позицией получает 410 и должен заново загрузить каталог.
+ */
+@Slf4j
+@Service
+public class ProductChangeFeed {
+    static final int MAX_PAGE_SIZE = 1000;
+    private static final int POLL_BATCH_SIZE = 1000;
+    private static final int STREAM_BATCH_SIZE = 500;
+
+    private final ProductChangeRepository productChangeRepository;
+    private final ProductChangeBuffer productChangeBuffer;
+    private final ProductPageCache productPageCache;
+    private final ProductMapper productMapper;
+    private final ObjectMapper objectMapper;
+    private final Duration retention;
+    private final Duration heartbeatInterval;
+
+    public ProductChangeFeed(ProductChangeRepository productChangeRepository,
+                             ProductChangeBuffer productChangeBuffer,
+                             ProductPageCache productPageCache,
+                             ProductMapper productMapper,
+                             ObjectMapper objectMapper,
+                             @Value("${changes.retention:7d}") Duration retention,
+                             @Value("${changes.heartbeat-interval:15s}") Duration heartbeatInterval) {
+        this.productChangeRepository = productChangeRepository;
+        this.productChangeBuffer = productChangeBuffer;
+        this.productPageCache = productPageCache;
+        this.productMapper = productMapper;
+        this.objectMapper = objectMapper;
+        this.retention = retention;
+        this.heartbeatInterval = heartbeatInterval;
+    }
+
+    // вызывается и по расписанию, и слушателем сообщений об изменениях: опрос идет в один поток
+    @Scheduled(fixedDelayString = "${changes.poll-interval:500ms}")
+    public synchronized void poll() {
+        try {
+            ChangePosition head = head();
+            List<ProductChange> batch;
+            do {
+                batch = productChangeRepository.findAfter(head, POLL_BATCH_SIZE);
+                if (!batch.isEmpty()) {
+                    // позиция входит в ETag листинга: кэш страниц сбрасывается до ее сдвига, иначе новый ETag
+                    // мог бы уйти со страницей, закэшированной до изменения
+                    productPageCache.onCatalogChanged();
+                }
+                productChangeBuffer.append(batch);
+                head = productChangeBuffer.head();
+            } while (batch.size() == POLL_BATCH_SIZE);
+        } catch (RuntimeException e) {
+            log.warn("Cannot poll product changes, subscribers will get them on the next poll", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${changes.prune-interval:1h}")
+    public void prune() {
+        int deleted = productChangeRepository.deleteChangedBefore(Instant.now().minus(retention));
+        if (deleted > 0) {
+            log.info("Pruned {} product changes older than {}", deleted, retention);
+        }
+    }
+
+    /**
+     * Позиция последнего прочитанного события: с нее начинает клиент, который только что загрузил каталог.
+     */
+    public ChangePosition head() {
+        synchronized (productChangeBuffer) {
+            if (!productChangeBuffer.isInitialized()) {
+                productChangeBuffer.reset(productChangeRepository.lastPosition());
+            }
+            return productChangeBuffer.head();
+        }
+    }
+
+    /**
+     * Разбирает позицию клиента до начала ответа, чтобы ошибка вернулась статусом, а не оборвала поток.
+     *
+     * @throws ResponseStatusException 400 для некорректной позиции, 410, если журнал после нее уже удален
+     */
+    public ChangePosition resolve(String position) {
+        ChangePosition parsed;
+        try {
+            parsed = ChangePosition.parse(position);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        if (parsed.equals(ChangePosition.START) || productChangeBuffer.covers(parsed)
+                || productChangeRepository.exists(parsed)) {
+            return parsed;
+        }
+        throw new ResponseStatusException(HttpStatus.GONE,
+                "Changes after " + position + " are no longer retained, reload the catalog and continue from the current position");
+    }
+
+    public ProductChangePageDTO page(String after, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (after == null) {
+            return new ProductChangePageDTO(List.of(), head().toString(), false);
+        }
+        ChangePosition position = resolve(after);
+        List<ProductChange> changes = read(position, limit + 1);
+        boolean hasMore = changes.size() > limit;
+        List<ProductChange> content = hasMore ? changes.subList(0, limit) : changes;
+        String next = content.isEmpty() ? position.toString() : content.getLast().position().toString();
+        return new ProductChangePageDTO(content.stream().map(this::toDTO).toList(), next, hasMore);
+    }
+
+    /**
+     * Пишет события после position в формате text/event-stream, пока клиент не отключится или не истечет
+     * таймаут async-запроса. id события - его позиция: при переподключении EventSource сам передаст ее
+     * в Last-Event-ID. Пока изменений нет, раз в changes.heartbeat-interval уходит комментарий,
+     * по которому обнаруживается отключившийся клиент.
+     */
+    public void stream(ChangePosition position, OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        writer.write("retry: 1000\n\n");
+        writer.flush();
+        ChangePosition current = position;
+        try {
+            while (true) {
+                List<ProductChange> changes = read(current, STREAM_BATCH_SIZE);
+                if (changes.isEmpty()) {
+                    if (!productChangeBuffer.awaitAfter(current, heartbeatInterval)) {
+                        writer.write(": heartbeat\n\n");
+                        writer.flush();
+                    }
+                    continue;
+                }
+                for (ProductChange change : changes) {
+                    writer.write("id: ");
+                    writer.write(change.position().toString());
+                    writer.write("\ndata: ");
+                    writer.write(objectMapper.writeValueAsString(toDTO(change)));
+                    writer.write("\n\n");
+                }
+                writer.flush();
+                current = changes.getLast().position();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<ProductChange> read(ChangePosition position, int limit) {
+        List<ProductChange> buffered = productChangeBuffer.after(position, limit);
+        return buffered != null ? buffered : productChangeRepository.findAfter(position, limit);
+    }
+
+    private ProductChangeDTO toDTO(ProductChange change) {
+        Product product = change.product();
+        return new ProductChangeDTO(change.position().toString(), change.type(), change.productId(), change.version(),
+                product == null ? null : productMapper.toProductDTO(product),
+                product == null ? null : product.getCount(),
+                change.changedAt());
+    }
+}
@@ -0,0 +1,48 @@
+package by.vladosz.microserviceofpayments.services;
+
+import by.vladosz.microserviceofpayments.models.Product;
+import by.vladosz.microserviceofpayments.models.ProductSortOrder;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Позиция в keyset-пагинации: последний отданный (sortKey, id) и порядок сортировки.
+ * Клиенту передается как непрозрачная base64url-строка.
+ */
+public record ProductCursor(ProductSortOrder sortOrder, Long id, String sortKey) {
+
+    public static ProductCursor after(ProductSortOrder sortOrder, Product product) {
+        String sortKey = switch (sortOrder) {
+            case NAME_ASC, NAME_DESC -> product.getName();
+            case PRICE_ASC, PRICE_DESC -> String.valueOf(product.getPriceBaseMinor());
+        };
+        return new ProductCursor(sortOrder, product.getId(), sortKey);
+    }
+
+    public static ProductCursor decode(String token, ProductSortOrder expectedSortOrder) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = decoded.split("\\|", 3);
+            ProductSortOrder sortOrder = ProductSortOrder.valueOf(parts[0]);
+            if (sortOrder != expectedSortOrder) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Cursor was issued for sort order " + sortOrder);
+            }
+            return new ProductCursor(sortOrder, Long.valueOf(parts[1]), parts[2]);
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor: " + token);
+        }
+    }
+
+    public String encode() {
+        String raw = sortOrder.name() + "|" + id + "|" + sortKey;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public Long priceKey() {
+        return Long.valueOf(sortKey);
+    }
+}
@@ -0,0 +1,143 @@
+package by.vladosz.microserviceofpayments.services;
+
+import by.vladosz.microserviceofpayments.models.CategoryProduct;
+import by.vladosz.microserviceofpayments.models.ExportFormat;
+import by.vladosz.microserviceofpayments.models.FxRates;
+import by.vladosz.microserviceofpayments.models.Money;
+import by.vladosz.microserviceofpayments.models.Product;
+import by.vladosz.microserviceofpayments.repositories.ProductExportRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Currency;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Выгрузка каталога через серверный курсор Postgres: строки читаются порциями fetch size
+ * и сразу пишутся в ответ, каждая сущность отсоединяется от persistence context после записи.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProductExportService {
+    private static final String CSV_HEADER = "id,name,description,price,currency,count,category";
+
+    private final ProductExportRepository productExportRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final FxRateService fxRateService;
+
+    @Transactional(readOnly = true)
+    public void export(ExportFormat format, CategoryProduct category, Long minBasePrice, Long maxBasePrice,
+                       OutputStream outputStream) throws IOException {
+        try (Stream<Product> products = productExportRepository.stream(category, minBasePrice, maxBasePrice)) {
+            switch (format) {
+                case NDJSON -> writeNdjson(products.iterator(), outputStream);
+                case CSV -> writeCsv(products.iterator(), outputStream);
+            }
+        }
+    }
+
+    private void writeNdjson(Iterator<Product> products, OutputStream outputStream) throws IOException {
+        try (SequenceWriter writer = objectMapper.writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .withRootValueSeparator("\n")
+                .writeValues(outputStream)) {
+            while (products.hasNext()) {
+                Product product = products.next();
+                writer.write(product);
+                entityManager.detach(product);
+                if (!products.hasNext()) {
+                    outputStream.write('\n');
+                }
+            }
+        }
+        outputStream.flush();
+    }
+
+    private void writeCsv(Iterator<Product> products, OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        while (products.hasNext()) {
+            Product product = products.next();
+            writer.write(String.valueOf(product.getId()));
+            writer.write(',');
+            writer.write(csv(product.getName()));
+            writer.write(',');
+            writer.write(csv(product.getDescription()));
+            writer.write(',');
+            Money price = product.getPrice();
+            writer.write(price == null ? "" : price.toPlainString());
+            writer.write(',');
+            writer.write(price == null ? "" : price.currency().getCurrencyCode());
+            writer.write(',');
+            writer.write(String.valueOf(product.getCount()));
+            writer.write(',');
+            writer.write(product.getCategory() == null ? "" : product.getCategory().name());
+            writer.write('\n');
+            entityManager.detach(product);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Валюта, в которой заданы границы цены; без явной валюты границы считаются в рублях.
+     * Разбор выполняется до начала выгрузки, чтобы ошибка в параметрах вернулась клиенту
+     * как 400, а не оборвала уже начатый поток.
+     */
+    public static Currency currency(String currencyCode) {
+        if (currencyCode == null) {
+            return FxRates.BASE_CURRENCY;
+        }
+        try {
+            return Currency.getInstance(currencyCode.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown currency: " + currencyCode);
+        }
+    }
+
+    /**
+     * Граница цены в копейках по текущему курсу: фильтр идет по нормализованной цене,
+     * поэтому в диапазон попадают продукты во всех валютах.
+     */
+    public Long toBasePrice(String amount, Currency currency) {
+        if (amount == null) {
+            return null;
+        }
+        Money price;
+        try {
+            price = Money.parse(amount, currency);
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid price: " + amount);
+        }
+        Long basePrice = fxRateService.toBaseMinorUnits(price);
+        if (basePrice == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No FX rate for currency: " + currency);
+        }
+        return basePrice;
+    }
+
+    static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,67 @@
+package by.vladosz.microserviceofpayments.services;
+
+import by.vladosz.microserviceofpayments.caches.ProductFacets;
+import by.vladosz.microserviceofpayments.dto.CategoryFacetDTO;
+import by.vladosz.microserviceofpayments.models.Product;
+import by.vladosz.microserviceofpayments.repositories.ProductRepository;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Фасеты каталога по категориям. Запись каталога обновляет агрегаты по одному продукту,
+ * раз в facets.reconcile-interval они перестраиваются по таблице: так подхватываются
+ * новые курсы валют и изменения, сделанные в обход сервиса.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProductFacetService {
+    private final ProductFacets productFacets;
+    private final ProductRepository productRepository;
+    private final FxRateService fxRateService;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private volatile boolean loaded;
+
+    public List<CategoryFacetDTO> facets() {
+        return productFacets.facets();
+    }
+
+    public void onProductSaved(Product product) {
+        // price_base_minor считает триггер и в сохраненной сущности его нет, пересчитываем по тем же курсам
+        Long basePrice = product.getPrice() == null ? null : fxRateService.toBaseMinorUnits(product.getPrice());
+        productFacets.put(product.getId(), product.getCategory(), basePrice);
+    }
+
+    public void onProductDeleted(Long id) {
+        productFacets.remove(id);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${facets.reconcile-interval:10m}", initialDelayString = "${facets.reconcile-interval:10m}")
+    public void reconcile() {
+        boolean drifted = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            try (Stream<Product> products = productRepository.streamAll()) {
+                return productFacets.rebuild(products
+                        .peek(entityManager::detach)
+                        .map(product -> new ProductFacets.Row(product.getId(), product.getCategory(),
+                                product.getPriceBaseMinor()))
+                        .iterator());
+            }
+        }));
+        // при первой загрузке агрегаты пустые, расхождение ожидаемо
+        if (drifted && loaded) {
+            log.info("Product facets reconciled with the database, incremental aggregates had drifted");
+        }
+        loaded = true;
+    }
+}
@@ -0,0 +1,155 @@
+package by.vladosz.microserviceofpayments.services;
+
+import by.vladosz.microserviceofpayments.caches.ProductCache;
+import by.vladosz.microserviceofpayments.caches.ProductPageCache;
+import by.vladosz.microserviceofpayments.caches.ProductSearchIndex;
+import by.vladosz.microserviceofpayments.caches.ProductSuggestIndex;
+import by.vladosz.microserviceofpayments.dto.BulkImportResultDTO;
+import by.vladosz.microserviceofpayments.dto.BulkItemErrorDTO;
+import by.vladosz.microserviceofpayments.mappers.ProductMapper;
+import by.vladosz.microserviceofpayments.models.Product;
+import by.vladosz.microserviceofpayments.repositories.ProductRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Пакетная загрузка каталога: одна проверка валидации на весь запрос, затем запись чанками
+ * в отдельных транзакциях с JDBC batching. Ошибка чанка переигрывается поштучно,
+ * чтобы одна плохая строка не отменяла весь импорт.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProductImportService {
+    public static final int MAX_ITEMS = 10_000;
+    private static final int CHUNK_SIZE = 500;
+
+    private final ProductRepository productRepository;
+    private final ProductMapper productMapper;
+    private final ProductCache productCache;
+    private final ProductPageCache productPageCache;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductSuggestIndex productSuggestIndex;
+    private final ProductFacetService productFacetService;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+
+    public BulkImportResultDTO importProducts(List<Product> products) {
+        if (products == null || products.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Product list is empty");
+        }
+        if (products.size() > MAX_ITEMS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Too many products in one request, max: " + MAX_ITEMS);
+        }
+
+        BulkImportResultDTO result = new BulkImportResultDTO();
+        result.setReceived(products.size());
+
+        List<ImportItem> validItems = new ArrayList<>();
+        for (int i = 0; i < products.size(); i++) {
+            Product product = products.get(i);
+            if (product == null) {
+                result.getErrors().add(new BulkItemErrorDTO(i, List.of("Product is null")));
+                continue;
+            }
+            List<String> violations = validator.validate(product).stream()
+                    .map(ConstraintViolation::getMessage)
+                    .toList();
+            if (violations.isEmpty()) {
+                validItems.add(new ImportItem(i, product.getId(), product));
+            } else {
+                result.getErrors().add(new BulkItemErrorDTO(i, violations));
+            }
+        }
+
+        for (int from = 0; from < validItems.size(); from += CHUNK_SIZE) {
+            List<ImportItem> chunk = validItems.subList(from, Math.min(from + CHUNK_SIZE, validItems.size()));
+            try {
+                apply(result, transactionTemplate.execute(status -> writeChunk(chunk)));
+            } catch (DataAccessException | PersistenceException e) {
+                for (ImportItem item : chunk) {
+                    try {
+                        apply(result, transactionTemplate.execute(status -> writeChunk(List.of(item))));
+                    } catch (DataAccessException | PersistenceException itemException) {
+                        result.getErrors().add(new BulkItemErrorDTO(item.index(),
+                                List.of(NestedExceptionUtils.getMostSpecificCause(itemException).getMessage())));
+                    }
+                }
+            }
+        }
+
+        result.getErrors().sort((a, b) -> Integer.compare(a.getIndex(), b.getIndex()));
+        if (result.getCreated() + result.getUpdated() > 0) {
+            productPageCache.onCatalogChanged();
+        }
+        return result;
+    }
+
+    private ChunkResult writeChunk(List<ImportItem> chunk) {
+        List<Long> ids = chunk.stream()
+                .map(ImportItem::requestedId)
+                .filter(Objects::nonNull)
+                .toList();
+        Map<Long, Product> existing = productRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        List<Product> toSave = new ArrayList<>(chunk.size());
+        List<Long> updatedIds = new ArrayList<>();
+        List<BulkItemErrorDTO> errors = new ArrayList<>();
+        int created = 0;
+        for (ImportItem item : chunk) {
+            Long id = item.requestedId();
+            if (id == null) {
+                // id мог остаться от откатившейся попытки записи чанка
+                item.product().setId(null);
+                toSave.add(item.product());
+                created++;
+            } else if (existing.containsKey(id)) {
+                Product current = existing.get(id);
+                productMapper.updateFromProductDTO(item.product(), current);
+                toSave.add(current);
+                updatedIds.add(id);
+            } else {
+                errors.add(new BulkItemErrorDTO(item.index(), List.of("Product not found with id: " + id)));
+            }
+        }
+
+        productRepository.saveAll(toSave);
+        entityManager.flush();
+        entityManager.clear();
+        return new ChunkResult(created, updatedIds, toSave, errors);
+    }
+
+    private void apply(BulkImportResultDTO result, ChunkResult chunkResult) {
+        result.setCreated(result.getCreated() + chunkResult.created());
+        result.setUpdated(result.getUpdated() + chunkResult.updatedIds().size());
+        result.getErrors().addAll(chunkResult.errors());
+        chunkResult.updatedIds().forEach(productCache::evict);
+        chunkResult.saved().forEach(productSearchIndex::put);
+        chunkResult.saved().forEach(productSuggestIndex::put);
+        chunkResult.saved().forEach(productFacetService::onProductSaved);
+    }
+
+    private record ImportItem(int index, Long requestedId, Product product) {
+    }
+
+    private record ChunkResult(int created, List<Long> updatedIds, List<Product> saved, List<BulkItemErrorDTO> errors) {
+    }
+}
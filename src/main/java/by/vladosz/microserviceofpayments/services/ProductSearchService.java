@@ -0,0 +1,117 @@
+package by.vladosz.microserviceofpayments.services;
+
+import by.vladosz.microserviceofpayments.caches.ProductSearchIndex;
+import by.vladosz.microserviceofpayments.caches.ProductSuggestIndex;
+import by.vladosz.microserviceofpayments.dto.ProductDTO;
+import by.vladosz.microserviceofpayments.dto.ProductSuggestionDTO;
+import by.vladosz.microserviceofpayments.mappers.ProductMapper;
+import by.vladosz.microserviceofpayments.models.CategoryProduct;
+import by.vladosz.microserviceofpayments.models.PaymentStatus;
+import by.vladosz.microserviceofpayments.models.Product;
+import by.vladosz.microserviceofpayments.repositories.PaymentRepository;
+import by.vladosz.microserviceofpayments.repositories.ProductRepository;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Полнотекстовый поиск по каталогу: индекс в памяти выбирает и ранжирует id,
+ * из БД читается только найденная страница продуктов. Подсказки по началу названия
+ * отдаются целиком из памяти, без обращения к БД.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProductSearchService {
+    static final int MAX_PAGE_SIZE = 100;
+
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductSuggestIndex productSuggestIndex;
+    private final ProductRepository productRepository;
+    private final PaymentRepository paymentRepository;
+    private final ProductMapper productMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+
+    /**
+     * Страница результатов поиска. Транзакции нет: индекс отвечает из памяти, а найденные
+     * продукты читаются одним findAllById, поэтому соединение берется только на этот запрос.
+     *
+     * @throws ResponseStatusException 400 для пустого запроса, отрицательной страницы, размера вне
+     *                                 1..MAX_PAGE_SIZE или смещения, не помещающегося в int
+     */
+    public Page<ProductDTO> search(String query, CategoryProduct category, int pageNumber, int pageSize) {
+        if (query == null || query.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Search query cannot be empty");
+        }
+        if (pageNumber < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page number cannot be negative");
+        }
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        PageRequest pageRequest = PageRequest.of(pageNumber, pageSize);
+        if (pageRequest.getOffset() > Integer.MAX_VALUE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page number is too large");
+        }
+        ProductSearchIndex.SearchHits hits = productSearchIndex.search(query, category,
+                Math.toIntExact(pageRequest.getOffset()), pageSize);
+        if (hits.ids().isEmpty()) {
+            return new PageImpl<>(List.of(), pageRequest, hits.total());
+        }
+
+        Map<Long, Product> products = productRepository.findAllById(hits.ids()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        List<ProductDTO> content = hits.ids().stream()
+                .map(products::get)
+                .filter(Objects::nonNull)
+                .map(productMapper::toProductDTO)
+                .toList();
+        return new PageImpl<>(content, pageRequest, hits.total());
+    }
+
+    public List<ProductSuggestionDTO> suggest(String prefix, int limit) {
+        if (prefix == null || prefix.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Prefix cannot be empty");
+        }
+        return productSuggestIndex.suggest(prefix, Math.min(limit, ProductSuggestIndex.MAX_SUGGESTIONS));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIndex() {
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<Product> products = productRepository.streamAll()) {
+                productSearchIndex.rebuild(products.peek(entityManager::detach).iterator());
+            }
+        });
+        log.info("Product search index built: {} products", productSearchIndex.size());
+
+        Map<Long, Long> popularity = new HashMap<>();
+        for (Object[] row : paymentRepository.countItemsByProduct(PaymentStatus.CAPTURED)) {
+            popularity.put((Long) row[0], (Long) row[1]);
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<Product> products = productRepository.streamAll()) {
+                productSuggestIndex.rebuild(products.peek(entityManager::detach).iterator(), popularity);
+            }
+        });
+        log.info("Product suggest index built: {} products", productSuggestIndex.size());
+    }
+}
@@ -1,31 +1,70 @@
 package by.vladosz.microserviceofpayments.services;
 
+import by.vladosz.microserviceofpayments.caches.ProductCache;
+import by.vladosz.microserviceofpayments.caches.ProductPageCache;
+import by.vladosz.microserviceofpayments.caches.ProductSearchIndex;
+import by.vladosz.microserviceofpayments.caches.ProductSuggestIndex;
+import by.vladosz.microserviceofpayments.dto.BatchResultDTO;
+import by.vladosz.microserviceofpayments.dto.CursorPageDTO;
 import by.vladosz.microserviceofpayments.dto.ProductDTO;
+import by.vladosz.microserviceofpayments.dto.ProductPatchDTO;
+import by.vladosz.microserviceofpayments.dto.Versioned;
 import by.vladosz.microserviceofpayments.mappers.ProductMapper;
 import by.vladosz.microserviceofpayments.models.CategoryProduct;
 import by.vladosz.microserviceofpayments.models.Product;
+import by.vladosz.microserviceofpayments.models.ProductSortOrder;
+import by.vladosz.microserviceofpayments.models.TotalMode;
 import by.vladosz.microserviceofpayments.repositories.ProductRepository;
+import by.vladosz.microserviceofpayments.repositories.ProductWriteRepository;
+import by.vladosz.microserviceofpayments.repositories.TableStatisticsRepository;
 import lombok.AllArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
 @Service
 @AllArgsConstructor
 public class ProductService {
+    static final int MAX_SCROLL_SIZE = 100;
+
     private final ProductRepository productRepository;
+    private final ProductWriteRepository productWriteRepository;
     private final ProductMapper productMapper;
+    private final TableStatisticsRepository tableStatisticsRepository;
+    private final ProductCache productCache;
+    private final ProductPageCache productPageCache;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductSuggestIndex productSuggestIndex;
+    private final ProductFacetService productFacetService;
+    private final ProductChangeFeed productChangeFeed;
+    private final FxRateService fxRateService;
 
-
+    @Transactional(readOnly = true)
     public Page<ProductDTO> findAll(int pageNumber, int pageSize) {
 
-        return productRepository.findAll(PageRequest.of(pageNumber, pageSize,
-                        Sort.by(Sort.Direction.ASC, "name")))
-                .map(productMapper::toProductDTO);
+        return productRepository.findAllAsDTO(PageRequest.of(pageNumber, pageSize,
+                        Sort.by(Sort.Direction.ASC, "name")));
+    }
+
+    public Slice<ProductDTO> findAll(int pageNumber, int pageSize, TotalMode totalMode) {
+        PageRequest pageRequest = PageRequest.of(pageNumber, pageSize, Sort.by(Sort.Direction.ASC, "name"));
+        return productPageCache.get("findAll", null, pageNumber, pageSize, totalMode, () -> switch (totalMode) {
+            case EXACT -> findAll(pageNumber, pageSize);
+            case NONE -> productRepository.findSliceAsDTO(pageRequest);
+            case APPROXIMATE -> PageTotals.withEstimatedTotal(productRepository.findSliceAsDTO(pageRequest),
+                    () -> tableStatisticsRepository.estimateRowCount("products"));
+        });
     }
 
     public ResponseEntity<?> createProduct(Product product) {
@@ -33,70 +72,237 @@ public class ProductService {
             return ResponseEntity.badRequest().body("Product is null");
         }
         Product savedProduct = productRepository.save(product);
+        productCache.put(savedProduct);
+        onProductSaved(savedProduct);
         return ResponseEntity.ok(productMapper.toProductDTO(savedProduct));
     }
 
+    @Transactional(readOnly = true)
     public Page<ProductDTO> getProductName(String name, int pageNumber, int pageSize) {
         if (name == null) {
             throw new IllegalArgumentException("Product name cannot be null");
         }
-        return productRepository.findByName(PageRequest.of(pageNumber, pageSize,
-                        Sort.by(Sort.Direction.ASC, "price")), name)
-                .map(productMapper::toProductDTO);
+        return productRepository.findByNameAsDTO(PageRequest.of(pageNumber, pageSize,
+                        Sort.by(Sort.Direction.ASC, "priceBaseMinor")), name);
+    }
+
+    @Transactional(readOnly = true)
+    public Slice<ProductDTO> getProductName(String name, int pageNumber, int pageSize, TotalMode totalMode) {
+        if (name == null) {
+            throw new IllegalArgumentException("Product name cannot be null");
+        }
+        PageRequest pageRequest = PageRequest.of(pageNumber, pageSize, Sort.by(Sort.Direction.ASC, "priceBaseMinor"));
+        return switch (totalMode) {
+            case EXACT -> getProductName(name, pageNumber, pageSize);
+            case NONE -> productRepository.findSliceByNameAsDTO(pageRequest, name);
+            case APPROXIMATE -> PageTotals.withEstimatedTotal(productRepository.findSliceByNameAsDTO(pageRequest, name),
+                    () -> tableStatisticsRepository.estimateRowCount("select 1 from products where name = ?", name));
+        };
     }
 
+    @Transactional(readOnly = true)
     public Page<ProductDTO> getProductCategory(String category, int pageNumber, int pageSize) {
         if (category == null) {
             throw new IllegalArgumentException("Product category cannot be null");
         }
-        return productRepository.findByCategory(PageRequest.of(pageNumber, pageSize,
-                        Sort.by(Sort.Direction.ASC, "price")), CategoryProduct.valueOf(category))
-                .map(productMapper::toProductDTO);
+        return productRepository.findByCategoryAsDTO(PageRequest.of(pageNumber, pageSize,
+                        Sort.by(Sort.Direction.ASC, "priceBaseMinor")), CategoryProduct.valueOf(category));
     }
 
-    public ResponseEntity<?> updateProduct(Long id, Product product) {
+    public Slice<ProductDTO> getProductCategory(String category, int pageNumber, int pageSize, TotalMode totalMode) {
+        if (category == null) {
+            throw new IllegalArgumentException("Product category cannot be null");
+        }
+        CategoryProduct categoryProduct = CategoryProduct.valueOf(category);
+        PageRequest pageRequest = PageRequest.of(pageNumber, pageSize, Sort.by(Sort.Direction.ASC, "priceBaseMinor"));
+        return productPageCache.get("category", category, pageNumber, pageSize, totalMode, () -> switch (totalMode) {
+            case EXACT -> getProductCategory(category, pageNumber, pageSize);
+            case NONE -> productRepository.findSliceByCategoryAsDTO(pageRequest, categoryProduct);
+            case APPROXIMATE -> PageTotals.withEstimatedTotal(productRepository.findSliceByCategoryAsDTO(pageRequest, categoryProduct),
+                    () -> tableStatisticsRepository.estimateRowCount("select 1 from products where category = ?",
+                            categoryProduct.name()));
+        });
+    }
+
+    /**
+     * Полная замена продукта.
+     *
+     * @param expectedVersion версия из If-Match или null
+     * @throws ResponseStatusException 404, если продукта нет, 412, если его версия не совпала с expectedVersion,
+     *                                 409, если без If-Match продукт изменили параллельно
+     */
+    public ResponseEntity<?> updateProduct(Long id, Product product, Long expectedVersion) {
         Product existingProduct = productRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found with id: " + id));
+        if (expectedVersion != null && !expectedVersion.equals(existingProduct.getVersion())) {
+            throw versionMismatch(id, expectedVersion);
+        }
 
         productMapper.updateFromProductDTO(product, existingProduct);
 
-        Product updatedProduct = productRepository.save(existingProduct);
-        return ResponseEntity.ok().body(productMapper.toProductDTO(updatedProduct));
+        Product updatedProduct;
+        try {
+            updatedProduct = productRepository.save(existingProduct);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            // версия совпала при чтении, но продукт успели изменить до записи
+            if (expectedVersion != null) {
+                throw versionMismatch(id, expectedVersion);
+            }
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "Product " + id + " was modified concurrently, retry the update");
+        }
+        productCache.put(updatedProduct);
+        onProductSaved(updatedProduct);
+        return ResponseEntity.ok().eTag(String.valueOf(updatedProduct.getVersion()))
+                .body(productMapper.toProductDTO(updatedProduct));
     }
 
-    public void deleteProduct(Long id) {
-        productRepository.findById(id).orElseThrow(() -> new RuntimeException("Product not found"));
+    /**
+     * Частичное изменение одним UPDATE только переданных колонок.
+     *
+     * @param expectedVersion версия из If-Match или null
+     * @throws ResponseStatusException 404, если продукта нет, 412, если его версия не совпала с expectedVersion
+     */
+    public Versioned<ProductDTO> patchProduct(Long id, ProductPatchDTO patch, Long expectedVersion) {
+        if (patch == null || patch.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Nothing to update");
+        }
+        Product patchedProduct = productWriteRepository.patch(id, patch, expectedVersion)
+                .orElseThrow(() -> notFoundOrPreconditionFailed(id, expectedVersion));
+        // в результате UPDATE нет price_base_minor, поэтому кэш сбрасывается, а не обновляется
+        productCache.evict(id);
+        onProductSaved(patchedProduct);
+        return new Versioned<>(productMapper.toProductDTO(patchedProduct), patchedProduct.getVersion());
+    }
 
-        productRepository.deleteById(id);
+    /**
+     * Удаление одним DELETE: 404 или 412 определяются по числу удаленных строк,
+     * существование продукта проверяется только при неудаче.
+     */
+    public void deleteProduct(Long id, Long expectedVersion) {
+        if (productWriteRepository.delete(id, expectedVersion) == 0) {
+            throw notFoundOrPreconditionFailed(id, expectedVersion);
+        }
+        productCache.evict(id);
+        productSearchIndex.remove(id);
+        productSuggestIndex.remove(id);
+        productFacetService.onProductDeleted(id);
+        productPageCache.onCatalogChanged();
+    }
+
+    private void onProductSaved(Product product) {
+        productSearchIndex.put(product);
+        productSuggestIndex.put(product);
+        productFacetService.onProductSaved(product);
+        productPageCache.onCatalogChanged();
+    }
+
+    private ResponseStatusException notFoundOrPreconditionFailed(Long id, Long expectedVersion) {
+        if (expectedVersion != null && productRepository.existsById(id)) {
+            return versionMismatch(id, expectedVersion);
+        }
+        return new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found with id: " + id);
+    }
+
+    private ResponseStatusException versionMismatch(Long id, Long expectedVersion) {
+        return new ResponseStatusException(HttpStatus.PRECONDITION_FAILED,
+                "Product " + id + " does not match version " + expectedVersion);
     }
 
     public Page<ProductDTO> sortByName(int pageNumber, int pageSize) {
-        return productRepository.findAllByOrderByNameAsc(PageRequest.of(pageNumber, pageSize,
-                        Sort.by(Sort.Direction.ASC, "name")))
-                .map(productMapper::toProductDTO);
+        return productPageCache.get("sortByName", null, pageNumber, pageSize, TotalMode.EXACT, () ->
+                productRepository.findAllAsDTO(PageRequest.of(pageNumber, pageSize,
+                        Sort.by(Sort.Direction.ASC, "name"))));
     }
 
     public Page<ProductDTO> sortByNameDescending(int pageNumber, int pageSize) {
-        return productRepository.findAllByOrderByNameDesc(PageRequest.of(pageNumber, pageSize,
-                        Sort.by(Sort.Direction.DESC, "name")))
-                .map(productMapper::toProductDTO);
+        return productPageCache.get("sortByNameDescending", null, pageNumber, pageSize, TotalMode.EXACT, () ->
+                productRepository.findAllAsDTO(PageRequest.of(pageNumber, pageSize,
+                        Sort.by(Sort.Direction.DESC, "name"))));
     }
 
     public Page<ProductDTO> sortByPrice(int pageNumber, int pageSize) {
-        return productRepository.findAllByOrderByPriceAsc(PageRequest.of(pageNumber, pageSize,
-                        Sort.by(Sort.Direction.ASC, "price")))
-                .map(productMapper::toProductDTO);
+        return productPageCache.get("sortByPrice", null, pageNumber, pageSize, TotalMode.EXACT, () ->
+                productRepository.findAllAsDTO(PageRequest.of(pageNumber, pageSize,
+                        Sort.by(Sort.Direction.ASC, "priceBaseMinor"))));
     }
 
     public Page<ProductDTO> sortByPriceDescending(int pageNumber, int pageSize) {
-        return productRepository.findAllByOrderByPriceDesc(PageRequest.of(pageNumber, pageSize,
-                        Sort.by(Sort.Direction.DESC, "price")))
-                .map(productMapper::toProductDTO);
+        return productPageCache.get("sortByPriceDescending", null, pageNumber, pageSize, TotalMode.EXACT, () ->
+                productRepository.findAllAsDTO(PageRequest.of(pageNumber, pageSize,
+                        Sort.by(Sort.Direction.DESC, "priceBaseMinor"))));
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPageDTO<ProductDTO> scroll(ProductSortOrder sortOrder, String cursor, int pageSize) {
+        if (sortOrder == null) {
+            throw new IllegalArgumentException("Sort order cannot be null");
+        }
+        if (pageSize < 1 || pageSize > MAX_SCROLL_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page size must be between 1 and " + MAX_SCROLL_SIZE);
+        }
+        // запрашиваем на одну запись больше, чтобы узнать о наличии следующей страницы без count(*)
+        PageRequest limit = PageRequest.of(0, pageSize + 1);
+        List<Product> products = cursor == null || cursor.isBlank()
+                ? findFirst(sortOrder, limit)
+                : findNext(ProductCursor.decode(cursor, sortOrder), limit);
+
+        boolean hasNext = products.size() > pageSize;
+        List<Product> content = hasNext ? products.subList(0, pageSize) : products;
+        String nextCursor = hasNext
+                ? ProductCursor.after(sortOrder, content.get(content.size() - 1)).encode()
+                : null;
+
+        return new CursorPageDTO<>(content.stream().map(productMapper::toProductDTO).toList(),
+                content.size(), hasNext, nextCursor);
+    }
+
+    private List<Product> findFirst(ProductSortOrder sortOrder, PageRequest limit) {
+        return switch (sortOrder) {
+            case NAME_ASC -> productRepository.findAllByOrderByNameAscIdAsc(limit);
+            case NAME_DESC -> productRepository.findAllByOrderByNameDescIdDesc(limit);
+            case PRICE_ASC -> productRepository.findAllByPriceBaseMinorNotNullOrderByPriceBaseMinorAscIdAsc(limit);
+            case PRICE_DESC -> productRepository.findAllByPriceBaseMinorNotNullOrderByPriceBaseMinorDescIdDesc(limit);
+        };
+    }
+
+    private List<Product> findNext(ProductCursor cursor, PageRequest limit) {
+        return switch (cursor.sortOrder()) {
+            case NAME_ASC -> productRepository.findNextByNameAsc(cursor.sortKey(), cursor.id(), limit);
+            case NAME_DESC -> productRepository.findNextByNameDesc(cursor.sortKey(), cursor.id(), limit);
+            case PRICE_ASC -> productRepository.findNextByPriceAsc(cursor.priceKey(), cursor.id(), limit);
+            case PRICE_DESC -> productRepository.findNextByPriceDesc(cursor.priceKey(), cursor.id(), limit);
+        };
+    }
+
+    /**
+     * ETag листинга из значений, общих для всех реплик: позиции ленты изменений и курсов,
+     * по которым отсортированы цены. 304 отдает любая реплика, а не только выдавшая ETag.
+     */
+    public String catalogETag() {
+        return "W/\"" + productChangeFeed.head() + "-" + fxRateService.current().fingerprint() + "\"";
     }
 
     public String getProductName(Long id) {
-        return productRepository.findById(id).orElseThrow(() ->
+        return findProduct(id).orElseThrow(() ->
                 new RuntimeException("Product not found")).getName();
     }
 
+    public Versioned<ProductDTO> getProduct(Long id) {
+        Product product = findProduct(id).orElseThrow(() ->
+                new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found with id: " + id));
+        return new Versioned<>(productMapper.toProductDTO(product), product.getVersion());
+    }
+
+    public Optional<Product> findProduct(Long id) {
+        return productCache.get(id, productRepository::findById);
+    }
+
+    public BatchResultDTO<ProductDTO> findProducts(List<Long> ids) {
+        BatchLookup.validate(ids);
+        Map<Long, Product> products = productCache.getAll(ids, missing ->
+                BatchLookup.loadInChunks(missing, productRepository::findAllById, Product::getId));
+        return BatchLookup.toResult(ids, products, productMapper::toProductDTO);
+    }
+
 }
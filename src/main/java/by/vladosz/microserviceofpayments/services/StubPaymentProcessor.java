@@ -0,0 +1,48 @@
+package by.vladosz.microserviceofpayments.services;
+
+import by.vladosz.microserviceofpayments.models.Money;
+import by.vladosz.microserviceofpayments.models.Payment;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Локальная заглушка эквайера: ждет заданную задержку сети и отклоняет платежи выше лимита.
+ * Результаты запоминаются по id платежа, как эквайер помнит их по ключу идемпотентности.
+ */
+@Service
+public class StubPaymentProcessor implements PaymentProcessor {
+    private final Duration latency;
+    private final long declineAbove;
+    private final Map<Long, AuthorizationResult> results = new ConcurrentHashMap<>();
+
+    public StubPaymentProcessor(@Value("${payments.stub.latency:50ms}") Duration latency,
+                                @Value("${payments.stub.decline-above:1000000}") long declineAbove) {
+        this.latency = latency;
+        this.declineAbove = declineAbove;
+    }
+
+    @Override
+    public AuthorizationResult authorize(Payment payment) {
+        try {
+            Thread.sleep(latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Authorization interrupted", e);
+        }
+        Money amount = payment.getAmount();
+        return results.computeIfAbsent(payment.getId(), id ->
+                amount.compareTo(Money.ofMajor(declineAbove, amount.currency())) > 0
+                        ? AuthorizationResult.decline("Amount exceeds limit")
+                        : AuthorizationResult.approve());
+    }
+
+    @Override
+    public Optional<AuthorizationResult> findAuthorization(Payment payment) {
+        return Optional.ofNullable(results.get(payment.getId()));
+    }
+}
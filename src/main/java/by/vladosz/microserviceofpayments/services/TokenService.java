@@ -0,0 +1,47 @@
+package by.vladosz.microserviceofpayments.services;
+
+import by.vladosz.microserviceofpayments.configs.JwtConfig;
+import by.vladosz.microserviceofpayments.configs.JwtKeyRing;
+import by.vladosz.microserviceofpayments.configs.JwtProperties;
+import by.vladosz.microserviceofpayments.dto.TokenDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class TokenService {
+    private final JwtEncoder jwtEncoder;
+    private final JwtKeyRing jwtKeyRing;
+    private final JwtProperties jwtProperties;
+
+    public TokenDTO issue(Authentication authentication) {
+        Instant now = Instant.now();
+        List<String> roles = authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .toList();
+
+        JwtClaimsSet claims = JwtClaimsSet.builder()
+                .issuer(jwtProperties.issuer())
+                .subject(authentication.getName())
+                .issuedAt(now)
+                .expiresAt(now.plus(jwtProperties.ttl()))
+                .claim(JwtConfig.ROLES_CLAIM, roles)
+                .build();
+        JwsHeader header = JwsHeader.with(MacAlgorithm.HS256)
+                .keyId(jwtKeyRing.activeKeyId())
+                .build();
+
+        String token = jwtEncoder.encode(JwtEncoderParameters.from(header, claims)).getTokenValue();
+        return new TokenDTO(token, "Bearer", jwtProperties.ttl().toSeconds());
+    }
+}
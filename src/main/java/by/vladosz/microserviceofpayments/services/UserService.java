@@ -1,16 +1,27 @@
 package by.vladosz.microserviceofpayments.services;
 
+import by.vladosz.microserviceofpayments.caches.RequestCoalescer;
+import by.vladosz.microserviceofpayments.caches.UserDetailsCache;
+import by.vladosz.microserviceofpayments.dto.BatchResultDTO;
+import by.vladosz.microserviceofpayments.dto.IdentifiedUserDTO;
 import by.vladosz.microserviceofpayments.dto.UserDTO;
+import by.vladosz.microserviceofpayments.dto.UserPatchDTO;
+import by.vladosz.microserviceofpayments.dto.Versioned;
 import by.vladosz.microserviceofpayments.mappers.UserMapper;
+import by.vladosz.microserviceofpayments.models.TotalMode;
 import by.vladosz.microserviceofpayments.models.User;
+import by.vladosz.microserviceofpayments.repositories.TableStatisticsRepository;
 import by.vladosz.microserviceofpayments.repositories.UserRepository;
 import by.vladosz.microserviceofpayments.repositories.UserRoleRepository;
+import by.vladosz.microserviceofpayments.repositories.UserWriteRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -20,6 +31,7 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -28,12 +40,27 @@ import java.util.stream.Collectors;
 public class UserService implements UserDetailsService {
     private final UserRepository userRepository;
     private final UserRoleRepository userRoleRepository;
+    private final UserWriteRepository userWriteRepository;
     private final UserMapper userMapper;
+    private final TableStatisticsRepository tableStatisticsRepository;
+    private final UserDetailsCache userDetailsCache;
+    private final RequestCoalescer requestCoalescer;
 
+    @Transactional(readOnly = true)
     public Page<UserDTO> findAll(int pageNumber, int pageSize) {
-        return userRepository.findAll(PageRequest.of(pageNumber, pageSize,
-                        Sort.by(Sort.Direction.ASC, "userName")))
-                .map(userMapper::toUserDTO);
+        return userRepository.findAllAsDTO(PageRequest.of(pageNumber, pageSize,
+                Sort.by(Sort.Direction.ASC, "userName")));
+    }
+
+    @Transactional(readOnly = true)
+    public Slice<UserDTO> findAll(int pageNumber, int pageSize, TotalMode totalMode) {
+        PageRequest pageRequest = PageRequest.of(pageNumber, pageSize, Sort.by(Sort.Direction.ASC, "userName"));
+        return switch (totalMode) {
+            case EXACT -> findAll(pageNumber, pageSize);
+            case NONE -> userRepository.findSliceAsDTO(pageRequest);
+            case APPROXIMATE -> PageTotals.withEstimatedTotal(userRepository.findSliceAsDTO(pageRequest),
+                    () -> tableStatisticsRepository.estimateRowCount("users"));
+        };
     }
 
     public ResponseEntity<UserDTO> createUser(User user) {
@@ -45,22 +72,95 @@ public class UserService implements UserDetailsService {
         return ResponseEntity.ok(userMapper.toUserDTO(savedUser));
     }
 
-    public UserDTO findUserById(Long user_id) {
-        return userRepository.findById(user_id).map(userMapper::toUserDTO).orElseThrow(() ->
-                new RuntimeException(" User not found with id: " + user_id));
+    public Versioned<UserDTO> getUser(Long user_id) {
+        return requestCoalescer.load("users", user_id, () ->
+                userRepository.findById(user_id)
+                        .map(user -> new Versioned<>(userMapper.toUserDTO(user), user.getVersion()))
+                        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                                " User not found with id: " + user_id)));
+    }
+
+    /**
+     * Пользователи по списку id чанками через IN. Кэша пользователей по id в сервисе нет:
+     * UserDetailsCache хранит учетные данные по имени и для этого ответа не подходит.
+     */
+    public BatchResultDTO<UserDTO> findUsersByIds(List<Long> ids) {
+        BatchLookup.validate(ids);
+        // проекция без сущностей: в persistence context ничего не попадает и dirty checking не нужен
+        Map<Long, IdentifiedUserDTO> users = BatchLookup.loadInChunks(ids, userRepository::findAllAsDTOByIdIn,
+                IdentifiedUserDTO::id);
+        return BatchLookup.toResult(ids, users, IdentifiedUserDTO::toUserDTO);
     }
 
-    public ResponseEntity<?> updateUser(Long id, User user) {
+    /**
+     * Полная замена пользователя.
+     *
+     * @param expectedVersion версия из If-Match или null
+     * @throws ResponseStatusException 404, если пользователя нет, 412, если его версия не совпала с expectedVersion,
+     *                                 409, если без If-Match пользователя изменили параллельно
+     */
+    public ResponseEntity<?> updateUser(Long id, User user, Long expectedVersion) {
         User existingUser = userRepository.findById(id).orElseThrow(() ->
                 new ResponseStatusException(HttpStatus.NOT_FOUND, " User not found with id: " + id));
+        if (expectedVersion != null && !expectedVersion.equals(existingUser.getVersion())) {
+            throw versionMismatch(id, expectedVersion);
+        }
+        String previousUserName = existingUser.getUserName();
         userMapper.updateFromUserDTO(user, existingUser);
-        User updatedUser = userRepository.save(existingUser);
-        return ResponseEntity.ok(userMapper.toUserDTO(updatedUser));
+        User updatedUser;
+        try {
+            updatedUser = userRepository.save(existingUser);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            // версия совпала при чтении, но пользователя успели изменить до записи
+            if (expectedVersion != null) {
+                throw versionMismatch(id, expectedVersion);
+            }
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "User " + id + " was modified concurrently, retry the update");
+        }
+        userDetailsCache.removeUserFromCache(previousUserName);
+        userDetailsCache.removeUserFromCache(existingUser.getUserName());
+        return ResponseEntity.ok().eTag(String.valueOf(updatedUser.getVersion()))
+                .body(userMapper.toUserDTO(updatedUser));
+    }
+
+    /**
+     * Частичное изменение одним UPDATE только переданных колонок.
+     *
+     * @param expectedVersion версия из If-Match или null
+     * @throws ResponseStatusException 404, если пользователя нет, 412, если его версия не совпала с expectedVersion
+     */
+    public Versioned<UserDTO> patchUser(Long id, UserPatchDTO patch, Long expectedVersion) {
+        if (patch == null || patch.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Nothing to update");
+        }
+        UserWriteRepository.PatchedUser patched = userWriteRepository.patch(id, patch, expectedVersion)
+                .orElseThrow(() -> notFoundOrPreconditionFailed(id, expectedVersion));
+        userDetailsCache.removeUserFromCache(patched.previousUserName());
+        userDetailsCache.removeUserFromCache(patched.user().getUserName());
+        return new Versioned<>(patched.user(), patched.version());
+    }
+
+    /**
+     * Удаление одним DELETE: 404 или 412 определяются по результату запроса,
+     * существование пользователя проверяется только при неудаче.
+     */
+    public void deleteUser(Long id, Long expectedVersion) {
+        String userName = userWriteRepository.delete(id, expectedVersion)
+                .orElseThrow(() -> notFoundOrPreconditionFailed(id, expectedVersion));
+        userDetailsCache.removeUserFromCache(userName);
+    }
+
+    private ResponseStatusException notFoundOrPreconditionFailed(Long id, Long expectedVersion) {
+        if (expectedVersion != null && userRepository.existsById(id)) {
+            return versionMismatch(id, expectedVersion);
+        }
+        return new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found with id: " + id);
     }
 
-    public void deleteUser(Long id) {
-        userRepository.findById(id).orElseThrow(() -> new RuntimeException("User not found with id: " + id));
-        userRepository.deleteById(id);
+    private ResponseStatusException versionMismatch(Long id, Long expectedVersion) {
+        return new ResponseStatusException(HttpStatus.PRECONDITION_FAILED,
+                "User " + id + " does not match version " + expectedVersion);
     }
 
     public Optional<User> findByUserName(String userName) {
@@ -70,10 +170,13 @@ public class UserService implements UserDetailsService {
         return userRepository.findByUserName(userName);
     }
 
-    @Transactional
+    @Transactional(readOnly = true)
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = findByUserName(username).orElseThrow(() -> new UsernameNotFoundException(
+        if (username == null) {
+            throw new IllegalArgumentException("User name cannot be null");
+        }
+        User user = userRepository.findWithRolesByUserName(username).orElseThrow(() -> new UsernameNotFoundException(
                 String.format("Пользователь '%s' не найден", username)
         ));
 
@@ -0,0 +1,24 @@
+package by.vladosz.microserviceofpayments.validation;
+
+import jakarta.validation.Constraint;
+import jakarta.validation.Payload;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Сумма должна быть больше нуля. null считается допустимым, как и у стандартных ограничений.
+ */
+@Target({ElementType.FIELD, ElementType.PARAMETER})
+@Retention(RetentionPolicy.RUNTIME)
+@Constraint(validatedBy = PositiveMoneyValidator.class)
+public @interface PositiveMoney {
+
+    String message() default "Сумма должна быть больше 0";
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+}
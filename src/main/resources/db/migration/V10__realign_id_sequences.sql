@@ -0,0 +1,26 @@
+-- Последовательности id для генераторов Hibernate с allocationSize = 50 (оптимизатор pooled).
+-- Первый nextval он считает верхней границей блока и выдает id с (nextval - 49) по nextval,
+-- поэтому следующий nextval должен быть не меньше max(id) + 50. V1 ставил products_seq на max(id) + 1:
+-- первые вставки после миграции повторяли id существующих строк. Последовательность только поднимается,
+-- уже выданные блоки не пересекаются с новыми.
+do
+$$
+declare
+    generator  record;
+    max_id     bigint;
+    next_value bigint;
+begin
+    for generator in
+        select *
+        from (values ('products', 'products_seq'), ('users', 'users_seq'), ('payments', 'payments_seq'))
+                 as generators(table_name, sequence_name)
+        loop
+            execute format('select coalesce(max(id), 0) from %I', generator.table_name) into max_id;
+            execute format('select case when is_called then last_value + 50 else last_value end from %I',
+                           generator.sequence_name) into next_value;
+            if next_value < max_id + 50 then
+                perform setval(generator.sequence_name, max_id + 50, false);
+            end if;
+        end loop;
+end
+$$;
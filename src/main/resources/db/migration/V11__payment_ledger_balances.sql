@@ -0,0 +1,51 @@
+-- Балансы пользователей по журналу платежей. Агрегат обновляет триггер в транзакции записи журнала,
+-- поэтому все экземпляры сервиса читают одни и те же суммы, а зафиксированное событие
+-- всегда учтено в балансе. Переполнение bigint откатывает всю пачку вместе с событиями.
+
+create table payment_ledger_balances
+(
+    user_id          bigint     not null,
+    currency         varchar(3) not null,
+    authorized_minor bigint     not null,
+    captured_minor   bigint     not null,
+    refunded_minor   bigint     not null,
+    primary key (user_id, currency)
+);
+
+insert into payment_ledger_balances (user_id, currency, authorized_minor, captured_minor, refunded_minor)
+select user_id,
+       currency,
+       sum(case event_type when 'AUTHORIZED' then amount_minor when 'CAPTURED' then -amount_minor else 0 end),
+       sum(case event_type when 'CAPTURED' then amount_minor when 'REFUNDED' then -amount_minor else 0 end),
+       sum(case event_type when 'REFUNDED' then amount_minor else 0 end)
+from payment_ledger
+group by user_id, currency;
+
+create function payment_ledger_apply_balances() returns trigger
+    language plpgsql as
+$$
+begin
+    -- строки в порядке ключа: параллельные пачки блокируют балансы в одном порядке и не взаимоблокируются
+    insert into payment_ledger_balances as balance (user_id, currency, authorized_minor, captured_minor, refunded_minor)
+    select user_id,
+           currency,
+           sum(case event_type when 'AUTHORIZED' then amount_minor when 'CAPTURED' then -amount_minor else 0 end),
+           sum(case event_type when 'CAPTURED' then amount_minor when 'REFUNDED' then -amount_minor else 0 end),
+           sum(case event_type when 'REFUNDED' then amount_minor else 0 end)
+    from new_rows
+    group by user_id, currency
+    order by user_id, currency
+    on conflict (user_id, currency) do update
+        set authorized_minor = balance.authorized_minor + excluded.authorized_minor,
+            captured_minor   = balance.captured_minor + excluded.captured_minor,
+            refunded_minor   = balance.refunded_minor + excluded.refunded_minor;
+    return null;
+end
+$$;
+
+create trigger payment_ledger_apply_balances
+    after insert
+    on payment_ledger
+    referencing new table as new_rows
+    for each statement
+execute function payment_ledger_apply_balances();
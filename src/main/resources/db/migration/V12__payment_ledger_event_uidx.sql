@@ -0,0 +1,19 @@
+-- Каждое событие платежа (AUTHORIZED, CAPTURED, REFUNDED) встречается в журнале не больше одного раза:
+-- повтор записи после сбоя между фиксацией журнала и сменой статуса платежа ничего не добавляет.
+-- Журнал только дополняется, поэтому уже записанные дубли не удаляются: если они есть,
+-- уникальность действует для новых записей.
+do
+$$
+declare
+    max_id bigint;
+begin
+    if exists (select 1 from payment_ledger group by payment_id, event_type having count(*) > 1) then
+        select max(id) into max_id from payment_ledger;
+        raise notice 'payment_ledger has duplicate events up to id %, enforcing uniqueness for newer entries', max_id;
+        execute format('create unique index payment_ledger_payment_event_uidx on payment_ledger (payment_id, event_type) '
+                           'where id > %s', max_id);
+    else
+        create unique index payment_ledger_payment_event_uidx on payment_ledger (payment_id, event_type);
+    end if;
+end
+$$;
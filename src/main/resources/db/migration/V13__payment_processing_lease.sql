@@ -0,0 +1,6 @@
+-- Аренда платежа воркером: платеж, оставшийся в PROCESSING после падения воркера,
+-- находит фоновая задача восстановления по processing_since.
+alter table payments add column processing_since timestamp(6) with time zone;
+update payments set processing_since = coalesce(updated_at, created_at) where status = 'PROCESSING';
+
+create index payments_processing_since_idx on payments (processing_since) where status = 'PROCESSING';
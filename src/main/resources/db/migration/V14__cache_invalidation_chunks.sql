@@ -0,0 +1,91 @@
+-- Большие операторы (пачка импорта, массовое изменение) раньше публиковали одно сообщение "все продукты",
+-- и каждый экземпляр перестраивал поиск, подсказки и фасеты полным чтением таблицы. Теперь id
+-- публикуются порциями, каждая укладывается в лимит payload NOTIFY (8000 байт), а слушатель
+-- объединяет накопившиеся порции и перечитывает только эти продукты.
+
+create function notify_cache_ids(message_type text, ids bigint[]) returns void
+    language plpgsql as
+$$
+declare
+    chunk_start integer := 1;
+begin
+    -- 300 id bigint с разделителями - не больше 6000 байт
+    while chunk_start <= coalesce(cardinality(ids), 0)
+        loop
+            perform pg_notify('cache_invalidation',
+                              json_build_object('type', message_type, 'ids', ids[chunk_start:chunk_start + 299])::text);
+            chunk_start := chunk_start + 300;
+        end loop;
+end
+$$;
+
+create function notify_cache_names(names text[]) returns void
+    language plpgsql as
+$$
+declare
+    chunk_start integer := 1;
+begin
+    -- сброс всего кэша UserDetails дешев, поэтому большой оператор по-прежнему дает одно сообщение "все"
+    if cardinality(names) > 200 then
+        perform pg_notify('cache_invalidation', json_build_object('type', 'users', 'all', true)::text);
+        return;
+    end if;
+    -- user_name до 255 символов: 25 имен укладываются в лимит payload
+    while chunk_start <= coalesce(cardinality(names), 0)
+        loop
+            perform pg_notify('cache_invalidation',
+                              json_build_object('type', 'users', 'names', names[chunk_start:chunk_start + 24])::text);
+            chunk_start := chunk_start + 25;
+        end loop;
+end
+$$;
+
+create or replace function products_notify_cache() returns trigger
+    language plpgsql as
+$$
+declare
+    ids bigint[];
+begin
+    if tg_op = 'DELETE' then
+        select array_agg(distinct id) into ids from old_rows;
+    else
+        select array_agg(distinct id) into ids from new_rows;
+    end if;
+    perform notify_cache_ids('products', ids);
+    return null;
+end
+$$;
+
+create or replace function users_notify_cache() returns trigger
+    language plpgsql as
+$$
+declare
+    names text[];
+begin
+    if tg_op = 'DELETE' then
+        select array_agg(distinct user_name) into names from old_rows;
+    else
+        select array_agg(distinct user_name)
+        into names
+        from (select user_name from old_rows union select user_name from new_rows) changed;
+    end if;
+    perform notify_cache_names(names);
+    return null;
+end
+$$;
+
+create or replace function users_roles_notify_cache() returns trigger
+    language plpgsql as
+$$
+declare
+    names text[];
+begin
+    if tg_op = 'DELETE' then
+        select array_agg(distinct u.user_name) into names from users u join old_rows r on r.user_id = u.id;
+    else
+        select array_agg(distinct u.user_name) into names from users u join new_rows r on r.user_id = u.id;
+    end if;
+    perform notify_cache_names(names);
+    return null;
+end
+$$;
@@ -0,0 +1,37 @@
+-- Резерв и освобождение остатков (InventoryService) меняют только count и version. Раньше такое изменение
+-- сбрасывало на всех экземплярах версию кэша страниц и переиндексировало продукт, хотя в ProductDTO
+-- остатка нет. Теперь изменение каталога (те же столбцы, что в V8, кроме count) публикуется как "products",
+-- а изменение только остатка - как "product-stock": оно сбрасывает одну запись ProductCache,
+-- где лежит версия продукта для ETag. Пересчет price_base_minor по курсам сообщений не дает:
+-- каждый экземпляр обрабатывает смену курсов сам (FxRateService).
+-- У триггеров уровня оператора нет WHEN по столбцам, поэтому строки фильтруются в функции.
+
+create function products_notify_cache_update() returns trigger
+    language plpgsql as
+$$
+declare
+    catalog_ids bigint[];
+    stock_ids   bigint[];
+begin
+    select array_agg(n.id) filter (where (n.name, n.description, n.price_minor, n.currency, n.category)
+                                             is distinct from (o.name, o.description, o.price_minor, o.currency, o.category)),
+           array_agg(n.id) filter (where (n.name, n.description, n.price_minor, n.currency, n.category)
+                                             is not distinct from (o.name, o.description, o.price_minor, o.currency, o.category)
+                                       and (n.count, n.version) is distinct from (o.count, o.version))
+    into catalog_ids, stock_ids
+    from new_rows n
+             join old_rows o on o.id = n.id;
+    perform notify_cache_ids('products', catalog_ids);
+    perform notify_cache_ids('product-stock', stock_ids);
+    return null;
+end
+$$;
+
+drop trigger products_notify_cache_update on products;
+
+create trigger products_notify_cache_update
+    after update
+    on products
+    referencing old table as old_rows new table as new_rows
+    for each statement
+execute function products_notify_cache_update();
@@ -0,0 +1,56 @@
+-- Базы, прошедшие V5 до появления в нем currency_iso_code(), могли сохранить трехсимвольные
+-- написания вроде "руб": столбец varchar(3) их принял, но Currency.getInstance на них падает,
+-- и любой список с таким продуктом отвечает 500. Приводим их к кодам ISO 4217 тем же сопоставлением,
+-- неприводимые значения останавливают миграцию со списком.
+create or replace function currency_iso_code(value text) returns text
+    language sql
+    immutable as
+$$
+select case
+           when normalized in ('RUB', 'RUR', 'РУБ', 'РУБ.', 'РУБЛЬ', 'РУБЛЯ', 'РУБЛИ', 'РУБЛЕЙ', 'Р', 'Р.', '₽') then 'RUB'
+           when normalized in ('USD', 'USD $', '$', 'US$', 'ДОЛЛ', 'ДОЛЛ.', 'ДОЛЛАР', 'ДОЛЛАРЫ', 'ДОЛЛАРОВ') then 'USD'
+           when normalized in ('EUR', '€', 'ЕВРО') then 'EUR'
+           when normalized in ('BYN', 'BYR', 'БЕЛ. РУБ.', 'БЕЛ.РУБ.', 'БЕЛОРУССКИЙ РУБЛЬ') then 'BYN'
+           -- три латинские буквы считаются кодом ISO 4217
+           when normalized ~ '^[A-Z]{3}$' then normalized
+           end
+from (select upper(regexp_replace(trim(value), '\s+', ' ', 'g')) as normalized) currency
+$$;
+
+do
+$$
+declare
+    unmapped text;
+begin
+    select string_agg(distinct quote_literal(currency), ', ')
+    into unmapped
+    from (select currency from products
+          union all
+          select currency from payments
+          union all
+          select currency from payment_ledger) currencies
+    where currency is not null
+      and currency_iso_code(currency) is null;
+    if unmapped is not null then
+        raise exception 'Cannot map currencies to ISO 4217 codes: %. Fix these values in products, payments '
+            'and payment_ledger or add them to currency_iso_code(), then rerun the migration', unmapped;
+    end if;
+end
+$$;
+
+update products set currency = currency_iso_code(currency) where currency is distinct from currency_iso_code(currency);
+update payments set currency = currency_iso_code(currency) where currency is distinct from currency_iso_code(currency);
+alter table payment_ledger disable trigger payment_ledger_append_only;
+update payment_ledger set currency = currency_iso_code(currency) where currency is distinct from currency_iso_code(currency);
+alter table payment_ledger enable trigger payment_ledger_append_only;
+
+-- балансы сгруппированы по валюте: пересчитываем их по исправленному журналу
+delete from payment_ledger_balances;
+insert into payment_ledger_balances (user_id, currency, authorized_minor, captured_minor, refunded_minor)
+select user_id,
+       currency,
+       sum(case event_type when 'AUTHORIZED' then amount_minor when 'CAPTURED' then -amount_minor else 0 end),
+       sum(case event_type when 'CAPTURED' then amount_minor when 'REFUNDED' then -amount_minor else 0 end),
+       sum(case event_type when 'REFUNDED' then amount_minor else 0 end)
+from payment_ledger
+group by user_id, currency;
@@ -0,0 +1,11 @@
+-- Резервы остатков: освободить можно только записанный резерв и только один раз,
+-- поэтому release больше не может увеличить остаток сверх списанного.
+create table inventory_reservations
+(
+    id         uuid primary key default gen_random_uuid(),
+    product_id bigint                      not null references products (id) on delete cascade,
+    quantity   integer                     not null check (quantity > 0),
+    created_at timestamp(6) with time zone not null default now()
+);
+
+create index inventory_reservations_product_id_idx on inventory_reservations (product_id);
@@ -0,0 +1,48 @@
+-- V5 перевел все суммы в минимальные единицы множителем 100, а с кодами ISO 4217 в базе могут быть
+-- валюты с другим числом знаков (JPY - 0, BHD - 3). На базах, прошедших V5 до появления V4_1,
+-- такие суммы пересчитываются под число знаков валюты; на новых базах V4_1 их не пропускает.
+create or replace function currency_minor_digits(code text) returns integer
+    language sql
+    immutable as
+$$
+select case
+           when code in ('BIF', 'CLP', 'DJF', 'GNF', 'ISK', 'JPY', 'KMF', 'KRW', 'PYG', 'RWF', 'UGX', 'UYI',
+                         'VND', 'VUV', 'XAF', 'XOF', 'XPF') then 0
+           when code in ('BHD', 'IQD', 'JOD', 'KWD', 'LYD', 'OMR', 'TND') then 3
+           when code in ('CLF', 'UYW') then 4
+           else 2
+           end
+$$;
+
+-- price_base_minor пересчитает триггер products_normalize_price
+update products
+set price_minor = round(price_minor * power(10::numeric, currency_minor_digits(currency) - 2))::bigint
+where currency_minor_digits(currency) <> 2;
+
+update payments
+set amount_minor = round(amount_minor * power(10::numeric, currency_minor_digits(currency) - 2))::bigint
+where currency_minor_digits(currency) <> 2;
+
+do
+$$
+begin
+    if exists(select 1 from payment_ledger where currency_minor_digits(currency) <> 2) then
+        alter table payment_ledger disable trigger payment_ledger_append_only;
+        update payment_ledger
+        set amount_minor = round(amount_minor * power(10::numeric, currency_minor_digits(currency) - 2))::bigint
+        where currency_minor_digits(currency) <> 2;
+        alter table payment_ledger enable trigger payment_ledger_append_only;
+
+        -- балансы считаются по суммам журнала: пересобираем их
+        delete from payment_ledger_balances;
+        insert into payment_ledger_balances (user_id, currency, authorized_minor, captured_minor, refunded_minor)
+        select user_id,
+               currency,
+               sum(case event_type when 'AUTHORIZED' then amount_minor when 'CAPTURED' then -amount_minor else 0 end),
+               sum(case event_type when 'CAPTURED' then amount_minor when 'REFUNDED' then -amount_minor else 0 end),
+               sum(case event_type when 'REFUNDED' then amount_minor else 0 end)
+        from payment_ledger
+        group by user_id, currency;
+    end if;
+end
+$$;
@@ -0,0 +1,42 @@
+-- Схема, которую раньше создавал ddl-auto=update. Все операторы идемпотентны,
+-- чтобы миграция проходила и на пустой базе, и на уже существующей.
+
+create table if not exists products
+(
+    id          bigint primary key,
+    name        varchar(255),
+    description varchar(255),
+    price       float(53),
+    currency    varchar(255),
+    count       integer not null,
+    category    varchar(255)
+);
+
+create table if not exists users
+(
+    id         bigint primary key,
+    user_name  varchar(255),
+    sur_name   varchar(255),
+    patronymic varchar(255),
+    age        integer not null,
+    email      varchar(255),
+    password   varchar(255)
+);
+
+create table if not exists user_roles
+(
+    id   integer primary key,
+    name varchar(255)
+);
+
+create table if not exists users_roles
+(
+    user_id bigint  not null references users (id),
+    role_id integer not null references user_roles (id)
+);
+
+create sequence if not exists products_seq increment by 50;
+create sequence if not exists users_seq increment by 50;
+
+-- products.id раньше выдавался IDENTITY: последовательность должна начинаться выше существующих id
+select setval('products_seq', (select coalesce(max(id), 0) + 1 from products), false);
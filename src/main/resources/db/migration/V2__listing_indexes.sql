@@ -0,0 +1,17 @@
+-- findByCategory (order by price) и keyset-пагинация внутри категории
+create index if not exists products_category_price_id_idx on products (category, price, id);
+
+-- findByName (order by price)
+create index if not exists products_name_price_id_idx on products (name, price, id);
+
+-- findAllByOrderByNameAsc/Desc, findAll (order by name) и keyset по (name, id)
+create index if not exists products_name_id_idx on products (name, id);
+
+-- findAllByOrderByPriceAsc/Desc и keyset по (price, id)
+create index if not exists products_price_id_idx on products (price, id);
+
+-- findByUserName / findWithRolesByUserName
+create unique index if not exists users_user_name_uidx on users (user_name);
+
+-- join fetch ролей пользователя
+create index if not exists users_roles_user_id_idx on users_roles (user_id);
@@ -0,0 +1,28 @@
+create table payments
+(
+    id              bigint primary key,
+    idempotency_key varchar(255) not null,
+    request_hash    varchar(64)  not null,
+    user_id         bigint       not null references users (id),
+    amount          float(53),
+    currency        varchar(255),
+    status          varchar(32)  not null,
+    failure_reason  varchar(255),
+    created_at      timestamp(6) with time zone not null,
+    updated_at      timestamp(6) with time zone
+);
+
+create table payment_items
+(
+    payment_id bigint  not null references payments (id),
+    position   integer not null,
+    product_id bigint  not null,
+    primary key (payment_id, position)
+);
+
+create sequence payments_seq increment by 50;
+
+-- повтор запроса с тем же Idempotency-Key находит платеж по уникальному индексу
+create unique index payments_idempotency_key_uidx on payments (idempotency_key);
+-- фоновая досылка ищет зависшие PENDING-платежи
+create index payments_status_created_at_idx on payments (status, created_at);
@@ -0,0 +1,78 @@
+-- Валюта до V5 была свободной строкой ("руб.", "рубли", "USD $"), а V5 сужает столбец до varchar(3)
+-- и переводит суммы в минимальные единицы множителем 100. Перед ним известные написания приводятся
+-- к кодам ISO 4217; значения, которые привести нельзя, и валюты не с двумя знаками после запятой
+-- останавливают миграцию со списком: их нужно исправить вручную.
+-- Базы, уже прошедшие V5, эту миграцию пропускают (spring.flyway.ignore-migration-patterns),
+-- для них то же делают V16 и V18.
+create or replace function currency_iso_code(value text) returns text
+    language sql
+    immutable as
+$$
+select case
+           when normalized in ('RUB', 'RUR', 'РУБ', 'РУБ.', 'РУБЛЬ', 'РУБЛЯ', 'РУБЛИ', 'РУБЛЕЙ', 'Р', 'Р.', '₽') then 'RUB'
+           when normalized in ('USD', 'USD $', '$', 'US$', 'ДОЛЛ', 'ДОЛЛ.', 'ДОЛЛАР', 'ДОЛЛАРЫ', 'ДОЛЛАРОВ') then 'USD'
+           when normalized in ('EUR', '€', 'ЕВРО') then 'EUR'
+           when normalized in ('BYN', 'BYR', 'БЕЛ. РУБ.', 'БЕЛ.РУБ.', 'БЕЛОРУССКИЙ РУБЛЬ') then 'BYN'
+           -- три латинские буквы считаются кодом ISO 4217
+           when normalized ~ '^[A-Z]{3}$' then normalized
+           end
+from (select upper(regexp_replace(trim(value), '\s+', ' ', 'g')) as normalized) currency
+$$;
+
+-- число знаков минимальной единицы, как Currency.getDefaultFractionDigits
+create or replace function currency_minor_digits(code text) returns integer
+    language sql
+    immutable as
+$$
+select case
+           when code in ('BIF', 'CLP', 'DJF', 'GNF', 'ISK', 'JPY', 'KMF', 'KRW', 'PYG', 'RWF', 'UGX', 'UYI',
+                         'VND', 'VUV', 'XAF', 'XOF', 'XPF') then 0
+           when code in ('BHD', 'IQD', 'JOD', 'KWD', 'LYD', 'OMR', 'TND') then 3
+           when code in ('CLF', 'UYW') then 4
+           else 2
+           end
+$$;
+
+do
+$$
+declare
+    unmapped     text;
+    not_decimal2 text;
+begin
+    -- у продукта без цены валюта в V5 обнуляется, ее значение не важно
+    select string_agg(distinct quote_literal(currency), ', ')
+    into unmapped
+    from (select currency from products where price is not null
+          union all
+          select currency from payments
+          union all
+          select currency from payment_ledger) currencies
+    where currency is not null
+      and currency_iso_code(currency) is null;
+    if unmapped is not null then
+        raise exception 'Cannot map currencies to ISO 4217 codes: %. Fix these values in products, payments '
+            'and payment_ledger or add them to currency_iso_code(), then rerun the migration', unmapped;
+    end if;
+
+    select string_agg(distinct currency_iso_code(currency), ', ')
+    into not_decimal2
+    from (select currency from products where price is not null
+          union all
+          select currency from payments where amount is not null
+          union all
+          select currency from payment_ledger) currencies
+    where currency is not null
+      and currency_minor_digits(currency_iso_code(currency)) <> 2;
+    if not_decimal2 is not null then
+        raise exception 'V5 converts amounts with two decimal places, but these currencies use a different '
+            'minor unit: %. Convert or remove these rows, then rerun the migration', not_decimal2;
+    end if;
+end
+$$;
+
+update products set currency = currency_iso_code(currency)
+where price is not null and currency is distinct from currency_iso_code(currency);
+update payments set currency = currency_iso_code(currency) where currency is distinct from currency_iso_code(currency);
+alter table payment_ledger disable trigger payment_ledger_append_only;
+update payment_ledger set currency = currency_iso_code(currency) where currency is distinct from currency_iso_code(currency);
+alter table payment_ledger enable trigger payment_ledger_append_only;
@@ -0,0 +1,29 @@
+create table payment_ledger
+(
+    id         bigint primary key,
+    payment_id bigint       not null references payments (id),
+    user_id    bigint       not null,
+    event_type varchar(32)  not null,
+    amount     float(53)    not null,
+    currency   varchar(255),
+    created_at timestamp(6) with time zone not null
+);
+
+create sequence payment_ledger_seq;
+
+create index payment_ledger_payment_id_idx on payment_ledger (payment_id);
+
+-- журнал только дополняется: изменение или удаление записи - ошибка
+create function payment_ledger_append_only() returns trigger
+    language plpgsql as
+$$
+begin
+    raise exception 'payment_ledger is append-only';
+end;
+$$;
+
+create trigger payment_ledger_append_only
+    before update or delete
+    on payment_ledger
+    for each row
+execute function payment_ledger_append_only();
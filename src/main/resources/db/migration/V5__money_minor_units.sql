@@ -0,0 +1,31 @@
+-- Цены и суммы переходят с float на целые минимальные единицы валюты.
+-- Все существующие данные в рублях (две цифры после запятой), поэтому множитель 100.
+
+alter table products add column price_minor bigint;
+update products set price_minor = round(price * 100)::bigint where price is not null;
+alter table products drop column price;
+update products set currency = upper(trim(currency)) where currency is not null;
+update products set currency = 'RUB' where price_minor is not null and currency is null;
+-- цена хранится как пара (price_minor, currency): оба столбца заданы или оба пусты
+update products set currency = null where price_minor is null;
+alter table products alter column currency type varchar(3);
+alter table products add constraint products_price_currency_chk
+    check ((price_minor is null) = (currency is null));
+
+-- индексы V2 на price удалились вместе со столбцом
+create index products_category_price_id_idx on products (category, price_minor, id);
+create index products_name_price_id_idx on products (name, price_minor, id);
+create index products_price_id_idx on products (price_minor, id);
+
+alter table payments add column amount_minor bigint;
+update payments set amount_minor = round(amount * 100)::bigint where amount is not null;
+alter table payments drop column amount;
+alter table payments alter column currency type varchar(3);
+
+alter table payment_ledger add column amount_minor bigint;
+alter table payment_ledger disable trigger payment_ledger_append_only;
+update payment_ledger set amount_minor = round(amount * 100)::bigint;
+alter table payment_ledger enable trigger payment_ledger_append_only;
+alter table payment_ledger drop column amount;
+alter table payment_ledger alter column amount_minor set not null;
+alter table payment_ledger alter column currency type varchar(3);
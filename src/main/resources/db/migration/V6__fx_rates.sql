@@ -0,0 +1,71 @@
+-- Курсы валют к базовой валюте каталога (RUB).
+-- rate - цена одной единицы валюты в рублях, minor_rate - цена одной минимальной единицы
+-- валюты в копейках, по нему считается products.price_base_minor.
+create table fx_rates
+(
+    currency   varchar(3) primary key,
+    rate       numeric(24, 10) not null check (rate > 0),
+    minor_rate numeric(30, 12) not null check (minor_rate > 0),
+    updated_at timestamp(6) with time zone not null default now()
+);
+
+insert into fx_rates (currency, rate, minor_rate)
+values ('RUB', 1, 1);
+
+-- цена в копейках по текущему курсу: по ней сортируются и фильтруются продукты в разных валютах.
+-- null, пока для валюты продукта нет курса
+alter table products add column price_base_minor bigint;
+
+update products p
+set price_base_minor = round(p.price_minor * r.minor_rate)::bigint
+from fx_rates r
+where r.currency = p.currency;
+
+create function products_normalize_price() returns trigger
+    language plpgsql as
+$$
+begin
+    new.price_base_minor := (select round(new.price_minor * r.minor_rate)::bigint
+                             from fx_rates r
+                             where r.currency = new.currency);
+    return new;
+end;
+$$;
+
+create trigger products_normalize_price
+    before insert or update of price_minor, currency
+    on products
+    for each row
+execute function products_normalize_price();
+
+-- смена курса пересчитывает только продукты этой валюты, у которых нормализованная цена изменилась
+create function fx_rates_renormalize_products() returns trigger
+    language plpgsql as
+$$
+begin
+    if tg_op = 'DELETE' then
+        update products set price_base_minor = null where currency = old.currency;
+    else
+        update products
+        set price_base_minor = round(price_minor * new.minor_rate)::bigint
+        where currency = new.currency
+          and price_base_minor is distinct from round(price_minor * new.minor_rate)::bigint;
+    end if;
+    return null;
+end;
+$$;
+
+create trigger fx_rates_renormalize_products
+    after insert or update of minor_rate or delete
+    on fx_rates
+    for each row
+execute function fx_rates_renormalize_products();
+
+-- сортировка и диапазоны цены теперь идут по нормализованной цене
+drop index if exists products_category_price_id_idx;
+drop index if exists products_name_price_id_idx;
+drop index if exists products_price_id_idx;
+
+create index products_category_price_id_idx on products (category, price_base_minor, id);
+create index products_name_price_id_idx on products (name, price_base_minor, id);
+create index products_price_id_idx on products (price_base_minor, id);
@@ -0,0 +1,25 @@
+-- Версия строки для оптимистичных блокировок (@Version) и If-Match: каждое изменение продукта
+-- или пользователя увеличивает ее на 1.
+alter table products add column version bigint not null default 0;
+alter table users add column version bigint not null default 0;
+
+-- удаление пользователя одним DELETE: связи с ролями удаляет каскад, а не Hibernate отдельным запросом
+do
+$$
+declare
+    fk record;
+begin
+    for fk in
+        select c.conname
+        from pg_constraint c
+        where c.conrelid = 'users_roles'::regclass
+          and c.confrelid = 'users'::regclass
+          and c.contype = 'f'
+    loop
+        execute format('alter table users_roles drop constraint %I', fk.conname);
+    end loop;
+end
+$$;
+
+alter table users_roles
+    add constraint users_roles_user_id_fkey foreign key (user_id) references users (id) on delete cascade;
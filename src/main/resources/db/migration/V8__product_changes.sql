@@ -0,0 +1,58 @@
+-- Журнал изменений каталога (transactional outbox) для потребителей, которые держат копию каталога.
+-- Строки пишет триггер в той же транзакции, что и изменение продукта, поэтому событие не теряется
+-- и не появляется для откаченной записи, какой бы путь (JPA, JDBC, импорт, списание остатков) ни менял таблицу.
+--
+-- Позиция события - пара (tx_id, id). Порядок id не совпадает с порядком фиксации транзакций,
+-- поэтому читатель отдает только строки транзакций старше самой старой незавершенной
+-- (tx_id < pg_snapshot_xmin): новые строки всегда получают позицию больше уже отданных.
+create table product_changes
+(
+    id          bigint generated always as identity primary key,
+    tx_id       xid8        not null default pg_current_xact_id(),
+    product_id  bigint      not null,
+    change_type varchar(16) not null,
+    version     bigint,
+    payload     jsonb,
+    changed_at  timestamp(6) with time zone not null default now()
+);
+
+create index product_changes_position_idx on product_changes (tx_id, id);
+create index product_changes_changed_at_idx on product_changes (changed_at);
+
+create function products_record_change() returns trigger
+    language plpgsql as
+$$
+begin
+    if tg_op = 'DELETE' then
+        insert into product_changes (product_id, change_type, version)
+        values (old.id, 'DELETED', old.version);
+        return null;
+    end if;
+    insert into product_changes (product_id, change_type, version, payload)
+    values (new.id,
+            case when tg_op = 'INSERT' then 'CREATED' else 'UPDATED' end,
+            new.version,
+            jsonb_build_object('name', new.name,
+                               'description', new.description,
+                               'priceMinor', new.price_minor,
+                               'currency', new.currency,
+                               'count', new.count,
+                               'category', new.category));
+    return null;
+end
+$$;
+
+create trigger products_record_insert_delete
+    after insert or delete
+    on products
+    for each row
+execute function products_record_change();
+
+-- пересчет price_base_minor при смене курса не меняет сам продукт и событий не порождает
+create trigger products_record_update
+    after update
+    on products
+    for each row
+    when ((old.name, old.description, old.price_minor, old.currency, old.count, old.category)
+        is distinct from (new.name, new.description, new.price_minor, new.currency, new.count, new.category))
+execute function products_record_change();
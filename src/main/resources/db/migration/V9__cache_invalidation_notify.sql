@@ -0,0 +1,127 @@
+-- Сообщения для локальных кэшей всех экземпляров сервиса через NOTIFY cache_invalidation.
+-- NOTIFY доставляется слушателям только после фиксации транзакции, поэтому откаченные изменения
+-- сообщений не порождают, а одинаковые сообщения одной транзакции Postgres отправляет один раз.
+-- Триггеры уровня оператора: одно сообщение на оператор, а не на строку.
+
+create function products_notify_cache() returns trigger
+    language plpgsql as
+$$
+declare
+    ids bigint[];
+begin
+    if tg_op = 'DELETE' then
+        select array_agg(distinct id) into ids from old_rows;
+    else
+        select array_agg(distinct id) into ids from new_rows;
+    end if;
+    if ids is null then
+        return null;
+    end if;
+    -- payload NOTIFY ограничен 8000 байт: для больших пачек (импорт, смена курса) одно сообщение "все продукты"
+    if cardinality(ids) > 300 then
+        perform pg_notify('cache_invalidation', json_build_object('type', 'products', 'all', true)::text);
+    else
+        perform pg_notify('cache_invalidation', json_build_object('type', 'products', 'ids', ids)::text);
+    end if;
+    return null;
+end
+$$;
+
+create trigger products_notify_cache_insert
+    after insert
+    on products
+    referencing new table as new_rows
+    for each statement
+execute function products_notify_cache();
+
+create trigger products_notify_cache_update
+    after update
+    on products
+    referencing new table as new_rows
+    for each statement
+execute function products_notify_cache();
+
+create trigger products_notify_cache_delete
+    after delete
+    on products
+    referencing old table as old_rows
+    for each statement
+execute function products_notify_cache();
+
+-- UserDetails кэшируется по имени: при переименовании сбрасываются и старое, и новое имя
+create function users_notify_cache() returns trigger
+    language plpgsql as
+$$
+declare
+    names text[];
+begin
+    if tg_op = 'DELETE' then
+        select array_agg(distinct user_name) into names from old_rows;
+    else
+        select array_agg(distinct user_name)
+        into names
+        from (select user_name from old_rows union select user_name from new_rows) changed;
+    end if;
+    if names is null then
+        return null;
+    end if;
+    if cardinality(names) > 200 then
+        perform pg_notify('cache_invalidation', json_build_object('type', 'users', 'all', true)::text);
+    else
+        perform pg_notify('cache_invalidation', json_build_object('type', 'users', 'names', names)::text);
+    end if;
+    return null;
+end
+$$;
+
+create trigger users_notify_cache_update
+    after update
+    on users
+    referencing old table as old_rows new table as new_rows
+    for each statement
+execute function users_notify_cache();
+
+create trigger users_notify_cache_delete
+    after delete
+    on users
+    referencing old table as old_rows
+    for each statement
+execute function users_notify_cache();
+
+-- роли входят в UserDetails
+create function users_roles_notify_cache() returns trigger
+    language plpgsql as
+$$
+declare
+    names text[];
+begin
+    if tg_op = 'DELETE' then
+        select array_agg(distinct u.user_name) into names from users u join old_rows r on r.user_id = u.id;
+    else
+        select array_agg(distinct u.user_name) into names from users u join new_rows r on r.user_id = u.id;
+    end if;
+    if names is null then
+        return null;
+    end if;
+    if cardinality(names) > 200 then
+        perform pg_notify('cache_invalidation', json_build_object('type', 'users', 'all', true)::text);
+    else
+        perform pg_notify('cache_invalidation', json_build_object('type', 'users', 'names', names)::text);
+    end if;
+    return null;
+end
+$$;
+
+create trigger users_roles_notify_cache_insert
+    after insert
+    on users_roles
+    referencing new table as new_rows
+    for each statement
+execute function users_roles_notify_cache();
+
+create trigger users_roles_notify_cache_delete
+    after delete
+    on users_roles
+    referencing old table as old_rows
+    for each statement
+execute function users_roles_notify_cache();
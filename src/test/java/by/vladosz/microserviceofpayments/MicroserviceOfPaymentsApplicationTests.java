@@ -2,7 +2,8 @@ package by.vladosz.microserviceofpayments;
 import org.springframework.boot.test.context.SpringBootTest;
 
 
-@SpringBootTest
+// ключ подписи только для тестов, в окружении сервиса он задается через JWT_KEY_K1
+@SpringBootTest(properties = "security.jwt.keys.k1=dGVzdC1vbmx5LXNpZ25pbmcta2V5LW5vdC1mb3ItcHJvZA==")
 class MicroserviceOfPaymentsApplicationTests {
 
 }
@@ -0,0 +1,89 @@
+package by.vladosz.microserviceofpayments.caches;
+
+import by.vladosz.microserviceofpayments.models.ChangePosition;
+import by.vladosz.microserviceofpayments.models.ProductChange;
+import by.vladosz.microserviceofpayments.models.ProductChangeType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductChangeBufferTest {
+
+    @Test
+    @DisplayName("События после позиции отдаются из памяти по порядку и не больше limit")
+    void afterTest() {
+        ProductChangeBuffer buffer = new ProductChangeBuffer(100);
+        buffer.reset(new ChangePosition(10, 5));
+        buffer.append(List.of(change(11, 7), change(11, 8), change(12, 6)));
+
+        assertEquals(List.of(new ChangePosition(11, 8), new ChangePosition(12, 6)),
+                positions(buffer.after(new ChangePosition(11, 7), 10)));
+        assertEquals(List.of(new ChangePosition(11, 7)), positions(buffer.after(new ChangePosition(10, 5), 1)));
+        assertTrue(buffer.after(new ChangePosition(12, 6), 10).isEmpty());
+        // позиция другого экземпляра сервиса, который опросил журнал раньше
+        assertTrue(buffer.after(new ChangePosition(13, 1), 10).isEmpty());
+        assertNull(buffer.after(new ChangePosition(9, 100), 10));
+    }
+
+    @Test
+    @DisplayName("Повторно прочитанные события не дублируются, вытеснение сдвигает начало буфера")
+    void appendTest() {
+        ProductChangeBuffer buffer = new ProductChangeBuffer(2);
+        buffer.reset(ChangePosition.START);
+        buffer.append(List.of(change(1, 1), change(1, 2)));
+        buffer.append(List.of(change(1, 2), change(2, 3)));
+
+        assertEquals(new ChangePosition(2, 3), buffer.head());
+        assertFalse(buffer.covers(ChangePosition.START));
+        assertNull(buffer.after(ChangePosition.START, 10));
+        assertEquals(List.of(new ChangePosition(1, 2), new ChangePosition(2, 3)),
+                positions(buffer.after(new ChangePosition(1, 1), 10)));
+    }
+
+    @Test
+    @DisplayName("Ожидание завершается с приходом новых событий или по таймауту")
+    void awaitAfterTest() throws Exception {
+        ProductChangeBuffer buffer = new ProductChangeBuffer(10);
+        buffer.reset(new ChangePosition(1, 1));
+
+        assertFalse(buffer.awaitAfter(new ChangePosition(1, 1), Duration.ofMillis(20)));
+
+        CompletableFuture<Boolean> waiter = CompletableFuture.supplyAsync(() -> {
+            try {
+                return buffer.awaitAfter(new ChangePosition(1, 1), Duration.ofSeconds(5));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        buffer.append(List.of(change(2, 2)));
+
+        assertTrue(waiter.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("Позиция разбирается из строки и печатается обратно")
+    void positionTest() {
+        assertEquals(new ChangePosition(7431, 1502), ChangePosition.parse("7431-1502"));
+        assertEquals("7431-1502", new ChangePosition(7431, 1502).toString());
+        assertSame(ChangePosition.START, ChangePosition.parse("0"));
+        assertEquals("0", ChangePosition.START.toString());
+        assertThrows(IllegalArgumentException.class, () -> ChangePosition.parse("7431"));
+        assertThrows(IllegalArgumentException.class, () -> ChangePosition.parse("7431--2"));
+        assertThrows(IllegalArgumentException.class, () -> ChangePosition.parse("a-b"));
+    }
+
+    private static ProductChange change(long txId, long id) {
+        return new ProductChange(new ChangePosition(txId, id), ProductChangeType.UPDATED, 1L, 1L, null, Instant.now());
+    }
+
+    private static List<ChangePosition> positions(List<ProductChange> changes) {
+        return changes.stream().map(ProductChange::position).toList();
+    }
+}
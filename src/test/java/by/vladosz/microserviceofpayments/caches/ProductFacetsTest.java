@@ -0,0 +1,116 @@
+package by.vladosz.microserviceofpayments.caches;
+
+import by.vladosz.microserviceofpayments.dto.CategoryFacetDTO;
+import by.vladosz.microserviceofpayments.dto.PriceBucketDTO;
+import by.vladosz.microserviceofpayments.models.CategoryProduct;
+import by.vladosz.microserviceofpayments.models.Money;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductFacetsTest {
+    private ProductFacets facets;
+
+    @BeforeEach
+    void setUp() {
+        facets = new ProductFacets();
+        facets.put(1L, CategoryProduct.ЭЛЕКТРОНИКА, 2_999_000L);
+        facets.put(2L, CategoryProduct.ЭЛЕКТРОНИКА, 1_500_000L);
+        facets.put(3L, CategoryProduct.ЭЛЕКТРОНИКА, 45_000L);
+        facets.put(4L, CategoryProduct.ЭЛЕКТРОНИКА, null);
+        facets.put(5L, CategoryProduct.КНИГИ, 89_000L);
+    }
+
+    @Test
+    @DisplayName("Число продуктов, min, max, средняя цена и гистограмма по категории")
+    void facetsTest() {
+        CategoryFacetDTO electronics = facet(CategoryProduct.ЭЛЕКТРОНИКА);
+
+        assertEquals(4, electronics.getCount());
+        assertEquals(Money.of(45_000, "RUB"), electronics.getMinPrice());
+        assertEquals(Money.of(2_999_000, "RUB"), electronics.getMaxPrice());
+        assertEquals(Money.of(1_514_667, "RUB"), electronics.getAveragePrice());
+        // от 200-500 до 20000-50000 рублей
+        assertEquals(Money.of(20_000, "RUB"), electronics.getHistogram().getFirst().getFrom());
+        assertEquals(Money.of(5_000_000, "RUB"), electronics.getHistogram().getLast().getTo());
+        assertEquals(List.of(1L, 0L, 0L, 0L, 0L, 1L, 1L), counts(electronics));
+
+        CategoryFacetDTO toys = facet(CategoryProduct.ИГРУШКИ);
+        assertEquals(0, toys.getCount());
+        assertNull(toys.getMinPrice());
+        assertTrue(toys.getHistogram().isEmpty());
+        assertEquals(CategoryProduct.values().length, facets.facets().size());
+    }
+
+    @Test
+    @DisplayName("Изменение цены и категории вычитает старые значения")
+    void updateAndRemoveTest() {
+        facets.put(1L, CategoryProduct.КНИГИ, 120_000L);
+        facets.put(2L, CategoryProduct.ЭЛЕКТРОНИКА, 50_000L);
+        facets.remove(3L);
+        facets.remove(42L);
+
+        CategoryFacetDTO electronics = facet(CategoryProduct.ЭЛЕКТРОНИКА);
+        assertEquals(2, electronics.getCount());
+        assertEquals(Money.of(50_000, "RUB"), electronics.getMinPrice());
+        assertEquals(Money.of(50_000, "RUB"), electronics.getMaxPrice());
+        assertEquals(List.of(1L), counts(electronics));
+
+        CategoryFacetDTO books = facet(CategoryProduct.КНИГИ);
+        assertEquals(2, books.getCount());
+        assertEquals(Money.of(104_500, "RUB"), books.getAveragePrice());
+        assertEquals(List.of(1L, 1L), counts(books));
+    }
+
+    @Test
+    @DisplayName("Сверка с таблицей находит расхождения и сохраняет изменения, пришедшие во время нее")
+    void rebuildTest() {
+        List<ProductFacets.Row> rows = new ArrayList<>(List.of(
+                new ProductFacets.Row(1L, CategoryProduct.ЭЛЕКТРОНИКА, 2_999_000L),
+                new ProductFacets.Row(2L, CategoryProduct.ЭЛЕКТРОНИКА, 1_500_000L),
+                new ProductFacets.Row(3L, CategoryProduct.ЭЛЕКТРОНИКА, 45_000L),
+                new ProductFacets.Row(4L, CategoryProduct.ЭЛЕКТРОНИКА, null),
+                new ProductFacets.Row(5L, CategoryProduct.КНИГИ, 89_000L)));
+
+        assertFalse(facets.rebuild(rows.iterator()));
+
+        // продукт 6 создан в обход сервиса, продукт 7 - во время сверки
+        rows.add(new ProductFacets.Row(6L, CategoryProduct.СПОРТ, 300_000L));
+        boolean drifted = facets.rebuild(rows.stream()
+                .peek(row -> {
+                    if (row.id() == 6L) {
+                        facets.put(7L, CategoryProduct.СПОРТ, 100_000L);
+                    }
+                })
+                .iterator());
+
+        assertTrue(drifted);
+        assertEquals(2, facet(CategoryProduct.СПОРТ).getCount());
+        assertEquals(Money.of(100_000, "RUB"), facet(CategoryProduct.СПОРТ).getMinPrice());
+    }
+
+    @Test
+    @DisplayName("Границы интервалов гистограммы")
+    void bucketTest() {
+        assertEquals(0, ProductFacets.bucket(-100));
+        assertEquals(0, ProductFacets.bucket(9_999));
+        assertEquals(1, ProductFacets.bucket(10_000));
+        assertEquals(ProductFacets.BUCKET_LOWER_BOUNDS.length - 1, ProductFacets.bucket(Long.MAX_VALUE));
+    }
+
+    private CategoryFacetDTO facet(CategoryProduct category) {
+        return facets.facets().stream()
+                .filter(facet -> facet.getCategory() == category)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static List<Long> counts(CategoryFacetDTO facet) {
+        return facet.getHistogram().stream().map(PriceBucketDTO::getCount).toList();
+    }
+}
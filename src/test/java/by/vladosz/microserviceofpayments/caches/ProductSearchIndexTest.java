@@ -0,0 +1,110 @@
+package by.vladosz.microserviceofpayments.caches;
+
+import by.vladosz.microserviceofpayments.models.CategoryProduct;
+import by.vladosz.microserviceofpayments.models.Money;
+import by.vladosz.microserviceofpayments.models.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductSearchIndexTest {
+    private ProductSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ProductSearchIndex();
+        index.put(product(1L, "Наушники Sony WH-1000XM5", "Беспроводные наушники с шумоподавлением", CategoryProduct.ЭЛЕКТРОНИКА));
+        index.put(product(2L, "Колонка JBL Charge 5", "Портативная колонка, к ней можно подключить наушники", CategoryProduct.ЭЛЕКТРОНИКА));
+        index.put(product(3L, "Книга о наушниках", "Всё о звуке и наушниках", CategoryProduct.КНИГИ));
+        index.put(product(4L, "Джинсы Levi's 501", "Классические прямые джинсы", CategoryProduct.ОДЕЖДА));
+    }
+
+    @Test
+    @DisplayName("Регистр, ё и падежные окончания не влияют на терм")
+    void tokenizeTest() {
+        assertEquals(ProductSearchIndex.tokenize("Наушники"), ProductSearchIndex.tokenize("наушников"));
+        assertEquals(ProductSearchIndex.tokenize("ВСЁ"), ProductSearchIndex.tokenize("все"));
+        assertEquals(List.of("sony", "wh", "1000xm5"), ProductSearchIndex.tokenize("Sony WH-1000XM5"));
+        assertEquals(List.of("5"), ProductSearchIndex.tokenize("к 5"));
+    }
+
+    @Test
+    @DisplayName("Совпадение в названии ранжируется выше совпадения в описании")
+    void rankingTest() {
+        ProductSearchIndex.SearchHits hits = index.search("наушников", null, 0, 10);
+
+        assertEquals(3, hits.total());
+        assertEquals(2L, hits.ids().getLast());
+        assertFalse(hits.ids().contains(4L));
+    }
+
+    @Test
+    @DisplayName("Фильтр по категории и постраничная выдача")
+    void categoryAndPaginationTest() {
+        assertEquals(List.of(3L), index.search("наушники", CategoryProduct.КНИГИ, 0, 10).ids());
+
+        ProductSearchIndex.SearchHits firstPage = index.search("наушники", null, 0, 2);
+        ProductSearchIndex.SearchHits secondPage = index.search("наушники", null, 2, 2);
+
+        assertEquals(2, firstPage.ids().size());
+        assertEquals(List.of(2L), secondPage.ids());
+        assertEquals(3, secondPage.total());
+        assertEquals(0, index.search("телевизор", null, 0, 10).total());
+        assertTrue(index.search("  ", null, 0, 10).ids().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Обновление заменяет термы продукта, удаление убирает его из выдачи")
+    void updateAndRemoveTest() {
+        index.put(product(4L, "Джинсы с наушниками", "Карман для наушников", CategoryProduct.ОДЕЖДА));
+        index.remove(1L);
+
+        assertEquals(0, index.search("levi", null, 0, 10).total());
+        assertTrue(index.search("наушники", null, 0, 10).ids().contains(4L));
+        assertFalse(index.search("наушники", null, 0, 10).ids().contains(1L));
+        assertEquals(0, index.search("sony", null, 0, 10).total());
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    @DisplayName("Изменения во время перестроения не теряются")
+    void rebuildKeepsConcurrentChangesTest() {
+        List<Product> snapshot = List.of(
+                product(1L, "Наушники Sony WH-1000XM5", "Беспроводные наушники", CategoryProduct.ЭЛЕКТРОНИКА),
+                product(5L, "Мяч футбольный", "Мяч для футбола", CategoryProduct.СПОРТ));
+        Iterator<Product> delegate = snapshot.iterator();
+        Iterator<Product> products = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return delegate.hasNext();
+            }
+
+            @Override
+            public Product next() {
+                Product product = delegate.next();
+                if (product.getId() == 5L) {
+                    // пока строится новый индекс, продукт 1 удаляют, а продукт 6 создают
+                    index.remove(1L);
+                    index.put(product(6L, "Ракетка теннисная", "Ракетка для тенниса", CategoryProduct.СПОРТ));
+                }
+                return product;
+            }
+        };
+
+        index.rebuild(products);
+
+        assertEquals(2, index.size());
+        assertEquals(List.of(5L), index.search("мяч", null, 0, 10).ids());
+        assertEquals(List.of(6L), index.search("ракетки", null, 0, 10).ids());
+        assertEquals(0, index.search("наушники", null, 0, 10).total());
+    }
+
+    private static Product product(Long id, String name, String description, CategoryProduct category) {
+        return new Product(id, name, description, Money.of(100000, "RUB"), 10, category);
+    }
+}
@@ -0,0 +1,119 @@
+package by.vladosz.microserviceofpayments.caches;
+
+import by.vladosz.microserviceofpayments.dto.ProductSuggestionDTO;
+import by.vladosz.microserviceofpayments.models.CategoryProduct;
+import by.vladosz.microserviceofpayments.models.Money;
+import by.vladosz.microserviceofpayments.models.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductSuggestIndexTest {
+    private ProductSuggestIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ProductSuggestIndex();
+        index.rebuild(List.of(
+                product(1L, "Наушники Sony WH-1000XM5"),
+                product(2L, "Наушники JBL Tune 510BT"),
+                product(3L, "Настольная лампа"),
+                product(4L, "Ёлочная гирлянда")).iterator(), Map.of(2L, 5L, 3L, 1L));
+    }
+
+    @Test
+    @DisplayName("Подсказки по началу названия и слова, популярные первыми")
+    void suggestTest() {
+        assertEquals(List.of(2L, 3L, 1L), ids(index.suggest("НА", 10)));
+        assertEquals(List.of(2L, 1L), ids(index.suggest("наушн", 10)));
+        assertEquals(List.of(1L), ids(index.suggest("  sony wh", 10)));
+        assertEquals(List.of(4L), ids(index.suggest("елоч", 10)));
+        assertEquals(List.of(2L), ids(index.suggest("на", 1)));
+        assertTrue(index.suggest("наушники b", 10).isEmpty());
+        assertTrue(index.suggest("телевизор", 10).isEmpty());
+        assertTrue(index.suggest(" ", 10).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Продажи и возвраты меняют порядок подсказок")
+    void addSalesTest() {
+        index.addSales(List.of(1L), 10);
+
+        assertEquals(List.of(1L, 2L), ids(index.suggest("наушники", 10)));
+        assertEquals(10L, index.suggest("sony", 10).getFirst().popularity());
+
+        index.addSales(List.of(1L, 99L), -20);
+
+        assertEquals(List.of(2L, 1L), ids(index.suggest("наушники", 10)));
+        assertEquals(0L, index.suggest("sony", 10).getFirst().popularity());
+    }
+
+    @Test
+    @DisplayName("Переименование сохраняет популярность, удаление не ломает соседние ветки")
+    void putAndRemoveTest() {
+        index.put(product(2L, "Колонка JBL"));
+
+        assertEquals(List.of(1L), ids(index.suggest("наушники", 10)));
+        assertEquals(5L, index.suggest("колонка", 10).getFirst().popularity());
+        assertEquals(List.of(2L), ids(index.suggest("jbl", 10)));
+
+        index.remove(1L);
+        index.remove(3L);
+
+        assertTrue(index.suggest("на", 10).isEmpty());
+        assertEquals(List.of(2L), ids(index.suggest("к", 10)));
+        assertEquals(List.of(4L), ids(index.suggest("гирлянда", 10)));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    @DisplayName("Топ узла не больше MAX_SUGGESTIONS и пересчитывается после удаления лидеров")
+    void topLimitTest() {
+        IntStream.rangeClosed(10, 30).forEach(i -> index.put(product((long) i, "Мяч " + i)));
+        List<Long> leaders = IntStream.rangeClosed(10, 14).mapToObj(i -> (long) i).toList();
+        index.addSales(leaders, 100);
+
+        assertEquals(ProductSuggestIndex.MAX_SUGGESTIONS, index.suggest("мяч", 50).size());
+        assertEquals(leaders, ids(index.suggest("мяч", 5)));
+
+        leaders.forEach(index::remove);
+
+        assertEquals(List.of(15L, 16L, 17L), ids(index.suggest("мяч", 3)));
+    }
+
+    @Test
+    @DisplayName("Изменения во время перестроения не теряются")
+    void rebuildKeepsConcurrentChangesTest() {
+        List<Product> snapshot = List.of(product(1L, "Наушники Sony"), product(5L, "Мяч футбольный"));
+        List<Product> read = new ArrayList<>();
+
+        index.rebuild(snapshot.stream().peek(product -> {
+            if (product.getId() == 5L) {
+                // пока строится новое дерево, продукт 1 удаляют, а продукт 6 создают
+                index.remove(1L);
+                index.put(product(6L, "Мяч теннисный"));
+            }
+            read.add(product);
+        }).iterator(), Map.of(5L, 3L));
+
+        assertEquals(2, read.size());
+        assertEquals(2, index.size());
+        assertEquals(List.of(5L, 6L), ids(index.suggest("мяч", 10)));
+        assertTrue(index.suggest("наушники", 10).isEmpty());
+    }
+
+    private static List<Long> ids(List<ProductSuggestionDTO> suggestions) {
+        return suggestions.stream().map(ProductSuggestionDTO::id).toList();
+    }
+
+    private static Product product(Long id, String name) {
+        return new Product(id, name, "Описание", Money.of(100000, "RUB"), 10, CategoryProduct.СПОРТ);
+    }
+}
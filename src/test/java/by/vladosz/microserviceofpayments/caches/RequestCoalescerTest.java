@@ -0,0 +1,143 @@
+package by.vladosz.microserviceofpayments.caches;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestCoalescerTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("Одновременные чтения одного ключа выполняют одну загрузку и получают ее результат")
+    void concurrentLoadsAreCollapsedTest() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer(Duration.ofSeconds(5), meterRegistry);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        int callers = 8;
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<String>> results = new ArrayList<>();
+            results.add(executor.submit(() -> coalescer.load("products", 1L, () -> {
+                loads.incrementAndGet();
+                await(release);
+                return "page";
+            })));
+            waitUntil(() -> loads.get() == 1);
+            for (int i = 1; i < callers; i++) {
+                results.add(executor.submit(() -> coalescer.load("products", 1L, () -> {
+                    loads.incrementAndGet();
+                    return "other";
+                })));
+            }
+            waitUntil(() -> coalescer.collapsedCount("products") == callers - 1);
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("page", result.get(5, TimeUnit.SECONDS));
+            }
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(1, meterRegistry.get("coalescing.loads").tag("name", "products").counter().count());
+        assertEquals(callers - 1, meterRegistry.get("coalescing.collapsed").tag("name", "products").counter().count());
+    }
+
+    @Test
+    @DisplayName("После завершения загрузки следующий вызов снова идет в источник, разные ключи не схлопываются")
+    void completedLoadIsNotCachedTest() {
+        RequestCoalescer coalescer = new RequestCoalescer(Duration.ofSeconds(5), meterRegistry);
+        AtomicInteger loads = new AtomicInteger();
+
+        coalescer.load("users", 1L, loads::incrementAndGet);
+        coalescer.load("users", 1L, loads::incrementAndGet);
+        coalescer.load("products", 1L, loads::incrementAndGet);
+
+        assertEquals(3, loads.get());
+        assertEquals(0, coalescer.collapsedCount("users"));
+    }
+
+    @Test
+    @DisplayName("Вызов внутри транзакции отклоняется до загрузки")
+    void loadInsideTransactionIsRejectedTest() {
+        RequestCoalescer coalescer = new RequestCoalescer(Duration.ofSeconds(5), meterRegistry);
+        AtomicInteger loads = new AtomicInteger();
+
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            assertThrows(IllegalStateException.class, () -> coalescer.load("products", 1L, loads::incrementAndGet));
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    @DisplayName("Ожидающие получают ошибку загрузки, по таймауту ожидания - 503")
+    void errorsAndTimeoutTest() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer(Duration.ofMillis(50), meterRegistry);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<Object> leader = executor.submit(() -> coalescer.load("users", 7L, () -> {
+                started.countDown();
+                await(release);
+                throw new IllegalStateException("User not found with id: 7");
+            }));
+            started.await();
+
+            ResponseStatusException timeout = assertThrows(ResponseStatusException.class,
+                    () -> coalescer.load("users", 7L, () -> "other"));
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, timeout.getStatusCode());
+            assertEquals(1, meterRegistry.get("coalescing.timeouts").tag("name", "users").counter().count());
+
+            Future<Object> waiter = executor.submit(() -> {
+                try {
+                    return coalescer.load("users", 7L, () -> "other");
+                } catch (IllegalStateException e) {
+                    return e.getMessage();
+                }
+            });
+            waitUntil(() -> coalescer.collapsedCount("users") == 2);
+            release.countDown();
+
+            assertEquals("User not found with id: 7", waiter.get(5, TimeUnit.SECONDS));
+            assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("Condition not reached in 5 seconds");
+            }
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package by.vladosz.microserviceofpayments.configs;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LimitingDataSourceTest {
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private Connection connection;
+
+    @Test
+    @DisplayName("Сверх лимита соединение не выдается, после закрытия разрешение возвращается")
+    void limitsConcurrentConnectionsTest() throws SQLException {
+        when(dataSource.getConnection()).thenReturn(connection);
+        LimitingDataSource limitingDataSource = new LimitingDataSource(dataSource, 1, Duration.ofMillis(10));
+
+        Connection first = limitingDataSource.getConnection();
+        assertThrows(SQLTransientConnectionException.class, limitingDataSource::getConnection);
+
+        first.close();
+        first.close();
+        assertEquals(1, limitingDataSource.availablePermits());
+
+        limitingDataSource.getConnection();
+        verify(dataSource, times(2)).getConnection();
+        verify(connection, times(2)).close();
+    }
+
+    @Test
+    @DisplayName("Ошибка пула возвращает разрешение")
+    void releasesPermitWhenPoolFailsTest() throws SQLException {
+        when(dataSource.getConnection()).thenThrow(new SQLException("pool is down"));
+        LimitingDataSource limitingDataSource = new LimitingDataSource(dataSource, 1, Duration.ofMillis(10));
+
+        assertThrows(SQLException.class, limitingDataSource::getConnection);
+
+        assertEquals(1, limitingDataSource.availablePermits());
+    }
+}
@@ -1,7 +1,11 @@
 package by.vladosz.microserviceofpayments.controllers;
 
 import by.vladosz.microserviceofpayments.dto.ProductDTO;
+import by.vladosz.microserviceofpayments.dto.ProductPatchDTO;
+import by.vladosz.microserviceofpayments.dto.Versioned;
 import by.vladosz.microserviceofpayments.models.CategoryProduct;
+import by.vladosz.microserviceofpayments.models.Money;
+import by.vladosz.microserviceofpayments.models.TotalMode;
 
 import by.vladosz.microserviceofpayments.services.ProductService;
 
@@ -14,7 +18,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
-
+import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.util.List;
@@ -22,6 +26,7 @@ import java.util.List;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 
@@ -43,13 +48,13 @@ public class ProductsControllerTest {
         ProductDTO testProduct = new ProductDTO(
                 "Test Product",
                 "Test Description",
-                100.0,
+                Money.of(10000, "RUB"),
                 CategoryProduct.ЭЛЕКТРОНИКА
         );
 
         Page<ProductDTO> mockPage = new PageImpl<>(List.of(testProduct));
 
-        when(productService.findAll(pageNumber, pageSize)).thenReturn(mockPage);
+        when(productService.findAll(pageNumber, pageSize, TotalMode.EXACT)).thenReturn(mockPage);
 
         mockMvc.perform(get("/api/products")
                         .param("page", String.valueOf(pageNumber))
@@ -67,11 +72,11 @@ public class ProductsControllerTest {
         ProductDTO testProduct = new ProductDTO(
                 nameProduct,
                 "Test Description",
-                100.0,
+                Money.of(10000, "RUB"),
                 CategoryProduct.ЭЛЕКТРОНИКА
         );
 
-        when(productService.getProductName(nameProduct, pageNumber, pageSize))
+        when(productService.getProductName(nameProduct, pageNumber, pageSize, TotalMode.EXACT))
                 .thenReturn(new PageImpl<>(List.of(testProduct)));
 
         mockMvc.perform(
@@ -86,14 +91,58 @@ public class ProductsControllerTest {
     void deleteProductTest() throws Exception {
         Long productId = 2L;
 
-        doNothing().when(productService).deleteProduct(productId);
+        doNothing().when(productService).deleteProduct(productId, null);
 
         mockMvc.perform(
                 delete("/api/products/{productId}", productId))
                 .andExpect(status().isOk());
 
-        verify(productService).deleteProduct(productId);
+        verify(productService).deleteProduct(productId, null);
+    }
+
+    @Test
+    void patchProductTest() throws Exception {
+        ProductDTO productDTO = new ProductDTO("Джинсы Levi's 501", "Классические джинсы прямого кроя",
+                Money.of(599900, "RUB"), CategoryProduct.ОДЕЖДА);
+
+        when(productService.patchProduct(eq(2L), any(ProductPatchDTO.class), eq(3L)))
+                .thenReturn(new Versioned<>(productDTO, 4));
+
+        mockMvc.perform(patch("/api/products/{productId}", 2L)
+                        .header("If-Match", "W/\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"count\": 15}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"4\""))
+                .andExpect(jsonPath("$.name").value("Джинсы Levi's 501"));
+    }
+
+    @Test
+    void patchProductValidationTest() throws Exception {
+        mockMvc.perform(patch("/api/products/{productId}", 2L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"Д\"}"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(patch("/api/products/{productId}", 2L)
+                        .header("If-Match", "\"abc\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"count\": 15}"))
+                .andExpect(status().isBadRequest());
+
+        verify(productService, never()).patchProduct(any(), any(), any());
     }
 
+    @Test
+    void findByCategoryNotModifiedTest() throws Exception {
+        String eTag = "W/\"3f2a9c1d-7\"";
 
+        when(productService.catalogETag()).thenReturn(eTag);
+
+        mockMvc.perform(get("/api/products/category/{categoryProduct}", "ЭЛЕКТРОНИКА")
+                        .header("If-None-Match", eTag))
+                .andExpect(status().isNotModified());
+
+        verify(productService, never()).getProductCategory(anyString(), anyInt(), anyInt(), any());
+    }
 }
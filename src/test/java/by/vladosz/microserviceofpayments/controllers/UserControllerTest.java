@@ -1,6 +1,8 @@
 package by.vladosz.microserviceofpayments.controllers;
 
 import by.vladosz.microserviceofpayments.dto.UserDTO;
+import by.vladosz.microserviceofpayments.dto.Versioned;
+import by.vladosz.microserviceofpayments.models.TotalMode;
 import by.vladosz.microserviceofpayments.models.User;
 import by.vladosz.microserviceofpayments.models.UserRole;
 import by.vladosz.microserviceofpayments.services.UserService;
@@ -23,6 +25,7 @@ import java.util.List;
 
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -60,7 +63,7 @@ public class UserControllerTest {
 
         Page<UserDTO> mockPage = new PageImpl<>(List.of(userDTO1, userDTO2));
 
-        when(userService.findAll(pageNumber, pageSize)).thenReturn(mockPage);
+        when(userService.findAll(pageNumber, pageSize, TotalMode.EXACT)).thenReturn(mockPage);
 
         mockMvc.perform(
                 get("/api/users")
@@ -126,16 +129,17 @@ public class UserControllerTest {
 
         String userJson = objectMapper.writeValueAsString(user);
 
-        when(userService.findUserById(user.getId())).thenReturn(userDTO);
+        when(userService.getUser(user.getId())).thenReturn(new Versioned<>(userDTO, 2));
 
         mockMvc.perform(
                         get("/api/users/{id}", user.getId())
                                 .contentType(MediaType.APPLICATION_JSON)
                                 .content(userJson))
                 .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"2\""))
                 .andExpect(jsonPath("$.userName").value("Иван"));
 
-        verify(userService, times(1)).findUserById(user.getId());
+        verify(userService, times(1)).getUser(user.getId());
     }
 
     @Test
@@ -148,7 +152,16 @@ public class UserControllerTest {
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk());
 
-        verify(userService, times(1)).deleteUser(userId);
+        verify(userService, times(1)).deleteUser(userId, null);
+    }
+
+    @Test
+    @DisplayName("Удаление с If-Match передает в сервис ожидаемую версию")
+    void deleteUserIfMatchTest() throws Exception {
+        mockMvc.perform(delete("/api/users/{id}", 1L).header("If-Match", "\"3\""))
+                .andExpect(status().isOk());
+
+        verify(userService, times(1)).deleteUser(1L, 3L);
     }
 
 
@@ -0,0 +1,53 @@
+package by.vladosz.microserviceofpayments.models;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Currency;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    private static final Currency RUB = Currency.getInstance("RUB");
+    private static final Currency JPY = Currency.getInstance("JPY");
+
+    @Test
+    @DisplayName("Разбор десятичной строки учитывает число знаков валюты")
+    void parseTest() {
+        assertEquals(Money.of(899050, "RUB"), Money.parse("8990.5", RUB));
+        assertEquals(Money.of(899000, "RUB"), Money.parse("8990.000", RUB));
+        assertEquals(Money.of(-5, "RUB"), Money.parse("-0.05", RUB));
+        assertEquals(Money.of(100, "JPY"), Money.parse("100", JPY));
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("0.001", RUB));
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("1.5", JPY));
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("1e3", RUB));
+    }
+
+    @Test
+    @DisplayName("Сумма в цикле не теряет копейки и не смешивает валюты")
+    void sumTest() {
+        Money.Sum sum = new Money.Sum();
+        for (int i = 0; i < 10; i++) {
+            sum.add(Money.of(10, "RUB"));
+        }
+
+        assertEquals(Money.of(100, "RUB"), sum.toMoney());
+        assertEquals("1.00 RUB", sum.toMoney().toString());
+        assertThrows(IllegalArgumentException.class, () -> sum.add(Money.of(1, "USD")));
+        assertThrows(ArithmeticException.class, () -> Money.of(Long.MAX_VALUE, "RUB").plus(Money.of(1, "RUB")));
+    }
+
+    @Test
+    @DisplayName("В JSON сумма пишется точным десятичным числом вместе с валютой")
+    void jsonTest() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        String json = objectMapper.writeValueAsString(Money.of(-899005, "RUB"));
+
+        assertEquals("{\"amount\":-8990.05,\"currency\":\"RUB\"}", json);
+        assertEquals(Money.of(-899005, "RUB"), objectMapper.readValue(json, Money.class));
+        assertEquals(Money.of(1999, "RUB"), objectMapper.readValue("{\"currency\":\"RUB\",\"amount\":\"19.99\"}", Money.class));
+    }
+}
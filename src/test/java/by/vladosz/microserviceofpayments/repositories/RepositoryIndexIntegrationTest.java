@@ -0,0 +1,164 @@
+package by.vladosz.microserviceofpayments.repositories;
+
+import by.vladosz.microserviceofpayments.models.CategoryProduct;
+import by.vladosz.microserviceofpayments.models.ChangePosition;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.SqlProvider;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.params.provider.Arguments.arguments;
+
+/**
+ * Проверяет по EXPLAIN, что запросы репозиториев обслуживаются индексами из миграций.
+ * План строится по SQL, который репозиторий действительно отправил в БД: запросы JPA перехватывает
+ * StatementInspector, запросы JdbcTemplate - обертка над ним. Параметры остаются параметрами,
+ * поэтому используется EXPLAIN (GENERIC_PLAN) из PostgreSQL 16.
+ * Seq scan отключается, чтобы на маленьких тестовых таблицах план не зависел от их размера.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector=" +
+        "by.vladosz.microserviceofpayments.repositories.RepositoryIndexIntegrationTest$CapturedStatements")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+public class RepositoryIndexIntegrationTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @BeforeEach
+    void disableSeqScan() {
+        entityManager.createNativeQuery("set local enable_seqscan = off").executeUpdate();
+    }
+
+    static Stream<Arguments> repositoryQueries() {
+        PageRequest page = PageRequest.of(0, 10);
+        return Stream.of(
+                query("findByNameAsDTO", test -> test.productRepository.findByNameAsDTO(
+                        page.withSort(Sort.by("priceBaseMinor")), "Телефон"), "products_name_price_id_idx"),
+                query("findByCategoryAsDTO", test -> test.productRepository.findByCategoryAsDTO(
+                        page.withSort(Sort.by("priceBaseMinor")), CategoryProduct.КНИГИ), "products_category_price_id_idx"),
+                query("findAllAsDTO by name asc", test -> test.productRepository.findAllAsDTO(
+                        page.withSort(Sort.by(Sort.Direction.ASC, "name"))), "products_name_id_idx"),
+                query("findAllAsDTO by name desc", test -> test.productRepository.findAllAsDTO(
+                        page.withSort(Sort.by(Sort.Direction.DESC, "name"))), "products_name_id_idx"),
+                query("findAllAsDTO by price asc", test -> test.productRepository.findAllAsDTO(
+                        page.withSort(Sort.by(Sort.Direction.ASC, "priceBaseMinor"))), "products_price_id_idx"),
+                query("findAllAsDTO by price desc", test -> test.productRepository.findAllAsDTO(
+                        page.withSort(Sort.by(Sort.Direction.DESC, "priceBaseMinor"))), "products_price_id_idx"),
+                query("findAllByOrderByNameAscIdAsc", test -> test.productRepository
+                        .findAllByOrderByNameAscIdAsc(PageRequest.of(0, 11)), "products_name_id_idx"),
+                query("findAllByPriceBaseMinorNotNullOrderByPriceBaseMinorAscIdAsc", test -> test.productRepository
+                        .findAllByPriceBaseMinorNotNullOrderByPriceBaseMinorAscIdAsc(PageRequest.of(0, 11)),
+                        "products_price_id_idx"),
+                query("findNextByNameAsc", test -> test.productRepository
+                        .findNextByNameAsc("a", 5L, PageRequest.of(0, 11)), "products_name_id_idx"),
+                query("findNextByPriceAsc", test -> test.productRepository
+                        .findNextByPriceAsc(1000L, 5L, PageRequest.of(0, 11)), "products_price_id_idx"),
+                query("findByUserName", test -> test.userRepository.findByUserName("Иван"), "users_user_name_uidx"),
+                query("findAllAsDTOByIdIn", test -> test.userRepository.findAllAsDTOByIdIn(List.of(1L, 2L)), "users_pkey"),
+                query("findAfter", test -> new ProductChangeRepository(new CapturingJdbcTemplate(test.dataSource),
+                        new ObjectMapper()).findAfter(new ChangePosition(5, 7), 100), "product_changes_position_idx")
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("repositoryQueries")
+    void repositoryQueryUsesIndex(String method, Consumer<RepositoryIndexIntegrationTest> call, String expectedIndex) {
+        CapturedStatements.STATEMENTS.clear();
+        call.accept(this);
+        // у страницы первым идет запрос строк, count(*) после него
+        String sql = CapturedStatements.STATEMENTS.stream()
+                .filter(statement -> statement.stripLeading().toLowerCase().startsWith("select"))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("no select captured for " + method));
+
+        @SuppressWarnings("unchecked")
+        List<String> plan = entityManager.createNativeQuery("explain (generic_plan) " + numberParameters(sql))
+                .getResultList();
+
+        assertThat(String.join("\n", plan))
+                .as("plan for %s: %s", method, sql)
+                .contains(expectedIndex);
+    }
+
+    private static Arguments query(String method, Consumer<RepositoryIndexIntegrationTest> call, String expectedIndex) {
+        return arguments(method, call, expectedIndex);
+    }
+
+    /**
+     * JDBC-параметры ? в параметры PostgreSQL $1, $2, ..., которые понимает EXPLAIN (GENERIC_PLAN).
+     */
+    private static String numberParameters(String sql) {
+        StringBuilder numbered = new StringBuilder(sql.length() + 16);
+        int parameter = 0;
+        for (char c : sql.toCharArray()) {
+            if (c == '?') {
+                numbered.append('$').append(++parameter);
+            } else {
+                numbered.append(c);
+            }
+        }
+        return numbered.toString();
+    }
+
+    public static class CapturedStatements implements StatementInspector {
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+
+    private static class CapturingJdbcTemplate extends JdbcTemplate {
+        CapturingJdbcTemplate(DataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        public <T> T query(PreparedStatementCreator psc, PreparedStatementSetter pss, ResultSetExtractor<T> rse) {
+            if (psc instanceof SqlProvider sqlProvider) {
+                CapturedStatements.STATEMENTS.add(sqlProvider.getSql());
+            }
+            return super.query(psc, pss, rse);
+        }
+    }
+}
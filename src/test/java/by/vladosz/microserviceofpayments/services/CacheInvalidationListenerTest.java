@@ -0,0 +1,68 @@
+package by.vladosz.microserviceofpayments.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CacheInvalidationListenerTest {
+    @Mock
+    private CacheInvalidationService cacheInvalidationService;
+
+    @Mock
+    private JdbcConnectionDetails connectionDetails;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private CacheInvalidationListener listener;
+
+    @BeforeEach
+    void setUp() {
+        listener = new CacheInvalidationListener(cacheInvalidationService, connectionDetails, new ObjectMapper(),
+                meterRegistry, Duration.ofSeconds(5), Duration.ofSeconds(30));
+    }
+
+    @Test
+    @DisplayName("Накопившиеся сообщения объединяются: каждый продукт и пользователь сбрасывается один раз, изменение остатка - только из кэша продукта")
+    void coalescesMessagesTest() {
+        listener.apply(List.of(
+                "{\"type\":\"products\",\"ids\":[1,2]}",
+                "{\"type\":\"products\",\"ids\":[2,3]}",
+                "{\"type\":\"product-stock\",\"ids\":[3,4]}",
+                "{\"type\":\"users\",\"names\":[\"ivan\",\"petr\"]}",
+                "{\"type\":\"users\",\"names\":[\"ivan\"]}"));
+
+        verify(cacheInvalidationService).onProductsChanged(Set.of(1L, 2L, 3L));
+        verify(cacheInvalidationService).onProductStockChanged(Set.of(4L));
+        verify(cacheInvalidationService).onUsersChanged(Set.of("ivan", "petr"));
+        verifyNoMoreInteractions(cacheInvalidationService);
+        assertEquals(5, meterRegistry.get("cache.invalidation.messages").counter().count());
+    }
+
+    @Test
+    @DisplayName("Сообщение о массовом изменении заменяет точечные, некорректные сообщения пропускаются")
+    void allAndMalformedMessagesTest() {
+        listener.apply(List.of(
+                "{\"type\":\"products\",\"ids\":[1]}",
+                "{\"type\":\"products\",\"all\":true}",
+                "not json",
+                "{\"type\":\"orders\",\"ids\":[5]}"));
+
+        verify(cacheInvalidationService).onAllProductsChanged();
+        verify(cacheInvalidationService).onUsersChanged(Set.of());
+        verify(cacheInvalidationService, never()).onProductsChanged(any());
+        verify(cacheInvalidationService, never()).onAllUsersChanged();
+    }
+}
@@ -0,0 +1,100 @@
+package by.vladosz.microserviceofpayments.services;
+
+import by.vladosz.microserviceofpayments.caches.ProductCache;
+import by.vladosz.microserviceofpayments.caches.ProductPageCache;
+import by.vladosz.microserviceofpayments.caches.ProductSearchIndex;
+import by.vladosz.microserviceofpayments.caches.ProductSuggestIndex;
+import by.vladosz.microserviceofpayments.caches.UserDetailsCache;
+import by.vladosz.microserviceofpayments.models.CategoryProduct;
+import by.vladosz.microserviceofpayments.models.Product;
+import by.vladosz.microserviceofpayments.repositories.ProductRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CacheInvalidationServiceTest {
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ProductCache productCache;
+
+    @Mock
+    private ProductPageCache productPageCache;
+
+    @Mock
+    private ProductSearchIndex productSearchIndex;
+
+    @Mock
+    private ProductSuggestIndex productSuggestIndex;
+
+    @Mock
+    private ProductFacetService productFacetService;
+
+    @Mock
+    private ProductSearchService productSearchService;
+
+    @Mock
+    private ProductChangeFeed productChangeFeed;
+
+    @Mock
+    private UserDetailsCache userDetailsCache;
+
+    @InjectMocks
+    private CacheInvalidationService cacheInvalidationService;
+
+    @Test
+    @DisplayName("Измененный продукт перечитывается в индексы, удаленный из них убирается")
+    void onProductsChangedTest() {
+        Product product = new Product();
+        product.setId(1L);
+        product.setName("Ноутбук");
+        product.setCategory(CategoryProduct.ЭЛЕКТРОНИКА);
+        when(productRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(product));
+
+        cacheInvalidationService.onProductsChanged(List.of(1L, 2L));
+
+        verify(productCache).evict(1L);
+        verify(productCache).evict(2L);
+        verify(productSearchIndex).put(product);
+        verify(productSuggestIndex).put(product);
+        verify(productFacetService).onProductSaved(product);
+        verify(productSearchIndex).remove(2L);
+        verify(productSuggestIndex).remove(2L);
+        verify(productFacetService).onProductDeleted(2L);
+        verify(productPageCache).onCatalogChanged();
+        verify(productChangeFeed).poll();
+    }
+
+    @Test
+    @DisplayName("Изменение остатка сбрасывает только кэш продукта, страницы и индексы не трогает")
+    void onProductStockChangedTest() {
+        cacheInvalidationService.onProductStockChanged(List.of(1L));
+
+        verify(productCache).evict(1L);
+        verifyNoInteractions(productPageCache, productSearchIndex, productSuggestIndex, productFacetService,
+                productRepository);
+    }
+
+    @Test
+    @DisplayName("После переподключения сбрасываются все кэши и перестраиваются индексы")
+    void onListenerReconnectedTest() {
+        cacheInvalidationService.onListenerReconnected();
+
+        verify(userDetailsCache).removeAll();
+        verify(productCache).evictAll();
+        verify(productPageCache).onCatalogChanged();
+        verify(productSearchService).rebuildIndex();
+        verify(productFacetService).reconcile();
+        verify(productChangeFeed).poll();
+        verifyNoInteractions(productRepository);
+    }
+}
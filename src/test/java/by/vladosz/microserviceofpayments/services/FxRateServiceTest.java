@@ -0,0 +1,110 @@
+package by.vladosz.microserviceofpayments.services;
+
+import by.vladosz.microserviceofpayments.caches.ProductPageCache;
+import by.vladosz.microserviceofpayments.models.FxRates;
+import by.vladosz.microserviceofpayments.models.Money;
+import by.vladosz.microserviceofpayments.repositories.FxRateRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Currency;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FxRateServiceTest {
+    private static final Currency RUB = Currency.getInstance("RUB");
+    private static final Currency USD = Currency.getInstance("USD");
+
+    @Mock
+    private FxRateRepository fxRateRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private ProductPageCache productPageCache;
+
+    @TempDir
+    private Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        lenient().doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    @Test
+    @DisplayName("Курсы из файла записываются в таблицу, новый снимок подменяет старый")
+    void refreshFromFileTest() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("fx-rates.properties"), "usd=92.50\nRUB=1\n");
+        FxRateService fxRateService = new FxRateService(fxRateRepository, transactionTemplate, productPageCache,
+                file.toString());
+        when(fxRateRepository.findAll()).thenReturn(Map.of(RUB, BigDecimal.ONE, USD, new BigDecimal("92.50")));
+
+        fxRateService.refresh();
+        fxRateService.refresh();
+
+        verify(fxRateRepository, times(2)).upsert(FxRates.of(Map.of(USD, new BigDecimal("92.50"))));
+        verify(productPageCache, times(1)).onCatalogChanged();
+        assertEquals(929625L, fxRateService.toBaseMinorUnits(Money.of(10050, "USD")));
+    }
+
+    @Test
+    @DisplayName("Ошибка в файле курсов оставляет прежний снимок")
+    void refreshWithInvalidFileTest() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("fx-rates.properties"), "RUB=2\n");
+        FxRateService fxRateService = new FxRateService(fxRateRepository, transactionTemplate, productPageCache,
+                file.toString());
+
+        fxRateService.refresh();
+
+        assertEquals(FxRates.baseOnly(), fxRateService.current());
+        assertNull(fxRateService.toBaseMinorUnits(Money.of(100, "USD")));
+        verifyNoInteractions(fxRateRepository, productPageCache);
+    }
+
+    @Test
+    @DisplayName("Валюта продуктов без курса видна в health, но не снимает готовность")
+    void missingCurrencyReportedInHealthTest() {
+        FxRateService fxRateService = new FxRateService(fxRateRepository, transactionTemplate, productPageCache, "");
+        FxRatesHealthIndicator healthIndicator = new FxRatesHealthIndicator(fxRateService);
+        when(fxRateRepository.findAll()).thenReturn(Map.of(RUB, BigDecimal.ONE));
+        when(fxRateRepository.findProductCurrenciesWithoutRate()).thenReturn(List.of("USD"), List.of());
+
+        fxRateService.refresh();
+        assertEquals(Status.UP, healthIndicator.health().getStatus());
+        assertEquals(List.of("USD"), healthIndicator.health().getDetails().get("missingCurrencies"));
+        fxRateService.refresh();
+        assertEquals(List.of(), healthIndicator.health().getDetails().get("missingCurrencies"));
+    }
+
+    @Test
+    @DisplayName("Пересчет учитывает число знаков валюты и округляет как round() в Postgres")
+    void toBaseMinorUnitsTest() {
+        FxRates rates = FxRates.of(Map.of(USD, new BigDecimal("92.5"), Currency.getInstance("JPY"), new BigDecimal("0.6")));
+
+        assertEquals(6000L, rates.toBaseMinorUnits(Money.of(100, "JPY")));
+        assertEquals(93L, rates.toBaseMinorUnits(Money.of(1, "USD")));
+        assertEquals(-93L, rates.toBaseMinorUnits(Money.of(-1, "USD")));
+        assertEquals(899000L, rates.toBaseMinorUnits(Money.of(899000, "RUB")));
+        assertNull(rates.toBaseMinorUnits(Money.of(100, "EUR")));
+    }
+}
@@ -0,0 +1,152 @@
+package by.vladosz.microserviceofpayments.services;
+
+import by.vladosz.microserviceofpayments.caches.ProductCache;
+import by.vladosz.microserviceofpayments.dto.ReservationDTO;
+import by.vladosz.microserviceofpayments.repositories.InventoryReservationRepository;
+import by.vladosz.microserviceofpayments.repositories.ProductRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.OptionalInt;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryServiceTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private InventoryReservationRepository reservationRepository;
+
+    @Mock
+    private ProductCache productCache;
+
+    @Test
+    @DisplayName("Резерв списывает остаток условным UPDATE и вытесняет продукт из кэша")
+    void reserveTest() {
+        InventoryService inventoryService = new InventoryService(productRepository, reservationRepository, productCache, 0, 100);
+        UUID reservationId = UUID.randomUUID();
+        when(productRepository.decrementCount(1L, 3)).thenReturn(1);
+        when(reservationRepository.create(1L, 3)).thenReturn(reservationId);
+
+        ReservationDTO reservation = inventoryService.reserve(1L, 3);
+
+        assertEquals(reservationId, reservation.getReservationId());
+        assertEquals(3, reservation.getQuantity());
+        verify(productRepository).decrementCount(1L, 3);
+        verify(productCache).evict(1L);
+        verify(productRepository, never()).findById(any());
+    }
+
+    @Test
+    @DisplayName("Нехватка остатка дает 409, неизвестный продукт дает 404")
+    void reserveNotEnoughStockTest() {
+        InventoryService inventoryService = new InventoryService(productRepository, reservationRepository, productCache, 0, 100);
+        when(productRepository.decrementCount(anyLong(), eq(5))).thenReturn(0);
+        when(productRepository.existsById(1L)).thenReturn(true);
+        when(productRepository.existsById(2L)).thenReturn(false);
+
+        ResponseStatusException conflict = assertThrows(ResponseStatusException.class,
+                () -> inventoryService.reserve(1L, 5));
+        ResponseStatusException notFound = assertThrows(ResponseStatusException.class,
+                () -> inventoryService.reserve(2L, 5));
+
+        assertEquals(HttpStatus.CONFLICT, conflict.getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, notFound.getStatusCode());
+        verifyNoInteractions(productCache, reservationRepository);
+    }
+
+    @Test
+    @DisplayName("Количество должно быть положительным и не больше inventory.max-quantity")
+    void reserveQuantityOutOfRangeTest() {
+        InventoryService inventoryService = new InventoryService(productRepository, reservationRepository, productCache, 10, 100);
+
+        ResponseStatusException zero = assertThrows(ResponseStatusException.class,
+                () -> inventoryService.reserve(1L, 0));
+        ResponseStatusException tooMany = assertThrows(ResponseStatusException.class,
+                () -> inventoryService.reserve(1L, Integer.MAX_VALUE));
+
+        assertEquals(HttpStatus.BAD_REQUEST, zero.getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, tooMany.getStatusCode());
+        verifyNoInteractions(productRepository, reservationRepository);
+    }
+
+    @Test
+    @DisplayName("Освобождается только записанный резерв и только один раз")
+    void releaseUnknownReservationTest() {
+        InventoryService inventoryService = new InventoryService(productRepository, reservationRepository, productCache, 0, 100);
+        UUID reservationId = UUID.randomUUID();
+        when(reservationRepository.delete(reservationId, 1L)).thenReturn(OptionalInt.of(3), OptionalInt.empty());
+        when(productRepository.incrementCount(1L, 3)).thenReturn(1);
+
+        inventoryService.release(1L, reservationId);
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> inventoryService.release(1L, reservationId));
+
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
+        verify(productRepository, times(1)).incrementCount(1L, 3);
+    }
+
+    @Test
+    @DisplayName("Если резерв не записался, списанное возвращается на склад")
+    void reserveReturnsStockWhenReservationFailsTest() {
+        InventoryService inventoryService = new InventoryService(productRepository, reservationRepository, productCache, 0, 100);
+        when(productRepository.decrementCount(1L, 2)).thenReturn(1);
+        when(reservationRepository.create(1L, 2)).thenThrow(new IllegalStateException("insert failed"));
+        when(productRepository.incrementCount(1L, 2)).thenReturn(1);
+
+        assertThrows(IllegalStateException.class, () -> inventoryService.reserve(1L, 2));
+
+        verify(productRepository).incrementCount(1L, 2);
+    }
+
+    @Test
+    @DisplayName("Реестр обслуживает резервы из выделенного блока и возвращает остаток при сбросе")
+    void reserveFromLedgerTest() {
+        InventoryService inventoryService = new InventoryService(productRepository, reservationRepository, productCache, 10, 100);
+        when(productRepository.decrementCount(1L, 11)).thenReturn(1);
+        when(productRepository.incrementCount(1L, 7)).thenReturn(1);
+        when(reservationRepository.create(1L, 1)).thenAnswer(invocation -> UUID.randomUUID());
+        when(reservationRepository.delete(any(UUID.class), eq(1L))).thenReturn(OptionalInt.of(1));
+
+        ReservationDTO first = inventoryService.reserve(1L, 1);
+        ReservationDTO second = inventoryService.reserve(1L, 1);
+        for (int i = 0; i < 4; i++) {
+            inventoryService.reserve(1L, 1);
+        }
+        inventoryService.release(1L, first.getReservationId());
+        inventoryService.release(1L, second.getReservationId());
+        inventoryService.flush();
+
+        verify(productRepository, times(1)).decrementCount(1L, 11);
+        verify(productRepository, times(1)).incrementCount(1L, 7);
+        verifyNoMoreInteractions(productRepository);
+    }
+
+    @Test
+    @DisplayName("Последние единицы из блока реестра возвращаются в БД, чтобы их можно было продать")
+    void reserveDrainsLedgerWhenStockEndsTest() {
+        InventoryService inventoryService = new InventoryService(productRepository, reservationRepository, productCache, 10, 100);
+        when(productRepository.decrementCount(1L, 11)).thenReturn(1);
+        when(productRepository.decrementCount(1L, 15)).thenReturn(0);
+        when(productRepository.decrementCount(1L, 5)).thenReturn(0, 1);
+        when(productRepository.incrementCount(1L, 2)).thenReturn(1);
+        when(reservationRepository.create(eq(1L), anyInt())).thenAnswer(invocation -> UUID.randomUUID());
+
+        inventoryService.reserve(1L, 1);
+        inventoryService.reserve(1L, 8);
+        inventoryService.reserve(1L, 5);
+
+        verify(productRepository).incrementCount(1L, 2);
+        verify(productRepository, times(2)).decrementCount(1L, 5);
+    }
+}
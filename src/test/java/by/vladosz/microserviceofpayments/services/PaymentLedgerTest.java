@@ -0,0 +1,113 @@
+package by.vladosz.microserviceofpayments.services;
+
+import by.vladosz.microserviceofpayments.dto.LedgerBalanceDTO;
+import by.vladosz.microserviceofpayments.models.LedgerEntry;
+import by.vladosz.microserviceofpayments.models.LedgerEventType;
+import by.vladosz.microserviceofpayments.models.Money;
+import by.vladosz.microserviceofpayments.repositories.PaymentLedgerRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentLedgerTest {
+
+    @Mock
+    private PaymentLedgerRepository paymentLedgerRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private PaymentLedger paymentLedger;
+
+    @BeforeEach
+    void setUp() {
+        paymentLedger = new PaymentLedger(paymentLedgerRepository, transactionTemplate, 500, 1000);
+        lenient().doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        paymentLedger.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        paymentLedger.stop();
+    }
+
+    @Test
+    @DisplayName("События, пришедшие во время записи, фиксируются следующей пачкой одним INSERT")
+    void groupCommitTest() throws Exception {
+        CountDownLatch firstWriteStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstWrite = new CountDownLatch(1);
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            batchSizes.add(invocation.<List<LedgerEntry>>getArgument(0).size());
+            firstWriteStarted.countDown();
+            releaseFirstWrite.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(paymentLedgerRepository).insertAll(anyList());
+
+        CompletableFuture<Void> first = paymentLedger.append(entry(1L, LedgerEventType.AUTHORIZED));
+        assertTrue(firstWriteStarted.await(5, TimeUnit.SECONDS));
+        List<CompletableFuture<Void>> rest = IntStream.range(0, 50)
+                .mapToObj(i -> paymentLedger.append(entry(1L, LedgerEventType.AUTHORIZED)))
+                .toList();
+        releaseFirstWrite.countDown();
+
+        first.get(5, TimeUnit.SECONDS);
+        CompletableFuture.allOf(rest.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+        assertThat(batchSizes).containsExactly(1, 50);
+    }
+
+    @Test
+    @DisplayName("Ошибка фиксации пачки завершает future всех ее событий с ошибкой")
+    void failedWriteTest() {
+        doThrow(new IllegalStateException("database is down")).when(paymentLedgerRepository).insertAll(anyList());
+
+        CompletableFuture<Void> first = paymentLedger.append(entry(1L, LedgerEventType.AUTHORIZED));
+        CompletableFuture<Void> second = paymentLedger.append(entry(2L, LedgerEventType.AUTHORIZED));
+
+        assertThrows(Exception.class, () -> first.get(5, TimeUnit.SECONDS));
+        assertThrows(Exception.class, () -> second.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("Балансы читаются из БД, проигрывание пересчитывает их в транзакции")
+    void balancesAndReplayTest() {
+        LedgerBalanceDTO balance = new LedgerBalanceDTO(1L, "RUB", Money.of(10000, "RUB"), Money.of(0, "RUB"),
+                Money.of(10000, "RUB"));
+        when(paymentLedgerRepository.findBalances(1L)).thenReturn(List.of(balance));
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(paymentLedgerRepository.rebuildBalances()).thenReturn(3);
+
+        assertThat(paymentLedger.balances(1L)).containsExactly(balance);
+        assertEquals(3, paymentLedger.replay());
+    }
+
+    private static LedgerEntry entry(Long userId, LedgerEventType type) {
+        return new LedgerEntry(10L, userId, type, Money.of(10000, "RUB"), Instant.now());
+    }
+}
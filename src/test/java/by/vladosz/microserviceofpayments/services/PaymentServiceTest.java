@@ -0,0 +1,322 @@
+package by.vladosz.microserviceofpayments.services;
+
+import by.vladosz.microserviceofpayments.caches.ProductSuggestIndex;
+import by.vladosz.microserviceofpayments.dto.PaymentDTO;
+import by.vladosz.microserviceofpayments.dto.PaymentRequestDTO;
+import by.vladosz.microserviceofpayments.mappers.PaymentMapper;
+import by.vladosz.microserviceofpayments.models.CategoryProduct;
+import by.vladosz.microserviceofpayments.models.LedgerEntry;
+import by.vladosz.microserviceofpayments.models.LedgerEventType;
+import by.vladosz.microserviceofpayments.models.Money;
+import by.vladosz.microserviceofpayments.models.Payment;
+import by.vladosz.microserviceofpayments.models.PaymentStatus;
+import by.vladosz.microserviceofpayments.models.Product;
+import by.vladosz.microserviceofpayments.repositories.PaymentRepository;
+import by.vladosz.microserviceofpayments.repositories.ProductRepository;
+import by.vladosz.microserviceofpayments.repositories.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mapstruct.factory.Mappers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentServiceTest {
+
+    @Mock
+    private PaymentRepository paymentRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private PaymentProcessor paymentProcessor;
+
+    @Mock
+    private PaymentLedger paymentLedger;
+
+    @Mock
+    private ProductSuggestIndex productSuggestIndex;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private ExecutorService authorizationExecutor;
+
+    private final PaymentMapper paymentMapper = Mappers.getMapper(PaymentMapper.class);
+
+    private PaymentService paymentService;
+
+    @BeforeEach
+    void setUp() {
+        paymentService = new PaymentService(paymentRepository, userRepository, productRepository, paymentMapper,
+                paymentProcessor, paymentLedger, productSuggestIndex, transactionTemplate, authorizationExecutor, Duration.ofSeconds(5),
+                Duration.ofMinutes(1));
+        lenient().when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @Test
+    @DisplayName("Новый платеж сохраняется в PENDING и отправляется на авторизацию")
+    void createPaymentTest() {
+        Product product1 = new Product(1L, "Наушники Sony", "Беспроводные наушники", Money.of(899000, "RUB"),
+                25, CategoryProduct.ЭЛЕКТРОНИКА);
+        Product product2 = new Product(2L, "Смартфон Xiaomi", "Флагманский смартфон", Money.of(5999900, "RUB"),
+                75, CategoryProduct.ЭЛЕКТРОНИКА);
+
+        when(paymentRepository.findByIdempotencyKey("key-1")).thenReturn(Optional.empty());
+        when(userRepository.existsById(5L)).thenReturn(true);
+        when(productRepository.findAllById(List.of(1L, 2L, 1L))).thenReturn(List.of(product1, product2));
+        when(paymentRepository.save(any(Payment.class))).thenAnswer(invocation -> {
+            Payment payment = invocation.getArgument(0);
+            payment.setId(100L);
+            return payment;
+        });
+
+        PaymentDTO result = paymentService.createPayment("key-1", new PaymentRequestDTO(5L, List.of(1L, 2L, 1L)));
+
+        assertEquals(100L, result.getId());
+        assertEquals(PaymentStatus.PENDING, result.getStatus());
+        assertEquals(Money.of(7797900, "RUB"), result.getAmount());
+        verify(authorizationExecutor).execute(any(Runnable.class));
+        verifyNoInteractions(paymentProcessor);
+    }
+
+    @Test
+    @DisplayName("Повтор с тем же ключом возвращает сохраненный платеж без повторного выполнения")
+    void createPaymentReplayTest() {
+        PaymentRequestDTO request = new PaymentRequestDTO(5L, List.of(1L));
+        when(paymentRepository.findByIdempotencyKey("key-1")).thenReturn(Optional.empty());
+        when(userRepository.existsById(5L)).thenReturn(true);
+        when(productRepository.findAllById(List.of(1L))).thenReturn(List.of(new Product(1L, "Наушники Sony",
+                "Беспроводные наушники", Money.of(899000, "RUB"), 25, CategoryProduct.ЭЛЕКТРОНИКА)));
+        ArgumentCaptor<Payment> saved = ArgumentCaptor.forClass(Payment.class);
+        when(paymentRepository.save(saved.capture())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        paymentService.createPayment("key-1", request);
+        Payment stored = saved.getValue();
+        stored.setStatus(PaymentStatus.AUTHORIZED);
+        when(paymentRepository.findByIdempotencyKey("key-1")).thenReturn(Optional.of(stored));
+
+        PaymentDTO replay = paymentService.createPayment("key-1", new PaymentRequestDTO(5L, List.of(1L)));
+
+        assertEquals(PaymentStatus.AUTHORIZED, replay.getStatus());
+        verify(paymentRepository, times(1)).save(any());
+        verify(authorizationExecutor, times(1)).execute(any(Runnable.class));
+    }
+
+    @Test
+    @DisplayName("Тот же ключ с другим телом запроса дает 422")
+    void createPaymentKeyReuseTest() {
+        Payment stored = new Payment(100L, "key-1", "other-hash", 5L, new ArrayList<>(List.of(1L)), Money.of(899000, "RUB"),
+                PaymentStatus.PENDING, null, Instant.now(), Instant.now());
+        when(paymentRepository.findByIdempotencyKey("key-1")).thenReturn(Optional.of(stored));
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> paymentService.createPayment("key-1", new PaymentRequestDTO(5L, List.of(2L))));
+
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, exception.getStatusCode());
+        verify(paymentRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("Переполненная очередь авторизации дает 503, платеж остается в PENDING")
+    void createPaymentQueueFullTest() {
+        when(paymentRepository.findByIdempotencyKey("key-1")).thenReturn(Optional.empty());
+        when(userRepository.existsById(5L)).thenReturn(true);
+        when(productRepository.findAllById(List.of(1L))).thenReturn(List.of(new Product(1L, "Наушники Sony",
+                "Беспроводные наушники", Money.of(899000, "RUB"), 25, CategoryProduct.ЭЛЕКТРОНИКА)));
+        when(paymentRepository.save(any(Payment.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        doThrow(new RejectedExecutionException()).when(authorizationExecutor).execute(any(Runnable.class));
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> paymentService.createPayment("key-1", new PaymentRequestDTO(5L, List.of(1L))));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exception.getStatusCode());
+        verify(paymentRepository).save(any());
+    }
+
+    @Test
+    @DisplayName("Авторизацию выполняет только воркер, сменивший статус PENDING на PROCESSING")
+    void authorizeTest() {
+        Payment payment = new Payment(100L, "key-1", "hash", 5L, new ArrayList<>(List.of(1L)), Money.of(899000, "RUB"),
+                PaymentStatus.PROCESSING, null, Instant.now(), Instant.now());
+        when(paymentRepository.startProcessing(eq(100L), eq(PaymentStatus.PENDING), eq(PaymentStatus.PROCESSING), any()))
+                .thenReturn(1, 0);
+        when(paymentRepository.findWithItemsById(100L)).thenReturn(Optional.of(payment));
+        when(paymentProcessor.authorize(payment)).thenReturn(PaymentProcessor.AuthorizationResult.approve());
+        when(paymentRepository.transition(eq(100L), eq(PaymentStatus.PROCESSING), eq(PaymentStatus.APPROVED), isNull(), any()))
+                .thenReturn(1);
+        when(paymentLedger.append(any(LedgerEntry.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        paymentService.authorize(100L);
+        paymentService.authorize(100L);
+
+        verify(paymentProcessor, times(1)).authorize(payment);
+        verify(paymentLedger, times(1)).append(argThat(entry -> entry.type() == LedgerEventType.AUTHORIZED));
+        verify(paymentRepository).transition(eq(100L), eq(PaymentStatus.PROCESSING), eq(PaymentStatus.APPROVED),
+                isNull(), any());
+        verify(paymentRepository).transition(eq(100L), eq(PaymentStatus.APPROVED), eq(PaymentStatus.AUTHORIZED),
+                isNull(), any());
+    }
+
+    @Test
+    @DisplayName("Сбой журнала после одобрения оставляет платеж в APPROVED, повтор пишет только журнал")
+    void approvalLedgerFailureTest() {
+        Payment payment = new Payment(100L, "key-1", "hash", 5L, new ArrayList<>(List.of(1L)), Money.of(899000, "RUB"),
+                PaymentStatus.PROCESSING, null, Instant.now(), Instant.now());
+        when(paymentRepository.startProcessing(eq(100L), eq(PaymentStatus.PENDING), eq(PaymentStatus.PROCESSING), any()))
+                .thenReturn(1);
+        when(paymentRepository.findWithItemsById(100L)).thenReturn(Optional.of(payment));
+        when(paymentProcessor.authorize(payment)).thenReturn(PaymentProcessor.AuthorizationResult.approve());
+        when(paymentRepository.transition(eq(100L), eq(PaymentStatus.PROCESSING), eq(PaymentStatus.APPROVED), isNull(), any()))
+                .thenReturn(1);
+        when(paymentLedger.append(any(LedgerEntry.class)))
+                .thenReturn(CompletableFuture.failedFuture(new RejectedExecutionException()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        paymentService.authorize(100L);
+
+        verify(paymentRepository).transition(eq(100L), eq(PaymentStatus.PROCESSING), eq(PaymentStatus.APPROVED),
+                isNull(), any());
+        verify(paymentRepository, never()).transition(eq(100L), eq(PaymentStatus.PROCESSING), eq(PaymentStatus.PENDING),
+                any(), any());
+        verify(paymentRepository, never()).transition(eq(100L), eq(PaymentStatus.APPROVED), eq(PaymentStatus.AUTHORIZED),
+                any(), any());
+
+        payment.setStatus(PaymentStatus.APPROVED);
+        paymentService.recordApproval(100L);
+
+        verify(paymentProcessor, times(1)).authorize(payment);
+        verify(paymentLedger, times(2)).append(any(LedgerEntry.class));
+        verify(paymentRepository).transition(eq(100L), eq(PaymentStatus.APPROVED), eq(PaymentStatus.AUTHORIZED),
+                isNull(), any());
+    }
+
+    @Test
+    @DisplayName("Зависший в PROCESSING платеж восстанавливается по статусу у эквайера без повторной авторизации")
+    void recoverStaleTest() {
+        Payment payment = new Payment(100L, "key-1", "hash", 5L, new ArrayList<>(List.of(1L)), Money.of(899000, "RUB"),
+                PaymentStatus.PROCESSING, null, Instant.now(), Instant.now());
+        Instant leasedBefore = Instant.now().minusSeconds(60);
+        when(paymentRepository.renewLease(eq(100L), eq(PaymentStatus.PROCESSING), eq(leasedBefore), any()))
+                .thenReturn(1, 0);
+        when(paymentRepository.findWithItemsById(100L)).thenReturn(Optional.of(payment));
+        when(paymentProcessor.findAuthorization(payment))
+                .thenReturn(Optional.of(PaymentProcessor.AuthorizationResult.decline("Amount exceeds limit")));
+
+        paymentService.recover(100L, leasedBefore);
+        paymentService.recover(100L, leasedBefore);
+
+        verify(paymentProcessor, times(1)).findAuthorization(payment);
+        verify(paymentProcessor, never()).authorize(any());
+        verify(paymentRepository).transition(eq(100L), eq(PaymentStatus.PROCESSING), eq(PaymentStatus.DECLINED),
+                eq("Amount exceeds limit"), any());
+    }
+
+    @Test
+    @DisplayName("Сбой вызова эквайера оставляет платеж в PROCESSING до проверки статуса")
+    void authorizeProcessorFailureTest() {
+        Payment payment = new Payment(100L, "key-1", "hash", 5L, new ArrayList<>(List.of(1L)), Money.of(899000, "RUB"),
+                PaymentStatus.PROCESSING, null, Instant.now(), Instant.now());
+        when(paymentRepository.startProcessing(eq(100L), eq(PaymentStatus.PENDING), eq(PaymentStatus.PROCESSING), any()))
+                .thenReturn(1);
+        when(paymentRepository.findWithItemsById(100L)).thenReturn(Optional.of(payment));
+        when(paymentProcessor.authorize(payment)).thenThrow(new IllegalStateException("Acquirer timeout"));
+
+        paymentService.authorize(100L);
+
+        verify(paymentRepository, never()).transition(any(), any(), any(), any(), any());
+        verifyNoInteractions(paymentLedger);
+    }
+
+    @Test
+    @DisplayName("Сбой журнала при списании оставляет платеж в AUTHORIZED и дает 503")
+    void captureLedgerFailureTest() {
+        Payment payment = new Payment(100L, "key-1", "hash", 5L, new ArrayList<>(List.of(1L)), Money.of(899000, "RUB"),
+                PaymentStatus.AUTHORIZED, null, Instant.now(), Instant.now());
+        when(paymentRepository.findWithItemsById(100L)).thenReturn(Optional.of(payment));
+        when(paymentLedger.append(any(LedgerEntry.class)))
+                .thenReturn(CompletableFuture.failedFuture(new RejectedExecutionException()));
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> paymentService.capture(100L));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exception.getStatusCode());
+        verify(paymentRepository, never()).transition(any(), any(), any(), any(), any());
+        verifyNoInteractions(productSuggestIndex);
+    }
+
+    @Test
+    @DisplayName("Событие списания пишется в журнал до смены статуса платежа")
+    void captureAppendsBeforeTransitionTest() {
+        Payment payment = new Payment(100L, "key-1", "hash", 5L, new ArrayList<>(List.of(1L)), Money.of(899000, "RUB"),
+                PaymentStatus.AUTHORIZED, null, Instant.now(), Instant.now());
+        when(paymentRepository.findWithItemsById(100L)).thenReturn(Optional.of(payment));
+        when(paymentLedger.append(any(LedgerEntry.class))).thenReturn(CompletableFuture.completedFuture(null));
+        when(paymentRepository.transition(eq(100L), eq(PaymentStatus.AUTHORIZED), eq(PaymentStatus.CAPTURED), isNull(), any()))
+                .thenReturn(1);
+
+        paymentService.capture(100L);
+
+        InOrder inOrder = inOrder(paymentLedger, paymentRepository);
+        inOrder.verify(paymentLedger).append(argThat(entry -> entry.type() == LedgerEventType.CAPTURED));
+        inOrder.verify(paymentRepository).transition(eq(100L), eq(PaymentStatus.AUTHORIZED), eq(PaymentStatus.CAPTURED),
+                isNull(), any());
+    }
+
+    @Test
+    @DisplayName("Списание платежа увеличивает популярность его продуктов в подсказках")
+    void captureAddsSalesTest() {
+        Payment payment = new Payment(100L, "key-1", "hash", 5L, new ArrayList<>(List.of(1L, 2L)), Money.of(899000, "RUB"),
+                PaymentStatus.AUTHORIZED, null, Instant.now(), Instant.now());
+        when(paymentRepository.findWithItemsById(100L)).thenReturn(Optional.of(payment));
+        when(paymentRepository.transition(eq(100L), eq(PaymentStatus.AUTHORIZED), eq(PaymentStatus.CAPTURED), isNull(), any()))
+                .thenReturn(1);
+        when(paymentLedger.append(any(LedgerEntry.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        PaymentDTO captured = paymentService.capture(100L);
+
+        assertEquals(PaymentStatus.CAPTURED, captured.getStatus());
+        verify(productSuggestIndex).addSales(List.of(1L, 2L), 1);
+    }
+
+    @Test
+    @DisplayName("Вернуть можно только списанный платеж")
+    void refundNotCapturedTest() {
+        Payment payment = new Payment(100L, "key-1", "hash", 5L, new ArrayList<>(List.of(1L)), Money.of(899000, "RUB"),
+                PaymentStatus.AUTHORIZED, null, Instant.now(), Instant.now());
+        when(paymentRepository.findWithItemsById(100L)).thenReturn(Optional.of(payment));
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> paymentService.refund(100L));
+
+        assertEquals(HttpStatus.CONFLICT, exception.getStatusCode());
+        verify(paymentRepository, never()).transition(any(), any(), any(), any(), any());
+        verifyNoInteractions(paymentLedger);
+    }
+}
@@ -0,0 +1,150 @@
+package by.vladosz.microserviceofpayments.services;
+
+import by.vladosz.microserviceofpayments.caches.ProductChangeBuffer;
+import by.vladosz.microserviceofpayments.caches.ProductPageCache;
+import by.vladosz.microserviceofpayments.dto.ProductChangePageDTO;
+import by.vladosz.microserviceofpayments.dto.ProductDTO;
+import by.vladosz.microserviceofpayments.mappers.ProductMapper;
+import by.vladosz.microserviceofpayments.models.CategoryProduct;
+import by.vladosz.microserviceofpayments.models.ChangePosition;
+import by.vladosz.microserviceofpayments.models.Money;
+import by.vladosz.microserviceofpayments.models.Product;
+import by.vladosz.microserviceofpayments.models.ProductChange;
+import by.vladosz.microserviceofpayments.models.ProductChangeType;
+import by.vladosz.microserviceofpayments.repositories.ProductChangeRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductChangeFeedTest {
+    private static final ChangePosition HEAD = new ChangePosition(100, 40);
+
+    @Mock
+    private ProductChangeRepository productChangeRepository;
+
+    @Mock
+    private ProductMapper productMapper;
+
+    @Mock
+    private ProductPageCache productPageCache;
+
+    private ProductChangeFeed productChangeFeed;
+
+    @BeforeEach
+    void setUp() {
+        productChangeFeed = new ProductChangeFeed(productChangeRepository, new ProductChangeBuffer(100),
+                productPageCache, productMapper, new ObjectMapper().registerModule(new JavaTimeModule()), Duration.ofDays(7), Duration.ofMillis(10));
+        lenient().when(productChangeRepository.lastPosition()).thenReturn(HEAD);
+    }
+
+    @Test
+    @DisplayName("Без позиции возвращается текущая позиция журнала, новые события читаются из памяти")
+    void pageFromHeadTest() {
+        ProductChangePageDTO head = productChangeFeed.page(null, 100);
+        assertEquals("100-40", head.getPosition());
+        assertTrue(head.getChanges().isEmpty());
+
+        when(productChangeRepository.findAfter(HEAD, 1000)).thenReturn(List.of(created(101, 41), deleted(102, 42)));
+        productChangeFeed.poll();
+        verify(productPageCache).onCatalogChanged();
+        ProductDTO productDTO = new ProductDTO("Чайник Bosch", "Электрический чайник на 1.7 литра",
+                Money.of(349000, "RUB"), CategoryProduct.БЫТОВАЯ_ТЕХНИКА);
+        when(productMapper.toProductDTO(any(Product.class))).thenReturn(productDTO);
+
+        ProductChangePageDTO page = productChangeFeed.page("100-40", 1);
+
+        assertEquals(1, page.getChanges().size());
+        assertEquals(ProductChangeType.CREATED, page.getChanges().getFirst().getType());
+        assertEquals(12, page.getChanges().getFirst().getCount());
+        assertEquals("101-41", page.getPosition());
+        assertTrue(page.isHasMore());
+
+        ProductChangePageDTO last = productChangeFeed.page(page.getPosition(), 10);
+        assertEquals(ProductChangeType.DELETED, last.getChanges().getFirst().getType());
+        assertNull(last.getChanges().getFirst().getProduct());
+        assertFalse(last.isHasMore());
+        // обе порции из памяти: позиция внутри буфера не проверяется в БД
+        verify(productChangeRepository, never()).exists(any());
+        verify(productChangeRepository, times(1)).findAfter(any(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Позиция старше буфера дочитывается из БД, удаленная по сроку хранения - 410")
+    void resolveTest() {
+        ChangePosition old = new ChangePosition(50, 7);
+        when(productChangeRepository.exists(old)).thenReturn(true);
+        when(productChangeRepository.exists(new ChangePosition(50, 6))).thenReturn(false);
+        when(productChangeRepository.findAfter(old, 11)).thenReturn(List.of(deleted(51, 8)));
+
+        ProductChangePageDTO page = productChangeFeed.page("50-7", 10);
+
+        assertEquals("51-8", page.getPosition());
+        assertEquals(HttpStatus.GONE, assertThrows(ResponseStatusException.class,
+                () -> productChangeFeed.page("50-6", 10)).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, assertThrows(ResponseStatusException.class,
+                () -> productChangeFeed.page("вчера", 10)).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, assertThrows(ResponseStatusException.class,
+                () -> productChangeFeed.page("0", 5000)).getStatusCode());
+    }
+
+    @Test
+    @DisplayName("Поток пишет события в формате SSE с позицией в id и heartbeat, пока клиент подключен")
+    void streamTest() {
+        when(productChangeRepository.findAfter(HEAD, 1000)).thenReturn(List.of(deleted(101, 41)));
+        productChangeFeed.poll();
+        ClosingOutputStream outputStream = new ClosingOutputStream(4);
+
+        assertThrows(IOException.class, () -> productChangeFeed.stream(HEAD, outputStream));
+
+        String body = outputStream.toString(StandardCharsets.UTF_8);
+        assertTrue(body.startsWith("retry: 1000\n\n"));
+        assertTrue(body.contains("id: 101-41\ndata: {\"position\":\"101-41\",\"type\":\"DELETED\",\"productId\":1,"));
+        assertTrue(body.contains(": heartbeat\n\n"));
+    }
+
+    private static ProductChange created(long txId, long id) {
+        Product product = new Product(1L, "Чайник Bosch", "Электрический чайник на 1.7 литра",
+                Money.of(349000, "RUB"), 12, CategoryProduct.БЫТОВАЯ_ТЕХНИКА);
+        return new ProductChange(new ChangePosition(txId, id), ProductChangeType.CREATED, 1L, 0L, product, Instant.now());
+    }
+
+    private static ProductChange deleted(long txId, long id) {
+        return new ProductChange(new ChangePosition(txId, id), ProductChangeType.DELETED, 1L, 3L, null, Instant.now());
+    }
+
+    /**
+     * Клиент, который отключается после заданного числа flush.
+     */
+    private static final class ClosingOutputStream extends ByteArrayOutputStream {
+        private int flushesLeft;
+
+        ClosingOutputStream(int flushes) {
+            this.flushesLeft = flushes;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (--flushesLeft < 0) {
+                throw new IOException("Broken pipe");
+            }
+        }
+    }
+}
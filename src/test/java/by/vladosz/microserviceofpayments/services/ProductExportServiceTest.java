@@ -0,0 +1,100 @@
+package by.vladosz.microserviceofpayments.services;
+
+import by.vladosz.microserviceofpayments.models.CategoryProduct;
+import by.vladosz.microserviceofpayments.models.ExportFormat;
+import by.vladosz.microserviceofpayments.models.Money;
+import by.vladosz.microserviceofpayments.models.Product;
+import by.vladosz.microserviceofpayments.repositories.ProductExportRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Currency;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ProductExportServiceTest {
+
+    @Mock
+    private ProductExportRepository productExportRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private FxRateService fxRateService;
+
+    private ProductExportService productExportService;
+
+    private final Product product1 = new Product(1L, "Наушники Sony", "Беспроводные, с шумоподавлением", Money.of(899000, "RUB"),
+            25, CategoryProduct.ЭЛЕКТРОНИКА);
+    private final Product product2 = new Product(2L, "Смартфон \"Xiaomi\"", "Флагманский смартфон", Money.of(5999900, "RUB"),
+            75, CategoryProduct.ЭЛЕКТРОНИКА);
+
+    @BeforeEach
+    void setUp() {
+        productExportService = new ProductExportService(productExportRepository, entityManager, new ObjectMapper(), fxRateService);
+    }
+
+    @Test
+    @DisplayName("Выгрузка в CSV экранирует запятые и кавычки")
+    void exportCsvTest() throws Exception {
+        when(productExportRepository.stream(CategoryProduct.ЭЛЕКТРОНИКА, null, null))
+                .thenReturn(Stream.of(product1, product2));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        productExportService.export(ExportFormat.CSV, CategoryProduct.ЭЛЕКТРОНИКА, null, null, out);
+
+        assertEquals("""
+                id,name,description,price,currency,count,category
+                1,Наушники Sony,"Беспроводные, с шумоподавлением",8990.00,RUB,25,ЭЛЕКТРОНИКА
+                2,"Смартфон ""Xiaomi""",Флагманский смартфон,59999.00,RUB,75,ЭЛЕКТРОНИКА
+                """, out.toString(StandardCharsets.UTF_8));
+        verify(entityManager).detach(product1);
+        verify(entityManager).detach(product2);
+    }
+
+    @Test
+    @DisplayName("Выгрузка в NDJSON пишет по одному продукту на строку")
+    void exportNdjsonTest() throws Exception {
+        when(productExportRepository.stream(null, 10000L, null)).thenReturn(Stream.of(product1, product2));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        productExportService.export(ExportFormat.NDJSON, null, 10000L, null, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(1L, new ObjectMapper().readTree(lines[0]).get("id").asLong());
+        assertEquals(2L, new ObjectMapper().readTree(lines[1]).get("id").asLong());
+        assertEquals("59999.00", new ObjectMapper().readTree(lines[1]).get("price").get("amount").asText());
+    }
+
+    @Test
+    @DisplayName("Границы цены переводятся в копейки по курсу, без валюты считаются в рублях")
+    void exportPriceFilterTest() {
+        Currency usd = ProductExportService.currency("usd");
+        when(fxRateService.toBaseMinorUnits(Money.of(10050, "USD"))).thenReturn(929625L);
+        when(fxRateService.toBaseMinorUnits(Money.of(100, "JPY"))).thenReturn(null);
+
+        assertEquals(Currency.getInstance("RUB"), ProductExportService.currency(null));
+        assertEquals(929625L, productExportService.toBasePrice("100.5", usd));
+        ResponseStatusException invalid = assertThrows(ResponseStatusException.class,
+                () -> productExportService.toBasePrice("100.505", usd));
+        ResponseStatusException noRate = assertThrows(ResponseStatusException.class,
+                () -> productExportService.toBasePrice("100", Currency.getInstance("JPY")));
+        assertEquals(HttpStatus.BAD_REQUEST, invalid.getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, noRate.getStatusCode());
+    }
+}
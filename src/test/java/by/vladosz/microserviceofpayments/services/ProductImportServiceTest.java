@@ -0,0 +1,128 @@
+package by.vladosz.microserviceofpayments.services;
+
+import by.vladosz.microserviceofpayments.caches.ProductCache;
+import by.vladosz.microserviceofpayments.caches.ProductPageCache;
+import by.vladosz.microserviceofpayments.caches.ProductSearchIndex;
+import by.vladosz.microserviceofpayments.caches.ProductSuggestIndex;
+import by.vladosz.microserviceofpayments.dto.BulkImportResultDTO;
+import by.vladosz.microserviceofpayments.mappers.ProductMapper;
+import by.vladosz.microserviceofpayments.models.CategoryProduct;
+import by.vladosz.microserviceofpayments.models.Money;
+import by.vladosz.microserviceofpayments.models.Product;
+import by.vladosz.microserviceofpayments.repositories.ProductRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ProductImportServiceTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ProductMapper productMapper;
+
+    @Mock
+    private ProductCache productCache;
+
+    @Mock
+    private ProductPageCache productPageCache;
+
+    @Mock
+    private ProductSearchIndex productSearchIndex;
+
+    @Mock
+    private ProductSuggestIndex productSuggestIndex;
+
+    @Mock
+    private ProductFacetService productFacetService;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private EntityManager entityManager;
+
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    private ProductImportService productImportService;
+
+    @BeforeEach
+    void setUp() {
+        productImportService = new ProductImportService(productRepository, productMapper, productCache,
+                productPageCache, productSearchIndex, productSuggestIndex, productFacetService, validator,
+                transactionTemplate, entityManager);
+        lenient().when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @Test
+    @DisplayName("Невалидный элемент попадает в ошибки, остальные создаются и обновляются")
+    void importProductsTest() {
+        Product newProduct = new Product(null, "Наушники Sony", "Беспроводные наушники", Money.of(899000, "RUB"),
+                25, CategoryProduct.ЭЛЕКТРОНИКА);
+        Product invalidProduct = new Product(null, "", "Беспроводные наушники", Money.of(899000, "RUB"),
+                25, CategoryProduct.ЭЛЕКТРОНИКА);
+        Product update = new Product(7L, "Смартфон Xiaomi", "Флагманский смартфон", Money.of(5999900, "RUB"),
+                75, CategoryProduct.ЭЛЕКТРОНИКА);
+        Product existing = new Product(7L, "Смартфон", "Старое описание товара", Money.of(4999900, "RUB"),
+                10, CategoryProduct.ЭЛЕКТРОНИКА);
+
+        when(productRepository.findAllById(List.of(7L))).thenReturn(List.of(existing));
+
+        BulkImportResultDTO result = productImportService.importProducts(List.of(newProduct, invalidProduct, update));
+
+        assertEquals(3, result.getReceived());
+        assertEquals(1, result.getCreated());
+        assertEquals(1, result.getUpdated());
+        assertThat(result.getErrors()).extracting("index").containsExactly(1);
+
+        verify(productMapper).updateFromProductDTO(update, existing);
+        verify(productRepository).saveAll(List.of(newProduct, existing));
+        verify(productCache).evict(7L);
+        verify(productSearchIndex).put(newProduct);
+        verify(productSearchIndex).put(existing);
+        verify(productSuggestIndex).put(newProduct);
+        verify(productFacetService).onProductSaved(existing);
+        verify(productPageCache).onCatalogChanged();
+    }
+
+    @Test
+    @DisplayName("Ошибка записи чанка переигрывается поштучно")
+    void importProductsRetriesChunkItemByItemTest() {
+        Product good = new Product(null, "Наушники Sony", "Беспроводные наушники", Money.of(899000, "RUB"),
+                25, CategoryProduct.ЭЛЕКТРОНИКА);
+        Product bad = new Product(null, "Смартфон Xiaomi", "Флагманский смартфон", Money.of(5999900, "RUB"),
+                75, CategoryProduct.ЭЛЕКТРОНИКА);
+
+        when(productRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Product> products = invocation.getArgument(0);
+            if (products.contains(bad)) {
+                throw new DataIntegrityViolationException("duplicate key value");
+            }
+            return products;
+        });
+
+        BulkImportResultDTO result = productImportService.importProducts(List.of(good, bad));
+
+        assertEquals(1, result.getCreated());
+        assertThat(result.getErrors()).extracting("index").containsExactly(1);
+        verify(productRepository, times(3)).saveAll(anyList());
+    }
+}
@@ -1,23 +1,48 @@
 package by.vladosz.microserviceofpayments.services;
 
+import by.vladosz.microserviceofpayments.caches.CatalogVersion;
+import by.vladosz.microserviceofpayments.caches.ProductCache;
+import by.vladosz.microserviceofpayments.caches.ProductPageCache;
+import by.vladosz.microserviceofpayments.caches.ProductSearchIndex;
+import by.vladosz.microserviceofpayments.caches.ProductSuggestIndex;
+import by.vladosz.microserviceofpayments.caches.RequestCoalescer;
+import by.vladosz.microserviceofpayments.dto.BatchResultDTO;
+import by.vladosz.microserviceofpayments.dto.CursorPageDTO;
 import by.vladosz.microserviceofpayments.dto.ProductDTO;
+import by.vladosz.microserviceofpayments.dto.ProductPatchDTO;
+import by.vladosz.microserviceofpayments.dto.Versioned;
 import by.vladosz.microserviceofpayments.mappers.ProductMapper;
 import by.vladosz.microserviceofpayments.models.CategoryProduct;
+import by.vladosz.microserviceofpayments.models.ChangePosition;
+import by.vladosz.microserviceofpayments.models.FxRates;
+import by.vladosz.microserviceofpayments.models.Money;
 import by.vladosz.microserviceofpayments.models.Product;
+import by.vladosz.microserviceofpayments.models.ProductSortOrder;
+import by.vladosz.microserviceofpayments.models.TotalMode;
 import by.vladosz.microserviceofpayments.repositories.ProductRepository;
+import by.vladosz.microserviceofpayments.repositories.ProductWriteRepository;
+import by.vladosz.microserviceofpayments.repositories.TableStatisticsRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.*;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Currency;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.LongStream;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -30,9 +55,38 @@ public class ProductServiceTest {
     @Mock
     private ProductRepository productRepository;
 
+    @Mock
+    private ProductWriteRepository productWriteRepository;
+
     @Mock
     private ProductMapper productMapper;
 
+    @Mock
+    private TableStatisticsRepository tableStatisticsRepository;
+
+    @Spy
+    private ProductCache productCache = new ProductCache(100, Duration.ofMinutes(10), new SimpleMeterRegistry());
+
+    @Spy
+    private ProductPageCache productPageCache = new ProductPageCache(100, Duration.ofMinutes(1),
+            new CatalogVersion(), new RequestCoalescer(Duration.ofSeconds(5), new SimpleMeterRegistry()),
+            new SimpleMeterRegistry());
+
+    @Spy
+    private ProductSearchIndex productSearchIndex = new ProductSearchIndex();
+
+    @Spy
+    private ProductSuggestIndex productSuggestIndex = new ProductSuggestIndex();
+
+    @Mock
+    private ProductFacetService productFacetService;
+
+    @Mock
+    private ProductChangeFeed productChangeFeed;
+
+    @Mock
+    private FxRateService fxRateService;
+
     @InjectMocks
     private ProductService productService;
 
@@ -42,18 +96,13 @@ public class ProductServiceTest {
         int pageNumber = 0;
         int pageSize = 10;
 
-        Product product1 = new Product(1L, "Микроволновка LG", "Компактная микроволновая печь с грилем", 8.990, "RUB", 25, CategoryProduct.БЫТОВАЯ_ТЕХНИКА);
-        Product product2 = new Product(2L, "Джинсы Levi's 501", "Классические джинсы прямого кроя", 5.999, "RUB", 75, CategoryProduct.ОДЕЖДА);
-
-        Page<Product> productPage = new PageImpl<>(List.of(product1, product2));
 
-        ProductDTO productDTO1 = new ProductDTO("Микроволновка LG", "Компактная микроволновая печь с грилем", 8.990, CategoryProduct.БЫТОВАЯ_ТЕХНИКА);
-        ProductDTO productDTO2 = new ProductDTO("Джинсы Levi's 501", "Классические джинсы прямого кроя", 5.999, CategoryProduct.ОДЕЖДА);
+        ProductDTO productDTO1 = new ProductDTO("Микроволновка LG", "Компактная микроволновая печь с грилем", Money.of(899000, "RUB"), CategoryProduct.БЫТОВАЯ_ТЕХНИКА);
+        ProductDTO productDTO2 = new ProductDTO("Джинсы Levi's 501", "Классические джинсы прямого кроя", Money.of(599900, "RUB"), CategoryProduct.ОДЕЖДА);
 
-        when(productRepository.findAll(PageRequest.of(pageNumber, pageSize, Sort.by(Sort.Direction.ASC, "name")))).thenReturn(productPage);
+        Page<ProductDTO> productPage = new PageImpl<>(List.of(productDTO1, productDTO2));
 
-        when(productMapper.toProductDTO(product1)).thenReturn(productDTO1);
-        when(productMapper.toProductDTO(product2)).thenReturn(productDTO2);
+        when(productRepository.findAllAsDTO(PageRequest.of(pageNumber, pageSize, Sort.by(Sort.Direction.ASC, "name")))).thenReturn(productPage);
 
         Page<ProductDTO> result = productService.findAll(pageNumber, pageSize);
 
@@ -62,15 +111,15 @@ public class ProductServiceTest {
         assertThat(result.getContent()).extracting(ProductDTO::getName)
                 .containsExactly("Микроволновка LG", "Джинсы Levi's 501");
 
-        verify(productMapper).toProductDTO(product1);
-        verify(productMapper).toProductDTO(product2);
+        verify(productRepository, never()).findAll(any(Pageable.class));
+        verifyNoInteractions(productMapper);
     }
 
 
     @Test
     @DisplayName("Тест где есть по id продукт")
     void findById() {
-        Product product2 = new Product(2L, "Джинсы Levi's 501", "Классические джинсы прямого кроя", 5.999, "RUB", 75, CategoryProduct.ОДЕЖДА);
+        Product product2 = new Product(2L, "Джинсы Levi's 501", "Классические джинсы прямого кроя", Money.of(599900, "RUB"), 75, CategoryProduct.ОДЕЖДА);
 
         when(productRepository.findById(2L)).thenReturn(Optional.of(product2));
 
@@ -97,7 +146,7 @@ public class ProductServiceTest {
     @Test
     @DisplayName("Тест когда продукт найден")
     void findByProduct() {
-        Product product2 = new Product(2L, "Джинсы Levi's 501", "Классические джинсы прямого кроя", 5999.0, "RUB", 75, CategoryProduct.ОДЕЖДА);
+        Product product2 = new Product(2L, "Джинсы Levi's 501", "Классические джинсы прямого кроя", Money.of(599900, "RUB"), 75, CategoryProduct.ОДЕЖДА);
 
         when(productRepository.findById(2L)).thenReturn(Optional.of(product2));
 
@@ -124,38 +173,110 @@ public class ProductServiceTest {
     @Test
     @DisplayName("Тест на успешное удаление продукта по id")
     void deleteProductSuccessfullyTest() {
-        Product product = new Product();
         Long productId = 2L;
-        product.setId(productId);
 
-        when(productRepository.findById(productId)).thenReturn(Optional.of(product));
+        when(productWriteRepository.delete(productId, null)).thenReturn(1);
 
-        productService.deleteProduct(productId);
+        productService.deleteProduct(productId, null);
 
-        verify(productRepository, times(1)).findById(productId);
-        verify(productRepository, times(1)).deleteById(productId);
+        verify(productWriteRepository, times(1)).delete(productId, null);
+        verify(productRepository, never()).findById(productId);
+        verify(productSearchIndex).remove(productId);
+        verify(productSuggestIndex).remove(productId);
+        verify(productFacetService).onProductDeleted(productId);
     }
 
     @Test
     @DisplayName("Тест на удаление продукта по id - продукт не найден")
     void deleteProductWhenProductNotFoundTest() {
         Long productId = 2L;
-        when(productRepository.findById(productId)).thenReturn(Optional.empty());
+        when(productWriteRepository.delete(productId, null)).thenReturn(0);
 
-        RuntimeException exception = assertThrows(RuntimeException.class,
-                () -> productService.deleteProduct(productId));
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> productService.deleteProduct(productId, null));
 
-        assertEquals("Product not found", exception.getMessage());
-        verify(productRepository, times(1)).findById(productId);
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
+        assertEquals("Product not found with id: " + productId, exception.getReason());
+        verify(productRepository, never()).existsById(productId);
+        verify(productSearchIndex, never()).remove(productId);
+    }
+
+    @Test
+    @DisplayName("Удаление с If-Match другой версии - 412, продукт остается в индексах")
+    void deleteProductVersionMismatchTest() {
+        when(productWriteRepository.delete(2L, 3L)).thenReturn(0);
+        when(productRepository.existsById(2L)).thenReturn(true);
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> productService.deleteProduct(2L, 3L));
+
+        assertEquals(HttpStatus.PRECONDITION_FAILED, exception.getStatusCode());
+        verify(productSearchIndex, never()).remove(2L);
+        verify(productFacetService, never()).onProductDeleted(2L);
+    }
+
+    @Test
+    @DisplayName("ETag листинга зависит только от позиции ленты и курсов, а не от экземпляра сервиса")
+    void catalogETagTest() {
+        FxRates rates = FxRates.of(Map.of(Currency.getInstance("USD"), new BigDecimal("92.50")));
+        when(productChangeFeed.head()).thenReturn(new ChangePosition(7431, 1502), new ChangePosition(7431, 1502),
+                new ChangePosition(7432, 1503));
+        when(fxRateService.current()).thenReturn(rates, FxRates.of(Map.of(Currency.getInstance("USD"), new BigDecimal("92.5"))));
+
+        String eTag = productService.catalogETag();
+
+        assertEquals("W/\"7431-1502-" + rates.fingerprint() + "\"", eTag);
+        assertEquals(eTag, productService.catalogETag());
+        assertNotEquals(eTag, productService.catalogETag());
+    }
+
+    @Test
+    @DisplayName("PATCH меняет продукт одним запросом, возвращает новую версию и обновляет индексы")
+    void patchProductTest() {
+        ProductPatchDTO patch = new ProductPatchDTO(null, null, null, 15, null);
+        Product patchedProduct = new Product(2L, "Джинсы Levi's 501", "Классические джинсы прямого кроя",
+                Money.of(599900, "RUB"), 15, CategoryProduct.ОДЕЖДА);
+        patchedProduct.setVersion(4);
+        ProductDTO productDTO = new ProductDTO("Джинсы Levi's 501", "Классические джинсы прямого кроя",
+                Money.of(599900, "RUB"), CategoryProduct.ОДЕЖДА);
+        when(productWriteRepository.patch(2L, patch, 3L)).thenReturn(Optional.of(patchedProduct));
+        when(productMapper.toProductDTO(patchedProduct)).thenReturn(productDTO);
+
+        Versioned<ProductDTO> result = productService.patchProduct(2L, patch, 3L);
+
+        assertEquals(productDTO, result.body());
+        assertEquals("\"4\"", result.eTag());
+        verify(productCache).evict(2L);
+        verify(productSearchIndex).put(patchedProduct);
+        verify(productFacetService).onProductSaved(patchedProduct);
+        verify(productRepository, never()).findById(any());
+    }
+
+    @Test
+    @DisplayName("PATCH: 412 при несовпадении версии, 404 для несуществующего продукта, 400 для пустого тела")
+    void patchProductErrorsTest() {
+        ProductPatchDTO patch = new ProductPatchDTO("Джинсы", null, null, null, null);
+        when(productWriteRepository.patch(2L, patch, 3L)).thenReturn(Optional.empty());
+        when(productWriteRepository.patch(5L, patch, 3L)).thenReturn(Optional.empty());
+        when(productRepository.existsById(2L)).thenReturn(true);
+        when(productRepository.existsById(5L)).thenReturn(false);
+
+        assertEquals(HttpStatus.PRECONDITION_FAILED, assertThrows(ResponseStatusException.class,
+                () -> productService.patchProduct(2L, patch, 3L)).getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, assertThrows(ResponseStatusException.class,
+                () -> productService.patchProduct(5L, patch, 3L)).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, assertThrows(ResponseStatusException.class,
+                () -> productService.patchProduct(2L, new ProductPatchDTO(), null)).getStatusCode());
+        verify(productSearchIndex, never()).put(any());
     }
 
     @Test
     @DisplayName("Успешное создание товара")
     void createProduct_Success() {
         // Подготовка данных
-        Product product = new Product(1L, "Микроволновка LG", "Компактная микроволновая печь с грилем", 8.990, "RUB", 25, CategoryProduct.БЫТОВАЯ_ТЕХНИКА);
+        Product product = new Product(1L, "Микроволновка LG", "Компактная микроволновая печь с грилем", Money.of(899000, "RUB"), 25, CategoryProduct.БЫТОВАЯ_ТЕХНИКА);
 
-        ProductDTO productDTO = new ProductDTO("Микроволновка LG", "Компактная микроволновая печь с грилем", 8.990, CategoryProduct.БЫТОВАЯ_ТЕХНИКА);
+        ProductDTO productDTO = new ProductDTO("Микроволновка LG", "Компактная микроволновая печь с грилем", Money.of(899000, "RUB"), CategoryProduct.БЫТОВАЯ_ТЕХНИКА);
 
         when(productRepository.save(eq(product))).thenReturn(product);
         when(productMapper.toProductDTO(product)).thenReturn(productDTO);
@@ -167,6 +288,9 @@ public class ProductServiceTest {
 
         verify(productRepository).save(product);
         verify(productMapper).toProductDTO(product);
+        assertEquals(List.of(1L), productSearchIndex.search("микроволновки", null, 0, 10).ids());
+        assertEquals("Микроволновка LG", productSuggestIndex.suggest("микро", 10).getFirst().name());
+        verify(productFacetService).onProductSaved(product);
     }
 
     @Test
@@ -188,16 +312,16 @@ public class ProductServiceTest {
         Long productId = 1L;
 
         Product existingProduct = new Product(productId, "Микроволновка LG",
-                "Компактная микроволновая печь с грилем", 8990.0, "RUB",
+                "Компактная микроволновая печь с грилем", Money.of(899000, "RUB"),
                 25, CategoryProduct.БЫТОВАЯ_ТЕХНИКА);
 
         Product productUpdate = new Product();
         productUpdate.setName("Микроволновка LG New Model");
         productUpdate.setDescription("Новая модель с улучшенными характеристиками");
-        productUpdate.setPrice(9.990);
+        productUpdate.setPrice(Money.of(999000, "RUB"));
 
         Product savedProduct = new Product(productId, productUpdate.getName(), productUpdate.getDescription(),
-                productUpdate.getPrice(), "RUB", 25, CategoryProduct.БЫТОВАЯ_ТЕХНИКА);
+                productUpdate.getPrice(), 25, CategoryProduct.БЫТОВАЯ_ТЕХНИКА);
 
         ProductDTO productDTO = new ProductDTO(savedProduct.getName(), savedProduct.getDescription(),
                 savedProduct.getPrice(), savedProduct.getCategory());
@@ -207,7 +331,7 @@ public class ProductServiceTest {
         when(productMapper.toProductDTO(savedProduct)).thenReturn(productDTO);
 
 
-        ResponseEntity<?> response = productService.updateProduct(productId, productUpdate);
+        ResponseEntity<?> response = productService.updateProduct(productId, productUpdate, null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(productDTO, response.getBody());
@@ -227,7 +351,8 @@ public class ProductServiceTest {
         when(productRepository.findById(productId)).thenReturn(Optional.empty());
 
         ResponseStatusException exception =
-                assertThrows(ResponseStatusException.class, () -> productService.updateProduct(productId, product));
+                assertThrows(ResponseStatusException.class,
+                        () -> productService.updateProduct(productId, product, null));
 
         assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
         assertEquals("Product not found with id: " + productId, exception.getReason());
@@ -235,34 +360,45 @@ public class ProductServiceTest {
         verify(productRepository, times(1)).findById(productId);
     }
 
+    @Test
+    @DisplayName("Тест на обновление продукта по id - версия не совпала с If-Match")
+    void updateProductWhenVersionMismatchTest() {
+        Long productId = 1L;
+        Product existingProduct = new Product(productId, "Микроволновка LG",
+                "Компактная микроволновая печь с грилем", Money.of(899000, "RUB"),
+                25, CategoryProduct.БЫТОВАЯ_ТЕХНИКА);
+        existingProduct.setVersion(4L);
+        when(productRepository.findById(productId)).thenReturn(Optional.of(existingProduct));
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> productService.updateProduct(productId, new Product(), 3L));
+
+        assertEquals(HttpStatus.PRECONDITION_FAILED, exception.getStatusCode());
+        verify(productMapper, never()).updateFromProductDTO(any(), any());
+        verify(productRepository, never()).save(any(Product.class));
+    }
+
     @Test
     @DisplayName("тест на сортировку товаров по цене (по возрастанию)")
     void sortByPriceTest() {
         int pageNumber = 0;
         int pageSize = 10;
 
-        Product product1 = new Product(1L, "Микроволновка LG", "Компактная микроволновая печь с грилем", 8990., "RUB", 25, CategoryProduct.БЫТОВАЯ_ТЕХНИКА);
-        Product product2 = new Product(2L, "Джинсы Levi's 501", "Классические джинсы прямого кроя", 5999., "RUB", 75, CategoryProduct.ОДЕЖДА);
-
-        Page<Product> productPage = new PageImpl<>(List.of(product2, product1));
-
-        ProductDTO productDTO1 = new ProductDTO("Микроволновка LG", "Компактная микроволновая печь с грилем", 8990., CategoryProduct.БЫТОВАЯ_ТЕХНИКА);
-        ProductDTO productDTO2 = new ProductDTO("Джинсы Levi's 501", "Классические джинсы прямого кроя", 5999., CategoryProduct.ОДЕЖДА);
+        ProductDTO productDTO1 = new ProductDTO("Микроволновка LG", "Компактная микроволновая печь с грилем", Money.of(899000, "RUB"), CategoryProduct.БЫТОВАЯ_ТЕХНИКА);
+        ProductDTO productDTO2 = new ProductDTO("Джинсы Levi's 501", "Классические джинсы прямого кроя", Money.of(599900, "RUB"), CategoryProduct.ОДЕЖДА);
 
-        when(productRepository.findAllByOrderByPriceAsc(PageRequest.of(pageNumber, pageSize, Sort.by(Sort.Direction.ASC, "price")))).thenReturn(productPage);
+        Page<ProductDTO> productPage = new PageImpl<>(List.of(productDTO2, productDTO1));
 
-        when(productMapper.toProductDTO(product1)).thenReturn(productDTO1);
-        when(productMapper.toProductDTO(product2)).thenReturn(productDTO2);
+        when(productRepository.findAllAsDTO(PageRequest.of(pageNumber, pageSize, Sort.by(Sort.Direction.ASC, "priceBaseMinor")))).thenReturn(productPage);
 
         Page<ProductDTO> result = productService.sortByPrice(pageNumber, pageSize);
 
         assertThat(result.getContent()).hasSize(2);
         assertThat(result.getContent()).containsExactly(productDTO2, productDTO1);
         assertThat(result.getContent()).extracting(ProductDTO::getPrice)
-                .containsExactly(5999., 8990.);
+                .containsExactly(Money.of(599900, "RUB"), Money.of(899000, "RUB"));
 
-        verify(productMapper).toProductDTO(product1);
-        verify(productMapper).toProductDTO(product2);
+        verifyNoInteractions(productMapper);
 
     }
 
@@ -278,7 +414,7 @@ public class ProductServiceTest {
 
         assertEquals("Product category cannot be null", exception.getMessage());
         verify(productRepository, never()).findAll(any(PageRequest.class));
-        verify(productRepository, never()).findByCategory(any(Pageable.class), any());
+        verify(productRepository, never()).findByCategoryAsDTO(any(Pageable.class), any());
     }
 
     @Test
@@ -287,39 +423,225 @@ public class ProductServiceTest {
         int pageNumber = 0;
         int pageSize = 10;
         String category = String.valueOf(CategoryProduct.ЭЛЕКТРОНИКА);
-        Product product1 = new Product(1L, "Наушники Sony", "Беспроводные наушники", 8990d,
-                "RUB", 25, CategoryProduct.ЭЛЕКТРОНИКА);
-        Product product2 = new Product(2L, "Смартфон Xiaomi", "Флагманский смартфон", 59999d,
-                "RUB", 75, CategoryProduct.ЭЛЕКТРОНИКА);
-
-        List<Product> products = List.of(product1, product2);
-        Page<Product> productPage = new PageImpl<>(products);
-
         ProductDTO productDTO1 = new ProductDTO("Наушники Sony", "Беспроводные наушники",
-                8990d, CategoryProduct.ЭЛЕКТРОНИКА);
+                Money.of(899000, "RUB"), CategoryProduct.ЭЛЕКТРОНИКА);
         ProductDTO productDTO2 = new ProductDTO("Смартфон Xiaomi", "Флагманский смартфон",
-                59999d, CategoryProduct.ЭЛЕКТРОНИКА);
+                Money.of(5999900, "RUB"), CategoryProduct.ЭЛЕКТРОНИКА);
 
-        when(productRepository.findByCategory(PageRequest.of(pageNumber, pageSize, Sort.by(Sort.Direction.ASC, "price")),
-                CategoryProduct.ЭЛЕКТРОНИКА)).thenReturn(productPage);
+        Page<ProductDTO> productPage = new PageImpl<>(List.of(productDTO1, productDTO2));
 
-        when(productMapper.toProductDTO(product1)).thenReturn(productDTO1);
-        when(productMapper.toProductDTO(product2)).thenReturn(productDTO2);
+        when(productRepository.findByCategoryAsDTO(PageRequest.of(pageNumber, pageSize, Sort.by(Sort.Direction.ASC, "priceBaseMinor")),
+                CategoryProduct.ЭЛЕКТРОНИКА)).thenReturn(productPage);
 
         Page<ProductDTO> page = productService.getProductCategory(category, pageNumber, pageSize);
 
         verify(productRepository, times(1))
-                .findByCategory(any(PageRequest.class), eq(CategoryProduct.ЭЛЕКТРОНИКА));
+                .findByCategoryAsDTO(any(PageRequest.class), eq(CategoryProduct.ЭЛЕКТРОНИКА));
 
         List<ProductDTO> content = page.getContent();
         assertEquals(2, content.size());
 
-        assertEquals(8990d, content.get(0).getPrice());
-        assertEquals(59999d, content.get(1).getPrice());
+        assertEquals(Money.of(899000, "RUB"), content.get(0).getPrice());
+        assertEquals(Money.of(5999900, "RUB"), content.get(1).getPrice());
 
         assertEquals("Наушники Sony", content.get(0).getName());
         assertEquals("Смартфон Xiaomi", content.get(1).getName());
     }
 
+    @Test
+    @DisplayName("Курсорная пагинация: первая страница возвращает курсор на последний элемент")
+    void scrollFirstPageTest() {
+        Product product1 = new Product(1L, "Наушники Sony", "Беспроводные наушники", Money.of(10000, "USD"),
+                25, CategoryProduct.ЭЛЕКТРОНИКА);
+        ReflectionTestUtils.setField(product1, "priceBaseMinor", 925000L);
+        Product product2 = new Product(2L, "Смартфон Xiaomi", "Флагманский смартфон", Money.of(5999900, "RUB"),
+                75, CategoryProduct.ЭЛЕКТРОНИКА);
+        ReflectionTestUtils.setField(product2, "priceBaseMinor", 5999900L);
+        ProductDTO productDTO1 = new ProductDTO("Наушники Sony", "Беспроводные наушники",
+                Money.of(10000, "USD"), CategoryProduct.ЭЛЕКТРОНИКА);
+
+        when(productRepository.findAllByPriceBaseMinorNotNullOrderByPriceBaseMinorAscIdAsc(PageRequest.of(0, 2)))
+                .thenReturn(List.of(product1, product2));
+        when(productMapper.toProductDTO(product1)).thenReturn(productDTO1);
+
+        CursorPageDTO<ProductDTO> result = productService.scroll(ProductSortOrder.PRICE_ASC, null, 1);
+
+        assertThat(result.getContent()).containsExactly(productDTO1);
+        assertTrue(result.isHasNext());
+
+        ProductCursor cursor = ProductCursor.decode(result.getNextCursor(), ProductSortOrder.PRICE_ASC);
+        assertEquals(1L, cursor.id());
+        // курсор хранит нормализованную цену, по которой идет сортировка
+        assertEquals(925000L, cursor.priceKey());
+        verify(productRepository, never()).findAll(any(Pageable.class));
+    }
 
+    @Test
+    @DisplayName("Курсорная пагинация: следующая страница ищется от позиции курсора")
+    void scrollNextPageTest() {
+        Product product2 = new Product(2L, "Смартфон Xiaomi", "Флагманский смартфон", Money.of(5999900, "RUB"),
+                75, CategoryProduct.ЭЛЕКТРОНИКА);
+        ProductDTO productDTO2 = new ProductDTO("Смартфон Xiaomi", "Флагманский смартфон",
+                Money.of(5999900, "RUB"), CategoryProduct.ЭЛЕКТРОНИКА);
+        String cursor = new ProductCursor(ProductSortOrder.NAME_ASC, 1L, "Наушники Sony").encode();
+
+        when(productRepository.findNextByNameAsc("Наушники Sony", 1L, PageRequest.of(0, 11)))
+                .thenReturn(List.of(product2));
+        when(productMapper.toProductDTO(product2)).thenReturn(productDTO2);
+
+        CursorPageDTO<ProductDTO> result = productService.scroll(ProductSortOrder.NAME_ASC, cursor, 10);
+
+        assertThat(result.getContent()).containsExactly(productDTO2);
+        assertFalse(result.isHasNext());
+        assertNull(result.getNextCursor());
+    }
+
+    @Test
+    @DisplayName("Курсорная пагинация: курсор другого порядка сортировки отклоняется")
+    void scrollWithForeignCursorTest() {
+        String cursor = new ProductCursor(ProductSortOrder.NAME_ASC, 1L, "Наушники Sony").encode();
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> productService.scroll(ProductSortOrder.PRICE_DESC, cursor, 10));
+
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+        verifyNoInteractions(productRepository);
+    }
+
+    @Test
+    @DisplayName("Курсорная пагинация: размер страницы вне 1..MAX_SCROLL_SIZE отклоняется")
+    void scrollWithInvalidSizeTest() {
+        for (int pageSize : new int[]{0, -1, ProductService.MAX_SCROLL_SIZE + 1, Integer.MAX_VALUE}) {
+            ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                    () -> productService.scroll(ProductSortOrder.NAME_ASC, null, pageSize));
+
+            assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+        }
+        verifyNoInteractions(productRepository);
+    }
+
+    @Test
+    @DisplayName("Категория без подсчета общего количества не выполняет count(*)")
+    void getProductsByCategoryWithoutTotalTest() {
+        ProductDTO productDTO1 = new ProductDTO("Наушники Sony", "Беспроводные наушники",
+                Money.of(899000, "RUB"), CategoryProduct.ЭЛЕКТРОНИКА);
+        PageRequest pageRequest = PageRequest.of(0, 10, Sort.by(Sort.Direction.ASC, "priceBaseMinor"));
+
+        when(productRepository.findSliceByCategoryAsDTO(pageRequest, CategoryProduct.ЭЛЕКТРОНИКА))
+                .thenReturn(new SliceImpl<>(List.of(productDTO1), pageRequest, false));
+
+        Slice<ProductDTO> result = productService.getProductCategory("ЭЛЕКТРОНИКА", 0, 10, TotalMode.NONE);
+
+        assertThat(result).isNotInstanceOf(Page.class);
+        assertThat(result.getContent()).containsExactly(productDTO1);
+        verify(productRepository, never()).findByCategoryAsDTO(any(Pageable.class), any());
+        verifyNoInteractions(tableStatisticsRepository);
+    }
+
+    @Test
+    @DisplayName("Приблизительный total берется из статистики, но не меньше уже найденных строк")
+    void findAllWithApproximateTotalTest() {
+        ProductDTO productDTO1 = new ProductDTO("Наушники Sony", "Беспроводные наушники",
+                Money.of(899000, "RUB"), CategoryProduct.ЭЛЕКТРОНИКА);
+        PageRequest pageRequest = PageRequest.of(3, 1, Sort.by(Sort.Direction.ASC, "name"));
+
+        when(productRepository.findSliceAsDTO(pageRequest))
+                .thenReturn(new SliceImpl<>(List.of(productDTO1), pageRequest, true));
+        when(tableStatisticsRepository.estimateRowCount("products")).thenReturn(2L);
+
+        Slice<ProductDTO> result = productService.findAll(3, 1, TotalMode.APPROXIMATE);
+
+        assertThat(result).isInstanceOf(Page.class);
+        assertEquals(5L, ((Page<ProductDTO>) result).getTotalElements());
+        assertTrue(result.hasNext());
+    }
+
+    @Test
+    @DisplayName("Повторное чтение продукта по id обслуживается из кэша")
+    void getProductNameFromCacheTest() {
+        Product product = new Product(2L, "Джинсы Levi's 501", "Классические джинсы прямого кроя", Money.of(599900, "RUB"), 75, CategoryProduct.ОДЕЖДА);
+
+        when(productRepository.findById(2L)).thenReturn(Optional.of(product));
+
+        assertEquals("Джинсы Levi's 501", productService.getProductName(2L));
+        assertEquals("Джинсы Levi's 501", productService.getProductName(2L));
+
+        verify(productRepository, times(1)).findById(2L);
+        assertEquals(1, productCache.stats().hitCount());
+        assertEquals(1, productCache.stats().missCount());
+    }
+
+    @Test
+    @DisplayName("Удаление продукта вытесняет его из кэша")
+    void deleteProductEvictsCacheTest() {
+        Product product = new Product(2L, "Джинсы Levi's 501", "Классические джинсы прямого кроя", Money.of(599900, "RUB"), 75, CategoryProduct.ОДЕЖДА);
+        productCache.put(product);
+
+        when(productWriteRepository.delete(2L, null)).thenReturn(1);
+        when(productRepository.findById(2L)).thenReturn(Optional.empty());
+
+        productService.deleteProduct(2L, null);
+
+        assertThrows(RuntimeException.class, () -> productService.getProductName(2L));
+        verify(productRepository, times(1)).findById(2L);
+    }
+
+    @Test
+    @DisplayName("Страница сортировки по цене кэшируется до изменения каталога")
+    void sortByPricePageCacheTest() {
+        PageRequest pageRequest = PageRequest.of(0, 10, Sort.by(Sort.Direction.ASC, "priceBaseMinor"));
+        Product product1 = new Product(1L, "Микроволновка LG", "Компактная микроволновая печь с грилем", Money.of(899000, "RUB"), 25, CategoryProduct.БЫТОВАЯ_ТЕХНИКА);
+        ProductDTO productDTO1 = new ProductDTO("Микроволновка LG", "Компактная микроволновая печь с грилем", Money.of(899000, "RUB"), CategoryProduct.БЫТОВАЯ_ТЕХНИКА);
+
+        when(productRepository.findAllAsDTO(pageRequest)).thenReturn(new PageImpl<>(List.of(productDTO1)));
+        when(productMapper.toProductDTO(product1)).thenReturn(productDTO1);
+        when(productRepository.save(product1)).thenReturn(product1);
+
+        String eTagBefore = productService.catalogETag();
+        productService.sortByPrice(0, 10);
+        productService.sortByPrice(0, 10);
+        verify(productRepository, times(1)).findAllAsDTO(pageRequest);
+
+        productService.createProduct(product1);
+        Page<ProductDTO> result = productService.sortByPrice(0, 10);
+
+        assertThat(result.getContent()).containsExactly(productDTO1);
+        assertNotEquals(eTagBefore, productService.catalogETag());
+        verify(productRepository, times(2)).findAllAsDTO(pageRequest);
+    }
+
+    @Test
+    @DisplayName("Пакетное чтение продуктов: кэш, один запрос за остальными, порядок запроса и ненайденные id")
+    void findProductsBatchTest() {
+        Product product1 = new Product(1L, "Микроволновка LG", "Компактная микроволновая печь с грилем", Money.of(899000, "RUB"), 25, CategoryProduct.БЫТОВАЯ_ТЕХНИКА);
+        Product product2 = new Product(2L, "Джинсы Levi's 501", "Классические прямые джинсы", Money.of(799000, "RUB"), 50, CategoryProduct.ОДЕЖДА);
+        ProductDTO productDTO1 = new ProductDTO("Микроволновка LG", "Компактная микроволновая печь с грилем", Money.of(899000, "RUB"), CategoryProduct.БЫТОВАЯ_ТЕХНИКА);
+        ProductDTO productDTO2 = new ProductDTO("Джинсы Levi's 501", "Классические прямые джинсы", Money.of(799000, "RUB"), CategoryProduct.ОДЕЖДА);
+        productCache.put(product1);
+        when(productRepository.findAllById(any())).thenReturn(List.of(product2));
+        when(productMapper.toProductDTO(product1)).thenReturn(productDTO1);
+        when(productMapper.toProductDTO(product2)).thenReturn(productDTO2);
+
+        BatchResultDTO<ProductDTO> result = productService.findProducts(List.of(2L, 1L, 3L, 2L));
+
+        assertThat(result.getItems()).containsExactly(productDTO2, productDTO1, null, productDTO2);
+        assertEquals(List.of(3L), result.getMissing());
+        verify(productRepository, times(1)).findAllById(any());
+        verify(productRepository, never()).findById(any());
+
+        productService.findProducts(List.of(1L, 2L));
+        verify(productRepository, times(1)).findAllById(any());
+    }
+
+    @Test
+    @DisplayName("Пакетное чтение продуктов: слишком длинный список id дает 400")
+    void findProductsBatchTooManyIdsTest() {
+        List<Long> ids = LongStream.rangeClosed(1, BatchLookup.MAX_IDS + 1).boxed().toList();
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> productService.findProducts(ids));
+
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+        verifyNoInteractions(productRepository);
+    }
 }
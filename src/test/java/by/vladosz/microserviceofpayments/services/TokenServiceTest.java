@@ -0,0 +1,89 @@
+package by.vladosz.microserviceofpayments.services;
+
+import by.vladosz.microserviceofpayments.configs.JwtConfig;
+import by.vladosz.microserviceofpayments.configs.JwtKeyRing;
+import by.vladosz.microserviceofpayments.configs.JwtProperties;
+import by.vladosz.microserviceofpayments.dto.TokenDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenServiceTest {
+    private static final String FIRST_KEY = "uW4kuiMEvYyHNUEKm7R+vvsSI8ZfoXhCmu2E+H8WJkQ=";
+    private static final String SECOND_KEY = "q0TQm2f3b8o9cVYh1mN5xq3sJ7kL2pR4tU6wX8yZ0aA=";
+
+    private JwtDecoder jwtDecoder;
+    private TokenService tokenService;
+
+    @BeforeEach
+    void setUp() {
+        JwtProperties jwtProperties = new JwtProperties("test-issuer", Duration.ofMinutes(5), "k1",
+                Map.of("k1", FIRST_KEY));
+        JwtConfig jwtConfig = new JwtConfig();
+        JwtKeyRing jwtKeyRing = jwtConfig.jwtKeyRing(jwtProperties);
+        jwtDecoder = jwtConfig.jwtDecoder(jwtKeyRing, jwtProperties);
+        tokenService = new TokenService(jwtConfig.jwtEncoder(jwtKeyRing), jwtKeyRing, jwtProperties);
+    }
+
+    @Test
+    @DisplayName("Выданный токен содержит имя пользователя и роли")
+    void issueTokenTest() {
+        TokenDTO token = tokenService.issue(new UsernamePasswordAuthenticationToken("Иван", null,
+                List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+
+        Jwt jwt = jwtDecoder.decode(token.getAccessToken());
+
+        assertEquals("Иван", jwt.getSubject());
+        assertEquals(List.of("ROLE_USER"), jwt.getClaimAsStringList(JwtConfig.ROLES_CLAIM));
+        assertEquals("k1", jwt.getHeaders().get("kid"));
+        assertEquals(300, token.getExpiresIn());
+    }
+
+    @Test
+    @DisplayName("Ротация через конфигурацию: старые токены принимаются, пока ключ не убран из набора")
+    void rotateKeyTest() {
+        TokenDTO oldToken = tokenService.issue(new UsernamePasswordAuthenticationToken("Иван", null, List.of()));
+
+        // второй выкат: k2 активен, k1 еще проверяет подпись
+        JwtProperties rotated = new JwtProperties("test-issuer", Duration.ofMinutes(5), "k2",
+                Map.of("k1", FIRST_KEY, "k2", SECOND_KEY));
+        JwtConfig jwtConfig = new JwtConfig();
+        JwtKeyRing rotatedKeyRing = jwtConfig.jwtKeyRing(rotated);
+        JwtDecoder rotatedDecoder = jwtConfig.jwtDecoder(rotatedKeyRing, rotated);
+        TokenService rotatedTokenService = new TokenService(jwtConfig.jwtEncoder(rotatedKeyRing), rotatedKeyRing,
+                rotated);
+        TokenDTO newToken = rotatedTokenService.issue(new UsernamePasswordAuthenticationToken("Иван", null, List.of()));
+
+        assertEquals("k2", rotatedDecoder.decode(newToken.getAccessToken()).getHeaders().get("kid"));
+        assertEquals("Иван", rotatedDecoder.decode(oldToken.getAccessToken()).getSubject());
+
+        // третий выкат: k1 удален
+        JwtProperties retired = new JwtProperties("test-issuer", Duration.ofMinutes(5), "k2", Map.of("k2", SECOND_KEY));
+        JwtDecoder retiredDecoder = jwtConfig.jwtDecoder(jwtConfig.jwtKeyRing(retired), retired);
+
+        assertThrows(JwtException.class, () -> retiredDecoder.decode(oldToken.getAccessToken()));
+        assertEquals("Иван", retiredDecoder.decode(newToken.getAccessToken()).getSubject());
+    }
+
+    @Test
+    @DisplayName("Без активного ключа или с ключом короче 256 бит настройки не создаются")
+    void missingOrShortKeyTest() {
+        assertThrows(IllegalStateException.class, () -> new JwtProperties("test-issuer", Duration.ofMinutes(5),
+                "k1", Map.of("k1", "")));
+        assertThrows(IllegalStateException.class, () -> new JwtProperties("test-issuer", Duration.ofMinutes(5),
+                "k2", Map.of("k1", FIRST_KEY)));
+        assertThrows(IllegalStateException.class, () -> new JwtProperties("test-issuer", Duration.ofMinutes(5),
+                "k1", Map.of("k1", "c2hvcnQta2V5")));
+    }
+}
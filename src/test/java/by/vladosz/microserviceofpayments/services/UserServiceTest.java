@@ -1,10 +1,16 @@
 package by.vladosz.microserviceofpayments.services;
 
+import by.vladosz.microserviceofpayments.caches.UserDetailsCache;
+import by.vladosz.microserviceofpayments.dto.BatchResultDTO;
+import by.vladosz.microserviceofpayments.dto.IdentifiedUserDTO;
 import by.vladosz.microserviceofpayments.dto.UserDTO;
+import by.vladosz.microserviceofpayments.dto.UserPatchDTO;
+import by.vladosz.microserviceofpayments.dto.Versioned;
 import by.vladosz.microserviceofpayments.mappers.UserMapper;
 import by.vladosz.microserviceofpayments.models.User;
 import by.vladosz.microserviceofpayments.models.UserRole;
 import by.vladosz.microserviceofpayments.repositories.UserRepository;
+import by.vladosz.microserviceofpayments.repositories.UserWriteRepository;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -14,9 +20,12 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.util.ArrayList;
@@ -33,41 +42,32 @@ public class UserServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private UserWriteRepository userWriteRepository;
+
     @Mock
     private UserMapper userMapper;
 
+    @Mock
+    private UserDetailsCache userDetailsCache;
+
     @InjectMocks
     private UserService userService;
 
     @Test
     @DisplayName("Правильный тест на вывод всех пользователей")
     void getAllUsersTest() {
-        UserRole userRole = new UserRole();
-        userRole.setId(1);
-        userRole.setName("ROLE_USER");
-        Collection<UserRole> userRoles = new ArrayList<>();
-        userRoles.add(userRole);
-
-        User user1 = new User(1L, "Иван", "Петров", "Сергеевич", 25,
-                "ivan.petrov@example.com", "securePass123", userRoles);
-
-        User user2 = new User(2L, "Анна", "Смирнова", "Игоревна", 30,
-                "anna.smirnova@example.com", "annaPassword456", userRoles);
-
-        Page<User> userPage = new PageImpl<>(List.of(user2, user1));
-
         UserDTO userDTO1 = new UserDTO("Иван", "Петров", "Сергеевич", 25);
         UserDTO userDTO2 = new UserDTO("Анна", "Смирнова", "Игоревна", 30);
 
+        Page<UserDTO> userPage = new PageImpl<>(List.of(userDTO2, userDTO1));
+
         int pageNumber = 0;
         int pageSize = 10;
 
-        when(userRepository.findAll(PageRequest.of(pageNumber, pageSize, Sort.by(Sort.Direction.ASC, "userName"))))
+        when(userRepository.findAllAsDTO(PageRequest.of(pageNumber, pageSize, Sort.by(Sort.Direction.ASC, "userName"))))
                 .thenReturn(userPage);
 
-        when(userMapper.toUserDTO(user1)).thenReturn(userDTO1);
-        when(userMapper.toUserDTO(user2)).thenReturn(userDTO2);
-
         Page<UserDTO> userPageDTO = userService.findAll(pageNumber, pageSize);
 
         assertThat(userPageDTO.getContent())
@@ -78,8 +78,8 @@ public class UserServiceTest {
                 .extracting(UserDTO::getUserName)
                 .containsExactly("Анна", "Иван");
 
-        verify(userMapper, times(1)).toUserDTO(user1);
-        verify(userMapper, times(1)).toUserDTO(user2);
+        verify(userRepository, never()).findAll(any(Pageable.class));
+        verifyNoInteractions(userMapper);
     }
 
     @Test
@@ -128,7 +128,7 @@ public class UserServiceTest {
         when(userRepository.findById(userId)).thenReturn(Optional.empty());
 
         ResponseStatusException exception = assertThrows(ResponseStatusException.class,
-                () -> userService.updateUser(userId, user));
+                () -> userService.updateUser(userId, user, null));
 
         assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
         assertEquals(" User not found with id: " + userId, exception.getReason());
@@ -165,7 +165,7 @@ public class UserServiceTest {
         when(userRepository.save(any(User.class))).thenReturn(savedUser);
         when(userMapper.toUserDTO(savedUser)).thenReturn(userDTO);
 
-        ResponseEntity<?> response = userService.updateUser(userId, updatedUser);
+        ResponseEntity<?> response = userService.updateUser(userId, updatedUser, null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(userDTO, response.getBody());
@@ -180,15 +180,14 @@ public class UserServiceTest {
     @DisplayName("Успешное удалении пользователя по id")
     void deleteUserTest() {
         Long userId = 1L;
-        User user = new User();
-        user.setId(userId);
 
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        when(userWriteRepository.delete(userId, null)).thenReturn(Optional.of("Иван"));
 
-        userService.deleteUser(userId);
+        userService.deleteUser(userId, null);
 
-        verify(userRepository, times(1)).deleteById(userId);
-        verify(userRepository, times(1)).findById(userId);
+        verify(userWriteRepository, times(1)).delete(userId, null);
+        verify(userRepository, never()).findById(userId);
+        verify(userRepository, never()).deleteById(userId);
     }
 
     @Test
@@ -196,15 +195,107 @@ public class UserServiceTest {
     void deleteUserNotFoundTest() {
         Long userId = 1L;
 
-        when(userRepository.findById(userId)).thenReturn(Optional.empty());
+        when(userWriteRepository.delete(userId, null)).thenReturn(Optional.empty());
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> userService.deleteUser(userId, null));
 
-        RuntimeException runtimeException =  assertThrows(RuntimeException.class,
-                () -> userService.deleteUser(userId));
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
+        assertEquals("User not found with id: " + userId, exception.getReason());
+        verify(userDetailsCache, never()).removeUserFromCache(any());
+    }
 
-        assertEquals("User not found with id: " + userId,  runtimeException.getMessage());
+    @Test
+    @DisplayName("Удаление с If-Match другой версии - 412")
+    void deleteUserVersionMismatchTest() {
+        when(userWriteRepository.delete(1L, 2L)).thenReturn(Optional.empty());
+        when(userRepository.existsById(1L)).thenReturn(true);
 
-        verify(userRepository, never()).deleteById(userId);
-        verify(userRepository, times(1)).findById(userId);
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> userService.deleteUser(1L, 2L));
+
+        assertEquals(HttpStatus.PRECONDITION_FAILED, exception.getStatusCode());
+        verify(userDetailsCache, never()).removeUserFromCache(any());
+    }
 
+    @Test
+    @DisplayName("Удаление пользователя вытесняет его UserDetails из кэша")
+    void deleteUserEvictsUserDetailsTest() {
+        Long userId = 1L;
+
+        when(userWriteRepository.delete(userId, 3L)).thenReturn(Optional.of("Иван"));
+
+        userService.deleteUser(userId, 3L);
+
+        verify(userDetailsCache, times(1)).removeUserFromCache("Иван");
+    }
+
+    @Test
+    @DisplayName("PATCH пользователя возвращает новую версию и вытесняет старое и новое имя из кэша")
+    void patchUserTest() {
+        UserPatchDTO patch = new UserPatchDTO("Иоанн", null, null, null, null);
+        UserDTO userDTO = new UserDTO("Иоанн", "Петров", "Сергеевич", 25);
+
+        when(userWriteRepository.patch(1L, patch, 2L))
+                .thenReturn(Optional.of(new UserWriteRepository.PatchedUser(userDTO, 3, "Иван")));
+
+        Versioned<UserDTO> result = userService.patchUser(1L, patch, 2L);
+
+        assertEquals(userDTO, result.body());
+        assertEquals(3, result.version());
+        verify(userDetailsCache).removeUserFromCache("Иван");
+        verify(userDetailsCache).removeUserFromCache("Иоанн");
+        verify(userRepository, never()).findById(any());
+    }
+
+    @Test
+    @DisplayName("Роли пользователя загружаются одним join fetch запросом")
+    void loadUserByUsernameTest() {
+        UserRole userRole = new UserRole();
+        userRole.setId(1);
+        userRole.setName("ROLE_USER");
+
+        User user = new User(1L, "Иван", "Петров", "Сергеевич", 25,
+                "ivan.petrov@example.com", "securePass123", List.of(userRole));
+
+        when(userRepository.findWithRolesByUserName("Иван")).thenReturn(Optional.of(user));
+
+        UserDetails userDetails = userService.loadUserByUsername("Иван");
+
+        assertEquals("Иван", userDetails.getUsername());
+        assertThat(userDetails.getAuthorities()).extracting(GrantedAuthority::getAuthority)
+                .containsExactly("ROLE_USER");
+        verify(userRepository, never()).findByUserName(any());
+    }
+
+    @Test
+    @DisplayName("Пакетное чтение пользователей: один IN по уникальным id, порядок запроса и ненайденные id")
+    void findUsersByIdsTest() {
+        IdentifiedUserDTO user1 = new IdentifiedUserDTO(1L, "Иван", "Петров", "Сергеевич", 25);
+        IdentifiedUserDTO user3 = new IdentifiedUserDTO(3L, "Анна", "Смирнова", "Игоревна", 30);
+        when(userRepository.findAllAsDTOByIdIn(List.of(3L, 1L, 9L))).thenReturn(List.of(user1, user3));
+
+        BatchResultDTO<UserDTO> result = userService.findUsersByIds(List.of(3L, 1L, 3L, 9L));
+
+        assertEquals(4, result.getItems().size());
+        assertEquals("Анна", result.getItems().get(0).getUserName());
+        assertEquals("Иван", result.getItems().get(1).getUserName());
+        assertSame(result.getItems().get(0), result.getItems().get(2));
+        assertNull(result.getItems().get(3));
+        assertEquals(List.of(9L), result.getMissing());
+        verify(userRepository, never()).findAllById(any());
+    }
+
+    @Test
+    @DisplayName("Пакетное чтение пользователей: пустой список и null в списке дают 400")
+    void findUsersByIdsInvalidTest() {
+        List<Long> withNull = new ArrayList<>(List.of(1L));
+        withNull.add(null);
+
+        assertEquals(HttpStatus.BAD_REQUEST, assertThrows(ResponseStatusException.class,
+                () -> userService.findUsersByIds(List.of())).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, assertThrows(ResponseStatusException.class,
+                () -> userService.findUsersByIds(withNull)).getStatusCode());
+        verifyNoInteractions(userRepository);
     }
 }